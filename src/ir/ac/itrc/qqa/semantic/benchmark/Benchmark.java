@@ -0,0 +1,148 @@
+package ir.ac.itrc.qqa.semantic.benchmark;
+
+/**
+ * A minimal micro-benchmark: the operation is run repeatedly for a number of warm-up iterations (to let the JIT settle)
+ * and then for a number of measured iterations of a fixed duration. The throughput of each measured iteration is recorded.
+ * Results of the operation are folded into a sink so the JIT can not remove the measured code.
+ *
+ * @author Ehsan Darrudi
+ */
+public abstract class Benchmark
+{
+	/** the name of the benchmark */
+	private String _name;
+
+	/** the sink results of operations are folded into */
+	private static volatile int _sink = 0;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * constructor
+	 * @param name the name of the benchmark
+	 */
+	public Benchmark(String name)
+	{
+		_name = name;
+	}
+
+	/**
+	 * Getter for <code>_name</code>
+	 * @return
+	 */
+	public String getName()
+	{
+		return _name;
+	}
+
+	/**
+	 * prepares the state of an iteration. it is not measured.
+	 */
+	public void setUp()
+	{
+	}
+
+	/**
+	 * runs the measured operation once
+	 * @param invocation the number of the invocation in the current iteration
+	 * @return anything computed by the operation
+	 */
+	public abstract Object run(int invocation);
+
+	/**
+	 * measures the benchmark
+	 * @param warmupIterations number of iterations before measuring
+	 * @param iterations number of measured iterations
+	 * @param iterationMillis the duration of each iteration; an iteration runs at least one operation
+	 * @return the throughput (operations per second) of measured iterations
+	 */
+	public double[] measure(int warmupIterations, int iterations, long iterationMillis)
+	{
+		for (int i = 0; i < warmupIterations; i++)
+		{
+			runIteration(iterationMillis);
+		}
+
+		double[] throughputs = new double[iterations];
+
+		for (int i = 0; i < iterations; i++)
+		{
+			throughputs[i] = runIteration(iterationMillis);
+		}
+
+		return throughputs;
+	}
+
+	/**
+	 * runs the operation for the duration of an iteration
+	 * @param iterationMillis the duration
+	 * @return operations per second
+	 */
+	private double runIteration(long iterationMillis)
+	{
+		setUp();
+
+		long duration = iterationMillis * 1000000L;
+		long start = System.nanoTime();
+		long elapsed = 0;
+		int invocations = 0;
+		int sink = 0;
+
+		while (elapsed < duration)
+		{
+			Object result = run(invocations++);
+
+			if (result != null)
+			{
+				sink += System.identityHashCode(result);
+			}
+
+			elapsed = System.nanoTime() - start;
+		}
+
+		_sink += sink;
+
+		return invocations * 1e9 / elapsed;
+	}
+
+	/**
+	 * composes a report line for the throughputs of a benchmark: mean, error (99.9% confidence interval, as JMH reports) and the range
+	 * @param name the name of the benchmark
+	 * @param throughputs the throughputs of measured iterations
+	 * @return the report line
+	 */
+	public static String composeReport(String name, double[] throughputs)
+	{
+		double mean = 0;
+
+		for (double throughput: throughputs)
+		{
+			mean += throughput;
+		}
+
+		mean /= throughputs.length;
+
+		double variance = 0;
+		double min = Double.MAX_VALUE;
+		double max = 0;
+
+		for (double throughput: throughputs)
+		{
+			variance += (throughput - mean) * (throughput - mean);
+			min = Math.min(min, throughput);
+			max = Math.max(max, throughput);
+		}
+
+		double error = 0;
+
+		if (throughputs.length > 1)
+		{
+			variance /= throughputs.length - 1;
+
+			// z value for 99.9%; a t-distribution would be more accurate for few iterations
+			error = 3.291 * Math.sqrt(variance / throughputs.length);
+		}
+
+		return String.format("%-45s %5d %14.3f +- %12.3f ops/s  [%.3f .. %.3f]", name, throughputs.length, mean, error, min, max);
+	}
+}
@@ -0,0 +1,340 @@
+package ir.ac.itrc.qqa.semantic.benchmark;
+
+import ir.ac.itrc.qqa.semantic.enums.ExecutionMode;
+import ir.ac.itrc.qqa.semantic.enums.LexicalType;
+import ir.ac.itrc.qqa.semantic.enums.POS;
+import ir.ac.itrc.qqa.semantic.enums.StringMatch;
+import ir.ac.itrc.qqa.semantic.kb.KnowledgeBase;
+import ir.ac.itrc.qqa.semantic.kb.Node;
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleQuestion;
+import ir.ac.itrc.qqa.semantic.reasoning.SemanticReasoner;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Runs the benchmarks of the hot paths of <code>KnowledgeBase</code> and <code>SemanticReasoner</code> on a synthetic kb.
+ * <p>
+ * usage: Benchmarks [-size concepts] [-filter substring] [-warmup iterations] [-iterations iterations] [-time milliseconds] [-seed seed]
+ *
+ * @author Ehsan Darrudi
+ */
+public class Benchmarks
+{
+	/** number of concepts in the synthetic kb */
+	private int _size = 10000;
+
+	/** only benchmarks whose names contain this are run */
+	private String _filter = "";
+
+	/** number of warm-up iterations */
+	private int _warmupIterations = 3;
+
+	/** number of measured iterations */
+	private int _iterations = 5;
+
+	/** the duration of each iteration in milliseconds */
+	private long _iterationMillis = 1000;
+
+	/** the seed of the synthetic kb */
+	private long _seed = 1;
+
+	private SyntheticKbGenerator _generator;
+	private KnowledgeBase _kb;
+	private String _dumpFile;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	public static void main(String[] args) throws Exception
+	{
+		Benchmarks benchmarks = new Benchmarks();
+
+		for (int i = 0; i + 1 < args.length; i += 2)
+		{
+			if (args[i].equals("-size"))
+				benchmarks._size = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-filter"))
+				benchmarks._filter = args[i + 1];
+			else if (args[i].equals("-warmup"))
+				benchmarks._warmupIterations = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-iterations"))
+				benchmarks._iterations = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-time"))
+				benchmarks._iterationMillis = Long.parseLong(args[i + 1]);
+			else if (args[i].equals("-seed"))
+				benchmarks._seed = Long.parseLong(args[i + 1]);
+			else
+			{
+				System.out.println("unknown option: " + args[i]);
+				return;
+			}
+		}
+
+		benchmarks.run();
+	}
+
+	/**
+	 * generates the synthetic kb and runs the benchmarks
+	 */
+	public void run() throws Exception
+	{
+		PrintStream out = System.out;
+		PrintStream quiet = new PrintStream(new OutputStream()
+		{
+			@Override
+			public void write(int b)
+			{
+			}
+		});
+
+		// the kb is verbose while building and importing
+		System.setOut(quiet);
+
+		long start = System.currentTimeMillis();
+
+		_generator = new SyntheticKbGenerator(_size);
+		_generator.setSeed(_seed);
+
+		_kb = _generator.generate();
+
+		File dump = File.createTempFile("hpr-benchmark", ".txt");
+		dump.deleteOnExit();
+
+		_dumpFile = dump.getPath();
+		_kb.exportKb(_dumpFile);
+
+		_kb.lock();
+
+		System.setOut(out);
+
+		System.out.println("synthetic kb: " + _size + " concepts, " + _kb.getNodesNum() + " nodes, generated in " + (System.currentTimeMillis() - start) + " ms");
+		System.out.println();
+		System.out.println(String.format("%-45s %5s %14s   %12s", "Benchmark", "Cnt", "Score", "Error"));
+
+		ArrayList<Benchmark> benchmarks = composeBenchmarks();
+
+		for (Benchmark benchmark: benchmarks)
+		{
+			if (!benchmark.getName().contains(_filter))
+				continue;
+
+			System.setOut(quiet);
+
+			double[] throughputs = benchmark.measure(_warmupIterations, _iterations, _iterationMillis);
+
+			System.setOut(out);
+
+			out.println(Benchmark.composeReport(benchmark.getName(), throughputs));
+		}
+	}
+
+	/**
+	 * composes the benchmarks
+	 * @return the benchmarks
+	 */
+	private ArrayList<Benchmark> composeBenchmarks()
+	{
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+		final ArrayList<Node> concepts = _generator.getConcepts();
+		final ArrayList<Node> descriptors = _generator.getDescriptors();
+
+		final int conceptNum = concepts.size();
+
+		//-------------------------------------------------------------- findConcept
+
+		benchmarks.add(new Benchmark("findConcept")
+		{
+			@Override
+			public Object run(int invocation)
+			{
+				return _kb.findConcept(SyntheticKbGenerator.composeConceptName(pick(invocation, 7919, conceptNum)));
+			}
+		});
+
+		//-------------------------------------------------------------- getConceptFromSubstr
+
+		final StringMatch[] matches = {StringMatch.EXACT, StringMatch.PREFIX, StringMatch.SUBSTRING};
+
+		for (final StringMatch match: matches)
+		{
+			benchmarks.add(new Benchmark("getConceptFromSubstr[" + match + "]")
+			{
+				@Override
+				public Object run(int invocation)
+				{
+					String snippet;
+
+					if (match == StringMatch.EXACT)
+						snippet = SyntheticKbGenerator.composeConceptName(pick(invocation, 7919, conceptNum));
+					else if (match == StringMatch.PREFIX)
+						snippet = "value " + (invocation % 10);
+					else
+						snippet = "ept " + (invocation % 100);
+
+					return _kb.getConceptFromSubstr(snippet, POS.ANY, match, LexicalType.ANY);
+				}
+			});
+		}
+
+		//-------------------------------------------------------------- findTargetNodes
+
+		benchmarks.add(new Benchmark("findTargetNodes[ISA]")
+		{
+			@Override
+			public Object run(int invocation)
+			{
+				return concepts.get(pick(invocation, 7919, conceptNum)).findTargetNodes(KnowledgeBase.HPR_ISA);
+			}
+		});
+
+		benchmarks.add(new Benchmark("findTargetNodes[descriptor]")
+		{
+			@Override
+			public Object run(int invocation)
+			{
+				Node concept = concepts.get(pick(invocation, 7919, conceptNum));
+
+				return concept.findTargetNodes(descriptors.get(invocation % descriptors.size()));
+			}
+		});
+
+		//-------------------------------------------------------------- findCommonParent
+
+		benchmarks.add(new Benchmark("findCommonParent")
+		{
+			@Override
+			public Object run(int invocation)
+			{
+				Node concept1 = concepts.get(pick(invocation, 7919, conceptNum));
+				Node concept2 = concepts.get(pick(invocation, 104729, conceptNum));
+
+				return _kb.findCommonParent(concept1, concept2, 7);
+			}
+		});
+
+		//-------------------------------------------------------------- answerQuestion
+
+		final int[] depths = {3, 5, 7};
+
+		for (final int depth: depths)
+		{
+			benchmarks.add(new Benchmark("answerQuestion[depth=" + depth + "]")
+			{
+				private SemanticReasoner _reasoner;
+
+				@Override
+				public void setUp()
+				{
+					_reasoner = new SemanticReasoner(_kb, ExecutionMode.RELEASE);
+					_reasoner.setMaxReasoningDepth(depth);
+				}
+
+				@Override
+				public Object run(int invocation)
+				{
+					// questions about the leaves of the hierarchy exercise the deepest inference chains
+					Node argument = concepts.get(conceptNum - 1 - pick(invocation, 7919, conceptNum / 2 + 1));
+
+					PlausibleQuestion pq = new PlausibleQuestion();
+
+					pq.descriptor = descriptors.get(invocation % descriptors.size());
+					pq.argument = argument;
+
+					return _reasoner.answerQuestion(pq);
+				}
+			});
+		}
+
+		//-------------------------------------------------------------- importKb
+
+		// the benchmarks below create new kbs. they come last since creating a kb reloads the core relation types
+		// (e.g. KnowledgeBase.HPR_ISA) which the synthetic kb is then no longer built on.
+
+		benchmarks.add(new Benchmark("importKb")
+		{
+			@Override
+			public Object run(int invocation)
+			{
+				KnowledgeBase kb = new KnowledgeBase();
+
+				kb.importKb(_dumpFile);
+
+				return kb;
+			}
+		});
+
+		final int processors = Runtime.getRuntime().availableProcessors();
+
+		benchmarks.add(new Benchmark("importKb[threads=" + processors + "]")
+		{
+			@Override
+			public Object run(int invocation)
+			{
+				KnowledgeBase kb = new KnowledgeBase();
+
+				kb.importKb(_dumpFile, null, processors);
+
+				return kb;
+			}
+		});
+
+		//-------------------------------------------------------------- addRelation
+
+		benchmarks.add(new Benchmark("addRelation")
+		{
+			private KnowledgeBase _target;
+			private Node[] _nodes;
+			private Node[] _relations;
+			private Random _random;
+
+			@Override
+			public void setUp()
+			{
+				// a fresh kb in each iteration so its growth doesn't accumulate over iterations
+				_target = new KnowledgeBase();
+				_random = new Random(_seed);
+
+				_nodes = new Node[conceptNum];
+				_relations = new Node[descriptors.size()];
+
+				for (int i = 0; i < _nodes.length; i++)
+				{
+					_nodes[i] = _target.addConcept(SyntheticKbGenerator.composeConceptName(i));
+				}
+
+				for (int i = 0; i < _relations.length; i++)
+				{
+					_relations[i] = _target.addConcept(descriptors.get(i).getName());
+				}
+			}
+
+			@Override
+			public Object run(int invocation)
+			{
+				Node argument = _nodes[_random.nextInt(_nodes.length)];
+				Node referent = _nodes[_random.nextInt(_nodes.length)];
+				Node descriptor = _relations[_random.nextInt(_relations.length)];
+
+				return _target.addRelation(argument, referent, descriptor);
+			}
+		});
+
+		return benchmarks;
+	}
+
+	/**
+	 * picks an index for an invocation, spreading consecutive invocations over the range
+	 * @param invocation the invocation number
+	 * @param stride a prime stride
+	 * @param num the size of the range
+	 * @return the index
+	 */
+	private static int pick(int invocation, long stride, int num)
+	{
+		return (int)((invocation * stride) % num);
+	}
+}
@@ -0,0 +1,341 @@
+package ir.ac.itrc.qqa.semantic.benchmark;
+
+import ir.ac.itrc.qqa.semantic.enums.ConditionalType;
+import ir.ac.itrc.qqa.semantic.enums.SourceType;
+import ir.ac.itrc.qqa.semantic.kb.CertaintyParameters;
+import ir.ac.itrc.qqa.semantic.kb.KnowledgeBase;
+import ir.ac.itrc.qqa.semantic.kb.Node;
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleStatement;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates synthetic knowledge bases of configurable size for benchmarking.
+ * The generated kb contains:
+ * <ul>
+ *     <li>an ISA hierarchy (a tree with a fixed branching factor)</li>
+ *     <li>SIM and DIS relations between siblings</li>
+ *     <li>facts in the form DESCRIPTOR(concept)={value} attached to all levels of the hierarchy</li>
+ *     <li>DEP relations between descriptors</li>
+ *     <li>IMP rules: DESCRIPTOR1(X)={Y} ==> DESCRIPTOR2(X)={Z}</li>
+ *     <li>CX:TIME and CX:LOCATION statements on facts</li>
+ * </ul>
+ * The same seed and sizes always produce the same kb.
+ *
+ * @author Ehsan Darrudi
+ */
+public class SyntheticKbGenerator
+{
+	/** number of concepts in the ISA hierarchy */
+	private int _conceptNum;
+
+	/** number of children of each concept in the ISA hierarchy */
+	private int _branching = 5;
+
+	/** number of SIM relations per concept */
+	private float _similarityRatio = 0.5F;
+
+	/** number of DIS relations per concept */
+	private float _dissimilarityRatio = 0.1F;
+
+	/** number of descriptors (attribute relation types) */
+	private int _descriptorNum = 20;
+
+	/** number of values descriptors may take */
+	private int _valueNum = 200;
+
+	/** number of facts per concept */
+	private float _factRatio = 1;
+
+	/** number of DEP relations between descriptors */
+	private int _dependencyNum = 20;
+
+	/** number of IMP rules */
+	private int _implicationNum = 50;
+
+	/** ratio of facts with a CX:TIME or CX:LOCATION */
+	private float _contextRatio = 0.1F;
+
+	/** the seed of the random generator */
+	private long _seed = 1;
+
+	private ArrayList<Node> _concepts = new ArrayList<Node>();
+	private ArrayList<Node> _descriptors = new ArrayList<Node>();
+	private ArrayList<Node> _values = new ArrayList<Node>();
+	private ArrayList<Node> _times = new ArrayList<Node>();
+	private ArrayList<Node> _locations = new ArrayList<Node>();
+	private ArrayList<PlausibleStatement> _facts = new ArrayList<PlausibleStatement>();
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * constructor
+	 * @param conceptNum number of concepts in the ISA hierarchy; the other sizes are relative to it or have defaults
+	 */
+	public SyntheticKbGenerator(int conceptNum)
+	{
+		_conceptNum = conceptNum;
+	}
+
+	/**
+	 * Setter for <code>_branching</code>
+	 * @param branching
+	 */
+	public void setBranching(int branching)
+	{
+		_branching = branching;
+	}
+
+	/**
+	 * Setter for <code>_similarityRatio</code> and <code>_dissimilarityRatio</code>
+	 * @param similarityRatio
+	 * @param dissimilarityRatio
+	 */
+	public void setSimilarityRatios(float similarityRatio, float dissimilarityRatio)
+	{
+		_similarityRatio = similarityRatio;
+		_dissimilarityRatio = dissimilarityRatio;
+	}
+
+	/**
+	 * Setter for <code>_descriptorNum</code>, <code>_valueNum</code> and <code>_factRatio</code>
+	 * @param descriptorNum
+	 * @param valueNum
+	 * @param factRatio
+	 */
+	public void setFacts(int descriptorNum, int valueNum, float factRatio)
+	{
+		_descriptorNum = descriptorNum;
+		_valueNum = valueNum;
+		_factRatio = factRatio;
+	}
+
+	/**
+	 * Setter for <code>_dependencyNum</code> and <code>_implicationNum</code>
+	 * @param dependencyNum
+	 * @param implicationNum
+	 */
+	public void setRules(int dependencyNum, int implicationNum)
+	{
+		_dependencyNum = dependencyNum;
+		_implicationNum = implicationNum;
+	}
+
+	/**
+	 * Setter for <code>_contextRatio</code>
+	 * @param contextRatio
+	 */
+	public void setContextRatio(float contextRatio)
+	{
+		_contextRatio = contextRatio;
+	}
+
+	/**
+	 * Setter for <code>_seed</code>
+	 * @param seed
+	 */
+	public void setSeed(long seed)
+	{
+		_seed = seed;
+	}
+
+	/**
+	 * generates a new kb
+	 * @return the kb
+	 */
+	public KnowledgeBase generate()
+	{
+		KnowledgeBase kb = new KnowledgeBase();
+
+		generate(kb);
+
+		return kb;
+	}
+
+	/**
+	 * generates the synthetic knowledge into a kb
+	 * @param kb the kb
+	 */
+	public void generate(KnowledgeBase kb)
+	{
+		Random random = new Random(_seed);
+
+		_concepts.clear();
+		_descriptors.clear();
+		_values.clear();
+		_times.clear();
+		_locations.clear();
+		_facts.clear();
+
+		// the ISA hierarchy: concept i is a child of concept (i - 1) / branching
+		for (int i = 0; i < _conceptNum; i++)
+		{
+			Node concept = kb.addConcept(composeConceptName(i));
+
+			_concepts.add(concept);
+
+			if (i > 0)
+			{
+				kb.addRelation(concept, _concepts.get((i - 1) / _branching), KnowledgeBase.HPR_ISA);
+			}
+		}
+
+		for (int i = 0; i < _descriptorNum; i++)
+		{
+			_descriptors.add(kb.addConcept("descriptor " + i));
+		}
+
+		for (int i = 0; i < _valueNum; i++)
+		{
+			_values.add(kb.addConcept("value " + i));
+		}
+
+		for (int i = 0; i < 10; i++)
+		{
+			_times.add(kb.addConcept("time " + i));
+			_locations.add(kb.addConcept("location " + i));
+		}
+
+		// SIM and DIS relations between siblings
+		if (_conceptNum > 1)
+		{
+			addSiblingRelations(kb, random, KnowledgeBase.HPR_SIM, (int)(_conceptNum * _similarityRatio));
+			addSiblingRelations(kb, random, KnowledgeBase.HPR_DIS, (int)(_conceptNum * _dissimilarityRatio));
+		}
+
+		// facts
+		int factNum = (int)(_conceptNum * _factRatio);
+
+		for (int i = 0; i < factNum && _descriptorNum > 0 && _valueNum > 0; i++)
+		{
+			Node argument = _concepts.get(random.nextInt(_conceptNum));
+			Node descriptor = _descriptors.get(random.nextInt(_descriptorNum));
+			Node value = _values.get(random.nextInt(_valueNum));
+
+			_facts.add(kb.addRelation(argument, value, descriptor, composeParameters(random)));
+		}
+
+		// dependencies between descriptors
+		for (int i = 0; i < _dependencyNum && _descriptorNum > 1; i++)
+		{
+			Node from = _descriptors.get(random.nextInt(_descriptorNum));
+			Node to = _descriptors.get(random.nextInt(_descriptorNum));
+
+			if (from != to)
+			{
+				kb.addRelation(from, to, random.nextBoolean() ? KnowledgeBase.HPR_DEPP : KnowledgeBase.HPR_DEP);
+			}
+		}
+
+		// rules: DESCRIPTOR1(X)={Y} ==> DESCRIPTOR2(X)={Z}
+		for (int i = 0; i < _implicationNum && _descriptorNum > 1 && _valueNum > 0; i++)
+		{
+			Node argument = _concepts.get(random.nextInt(_conceptNum));
+
+			PlausibleStatement antecedent = kb.addRelation(argument, _values.get(random.nextInt(_valueNum)), _descriptors.get(random.nextInt(_descriptorNum)), composeParameters(random), false, ConditionalType.ANTECEDENT, SourceType.UNKNOWN);
+			PlausibleStatement consequent = kb.addRelation(argument, _values.get(random.nextInt(_valueNum)), _descriptors.get(random.nextInt(_descriptorNum)), composeParameters(random), false, ConditionalType.CONSEQUENT, SourceType.UNKNOWN);
+
+			kb.addRelation(antecedent, consequent, KnowledgeBase.HPR_IMP, composeParameters(random));
+		}
+
+		// contexts
+		int contextNum = (int)(_facts.size() * _contextRatio);
+
+		for (int i = 0; i < contextNum; i++)
+		{
+			PlausibleStatement fact = _facts.get(random.nextInt(_facts.size()));
+
+			if (random.nextBoolean())
+			{
+				kb.addRelation(fact, _times.get(random.nextInt(_times.size())), KnowledgeBase.HPR_CXTIME);
+			}
+			else
+			{
+				kb.addRelation(fact, _locations.get(random.nextInt(_locations.size())), KnowledgeBase.HPR_CXLOCATION);
+			}
+		}
+	}
+
+	/**
+	 * adds relations between random siblings of the hierarchy
+	 * @param kb the kb
+	 * @param random the random generator
+	 * @param relation the relation type
+	 * @param num number of relations
+	 */
+	private void addSiblingRelations(KnowledgeBase kb, Random random, Node relation, int num)
+	{
+		for (int i = 0; i < num; i++)
+		{
+			int first = 1 + random.nextInt(_conceptNum - 1);
+			int parent = (first - 1) / _branching;
+			int second = 1 + parent * _branching + random.nextInt(_branching);
+
+			if (second < _conceptNum && second != first)
+			{
+				kb.addRelation(_concepts.get(first), _concepts.get(second), relation, composeParameters(random));
+			}
+		}
+	}
+
+	/**
+	 * composes random certainty parameters
+	 * @param random the random generator
+	 * @return the parameters
+	 */
+	private CertaintyParameters composeParameters(Random random)
+	{
+		CertaintyParameters parameters = new CertaintyParameters();
+
+		parameters.certainty = 0.5F + random.nextFloat() / 2;
+
+		return parameters;
+	}
+
+	/**
+	 * composes the name of a concept of the hierarchy
+	 * @param i concept number
+	 * @return the name
+	 */
+	public static String composeConceptName(int i)
+	{
+		return "concept " + i;
+	}
+
+	/**
+	 * Getter for the concepts of the ISA hierarchy (the root first, leaves last)
+	 * @return
+	 */
+	public ArrayList<Node> getConcepts()
+	{
+		return _concepts;
+	}
+
+	/**
+	 * Getter for the descriptors
+	 * @return
+	 */
+	public ArrayList<Node> getDescriptors()
+	{
+		return _descriptors;
+	}
+
+	/**
+	 * Getter for the values
+	 * @return
+	 */
+	public ArrayList<Node> getValues()
+	{
+		return _values;
+	}
+
+	/**
+	 * Getter for the facts
+	 * @return
+	 */
+	public ArrayList<PlausibleStatement> getFacts()
+	{
+		return _facts;
+	}
+}
@@ -0,0 +1,36 @@
+package ir.ac.itrc.qqa.semantic.enums;
+
+/**
+ * Enumerates the inferences of the reasoning engine, including those RECALL launches when it cannot find an answer directly in the knowledge base
+ * @author Ehsan Darrudi
+ *
+ */
+public enum InferenceType
+{
+	AGEN,			// argument generalization
+	ASPEC,			// argument specification
+	ASIM,			// argument similarity
+	ADIS,			// argument dissimilarity
+	ASYN,			// argument synonymy
+	DGEN,			// descriptor generalization
+	DSPEC,			// descriptor specification
+	DSIM,			// descriptor similarity
+	DDIS,			// descriptor dissimilarity
+	DSYN,			// descriptor synonymy
+	RGEN,			// referent generalization
+	RSPEC,			// referent specification
+	RSIM,			// referent similarity
+	RDIS,			// referent dissimilarity
+	RSYN,			// referent synonymy
+	DDEP,			// derivation from dependency
+	DIMP,			// derivation from implication
+	DEPA,			// dependency-based analogy
+	INVERSE,		// descriptor inverse transform
+	AMBIGUATION,	// removing sense information
+	DISAMBIGUATION,	// adding sense information
+	RECALL,			// direct retrieval from the knowledge base
+	TDEP,			// transitive dependency
+	ABDUCTION,		// abduction
+	CAUSINF,		// causality
+	ATTRIBUTE		// attribute-of
+}
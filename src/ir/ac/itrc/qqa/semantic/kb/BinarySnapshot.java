@@ -0,0 +1,697 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import ir.ac.itrc.qqa.semantic.enums.ConceptType;
+import ir.ac.itrc.qqa.semantic.enums.ConditionalType;
+import ir.ac.itrc.qqa.semantic.enums.LexicalType;
+import ir.ac.itrc.qqa.semantic.enums.POS;
+import ir.ac.itrc.qqa.semantic.enums.SourceType;
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleStatement;
+import ir.ac.itrc.qqa.semantic.util.MyError;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Reads and writes binary images of the knowledge base.
+ * An image is composed of:
+ * <ul>
+ * 		<li> a header: magic number and format version </li>
+ * 		<li> a string table holding node names, tokenized and lemmatized forms (UTF-8) </li>
+ * 		<li> node attribute arrays: name, tokenized, lemmatized, source, lexical type, POS, concept type and flags </li>
+ * 		<li> statement arrays: argument, relation type, referent, conditional type, source, flags and 9 packed certainty floats per statement </li>
+ * </ul>
+ * Statements about statements (CX, IMP, ...) are kept in the same statement arrays:
+ * an argument or referent which is a statement is stored as <code>-(statement index + 1)</code>.
+ * Statements are written in an order that reproduces every node's link-lists exactly, so a loaded kb answers in the same order as the original one.
+ * Images are loaded by memory-mapping the file, no text parsing is involved.
+ *
+ * @author Ehsan Darrudi
+ */
+public class BinarySnapshot
+{
+	/** 'HPRB' */
+	private static final int MAGIC = 0x48505242;
+
+	/** format version of the image */
+	private static final int VERSION = 1;
+
+	/** number of certainty parameters stored per statement */
+	private static final int PARAMETERS_NUM = 9;
+
+	private static final byte FLAG_DESCRIPTIVE	= 1;
+	private static final byte FLAG_DYNAMIC		= 2;
+	private static final byte FLAG_NEGATIVE		= 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/** concepts (non-statement nodes) of the image */
+	private ArrayList<Node> _concepts = new ArrayList<Node>();
+	private IdentityHashMap<Node, Integer> _conceptIds = new IdentityHashMap<Node, Integer>();
+
+	/** statements of the image in the order they are discovered */
+	private ArrayList<PlausibleStatement> _statements = new ArrayList<PlausibleStatement>();
+	private IdentityHashMap<PlausibleStatement, Integer> _statementIds = new IdentityHashMap<PlausibleStatement, Integer>();
+
+	/** the string table */
+	private ArrayList<String> _strings = new ArrayList<String>();
+	private HashMap<String, Integer> _stringIds = new HashMap<String, Integer>();
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	private BinarySnapshot()
+	{
+	}
+
+	/**
+	 * Writes a binary image of some nodes (and everything linked to them) to a file
+	 * @param nodes the nodes of the kb
+	 * @param fileName the destination file
+	 * @return the number of statements written
+	 * @throws IOException
+	 */
+	protected static int write(Collection<Node> nodes, String fileName) throws IOException
+	{
+		BinarySnapshot snapshot = new BinarySnapshot();
+
+		snapshot.collect(nodes);
+
+		return snapshot.write(fileName);
+	}
+
+	/**
+	 * Loads a binary image into a knowledge base
+	 * @param kb the knowledge base
+	 * @param fileName the image file
+	 * @return the number of statements loaded
+	 * @throws IOException
+	 */
+	protected static int read(KnowledgeBase kb, String fileName) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				MyError.exit("The binary image `" + fileName + "` is too large to be mapped!");
+			}
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			return read(kb, buffer, fileName);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * Collects all concepts and statements reachable from some nodes
+	 * @param nodes the starting nodes
+	 */
+	private void collect(Collection<Node> nodes)
+	{
+		ArrayList<Node> worklist = new ArrayList<Node>(nodes.size());
+
+		for (Node node: nodes)
+		{
+			register(node, worklist);
+		}
+
+		for (int i = 0; i < worklist.size(); i++)
+		{
+			Node node = worklist.get(i);
+
+			OutLinkElement outLink = node.getLastOutLink();
+
+			while (outLink != null)
+			{
+				register(outLink.relation, worklist);
+				register(outLink.destinationNode, worklist);
+
+				outLink = outLink.previousOutLinkElement;
+			}
+
+			InLinkElement inLink = node.getLastInLink();
+
+			while (inLink != null)
+			{
+				register(inLink.relation, worklist);
+				register(inLink.sourceNode, worklist);
+
+				inLink = inLink.previousInLinkElement;
+			}
+
+			if (node instanceof PlausibleStatement)
+			{
+				PlausibleStatement ps = (PlausibleStatement)node;
+
+				if (ps.relationType instanceof PlausibleStatement)
+				{
+					MyError.exit("Statements can't be used as relation types in binary images!");
+				}
+
+				register(ps.relationType, worklist);
+			}
+		}
+	}
+
+	/**
+	 * Registers a node as a concept or a statement of the image if not already registered
+	 * @param node the node
+	 * @param worklist the nodes whose links have to be visited
+	 */
+	private void register(Node node, ArrayList<Node> worklist)
+	{
+		if (node instanceof PlausibleStatement)
+		{
+			PlausibleStatement ps = (PlausibleStatement)node;
+
+			if (!_statementIds.containsKey(ps))
+			{
+				_statementIds.put(ps, _statements.size());
+				_statements.add(ps);
+				worklist.add(ps);
+			}
+		}
+		else if (!_conceptIds.containsKey(node))
+		{
+			_conceptIds.put(node, _concepts.size());
+			_concepts.add(node);
+			worklist.add(node);
+		}
+	}
+
+	/**
+	 * Orders the statements so that recreating them in that order rebuilds the same link-lists.
+	 * The newest-first link-lists of all nodes define a partial order on statements
+	 * (plus each statement must exist before statements about it); the original creation order satisfies it
+	 * so a topological sort always succeeds.
+	 * @return statement ids in creation order
+	 */
+	private int[] orderStatements()
+	{
+		int num = _statements.size();
+
+		// every statement has at most 4 successors: the next one in its argument's out-list, the next one in its referent's in-list
+		// and the oldest statements in its own out- and in-lists
+		int[] successors = new int[num * 4];
+		int[] predecessors = new int[num];
+
+		Arrays.fill(successors, -1);
+
+		for (Node node: _concepts)
+		{
+			chainLinks(node, successors, predecessors);
+		}
+
+		for (int i = 0; i < num; i++)
+		{
+			int[] oldest = chainLinks(_statements.get(i), successors, predecessors);
+
+			for (int j = 0; j < 2; j++)
+			{
+				if (oldest[j] != -1)
+				{
+					successors[i * 4 + 2 + j] = oldest[j];
+					predecessors[oldest[j]]++;
+				}
+			}
+		}
+
+		int[] order = new int[num];
+		int head = 0;
+		int tail = 0;
+
+		for (int i = 0; i < num; i++)
+		{
+			if (predecessors[i] == 0)
+			{
+				order[tail++] = i;
+			}
+		}
+
+		while (head < tail)
+		{
+			int current = order[head++];
+
+			for (int j = 0; j < 4; j++)
+			{
+				int next = successors[current * 4 + j];
+
+				if (next != -1 && --predecessors[next] == 0)
+				{
+					order[tail++] = next;
+				}
+			}
+		}
+
+		if (tail != num)
+		{
+			MyError.exit("The link-lists of the knowledge base are inconsistent!");
+		}
+
+		return order;
+	}
+
+	/**
+	 * Chains the statements of a node's out- and in-lists in the order they have been added
+	 * @param node the node
+	 * @param successors successor slots of statements
+	 * @param predecessors predecessor counts of statements
+	 * @return the oldest statement of the out-list and of the in-list (-1 if empty)
+	 */
+	private int[] chainLinks(Node node, int[] successors, int[] predecessors)
+	{
+		int[] oldest = {-1, -1};
+
+		// slot 0: successor in the argument's out-list
+		int newer = -1;
+
+		OutLinkElement outLink = node.getLastOutLink();
+
+		while (outLink != null)
+		{
+			int current = _statementIds.get(outLink.relation);
+
+			if (newer != -1)
+			{
+				successors[current * 4] = newer;
+				predecessors[newer]++;
+			}
+
+			newer = current;
+			outLink = outLink.previousOutLinkElement;
+		}
+
+		oldest[0] = newer;
+
+		// slot 1: successor in the referent's in-list
+		newer = -1;
+
+		InLinkElement inLink = node.getLastInLink();
+
+		while (inLink != null)
+		{
+			int current = _statementIds.get(inLink.relation);
+
+			if (newer != -1)
+			{
+				successors[current * 4 + 1] = newer;
+				predecessors[newer]++;
+			}
+
+			newer = current;
+			inLink = inLink.previousInLinkElement;
+		}
+
+		oldest[1] = newer;
+
+		return oldest;
+	}
+
+	/**
+	 * Gives the string table index of a string, adding it to the table if needed
+	 * @param text the string
+	 * @return the index
+	 */
+	private int getStringId(String text)
+	{
+		if (text == null)
+			text = "";
+
+		Integer id = _stringIds.get(text);
+
+		if (id == null)
+		{
+			id = _strings.size();
+			_stringIds.put(text, id);
+			_strings.add(text);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Writes the collected concepts and statements
+	 * @param fileName the destination file
+	 * @return the number of statements written
+	 * @throws IOException
+	 */
+	private int write(String fileName) throws IOException
+	{
+		int conceptsNum = _concepts.size();
+		int statementsNum = _statements.size();
+
+		int[] order = orderStatements();
+		int[] positions = new int[statementsNum];
+
+		for (int i = 0; i < statementsNum; i++)
+		{
+			positions[order[i]] = i;
+		}
+
+		// node attributes
+		int[] names = new int[conceptsNum];
+		int[] tokenized = new int[conceptsNum];
+		int[] lemmatized = new int[conceptsNum];
+		byte[] sources = new byte[conceptsNum];
+		byte[] lexicalTypes = new byte[conceptsNum];
+		byte[] poses = new byte[conceptsNum];
+		byte[] conceptTypes = new byte[conceptsNum];
+		byte[] nodeFlags = new byte[conceptsNum];
+
+		for (int i = 0; i < conceptsNum; i++)
+		{
+			Node node = _concepts.get(i);
+
+			names[i] 		= getStringId(node.getName());
+			tokenized[i] 	= getStringId(node.getTokenized());
+			lemmatized[i] 	= getStringId(node.getLemmatized());
+			sources[i] 		= (byte)node.getSourceType().ordinal();
+			lexicalTypes[i] = (byte)node.getLexicalType().ordinal();
+			poses[i] 		= (byte)node.getPos().ordinal();
+			conceptTypes[i] = (byte)node.getConceptType().ordinal();
+
+			if (node.isDescriptive())
+				nodeFlags[i] |= FLAG_DESCRIPTIVE;
+			if (node.isDynamic())
+				nodeFlags[i] |= FLAG_DYNAMIC;
+		}
+
+		// statements
+		int[] arguments = new int[statementsNum];
+		int[] relationTypes = new int[statementsNum];
+		int[] referents = new int[statementsNum];
+		byte[] conditionalTypes = new byte[statementsNum];
+		byte[] statementSources = new byte[statementsNum];
+		byte[] statementFlags = new byte[statementsNum];
+		float[] parameters = new float[statementsNum * PARAMETERS_NUM];
+
+		for (int i = 0; i < statementsNum; i++)
+		{
+			PlausibleStatement ps = _statements.get(order[i]);
+
+			arguments[i] 		= getReference(ps.argument, positions);
+			relationTypes[i] 	= getReference(ps.relationType, positions);
+			referents[i] 		= getReference(ps.referent, positions);
+			conditionalTypes[i] = (byte)ps.conditionalType.ordinal();
+			statementSources[i] = (byte)ps.getSourceType().ordinal();
+
+			if (ps.isStatementNegative)
+				statementFlags[i] |= FLAG_NEGATIVE;
+			if (ps.isDynamic())
+				statementFlags[i] |= FLAG_DYNAMIC;
+
+			CertaintyParameters cp = (ps.parameters == null) ? new CertaintyParameters() : ps.parameters;
+			int base = i * PARAMETERS_NUM;
+
+			parameters[base]	 = cp.certainty;
+			parameters[base + 1] = cp.frequency;
+			parameters[base + 2] = cp.typicality;
+			parameters[base + 3] = cp.similarity;
+			parameters[base + 4] = cp.dominance;
+			parameters[base + 5] = cp.conditionalLikelihood;
+			parameters[base + 6] = cp.reverseConditionalLikelihood;
+			parameters[base + 7] = cp.argumentMultiplicity;
+			parameters[base + 8] = cp.referentMultiplicity;
+		}
+
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+
+		try
+		{
+			stream.writeInt(MAGIC);
+			stream.writeInt(VERSION);
+
+			stream.writeInt(_strings.size());
+
+			for (String text: _strings)
+			{
+				byte[] bytes = text.getBytes(UTF8);
+
+				stream.writeInt(bytes.length);
+				stream.write(bytes);
+			}
+
+			stream.writeInt(conceptsNum);
+			writeInts(stream, names);
+			writeInts(stream, tokenized);
+			writeInts(stream, lemmatized);
+			stream.write(sources);
+			stream.write(lexicalTypes);
+			stream.write(poses);
+			stream.write(conceptTypes);
+			stream.write(nodeFlags);
+
+			stream.writeInt(statementsNum);
+			writeInts(stream, arguments);
+			writeInts(stream, relationTypes);
+			writeInts(stream, referents);
+			stream.write(conditionalTypes);
+			stream.write(statementSources);
+			stream.write(statementFlags);
+
+			for (float parameter: parameters)
+			{
+				stream.writeFloat(parameter);
+			}
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		return statementsNum;
+	}
+
+	/**
+	 * Encodes a reference to a concept (its index) or to a statement (-(its position + 1))
+	 * @param node the node
+	 * @param positions position of statements in the image
+	 * @return the encoded reference
+	 */
+	private int getReference(Node node, int[] positions)
+	{
+		if (node instanceof PlausibleStatement)
+		{
+			return -(positions[_statementIds.get(node)] + 1);
+		}
+
+		return _conceptIds.get(node);
+	}
+
+	private static void writeInts(DataOutputStream stream, int[] values) throws IOException
+	{
+		for (int value: values)
+		{
+			stream.writeInt(value);
+		}
+	}
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * Loads a mapped image into a knowledge base
+	 * @param kb the knowledge base
+	 * @param buffer the mapped image
+	 * @param fileName the image file (used in error messages)
+	 * @return the number of statements loaded
+	 */
+	private static int read(KnowledgeBase kb, MappedByteBuffer buffer, String fileName)
+	{
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+		{
+			MyError.exit("`" + fileName + "` is not a binary knowledge base image of this version!");
+		}
+
+		// string table
+		String[] strings = new String[buffer.getInt()];
+		byte[] bytes = new byte[256];
+
+		for (int i = 0; i < strings.length; i++)
+		{
+			int length = buffer.getInt();
+
+			if (length > bytes.length)
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+
+			buffer.get(bytes, 0, length);
+			strings[i] = new String(bytes, 0, length, UTF8);
+		}
+
+		// nodes
+		int conceptsNum = buffer.getInt();
+
+		int[] names 		= readInts(buffer, conceptsNum);
+		int[] tokenized 	= readInts(buffer, conceptsNum);
+		int[] lemmatized 	= readInts(buffer, conceptsNum);
+		byte[] sources 		= readBytes(buffer, conceptsNum);
+		byte[] lexicalTypes = readBytes(buffer, conceptsNum);
+		byte[] poses 		= readBytes(buffer, conceptsNum);
+		byte[] conceptTypes = readBytes(buffer, conceptsNum);
+		byte[] nodeFlags 	= readBytes(buffer, conceptsNum);
+
+		SourceType[] sourceTypes = SourceType.values();
+		LexicalType[] lexicalTypeValues = LexicalType.values();
+		POS[] posValues = POS.values();
+		ConceptType[] conceptTypeValues = ConceptType.values();
+		ConditionalType[] conditionalTypeValues = ConditionalType.values();
+
+		Node[] concepts = new Node[conceptsNum];
+
+		// statements of concepts which already had out-links before loading have to be checked against duplicates
+		boolean[] merging = new boolean[conceptsNum];
+
+		for (int i = 0; i < conceptsNum; i++)
+		{
+			String name = strings[names[i]];
+			Node node = kb.findConceptByKey(name);
+
+			if (node != null)
+			{
+				merging[i] = (node.getOutDegree() > 0);
+			}
+			else
+			{
+				node = kb.addLoadedConcept(name);
+
+				node.setSourceType(sourceTypes[sources[i]]);
+				node.setLexicalType(lexicalTypeValues[lexicalTypes[i]]);
+				node.setPos(posValues[poses[i]]);
+				node.setConceptType(conceptTypeValues[conceptTypes[i]]);
+				node.setDescriptive((nodeFlags[i] & FLAG_DESCRIPTIVE) != 0);
+				node.setTokenized(strings[tokenized[i]]);
+				node.setLemmatized(strings[lemmatized[i]]);
+
+				if ((nodeFlags[i] & FLAG_DYNAMIC) != 0)
+					node.setDynamic();
+			}
+
+			concepts[i] = node;
+		}
+
+		// statements
+		int statementsNum = buffer.getInt();
+
+		int[] arguments 			= readInts(buffer, statementsNum);
+		int[] relationTypes 		= readInts(buffer, statementsNum);
+		int[] referents 			= readInts(buffer, statementsNum);
+		byte[] conditionalTypes 	= readBytes(buffer, statementsNum);
+		byte[] statementSources 	= readBytes(buffer, statementsNum);
+		byte[] statementFlags 		= readBytes(buffer, statementsNum);
+
+		float[] parameters = new float[statementsNum * PARAMETERS_NUM];
+		buffer.asFloatBuffer().get(parameters);
+		buffer.position(buffer.position() + parameters.length * 4);
+
+		PlausibleStatement[] statements = new PlausibleStatement[statementsNum];
+		
+		// statements which already existed in the kb (so may already have contextual statements)
+		boolean[] mergedStatements = new boolean[statementsNum];
+		float[] params = new float[PARAMETERS_NUM];
+
+		for (int i = 0; i < statementsNum; i++)
+		{
+			Node argument = resolve(arguments[i], concepts, statements);
+			Node relationType = resolve(relationTypes[i], concepts, statements);
+			Node referent = resolve(referents[i], concepts, statements);
+
+			System.arraycopy(parameters, i * PARAMETERS_NUM, params, 0, PARAMETERS_NUM);
+
+			CertaintyParameters cp = new CertaintyParameters(params);
+			ConditionalType conditionalType = conditionalTypeValues[conditionalTypes[i]];
+			SourceType source = sourceTypes[statementSources[i]];
+
+			PlausibleStatement ps;
+
+			if (arguments[i] >= 0 ? merging[arguments[i]] : mergedStatements[-arguments[i] - 1])
+			{
+				int outDegree = argument.getOutDegree();
+				
+				ps = kb.addRelation(argument, referent, relationType, cp, false, conditionalType, source);
+				
+				mergedStatements[i] = (argument.getOutDegree() == outDegree);
+				
+				// addRelation may have added the reverse of a symmetric relation which comes later in the image
+				if (referents[i] >= 0 && (relationType == KnowledgeBase.HPR_INVERSE || relationType == KnowledgeBase.HPR_SIM || relationType == KnowledgeBase.HPR_DIS))
+				{
+					merging[referents[i]] = true;
+				}
+			}
+			else
+			{
+				ps = new PlausibleStatement(relationType, cp, argument, referent, conditionalType);
+
+				kb.bindStatement(ps);
+
+				ps.setSourceType(source);
+			}
+
+			ps.isStatementNegative = ((statementFlags[i] & FLAG_NEGATIVE) != 0);
+
+			if ((statementFlags[i] & FLAG_DYNAMIC) != 0)
+				ps.setDynamic();
+
+			statements[i] = ps;
+		}
+
+		return statementsNum;
+	}
+
+	/**
+	 * Decodes a reference to a concept or a statement
+	 * @param reference the encoded reference
+	 * @param concepts the loaded concepts
+	 * @param statements the loaded statements
+	 * @return the node
+	 */
+	private static Node resolve(int reference, Node[] concepts, PlausibleStatement[] statements)
+	{
+		if (reference >= 0)
+			return concepts[reference];
+
+		Node node = statements[-reference - 1];
+
+		MyError.assertNotNull(node);
+
+		return node;
+	}
+
+	private static int[] readInts(MappedByteBuffer buffer, int num)
+	{
+		int[] values = new int[num];
+
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + num * 4);
+
+		return values;
+	}
+
+	private static byte[] readBytes(MappedByteBuffer buffer, int num)
+	{
+		byte[] values = new byte[num];
+
+		buffer.get(values);
+
+		return values;
+	}
+}
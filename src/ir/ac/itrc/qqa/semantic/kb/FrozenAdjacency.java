@@ -0,0 +1,469 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleStatement;
+
+import java.util.Arrays;
+
+/**
+ * Implements a read-only compressed sparse row (CSR) snapshot of the knowledge base graph.
+ * Every node's in- and out-links are compiled into primitive arrays holding node ids, relation type ids and statement ids.
+ * Links of each node are grouped by relation type so a single relation type is found with a binary search.
+ * Walking all links of a node (<code>HPR_ANY</code>) goes through <code>outPosition</code>/<code>inPosition</code> which keep the newest first order of the linked lists.
+ * Nodes and statements are addressed by their kb ids (see <code>NodeDirectory</code>), so the snapshot keeps no per-node state on the nodes.
+ * The snapshot is created by <code>KnowledgeBase.freeze()</code> and used by <code>Node</code> lookups while the kb is frozen.
+ *
+ * @author Ehsan Darrudi
+ */
+public class FrozenAdjacency
+{
+	/** all nodes and statements of the snapshot indexed by their kb ids, null for ids not in use */
+	private Node[] _nodes;
+
+	/** nodes whose links have changed since the snapshot was built or link to nodes out of the kb; they use their linked lists */
+	private boolean[] _stale;
+
+	/** start of each node's out-links in the out arrays, node i owns [_outOffsets[i], _outOffsets[i+1]) */
+	private int[] _outOffsets;
+	/** destination node id of each out-link */
+	private int[] _outNodes;
+	/** relation type id of each out-link */
+	private int[] _outRelationTypes;
+	/** statement id of each out-link */
+	private int[] _outStatements;
+	/** position of each node's out-links in newest first order, i.e. the order of the linked list */
+	private int[] _outRecent;
+
+	/** start of each node's in-links in the in arrays, node i owns [_inOffsets[i], _inOffsets[i+1]) */
+	private int[] _inOffsets;
+	/** source node id of each in-link */
+	private int[] _inNodes;
+	/** relation type id of each in-link */
+	private int[] _inRelationTypes;
+	/** statement id of each in-link */
+	private int[] _inStatements;
+	/** position of each node's in-links in newest first order, i.e. the order of the linked list */
+	private int[] _inRecent;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * Compiles the linked-list adjacency of the nodes in the kb's directory into CSR arrays.
+	 * @param directory the kb's id directory
+	 */
+	protected FrozenAdjacency(NodeDirectory directory)
+	{
+		int size = directory.getLastId() + 1;
+
+		_nodes = new Node[size];
+		_stale = new boolean[size];
+
+		int outLinks = 0;
+		int inLinks = 0;
+
+		for (int id = 1; id < size; id++)
+		{
+			Node node = directory.get(id);
+
+			if (node == null || node.getId() != id)
+				continue;
+
+			_nodes[id] = node;
+
+			OutLinkElement outLink = node.getLastOutLink();
+
+			while (outLink != null)
+			{
+				outLinks++;
+				outLink = outLink.previousOutLinkElement;
+			}
+
+			InLinkElement inLink = node.getLastInLink();
+
+			while (inLink != null)
+			{
+				inLinks++;
+				inLink = inLink.previousInLinkElement;
+			}
+		}
+
+		_outOffsets = new int[size + 1];
+		_outNodes = new int[outLinks];
+		_outRelationTypes = new int[outLinks];
+		_outStatements = new int[outLinks];
+		_outRecent = new int[outLinks];
+
+		_inOffsets = new int[size + 1];
+		_inNodes = new int[inLinks];
+		_inRelationTypes = new int[inLinks];
+		_inStatements = new int[inLinks];
+		_inRecent = new int[inLinks];
+
+		int out = 0;
+		int in = 0;
+
+		for (int i = 0; i < size; i++)
+		{
+			_outOffsets[i] = out;
+			_inOffsets[i] = in;
+
+			if (_nodes[i] == null)
+				continue;
+
+			OutLinkElement outLink = _nodes[i].getLastOutLink();
+
+			while (outLink != null)
+			{
+				_outNodes[out] = getIndexOf(outLink.destinationNode);
+				_outRelationTypes[out] = getIndexOf(outLink.relation.relationType);
+				_outStatements[out] = getIndexOf(outLink.relation);
+
+				// a link to a node out of the kb can't be kept in the arrays
+				if (_outNodes[out] == -1 || _outRelationTypes[out] == -1 || _outStatements[out] == -1)
+					_stale[i] = true;
+
+				out++;
+				outLink = outLink.previousOutLinkElement;
+			}
+
+			sortByRelationType(_outRelationTypes, _outNodes, _outStatements, _outRecent, _outOffsets[i], out);
+
+			InLinkElement inLink = _nodes[i].getLastInLink();
+
+			while (inLink != null)
+			{
+				_inNodes[in] = getIndexOf(inLink.sourceNode);
+				_inRelationTypes[in] = getIndexOf(inLink.relation.relationType);
+				_inStatements[in] = getIndexOf(inLink.relation);
+
+				if (_inNodes[in] == -1 || _inRelationTypes[in] == -1 || _inStatements[in] == -1)
+					_stale[i] = true;
+
+				in++;
+				inLink = inLink.previousInLinkElement;
+			}
+
+			sortByRelationType(_inRelationTypes, _inNodes, _inStatements, _inRecent, _inOffsets[i], in);
+		}
+
+		_outOffsets[size] = out;
+		_inOffsets[size] = in;
+	}
+
+	/**
+	 * Sorts a node's segment by relation type id. The original position is part of the sort key so links with the same relation type keep their original (newest first) order.
+	 * @param keys relation type ids
+	 * @param nodes node ids
+	 * @param statements statement ids
+	 * @param recent receives the new position of each link in the original order
+	 * @param from segment start
+	 * @param to segment end (exclusive)
+	 */
+	private static void sortByRelationType(int[] keys, int[] nodes, int[] statements, int[] recent, int from, int to)
+	{
+		int size = to - from;
+
+		if (size < 2)
+		{
+			if (size == 1)
+				recent[from] = from;
+
+			return;
+		}
+
+		long[] order = new long[size];
+
+		for (int i = 0; i < size; i++)
+		{
+			order[i] = ((long)keys[from + i] << 32) | i;
+		}
+
+		Arrays.sort(order);
+
+		int[] oldNodes = Arrays.copyOfRange(nodes, from, to);
+		int[] oldStatements = Arrays.copyOfRange(statements, from, to);
+
+		for (int i = 0; i < size; i++)
+		{
+			int position = (int)(order[i] & 0xFFFFFFFFL);
+
+			keys[from + i] = (int)(order[i] >>> 32);
+			nodes[from + i] = oldNodes[position];
+			statements[from + i] = oldStatements[position];
+			recent[from + position] = from + i;
+		}
+	}
+
+	/**
+	 * Finds the first position in a sorted segment whose key is not less than <code>key</code>
+	 * @param keys sorted keys
+	 * @param from segment start
+	 * @param to segment end (exclusive)
+	 * @param key the key to look for
+	 * @return the position
+	 */
+	private static int lowerBound(int[] keys, int from, int to, int key)
+	{
+		while (from < to)
+		{
+			int middle = (from + to) >>> 1;
+
+			if (keys[middle] < key)
+				from = middle + 1;
+			else
+				to = middle;
+		}
+
+		return from;
+	}
+
+	/**
+	 * Finds the start of a node's out-links having a certain relation type
+	 * @param node node id
+	 * @param relationType relation type, <code>HPR_ANY</code> selects all out-links (see <code>outPosition</code> for their order)
+	 * @return start position in the out arrays
+	 */
+	public int outFrom(int node, Node relationType)
+	{
+		if (relationType == KnowledgeBase.HPR_ANY)
+			return _outOffsets[node];
+
+		int type = getIndexOf(relationType);
+
+		if (type == -1)
+			return _outOffsets[node];
+
+		return lowerBound(_outRelationTypes, _outOffsets[node], _outOffsets[node + 1], type);
+	}
+	/**
+	 * Finds the end of a node's out-links having a certain relation type
+	 * @param node node id
+	 * @param relationType relation type, <code>HPR_ANY</code> selects all out-links
+	 * @return end position (exclusive) in the out arrays
+	 */
+	public int outTo(int node, Node relationType)
+	{
+		if (relationType == KnowledgeBase.HPR_ANY)
+			return _outOffsets[node + 1];
+
+		int type = getIndexOf(relationType);
+
+		if (type == -1)
+			return _outOffsets[node];
+
+		return lowerBound(_outRelationTypes, _outOffsets[node], _outOffsets[node + 1], type + 1);
+	}
+
+	/**
+	 * Finds the start of a node's in-links having a certain relation type
+	 * @param node node id
+	 * @param relationType relation type, <code>HPR_ANY</code> selects all in-links (see <code>inPosition</code> for their order)
+	 * @return start position in the in arrays
+	 */
+	public int inFrom(int node, Node relationType)
+	{
+		if (relationType == KnowledgeBase.HPR_ANY)
+			return _inOffsets[node];
+
+		int type = getIndexOf(relationType);
+
+		if (type == -1)
+			return _inOffsets[node];
+
+		return lowerBound(_inRelationTypes, _inOffsets[node], _inOffsets[node + 1], type);
+	}
+	/**
+	 * Finds the end of a node's in-links having a certain relation type
+	 * @param node node id
+	 * @param relationType relation type, <code>HPR_ANY</code> selects all in-links
+	 * @return end position (exclusive) in the in arrays
+	 */
+	public int inTo(int node, Node relationType)
+	{
+		if (relationType == KnowledgeBase.HPR_ANY)
+			return _inOffsets[node + 1];
+
+		int type = getIndexOf(relationType);
+
+		if (type == -1)
+			return _inOffsets[node];
+
+		return lowerBound(_inRelationTypes, _inOffsets[node], _inOffsets[node + 1], type + 1);
+	}
+
+	/**
+	 * Maps a position between <code>outFrom</code> and <code>outTo</code> to a position in the out arrays.
+	 * With <code>HPR_ANY</code> the links come newest first like the linked lists, otherwise they are kept in place.
+	 * @param position position between <code>outFrom</code> and <code>outTo</code>
+	 * @param relationType the relation type given to <code>outFrom</code>
+	 * @return position in the out arrays
+	 */
+	public int outPosition(int position, Node relationType)
+	{
+		return (relationType == KnowledgeBase.HPR_ANY) ? _outRecent[position] : position;
+	}
+	/**
+	 * Maps a position between <code>inFrom</code> and <code>inTo</code> to a position in the in arrays.
+	 * With <code>HPR_ANY</code> the links come newest first like the linked lists, otherwise they are kept in place.
+	 * @param position position between <code>inFrom</code> and <code>inTo</code>
+	 * @param relationType the relation type given to <code>inFrom</code>
+	 * @return position in the in arrays
+	 */
+	public int inPosition(int position, Node relationType)
+	{
+		return (relationType == KnowledgeBase.HPR_ANY) ? _inRecent[position] : position;
+	}
+
+	/**
+	 * Getter for the destination node of an out-link
+	 * @param position position in the out arrays
+	 * @return destination node
+	 */
+	public Node getOutNode(int position)
+	{
+		return _nodes[_outNodes[position]];
+	}
+	/**
+	 * Getter for the statement of an out-link
+	 * @param position position in the out arrays
+	 * @return statement
+	 */
+	public PlausibleStatement getOutStatement(int position)
+	{
+		return (PlausibleStatement)_nodes[_outStatements[position]];
+	}
+	/**
+	 * Getter for the source node of an in-link
+	 * @param position position in the in arrays
+	 * @return source node
+	 */
+	public Node getInNode(int position)
+	{
+		return _nodes[_inNodes[position]];
+	}
+	/**
+	 * Getter for the statement of an in-link
+	 * @param position position in the in arrays
+	 * @return statement
+	 */
+	public PlausibleStatement getInStatement(int position)
+	{
+		return (PlausibleStatement)_nodes[_inStatements[position]];
+	}
+
+	/**
+	 * Finds the position of the out-link from a node to another one with a certain relation type
+	 * @param node source node id
+	 * @param relationType relation type
+	 * @param destination destination node
+	 * @return position in the out arrays or -1 if not found
+	 */
+	public int findOut(int node, Node relationType, Node destination)
+	{
+		int target = getIndexOf(destination);
+
+		if (target == -1 || getIndexOf(relationType) == -1)
+			return -1;
+
+		int to = outTo(node, relationType);
+
+		for (int i = outFrom(node, relationType); i < to; i++)
+		{
+			if (_outNodes[i] == target)
+				return i;
+		}
+
+		return -1;
+	}
+	/**
+	 * Finds the position of the in-link from another node to a node with a certain relation type
+	 * @param node destination node id
+	 * @param relationType relation type
+	 * @param source source node
+	 * @return position in the in arrays or -1 if not found
+	 */
+	public int findIn(int node, Node relationType, Node source)
+	{
+		int origin = getIndexOf(source);
+
+		if (origin == -1 || getIndexOf(relationType) == -1)
+			return -1;
+
+		int to = inTo(node, relationType);
+
+		for (int i = inFrom(node, relationType); i < to; i++)
+		{
+			if (_inNodes[i] == origin)
+				return i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Finds the snapshot id of a node
+	 * @param node the node
+	 * @return snapshot id (the node's kb id) or -1 if the node does not belong to this snapshot
+	 */
+	private int getIndexOf(Node node)
+	{
+		if (node == null)
+			return -1;
+
+		int index = node.getId();
+
+		if (index <= 0 || index >= _nodes.length || _nodes[index] != node)
+			return -1;
+
+		return index;
+	}
+
+	/**
+	 * Determines whether a node's links can be read from the snapshot
+	 * @param node the node
+	 * @return true if the node belongs to the snapshot and its links haven't changed since
+	 */
+	public boolean covers(Node node)
+	{
+		int index = getIndexOf(node);
+
+		return index != -1 && !_stale[index];
+	}
+
+	/**
+	 * Marks a node whose links have changed so its lookups return to the linked lists
+	 * @param node the node
+	 */
+	protected void invalidate(Node node)
+	{
+		int index = getIndexOf(node);
+
+		if (index != -1)
+			_stale[index] = true;
+	}
+
+	/**
+	 * Getter for the number of nodes in the snapshot
+	 * @return
+	 */
+	public int getNodesNum()
+	{
+		int num = 0;
+
+		for (Node node: _nodes)
+		{
+			if (node != null)
+				num++;
+		}
+
+		return num;
+	}
+
+	/**
+	 * Getter for the number of links in the snapshot
+	 * @return
+	 */
+	public int getLinksNum()
+	{
+		return _outNodes.length;
+	}
+}
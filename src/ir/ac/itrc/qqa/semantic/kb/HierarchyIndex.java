@@ -0,0 +1,699 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleAnswer;
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Implements a read-only reachability index over the ISA and INSTANCE hierarchy of the knowledge base.
+ * Every node keeps all the ancestors it reaches through ISA and INSTANCE links, sorted by their kb ids, so checking whether
+ * a node is a kind of another one is a binary search. Along with each ancestor the length of the shortest path to it (through any link and
+ * through ISA links only) and the certainty of the most certain path to it are kept, so multiple inheritance and cycles need no special treatment.
+ * The ISA descendants of every node are kept as well.
+ * A node having too many ancestors (which only happens on large cycles) or reaching a node out of the kb isn't indexed and its lookups walk the graph (see <code>covers</code>).
+ * The index is created by <code>KnowledgeBase.lock()</code> and used by <code>Node</code> hierarchy lookups while the kb is locked.
+ *
+ * @author Ehsan Darrudi
+ */
+public class HierarchyIndex
+{
+	/** the distance of a node which isn't reached */
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	/** the most ancestors a node may have in the index. nodes having more (e.g. on large cycles) are left to walking the graph */
+	private static final int MAX_ANCESTORS = 1024;
+
+	/** all nodes of the index indexed by their kb ids (see <code>NodeDirectory</code>), null for ids not in use */
+	private Node[] _nodes;
+
+	/** start of each node's ancestors in the ancestor arrays, node i owns [_offsets[i], _offsets[i+1]) */
+	private int[] _offsets;
+	/** kb id of each ancestor, ascending within each node */
+	private int[] _ancestors;
+	/** the length of the shortest path to each ancestor */
+	private int[] _distances;
+	/** the order in which a breadth first walk reaches each ancestor */
+	private int[] _ranks;
+	/** the length of the shortest path to each ancestor through ISA links only, <code>UNREACHABLE</code> if INSTANCE links are needed */
+	private int[] _isaDistances;
+	/** the order in which a breadth first walk over ISA links reaches each ancestor */
+	private int[] _isaRanks;
+	/** the certainty of the most certain path to each ancestor, i.e. the product of the certainties of its links */
+	private float[] _certainties;
+	/** the product of the dominances of the links on the most certain path to each ancestor */
+	private float[] _dominances;
+	/** the last link on the most certain path to each ancestor */
+	private PlausibleStatement[] _statements;
+
+	/** the depth of each node in the hierarchy, 1 for the roots */
+	private int[] _depths;
+
+	/** whether each node has more than <code>MAX_ANCESTORS</code> ancestors and so isn't indexed */
+	private boolean[] _truncated;
+
+	/** the number of nodes which aren't indexed */
+	private int _truncatedNum = 0;
+
+	/** start of each node's ISA descendants, node i owns [_descendantOffsets[i], _descendantOffsets[i+1]) */
+	private int[] _descendantOffsets;
+	/** kb id of each ISA descendant */
+	private int[] _descendants;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * Indexes the hierarchy of the nodes in the kb's directory
+	 * @param directory the kb's id directory
+	 */
+	protected HierarchyIndex(NodeDirectory directory)
+	{
+		int size = directory.getLastId() + 1;
+
+		_nodes = new Node[size];
+
+		for (int id = 1; id < size; id++)
+		{
+			Node node = directory.get(id);
+
+			if (node != null && node.getId() == id)
+				_nodes[id] = node;
+		}
+
+		// the parent links of each node in the order hierarchical lookups find them: ISA links first, then INSTANCE links
+		ArrayList<int[]> parentIds = new ArrayList<int[]>(size);
+		ArrayList<PlausibleAnswer[]> parentLinks = new ArrayList<PlausibleAnswer[]>(size);
+		ArrayList<boolean[]> parentIsas = new ArrayList<boolean[]>(size);
+
+		for (int id = 0; id < size; id++)
+		{
+			Node node = _nodes[id];
+
+			if (node == null)
+			{
+				parentIds.add(new int[0]);
+				parentLinks.add(new PlausibleAnswer[0]);
+				parentIsas.add(new boolean[0]);
+
+				continue;
+			}
+
+			ArrayList<PlausibleAnswer> isas = node.findTargetNodes(KnowledgeBase.HPR_ISA);
+			ArrayList<PlausibleAnswer> links = new ArrayList<PlausibleAnswer>(isas);
+
+			links.addAll(node.findTargetNodes(KnowledgeBase.HPR_INSTANCE));
+
+			int[] ids = new int[links.size()];
+			boolean[] isa = new boolean[links.size()];
+
+			for (int j = 0; j < ids.length; j++)
+			{
+				// a parent out of the kb gets -1 so the nodes reaching it aren't indexed
+				ids[j] = getIndexOf(links.get(j).answer);
+				isa[j] = (j < isas.size());
+			}
+
+			parentIds.add(ids);
+			parentLinks.add(links.toArray(new PlausibleAnswer[links.size()]));
+			parentIsas.add(isa);
+		}
+
+		index(parentIds, parentLinks, parentIsas);
+		indexDescendants();
+	}
+
+	/**
+	 * finds the kb id of a node in the index
+	 * @param node the node
+	 * @return the id or -1 if the node isn't in the index
+	 */
+	private int getIndexOf(Node node)
+	{
+		int id = node.getId();
+
+		if (id <= 0 || id >= _nodes.length || _nodes[id] != node)
+			return -1;
+
+		return id;
+	}
+
+	/**
+	 * finds the ancestors of every node with breadth first walks over its parent links
+	 * @param parentIds the kb ids of the parents of each node
+	 * @param parentLinks the links to the parents of each node
+	 * @param parentIsas whether each parent link is an ISA link
+	 */
+	private void index(ArrayList<int[]> parentIds, ArrayList<PlausibleAnswer[]> parentLinks, ArrayList<boolean[]> parentIsas)
+	{
+		int n = _nodes.length;
+
+		_offsets = new int[n + 1];
+		_depths = new int[n];
+		_truncated = new boolean[n];
+
+		int capacity = Math.max(16, n);
+
+		_ancestors = new int[capacity];
+		_distances = new int[capacity];
+		_ranks = new int[capacity];
+		_isaDistances = new int[capacity];
+		_isaRanks = new int[capacity];
+		_certainties = new float[capacity];
+		_dominances = new float[capacity];
+		_statements = new PlausibleStatement[capacity];
+
+		// scratch arrays shared by the walks of all nodes. slots[] holds the position of each reached node in the walk of the current node.
+		int[] stamps = new int[n];
+		int[] slots = new int[n];
+		int[] queue = new int[n];
+		int[] settled = new int[n];
+		LongHeap heap = new LongHeap();
+
+		int[] found = new int[n];
+		int[] distances = new int[n];
+		int[] isaDistances = new int[n];
+		int[] isaRanks = new int[n];
+		float[] certainties = new float[n];
+		float[] dominances = new float[n];
+		PlausibleStatement[] statements = new PlausibleStatement[n];
+
+		int size = 0;
+
+		for (int node = 0; node < n; node++)
+		{
+			int stamp = node + 1;
+			int count = 0;
+
+			stamps[node] = stamp;
+			slots[node] = -1;
+
+			if (_nodes[node] == null)
+			{
+				_offsets[node] = size;
+
+				continue;
+			}
+
+			// breadth first over all links: ancestors and their distances
+			int head = 0, tail = 0;
+
+			queue[tail++] = node;
+
+			while (head < tail && count <= MAX_ANCESTORS)
+			{
+				int current = queue[head++];
+				int distance = (current == node) ? 0 : distances[slots[current]];
+
+				for (int parent: parentIds.get(current))
+				{
+					if (parent < 0)
+					{
+						count = MAX_ANCESTORS + 1;
+						break;
+					}
+
+					if (stamps[parent] == stamp)
+						continue;
+
+					stamps[parent] = stamp;
+					slots[parent] = count;
+
+					found[count] = parent;
+					distances[count] = distance + 1;
+					isaDistances[count] = UNREACHABLE;
+					isaRanks[count] = UNREACHABLE;
+					certainties[count] = 0F;
+					count++;
+
+					queue[tail++] = parent;
+				}
+			}
+
+			_offsets[node] = size;
+
+			if (count > MAX_ANCESTORS)
+			{
+				_truncated[node] = true;
+				_truncatedNum++;
+
+				continue;
+			}
+
+			// breadth first over ISA links only
+			head = 0;
+			tail = 0;
+
+			int rank = 0;
+
+			queue[tail++] = node;
+
+			while (head < tail)
+			{
+				int current = queue[head++];
+				int distance = (current == node) ? 0 : isaDistances[slots[current]];
+
+				int[] parents = parentIds.get(current);
+				boolean[] isas = parentIsas.get(current);
+
+				for (int j = 0; j < parents.length; j++)
+				{
+					int slot = slots[parents[j]];
+
+					if (!isas[j] || slot < 0 || isaDistances[slot] != UNREACHABLE)
+						continue;
+
+					isaDistances[slot] = distance + 1;
+					isaRanks[slot] = rank++;
+
+					queue[tail++] = parents[j];
+				}
+			}
+
+			// the most certain paths: certainties only decrease along a path so they are found the same as shortest paths (Dijkstra)
+			heap.clear();
+			heap.push(1F, node);
+
+			while (!heap.isEmpty())
+			{
+				long entry = heap.pop();
+				int current = (int)entry;
+
+				if (settled[current] == stamp)
+					continue;
+
+				settled[current] = stamp;
+
+				float certainty = (current == node) ? 1F : certainties[slots[current]];
+				float dominance = (current == node) ? 1F : dominances[slots[current]];
+
+				int[] parents = parentIds.get(current);
+				PlausibleAnswer[] links = parentLinks.get(current);
+
+				for (int j = 0; j < parents.length; j++)
+				{
+					int slot = slots[parents[j]];
+
+					if (slot < 0 || settled[parents[j]] == stamp)
+						continue;
+
+					float linkCertainty = Math.max(0F, Math.min(links[j].parameters.certainty, 1F));
+
+					if (certainty * linkCertainty <= certainties[slot] && statements[slot] != null)
+						continue;
+
+					certainties[slot] = certainty * linkCertainty;
+					dominances[slot] = dominance * links[j].parameters.dominance;
+					statements[slot] = links[j].statement;
+
+					heap.push(certainties[slot], parents[j]);
+				}
+			}
+
+			// the depth is counted from the nearest root
+			int depth = UNREACHABLE;
+			int farthest = 0;
+
+			for (int j = 0; j < count; j++)
+			{
+				if (parentIds.get(found[j]).length == 0)
+					depth = Math.min(depth, distances[j]);
+
+				farthest = Math.max(farthest, distances[j]);
+			}
+
+			// the ancestors of a node on a cycle may all have parents
+			_depths[node] = ((depth == UNREACHABLE) ? farthest : depth) + 1;
+
+			// keeping the ancestors sorted by their kb ids
+			if (size + count > _ancestors.length)
+				grow(Math.max(size + count, _ancestors.length * 2));
+
+			long[] order = new long[count];
+
+			for (int j = 0; j < count; j++)
+			{
+				order[j] = ((long)found[j] << 32) | j;
+			}
+
+			Arrays.sort(order);
+
+			for (int j = 0; j < count; j++)
+			{
+				int slot = (int)order[j];
+
+				_ancestors[size] = found[slot];
+				_distances[size] = distances[slot];
+				_ranks[size] = slot;
+				_isaDistances[size] = isaDistances[slot];
+				_isaRanks[size] = isaRanks[slot];
+				_certainties[size] = certainties[slot];
+				_dominances[size] = dominances[slot];
+				_statements[size] = statements[slot];
+
+				statements[slot] = null;
+
+				size++;
+			}
+		}
+
+		_offsets[n] = size;
+	}
+
+	/**
+	 * grows the ancestor arrays
+	 * @param capacity the new capacity
+	 */
+	private void grow(int capacity)
+	{
+		_ancestors = Arrays.copyOf(_ancestors, capacity);
+		_distances = Arrays.copyOf(_distances, capacity);
+		_ranks = Arrays.copyOf(_ranks, capacity);
+		_isaDistances = Arrays.copyOf(_isaDistances, capacity);
+		_isaRanks = Arrays.copyOf(_isaRanks, capacity);
+		_certainties = Arrays.copyOf(_certainties, capacity);
+		_dominances = Arrays.copyOf(_dominances, capacity);
+		_statements = Arrays.copyOf(_statements, capacity);
+	}
+
+	/**
+	 * inverts the ISA ancestors into the ISA descendants of every node
+	 */
+	private void indexDescendants()
+	{
+		int n = _nodes.length;
+
+		_descendantOffsets = new int[n + 1];
+
+		for (int i = 0; i < _offsets[n]; i++)
+		{
+			if (_isaDistances[i] != UNREACHABLE)
+				_descendantOffsets[_ancestors[i] + 1]++;
+		}
+
+		for (int i = 0; i < n; i++)
+		{
+			_descendantOffsets[i + 1] += _descendantOffsets[i];
+		}
+
+		_descendants = new int[_descendantOffsets[n]];
+
+		int[] filled = Arrays.copyOf(_descendantOffsets, n);
+
+		for (int node = 0; node < n; node++)
+		{
+			for (int i = _offsets[node]; i < _offsets[node + 1]; i++)
+			{
+				if (_isaDistances[i] != UNREACHABLE)
+					_descendants[filled[_ancestors[i]]++] = node;
+			}
+		}
+	}
+
+	/**
+	 * Determines whether the index answers the hierarchy lookups of a node: the node is indexed and
+	 * the caller is neither reading a published version of the kb (see <code>KbVersion</code>) nor an overlay (see <code>KbOverlay</code>), which the index doesn't reflect.
+	 * The other lookups of the index should only be made for the nodes it covers.
+	 * @param node the node
+	 * @return true if the index covers the node
+	 */
+	public boolean covers(Node node)
+	{
+		int id = getIndexOf(node);
+
+		if (id == -1 || _truncated[id])
+			return false;
+
+		if (KbOverlay.getPinned() != null)
+			return false;
+
+		KbVersion version = KbVersion.getPinned();
+
+		return version == null || !version.covers(node);
+	}
+
+	/**
+	 * Determines whether the index answers the descendant lookups of a node.
+	 * The descendants are only complete if every node is indexed.
+	 * @param node the node
+	 * @return true if the index covers the descendants of the node
+	 */
+	public boolean coversDescendants(Node node)
+	{
+		return _truncatedNum == 0 && covers(node);
+	}
+
+	/**
+	 * finds an ancestor among the ancestors of a node
+	 * @param node the node
+	 * @param ancestor the ancestor
+	 * @return the position of the ancestor in the ancestor arrays or -1
+	 */
+	private int find(Node node, Node ancestor)
+	{
+		int id = getIndexOf(node);
+		int ancestorId = getIndexOf(ancestor);
+
+		if (id == -1 || ancestorId == -1)
+			return -1;
+
+		int position = Arrays.binarySearch(_ancestors, _offsets[id], _offsets[id + 1], ancestorId);
+
+		return (position < 0) ? -1 : position;
+	}
+
+	/**
+	 * Checks whether a node is a kind of (a descendant of) another node
+	 * @param node the node
+	 * @param ancestor the expected ancestor
+	 * @param instances whether INSTANCE links are followed as well as ISA links
+	 * @return true if the node reaches the ancestor
+	 */
+	public boolean isKindOf(Node node, Node ancestor, boolean instances)
+	{
+		int position = find(node, ancestor);
+
+		if (position < 0)
+			return false;
+
+		return instances || _isaDistances[position] != UNREACHABLE;
+	}
+
+	/**
+	 * Finds the most certain ISA/INSTANCE path from a node to an ancestor.
+	 * The answer has the parameters of the last link on the path along with the products of the certainties and dominances of its links.
+	 * @param node the node
+	 * @param ancestor the ancestor
+	 * @return the answer (the ancestor) or null if the node doesn't reach the ancestor
+	 */
+	public PlausibleAnswer findKindOf(Node node, Node ancestor)
+	{
+		int position = find(node, ancestor);
+
+		if (position < 0)
+			return null;
+
+		PlausibleStatement statement = _statements[position];
+
+		PlausibleAnswer answer = new PlausibleAnswer();
+
+		answer.answer 		= ancestor;
+		answer.statement 	= statement;
+		answer.source		= statement.getSourceType();
+		answer.copyParameters(statement.parameters);
+
+		answer.parameters.certainty = _certainties[position];
+		answer.parameters.dominance = _dominances[position];
+
+		return answer;
+	}
+
+	/**
+	 * Finds the certainty of the most certain ISA/INSTANCE path from a node to an ancestor
+	 * @param node the node
+	 * @param ancestor the ancestor
+	 * @return the product of the certainties of the links on the path or 0 if the node doesn't reach the ancestor
+	 */
+	public float getCertainty(Node node, Node ancestor)
+	{
+		int position = find(node, ancestor);
+
+		return (position < 0) ? 0F : _certainties[position];
+	}
+
+	/**
+	 * Finds the ancestors of a node within a number of links
+	 * @param node the node
+	 * @param maxDistance the maximum number of links to an ancestor
+	 * @param instances whether INSTANCE links are followed as well as ISA links
+	 * @return the ancestors in the order a breadth first walk reaches them
+	 */
+	public ArrayList<Node> findAncestors(Node node, int maxDistance, boolean instances)
+	{
+		int id = node.getId();
+
+		int[] distances = instances ? _distances : _isaDistances;
+		int[] ranks = instances ? _ranks : _isaRanks;
+
+		long[] order = new long[_offsets[id + 1] - _offsets[id]];
+		int count = 0;
+
+		for (int i = _offsets[id]; i < _offsets[id + 1]; i++)
+		{
+			if (distances[i] != UNREACHABLE && distances[i] <= maxDistance)
+				order[count++] = ((long)ranks[i] << 32) | _ancestors[i];
+		}
+
+		Arrays.sort(order, 0, count);
+
+		ArrayList<Node> ancestors = new ArrayList<Node>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			ancestors.add(_nodes[(int)order[i]]);
+		}
+
+		return ancestors;
+	}
+
+	/**
+	 * Finds the ISA descendants of a node
+	 * @param node the node
+	 * @return the descendants along with the node itself
+	 */
+	public HashSet<Node> findDescendants(Node node)
+	{
+		int id = node.getId();
+
+		HashSet<Node> descendants = new HashSet<Node>();
+
+		descendants.add(node);
+
+		for (int i = _descendantOffsets[id]; i < _descendantOffsets[id + 1]; i++)
+		{
+			descendants.add(_nodes[_descendants[i]]);
+		}
+
+		return descendants;
+	}
+
+	/**
+	 * Finds the depth of a node in the ISA/INSTANCE hierarchy, counted from the nearest root
+	 * @param node the node
+	 * @return the depth, 1 for a root
+	 */
+	public int getDepth(Node node)
+	{
+		return _depths[node.getId()];
+	}
+
+	/**
+	 * Getter for the number of nodes in the index
+	 * @return
+	 */
+	public int getNodesNum()
+	{
+		int num = 0;
+
+		for (Node node: _nodes)
+		{
+			if (node != null)
+				num++;
+		}
+
+		return num;
+	}
+
+	/**
+	 * Getter for the number of nodes which have too many ancestors to be indexed
+	 * @return
+	 */
+	public int getTruncatedNum()
+	{
+		return _truncatedNum;
+	}
+
+	/**
+	 * Getter for the number of (node, ancestor) pairs in the index
+	 * @return
+	 */
+	public int getAncestorsNum()
+	{
+		return _offsets[_nodes.length];
+	}
+
+	/**
+	 * A binary min-heap of longs used to find the most certain paths.
+	 * An entry holds an inverted certainty in its high half and a kb node id in its low half so the most certain node comes out first.
+	 */
+	private static class LongHeap
+	{
+		private long[] _entries = new long[64];
+		private int _size = 0;
+
+		public void clear()
+		{
+			_size = 0;
+		}
+
+		public boolean isEmpty()
+		{
+			return _size == 0;
+		}
+
+		/**
+		 * adds a node
+		 * @param certainty the certainty of the path to the node (between 0 and 1)
+		 * @param id the kb id of the node
+		 */
+		public void push(float certainty, int id)
+		{
+			// the bits of non-negative floats are ordered the same as the floats
+			long entry = ((long)(Integer.MAX_VALUE - Float.floatToIntBits(certainty)) << 32) | id;
+
+			if (_size == _entries.length)
+				_entries = Arrays.copyOf(_entries, _size * 2);
+
+			int i = _size++;
+
+			while (i > 0 && _entries[(i - 1) / 2] > entry)
+			{
+				_entries[i] = _entries[(i - 1) / 2];
+				i = (i - 1) / 2;
+			}
+
+			_entries[i] = entry;
+		}
+
+		/**
+		 * removes the entry of the most certain node
+		 * @return the entry, its low half is the kb id of the node
+		 */
+		public long pop()
+		{
+			long top = _entries[0];
+			long last = _entries[--_size];
+
+			int i = 0;
+
+			while (2 * i + 1 < _size)
+			{
+				int child = 2 * i + 1;
+
+				if (child + 1 < _size && _entries[child + 1] < _entries[child])
+					child++;
+
+				if (_entries[child] >= last)
+					break;
+
+				_entries[i] = _entries[child];
+				i = child;
+			}
+
+			_entries[i] = last;
+
+			return top;
+		}
+	}
+}
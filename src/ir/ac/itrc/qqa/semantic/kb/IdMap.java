@@ -0,0 +1,262 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import java.util.ArrayList;
+
+/**
+ * A map from node ids to values. Keys are kept in a primitive open addressing table (linear probing) so no key is boxed.
+ * It replaces name-keyed and <code>Integer</code>-keyed hashtables where the key is a node.
+ * Node ids are never 0, which marks an empty slot. The map is not synchronized.
+ *
+ * @author Ehsan Darrudi
+ */
+public class IdMap<V>
+{
+	/** keys of the slots, 0 for empty slots */
+	private int[] _keys;
+
+	/** values of the slots */
+	private Object[] _values;
+
+	/** number of entries */
+	private int _size = 0;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	public IdMap()
+	{
+		this(16);
+	}
+
+	/**
+	 * constructor
+	 * @param expectedSize number of entries the map is expected to hold
+	 */
+	public IdMap(int expectedSize)
+	{
+		int capacity = 16;
+
+		while (capacity < expectedSize * 2)
+			capacity <<= 1;
+
+		_keys = new int[capacity];
+		_values = new Object[capacity];
+	}
+
+	/**
+	 * finds the value of a node id
+	 * @param id the node id
+	 * @return the value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int id)
+	{
+		int mask = _keys.length - 1;
+
+		for (int slot = hash(id) & mask; _keys[slot] != 0; slot = (slot + 1) & mask)
+		{
+			if (_keys[slot] == id)
+				return (V)_values[slot];
+		}
+
+		return null;
+	}
+
+	/**
+	 * finds the value of a node
+	 * @param node the node
+	 * @return the value or null
+	 */
+	public V get(Node node)
+	{
+		return get(node.getId());
+	}
+
+	/**
+	 * checks whether a node id is in the map
+	 * @param id the node id
+	 * @return true/false
+	 */
+	public boolean containsKey(int id)
+	{
+		int mask = _keys.length - 1;
+
+		for (int slot = hash(id) & mask; _keys[slot] != 0; slot = (slot + 1) & mask)
+		{
+			if (_keys[slot] == id)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * puts a value for a node id
+	 * @param id the node id, must not be 0
+	 * @param value the value
+	 * @return the previous value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int id, V value)
+	{
+		if ((_size + 1) * 2 > _keys.length)
+			grow();
+
+		int mask = _keys.length - 1;
+		int slot = hash(id) & mask;
+
+		while (_keys[slot] != 0)
+		{
+			if (_keys[slot] == id)
+			{
+				V old = (V)_values[slot];
+				_values[slot] = value;
+
+				return old;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		_keys[slot] = id;
+		_values[slot] = value;
+		_size++;
+
+		return null;
+	}
+
+	/**
+	 * puts a value for a node
+	 * @param node the node
+	 * @param value the value
+	 * @return the previous value or null
+	 */
+	public V put(Node node, V value)
+	{
+		return put(node.getId(), value);
+	}
+
+	/**
+	 * removes a node id from the map
+	 * @param id the node id
+	 * @return the removed value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int id)
+	{
+		int mask = _keys.length - 1;
+		int slot = hash(id) & mask;
+
+		while (_keys[slot] != id)
+		{
+			if (_keys[slot] == 0)
+				return null;
+
+			slot = (slot + 1) & mask;
+		}
+
+		V old = (V)_values[slot];
+
+		// shifting back the entries of the probe sequence which follows the removed slot
+		int gap = slot;
+
+		for (slot = (slot + 1) & mask; _keys[slot] != 0; slot = (slot + 1) & mask)
+		{
+			int home = hash(_keys[slot]) & mask;
+
+			// the entry can fill the gap if its home slot is not between the gap and its current slot (cyclically)
+			if ((slot > gap) ? (home <= gap || home > slot) : (home <= gap && home > slot))
+			{
+				_keys[gap] = _keys[slot];
+				_values[gap] = _values[slot];
+				gap = slot;
+			}
+		}
+
+		_keys[gap] = 0;
+		_values[gap] = null;
+		_size--;
+
+		return old;
+	}
+
+	/**
+	 * Getter for the number of entries
+	 * @return
+	 */
+	public int size()
+	{
+		return _size;
+	}
+
+	/**
+	 * removes all entries
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < _keys.length; i++)
+		{
+			_keys[i] = 0;
+			_values[i] = null;
+		}
+
+		_size = 0;
+	}
+
+	/**
+	 * lists the values of the map
+	 * @return the values
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<V> values()
+	{
+		ArrayList<V> values = new ArrayList<V>(_size);
+
+		for (int i = 0; i < _keys.length; i++)
+		{
+			if (_keys[i] != 0)
+				values.add((V)_values[i]);
+		}
+
+		return values;
+	}
+
+	/**
+	 * doubles the capacity of the table
+	 */
+	private void grow()
+	{
+		int[] keys = _keys;
+		Object[] values = _values;
+
+		_keys = new int[keys.length * 2];
+		_values = new Object[keys.length * 2];
+
+		int mask = _keys.length - 1;
+
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] == 0)
+				continue;
+
+			int slot = hash(keys[i]) & mask;
+
+			while (_keys[slot] != 0)
+				slot = (slot + 1) & mask;
+
+			_keys[slot] = keys[i];
+			_values[slot] = values[i];
+		}
+	}
+
+	/**
+	 * spreads the bits of dense sequential ids over the table
+	 * @param id the node id
+	 * @return the hash
+	 */
+	private static int hash(int id)
+	{
+		int h = id * 0x9E3779B9;
+
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,472 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import ir.ac.itrc.qqa.semantic.enums.ConditionalType;
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleAnswer;
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleStatement;
+import ir.ac.itrc.qqa.semantic.util.MyError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A lightweight layer of scratch knowledge (e.g. the facts of a single request) on top of a base <code>KnowledgeBase</code>.
+ * Concepts and relations added to the overlay are kept in the overlay only: the base kb and its nodes are never changed,
+ * so several sessions can each have their own overlay on the same (locked) base kb.
+ * While an overlay is pinned to a thread (see <code>pin</code>) the <code>Node</code> lookups of the thread see both layers.
+ * The reasoner pins the overlay set on the <code>ReasoningContext</code> of a question, so its inferences see the overlay's facts too.
+ * Discarding the overlay costs as much as the overlay's size, unlike <code>KnowledgeBase.purgeDynamicKnowledge</code> which scans the whole kb.
+ * An overlay is meant to be used by a single session and is not synchronized: it must not be changed while questions are reading it.
+ *
+ * @author Ehsan Darrudi
+ */
+public class KbOverlay
+{
+	/** the overlay pinned by each thread */
+	private static final ThreadLocal<KbOverlay> _pinned = new ThreadLocal<KbOverlay>();
+
+	/** set when an overlay is pinned for the first time so node lookups do not read the thread-local while overlays are not used */
+	private static volatile boolean _used = false;
+
+	/** the kb under the overlay */
+	private KnowledgeBase _base;
+
+	/** the overlay concepts keyed by their lowercase names */
+	private HashMap<String, Node> _concepts = new HashMap<String, Node>();
+
+	/** the overlay statements going out of each node (of either layer), keyed by node ids */
+	private IdMap<ArrayList<PlausibleStatement>> _outLinks = new IdMap<ArrayList<PlausibleStatement>>();
+
+	/** the overlay statements coming into each node (of either layer), keyed by node ids */
+	private IdMap<ArrayList<PlausibleStatement>> _inLinks = new IdMap<ArrayList<PlausibleStatement>>();
+
+	/** the overlay statements in the order they were added */
+	private ArrayList<PlausibleStatement> _statements = new ArrayList<PlausibleStatement>();
+
+	/** numbers the overlay statements, which are not counted among the instances of their relation types in the base kb */
+	private int _instancesNum = 0;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * constructor
+	 * @param base the kb under the overlay. it should be locked if it is shared by several sessions.
+	 */
+	public KbOverlay(KnowledgeBase base)
+	{
+		MyError.assertNotNull(base);
+
+		_base = base;
+	}
+
+	/**
+	 * Getter for <code>_base</code>
+	 * @return
+	 */
+	public KnowledgeBase getBase()
+	{
+		return _base;
+	}
+
+	/**
+	 * pins an overlay to the current thread. node lookups of the thread see the overlay until it is unpinned.
+	 * @param overlay the overlay or null to unpin
+	 * @return the overlay pinned before
+	 */
+	public static KbOverlay pin(KbOverlay overlay)
+	{
+		KbOverlay previous = _pinned.get();
+
+		if (overlay != null)
+		{
+			_used = true;
+			_pinned.set(overlay);
+		}
+		else
+		{
+			_pinned.remove();
+		}
+
+		return previous;
+	}
+
+	/**
+	 * Getter for the overlay pinned to the current thread
+	 * @return the overlay or null
+	 */
+	public static KbOverlay getPinned()
+	{
+		if (!_used)
+			return null;
+
+		return _pinned.get();
+	}
+
+	/**
+	 * Adds a concept to the overlay unless it already exists in either layer
+	 * @param name the concept's name
+	 * @return the new concept or the existing one
+	 */
+	public Node addConcept(String name)
+	{
+		if (name == null || name.isEmpty())
+		{
+			MyError.exit("The concept name can't be empty!");
+		}
+
+		// the same lookup as KnowledgeBase.addConcept
+		String key = Node.extractProspectiveName(name).toLowerCase();
+
+		Node already = _base.findConceptByKey(key);
+
+		if (already != null)
+			return already;
+
+		already = _concepts.get(key);
+
+		if (already != null)
+			return already;
+
+		// overlay concepts get transient ids which never clash with the ids of the base kb's nodes
+		Node node = new Node(name);
+
+		node.setDynamic();
+
+		_concepts.put(node.getName().toLowerCase(), node);
+
+		return node;
+	}
+
+	/**
+	 * Finds a concept by its name in either layer
+	 * @param name the concept's name
+	 * @return the found concept or null
+	 */
+	public Node findConcept(String name)
+	{
+		if (name == null)
+			return null;
+
+		Node node = _base.findConcept(name);
+
+		if (node != null)
+			return node;
+
+		return _concepts.get(name.toLowerCase());
+	}
+
+	public PlausibleStatement addRelation(Node argument, Node referent, Node relation)
+	{
+		return addRelation(argument, referent, relation, new CertaintyParameters());
+	}
+	/**
+	 * Adds a relation to the overlay unless it already exists in either layer.
+	 * Like <code>KnowledgeBase.addRelation</code> the inverse of a symmetric relation (SIM, DIS, INVERSE) is added too.
+	 * @param argument the argument
+	 * @param referent the referent
+	 * @param relation the relation type
+	 * @param parameters certainty parameters
+	 * @return the new statement or the existing one
+	 */
+	public PlausibleStatement addRelation(Node argument, Node referent, Node relation, CertaintyParameters parameters)
+	{
+		if (argument == null || referent == null || relation == null)
+		{
+			MyError.exit("SourceType, Destination or Relation conceptType is null!");
+		}
+		if (argument.isLex() || referent.isLex() || relation.isLex())
+		{
+			MyError.exit("SourceType, Destination or Relation conceptType can't be a Lexical node!");
+		}
+
+		PlausibleStatement ps = findRelationToTarget(argument, relation, referent);
+
+		if (ps != null)
+			return ps;
+
+		// the statement is neither linked to its nodes nor numbered by its relation type, so the nodes of the base kb are not changed
+		ps = new PlausibleStatement(relation, parameters, argument, referent, ConditionalType.NOT_CONDITIONAL, ++_instancesNum);
+
+		ps.setDynamic();
+
+		addLink(_outLinks, argument, ps);
+		addLink(_inLinks, referent, ps);
+
+		_statements.add(ps);
+
+		if (relation == KnowledgeBase.HPR_INVERSE || relation == KnowledgeBase.HPR_SIM || relation == KnowledgeBase.HPR_DIS)
+		{
+			addRelation(referent, argument, relation, parameters);
+		}
+
+		return ps;
+	}
+
+	/**
+	 * Finds a relation from a node to another in either layer
+	 * @param argument the argument
+	 * @param relationType the relation type
+	 * @param referent the referent
+	 * @return the statement or null
+	 */
+	public PlausibleStatement findRelationToTarget(Node argument, Node relationType, Node referent)
+	{
+		KbOverlay previous = pin(this);
+
+		try
+		{
+			return argument.findRelationToTarget(relationType, referent);
+		}
+		finally
+		{
+			pin(previous);
+		}
+	}
+
+	/**
+	 * finds out relations from a node in either layer
+	 * @param node the node
+	 * @param relationType relation type or <code>KnowledgeBase.HPR_ANY</code>
+	 * @return the relations of the base kb followed by the overlay's, newest first
+	 */
+	public ArrayList<PlausibleStatement> findOutRelations(Node node, Node relationType)
+	{
+		KbOverlay previous = pin(this);
+
+		try
+		{
+			return node.findOutRelations(relationType);
+		}
+		finally
+		{
+			pin(previous);
+		}
+	}
+
+	/**
+	 * finds in relations to a node in either layer
+	 * @param node the node
+	 * @param relationType relation type or <code>KnowledgeBase.HPR_ANY</code>
+	 * @return the relations of the base kb followed by the overlay's, newest first
+	 */
+	public ArrayList<PlausibleStatement> findInRelations(Node node, Node relationType)
+	{
+		KbOverlay previous = pin(this);
+
+		try
+		{
+			return node.findInRelations(relationType);
+		}
+		finally
+		{
+			pin(previous);
+		}
+	}
+
+	/**
+	 * Finds the nodes which a node has a relation with in either layer
+	 * @param node the node
+	 * @param relationType relation type or <code>KnowledgeBase.HPR_ANY</code>
+	 * @return the found nodes of the base kb followed by the overlay's
+	 */
+	public ArrayList<PlausibleAnswer> findTargetNodes(Node node, Node relationType)
+	{
+		KbOverlay previous = pin(this);
+
+		try
+		{
+			return node.findTargetNodes(relationType);
+		}
+		finally
+		{
+			pin(previous);
+		}
+	}
+
+	/**
+	 * Finds the nodes which have a relation to a node in either layer
+	 * @param node the node
+	 * @param relationType relation type or <code>KnowledgeBase.HPR_ANY</code>
+	 * @return the found nodes of the base kb followed by the overlay's
+	 */
+	public ArrayList<PlausibleAnswer> findSourceNodes(Node node, Node relationType)
+	{
+		KbOverlay previous = pin(this);
+
+		try
+		{
+			return node.findSourceNodes(relationType);
+		}
+		finally
+		{
+			pin(previous);
+		}
+	}
+
+	/**
+	 * Finds the newest overlay statement going out of a node with a relation type and a referent
+	 * @param argument the argument
+	 * @param relationType the relation type
+	 * @param referent the referent
+	 * @return the statement or null
+	 */
+	protected PlausibleStatement findOut(Node argument, Node relationType, Node referent)
+	{
+		ArrayList<PlausibleStatement> links = _outLinks.get(argument);
+
+		if (links == null)
+			return null;
+
+		for (int i = links.size() - 1; i >= 0; i--)
+		{
+			PlausibleStatement ps = links.get(i);
+
+			if (ps.relationType == relationType && ps.referent == referent)
+				return ps;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Finds the newest overlay statement coming into a node with a relation type and an argument
+	 * @param referent the referent
+	 * @param relationType the relation type
+	 * @param argument the argument
+	 * @return the statement or null
+	 */
+	protected PlausibleStatement findIn(Node referent, Node relationType, Node argument)
+	{
+		ArrayList<PlausibleStatement> links = _inLinks.get(referent);
+
+		if (links == null)
+			return null;
+
+		for (int i = links.size() - 1; i >= 0; i--)
+		{
+			PlausibleStatement ps = links.get(i);
+
+			if (ps.relationType == relationType && ps.argument == argument)
+				return ps;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Collects the overlay statements going out of a node, newest first
+	 * @param node the node
+	 * @param relationType relation type or <code>KnowledgeBase.HPR_ANY</code>
+	 * @param statType the conditional type of the statements or null for any
+	 * @param out the collected statements are added to it
+	 */
+	protected void collectOut(Node node, Node relationType, ConditionalType statType, ArrayList<PlausibleStatement> out)
+	{
+		collectLinks(_outLinks.get(node), relationType, statType, out);
+	}
+
+	/**
+	 * Collects the overlay statements coming into a node, newest first
+	 * @param node the node
+	 * @param relationType relation type or <code>KnowledgeBase.HPR_ANY</code>
+	 * @param statType the conditional type of the statements or null for any
+	 * @param out the collected statements are added to it
+	 */
+	protected void collectIn(Node node, Node relationType, ConditionalType statType, ArrayList<PlausibleStatement> out)
+	{
+		collectLinks(_inLinks.get(node), relationType, statType, out);
+	}
+
+	/**
+	 * Collects the overlay statements of a relation type in the order they were added (see <code>KnowledgeBase.findRelationInstances</code>)
+	 * @param relationType the relation type
+	 * @param statType the conditional type of the statements or null for any
+	 * @param out the collected statements are added to it
+	 */
+	protected void collectInstances(Node relationType, ConditionalType statType, ArrayList<PlausibleStatement> out)
+	{
+		for (PlausibleStatement ps: _statements)
+		{
+			if (ps.relationType == relationType && (statType == null || ps.conditionalType == statType))
+				out.add(ps);
+		}
+	}
+
+	/**
+	 * Getter for the number of concepts in the overlay
+	 * @return
+	 */
+	public int getConceptsNum()
+	{
+		return _concepts.size();
+	}
+
+	/**
+	 * Getter for the number of statements in the overlay
+	 * @return
+	 */
+	public int getStatementsNum()
+	{
+		return _statements.size();
+	}
+
+	/**
+	 * Discards all concepts and relations of the overlay. The base kb is not touched.
+	 * @return the number of discarded concepts and statements
+	 */
+	public int discard()
+	{
+		int discarded = _concepts.size() + _statements.size();
+
+		_concepts = new HashMap<String, Node>();
+		_outLinks = new IdMap<ArrayList<PlausibleStatement>>();
+		_inLinks = new IdMap<ArrayList<PlausibleStatement>>();
+		_statements = new ArrayList<PlausibleStatement>();
+
+		return discarded;
+	}
+
+	/**
+	 * Adds a statement to the links of a node
+	 * @param links the out or in links
+	 * @param node the node
+	 * @param ps the statement
+	 */
+	private static void addLink(IdMap<ArrayList<PlausibleStatement>> links, Node node, PlausibleStatement ps)
+	{
+		ArrayList<PlausibleStatement> nodeLinks = links.get(node);
+
+		if (nodeLinks == null)
+		{
+			nodeLinks = new ArrayList<PlausibleStatement>(2);
+			links.put(node, nodeLinks);
+		}
+
+		nodeLinks.add(ps);
+	}
+
+	/**
+	 * Collects the statements of a relation type from the links of a node, newest first
+	 * @param links the links of the node or null
+	 * @param relationType relation type or <code>KnowledgeBase.HPR_ANY</code>
+	 * @param statType the conditional type of the statements or null for any
+	 * @param out the collected statements are added to it
+	 */
+	private static void collectLinks(ArrayList<PlausibleStatement> links, Node relationType, ConditionalType statType, ArrayList<PlausibleStatement> out)
+	{
+		if (links == null)
+			return;
+
+		for (int i = links.size() - 1; i >= 0; i--)
+		{
+			PlausibleStatement ps = links.get(i);
+
+			if (relationType != KnowledgeBase.HPR_ANY && ps.relationType != relationType)
+				continue;
+
+			if (statType != null && ps.conditionalType != statType)
+				continue;
+
+			out.add(ps);
+		}
+	}
+}
@@ -0,0 +1,575 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An immutable version of the kb graph (the in- and out-links of its nodes) published by <code>KnowledgeBase.publishVersion()</code>.
+ * A reader pins a version to its thread (see <code>pin</code>) and <code>Node</code> lookups then read the version instead of
+ * the nodes' link-lists, so the reader is not disturbed by a writer changing the kb and publishing newer versions meanwhile.
+ * Node ids are split into segments, each one a small CSR table of the links of its nodes grouped by relation type.
+ * A new version rebuilds only the segments of the nodes changed since the previous version and shares the other segments with it.
+ *
+ * @author Ehsan Darrudi
+ */
+public class KbVersion
+{
+	/** number of node ids in a segment is 2 ^ SEGMENT_BITS */
+	private static final int SEGMENT_BITS = 8;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+	/** the version pinned by each reader thread */
+	private static final ThreadLocal<KbVersion> _pinned = new ThreadLocal<KbVersion>();
+
+	/** set when a version is pinned for the first time so node lookups do not read the thread-local while versions are not used */
+	private static volatile boolean _used = false;
+
+	/** the triple index of the kb, identifying the nodes of the kb */
+	private TripleIndex _kb;
+
+	/** the version number, starting from 1 */
+	private int _number;
+
+	/** the last node id of the kb when the version was published. nodes with larger ids did not exist in this version. */
+	private int _lastId;
+
+	/** the segments, indexed by node id / SEGMENT_SIZE. null segments have no links. */
+	private Segment[] _segments;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * the links of the nodes of a range of ids. node i of the segment owns the links [offsets[i], offsets[i+1]) in each direction.
+	 * links of a node are sorted by relation type id, keeping their newest first order within each relation type.
+	 * walking all links of a node (<code>HPR_ANY</code>) goes through the recent arrays which keep the newest first order of the link-lists.
+	 */
+	private static class Segment
+	{
+		/** number of nodes (ids) having rows in the segment */
+		private int _rows;
+
+		private int[] _outOffsets;
+		private int[] _outTypes;
+		private Node[] _outNodes;
+		private PlausibleStatement[] _outStatements;
+		/** position of each node's out-links in newest first order */
+		private int[] _outRecent;
+
+		private int[] _inOffsets;
+		private int[] _inTypes;
+		private Node[] _inNodes;
+		private PlausibleStatement[] _inStatements;
+		/** position of each node's in-links in newest first order */
+		private int[] _inRecent;
+
+		/**
+		 * compiles the link-lists of the nodes of a segment
+		 * @param directory the kb's node directory
+		 * @param first the first id of the segment
+		 * @param rows number of ids in the segment
+		 */
+		public Segment(NodeDirectory directory, int first, int rows)
+		{
+			_rows = rows;
+
+			ArrayList<OutLinkElement> outLinks = new ArrayList<OutLinkElement>();
+			ArrayList<InLinkElement> inLinks = new ArrayList<InLinkElement>();
+
+			_outOffsets = new int[rows + 1];
+			_inOffsets = new int[rows + 1];
+
+			ArrayList<Node> outNodes = new ArrayList<Node>();
+			ArrayList<PlausibleStatement> outStatements = new ArrayList<PlausibleStatement>();
+			ArrayList<Node> inNodes = new ArrayList<Node>();
+			ArrayList<PlausibleStatement> inStatements = new ArrayList<PlausibleStatement>();
+
+			int[] outRecent = new int[16];
+			int[] inRecent = new int[16];
+
+			for (int row = 0; row < rows; row++)
+			{
+				_outOffsets[row] = outStatements.size();
+				_inOffsets[row] = inStatements.size();
+
+				// id 0 is never assigned
+				Node node = (first + row == 0) ? null : directory.get(first + row);
+
+				if (node == null)
+					continue;
+
+				outLinks.clear();
+
+				for (OutLinkElement outLink = node.getLastOutLink(); outLink != null; outLink = outLink.previousOutLinkElement)
+				{
+					outLinks.add(outLink);
+				}
+
+				int[] types = new int[outLinks.size()];
+
+				for (int i = 0; i < types.length; i++)
+				{
+					types[i] = outLinks.get(i).relation.relationType.getId();
+				}
+
+				int[] order = sortByType(types);
+				int offset = outStatements.size();
+
+				if (offset + order.length > outRecent.length)
+					outRecent = Arrays.copyOf(outRecent, Math.max(offset + order.length, outRecent.length * 2));
+
+				for (int i = 0; i < order.length; i++)
+				{
+					OutLinkElement outLink = outLinks.get(order[i]);
+
+					outNodes.add(outLink.destinationNode);
+					outStatements.add(outLink.relation);
+
+					outRecent[offset + order[i]] = offset + i;
+				}
+
+				inLinks.clear();
+
+				for (InLinkElement inLink = node.getLastInLink(); inLink != null; inLink = inLink.previousInLinkElement)
+				{
+					inLinks.add(inLink);
+				}
+
+				types = new int[inLinks.size()];
+
+				for (int i = 0; i < types.length; i++)
+				{
+					types[i] = inLinks.get(i).relation.relationType.getId();
+				}
+
+				order = sortByType(types);
+				offset = inStatements.size();
+
+				if (offset + order.length > inRecent.length)
+					inRecent = Arrays.copyOf(inRecent, Math.max(offset + order.length, inRecent.length * 2));
+
+				for (int i = 0; i < order.length; i++)
+				{
+					InLinkElement inLink = inLinks.get(order[i]);
+
+					inNodes.add(inLink.sourceNode);
+					inStatements.add(inLink.relation);
+
+					inRecent[offset + order[i]] = offset + i;
+				}
+			}
+
+			_outOffsets[rows] = outStatements.size();
+			_inOffsets[rows] = inStatements.size();
+
+			_outNodes = outNodes.toArray(new Node[outNodes.size()]);
+			_outStatements = outStatements.toArray(new PlausibleStatement[outStatements.size()]);
+			_outTypes = getTypes(_outStatements);
+			_outRecent = Arrays.copyOf(outRecent, _outStatements.length);
+
+			_inNodes = inNodes.toArray(new Node[inNodes.size()]);
+			_inStatements = inStatements.toArray(new PlausibleStatement[inStatements.size()]);
+			_inTypes = getTypes(_inStatements);
+			_inRecent = Arrays.copyOf(inRecent, _inStatements.length);
+		}
+	}
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * builds a version of a kb
+	 * @param previous the previous version or null to build all segments
+	 * @param directory the kb's node directory
+	 * @param kb the kb's triple index
+	 * @param changed the nodes whose links have changed since the previous version (ignored when there is no previous version)
+	 */
+	protected KbVersion(KbVersion previous, NodeDirectory directory, TripleIndex kb, IdMap<Node> changed)
+	{
+		_kb = kb;
+		_number = (previous == null) ? 1 : previous._number + 1;
+		_lastId = directory.getLastId();
+		_segments = new Segment[(_lastId >> SEGMENT_BITS) + 1];
+
+		boolean[] rebuild = new boolean[_segments.length];
+
+		if (previous == null)
+		{
+			Arrays.fill(rebuild, true);
+		}
+		else
+		{
+			System.arraycopy(previous._segments, 0, _segments, 0, Math.min(previous._segments.length, _segments.length));
+
+			for (Node node: changed.values())
+			{
+				int id = node.getId();
+
+				if (id > 0 && id <= _lastId)
+					rebuild[id >> SEGMENT_BITS] = true;
+			}
+		}
+
+		for (int segment = 0; segment < _segments.length; segment++)
+		{
+			if (!rebuild[segment])
+				continue;
+
+			int first = segment << SEGMENT_BITS;
+
+			_segments[segment] = new Segment(directory, first, Math.min(SEGMENT_SIZE, _lastId - first + 1));
+		}
+	}
+
+	/**
+	 * pins a version to the current thread. node lookups of the thread read the version until it is unpinned.
+	 * @param version the version or null to unpin
+	 * @return the version pinned before
+	 */
+	public static KbVersion pin(KbVersion version)
+	{
+		KbVersion previous = _pinned.get();
+
+		if (version != null)
+		{
+			_used = true;
+			_pinned.set(version);
+		}
+		else
+		{
+			_pinned.remove();
+		}
+
+		return previous;
+	}
+
+	/**
+	 * Getter for the version pinned to the current thread
+	 * @return the version or null
+	 */
+	public static KbVersion getPinned()
+	{
+		if (!_used)
+			return null;
+
+		return _pinned.get();
+	}
+
+	/**
+	 * Getter for <code>_number</code>
+	 * @return
+	 */
+	public int getNumber()
+	{
+		return _number;
+	}
+
+	/**
+	 * Getter for <code>_lastId</code>
+	 * @return
+	 */
+	public int getLastId()
+	{
+		return _lastId;
+	}
+
+	/**
+	 * checks whether a node belongs to the kb of this version. other nodes (e.g. those created outside the kb) are read from their link-lists.
+	 * @param node the node
+	 * @return true/false
+	 */
+	protected boolean covers(Node node)
+	{
+		return belongsTo(node.getTripleIndex());
+	}
+
+	/**
+	 * checks whether this is a version of a kb
+	 * @param kb the triple index of the kb
+	 * @return true/false
+	 */
+	protected boolean belongsTo(TripleIndex kb)
+	{
+		return _kb == kb;
+	}
+
+	/**
+	 * checks whether a statement existed when the version was published
+	 * @param statement the statement
+	 * @return true/false
+	 */
+	public boolean contains(PlausibleStatement statement)
+	{
+		return statement.getId() > 0 && statement.getId() <= _lastId;
+	}
+
+	/**
+	 * finds the newest out-link of a node having a relation type and a destination
+	 * @param node the node
+	 * @param relationType the relation type
+	 * @param destination the destination node
+	 * @return the statement of the link or null
+	 */
+	protected PlausibleStatement findOut(Node node, Node relationType, Node destination)
+	{
+		Segment segment = getSegment(node);
+
+		if (segment == null || relationType == null)
+			return null;
+
+		int row = node.getId() & (SEGMENT_SIZE - 1);
+
+		int to = upperBound(segment._outTypes, segment._outOffsets[row], segment._outOffsets[row + 1], relationType);
+
+		for (int i = lowerBound(segment._outTypes, segment._outOffsets[row], segment._outOffsets[row + 1], relationType); i < to; i++)
+		{
+			if (segment._outNodes[i] == destination)
+				return segment._outStatements[i];
+		}
+
+		return null;
+	}
+
+	/**
+	 * finds the newest in-link of a node having a relation type and a source
+	 * @param node the node
+	 * @param relationType the relation type
+	 * @param source the source node
+	 * @return the statement of the link or null
+	 */
+	protected PlausibleStatement findIn(Node node, Node relationType, Node source)
+	{
+		Segment segment = getSegment(node);
+
+		if (segment == null || relationType == null)
+			return null;
+
+		int row = node.getId() & (SEGMENT_SIZE - 1);
+
+		int to = upperBound(segment._inTypes, segment._inOffsets[row], segment._inOffsets[row + 1], relationType);
+
+		for (int i = lowerBound(segment._inTypes, segment._inOffsets[row], segment._inOffsets[row + 1], relationType); i < to; i++)
+		{
+			if (segment._inNodes[i] == source)
+				return segment._inStatements[i];
+		}
+
+		return null;
+	}
+
+	/**
+	 * collects the out-links of a node having a relation type
+	 * @param node the node
+	 * @param relationType the relation type, <code>HPR_ANY</code> selects all out-links newest first
+	 * @param nodes the destination nodes are added to it, may be null
+	 * @param statements the statements are added to it
+	 */
+	protected void collectOut(Node node, Node relationType, ArrayList<Node> nodes, ArrayList<PlausibleStatement> statements)
+	{
+		Segment segment = getSegment(node);
+
+		if (segment == null || relationType == null)
+			return;
+
+		int row = node.getId() & (SEGMENT_SIZE - 1);
+
+		int from = segment._outOffsets[row];
+		int to = segment._outOffsets[row + 1];
+
+		if (relationType != KnowledgeBase.HPR_ANY)
+		{
+			int end = upperBound(segment._outTypes, from, to, relationType);
+
+			from = lowerBound(segment._outTypes, from, to, relationType);
+			to = end;
+		}
+
+		for (int i = from; i < to; i++)
+		{
+			int position = (relationType == KnowledgeBase.HPR_ANY) ? segment._outRecent[i] : i;
+
+			if (nodes != null)
+				nodes.add(segment._outNodes[position]);
+
+			statements.add(segment._outStatements[position]);
+		}
+	}
+
+	/**
+	 * collects the in-links of a node having a relation type
+	 * @param node the node
+	 * @param relationType the relation type, <code>HPR_ANY</code> selects all in-links newest first
+	 * @param nodes the source nodes are added to it, may be null
+	 * @param statements the statements are added to it
+	 */
+	protected void collectIn(Node node, Node relationType, ArrayList<Node> nodes, ArrayList<PlausibleStatement> statements)
+	{
+		Segment segment = getSegment(node);
+
+		if (segment == null || relationType == null)
+			return;
+
+		int row = node.getId() & (SEGMENT_SIZE - 1);
+
+		int from = segment._inOffsets[row];
+		int to = segment._inOffsets[row + 1];
+
+		if (relationType != KnowledgeBase.HPR_ANY)
+		{
+			int end = upperBound(segment._inTypes, from, to, relationType);
+
+			from = lowerBound(segment._inTypes, from, to, relationType);
+			to = end;
+		}
+
+		for (int i = from; i < to; i++)
+		{
+			int position = (relationType == KnowledgeBase.HPR_ANY) ? segment._inRecent[i] : i;
+
+			if (nodes != null)
+				nodes.add(segment._inNodes[position]);
+
+			statements.add(segment._inStatements[position]);
+		}
+	}
+
+	/**
+	 * counts the segments shared with another version
+	 * @param other the other version
+	 * @return number of shared segments
+	 */
+	public int countSharedSegments(KbVersion other)
+	{
+		int shared = 0;
+
+		for (int i = 0; i < _segments.length && i < other._segments.length; i++)
+		{
+			if (_segments[i] != null && _segments[i] == other._segments[i])
+				shared++;
+		}
+
+		return shared;
+	}
+
+	/**
+	 * Getter for the number of segments
+	 * @return
+	 */
+	public int getSegmentsNum()
+	{
+		return _segments.length;
+	}
+
+	/**
+	 * finds the segment holding a node's row
+	 * @param node the node
+	 * @return the segment or null if the node has no links in this version
+	 */
+	private Segment getSegment(Node node)
+	{
+		int id = node.getId();
+
+		if (id <= 0 || id > _lastId)
+			return null;
+
+		Segment segment = _segments[id >> SEGMENT_BITS];
+
+		if (segment == null || (id & (SEGMENT_SIZE - 1)) >= segment._rows)
+			return null;
+
+		return segment;
+	}
+
+	/**
+	 * orders the links of a node by relation type id. the original position is part of the sort key so links keep their newest first order within each relation type.
+	 * @param types relation type ids of the links in newest first order
+	 * @return the newest first position of the link at each sorted position
+	 */
+	private static int[] sortByType(int[] types)
+	{
+		long[] keys = new long[types.length];
+
+		for (int i = 0; i < types.length; i++)
+		{
+			keys[i] = ((long)types[i] << 32) | i;
+		}
+
+		Arrays.sort(keys);
+
+		int[] order = new int[types.length];
+
+		for (int i = 0; i < types.length; i++)
+		{
+			order[i] = (int)keys[i];
+		}
+
+		return order;
+	}
+
+	/**
+	 * lists the relation type ids of statements
+	 * @param statements the statements
+	 * @return the ids
+	 */
+	private static int[] getTypes(PlausibleStatement[] statements)
+	{
+		int[] types = new int[statements.length];
+
+		for (int i = 0; i < statements.length; i++)
+		{
+			types[i] = statements[i].relationType.getId();
+		}
+
+		return types;
+	}
+
+	/**
+	 * finds the first link of a node not having a smaller relation type id than a relation type
+	 * @param types relation type ids of the links
+	 * @param from the node's first link
+	 * @param to the node's end of links (exclusive)
+	 * @param relationType the relation type
+	 * @return the position
+	 */
+	private static int lowerBound(int[] types, int from, int to, Node relationType)
+	{
+		int type = relationType.getId();
+
+		while (from < to)
+		{
+			int middle = (from + to) >>> 1;
+
+			if (types[middle] < type)
+				from = middle + 1;
+			else
+				to = middle;
+		}
+
+		return from;
+	}
+
+	/**
+	 * finds the first link of a node having a larger relation type id than a relation type
+	 * @param types relation type ids of the links
+	 * @param from the node's first link
+	 * @param to the node's end of links (exclusive)
+	 * @param relationType the relation type
+	 * @return the position
+	 */
+	private static int upperBound(int[] types, int from, int to, Node relationType)
+	{
+		int type = relationType.getId();
+
+		while (from < to)
+		{
+			int middle = (from + to) >>> 1;
+
+			if (types[middle] <= type)
+				from = middle + 1;
+			else
+				to = middle;
+		}
+
+		return from;
+	}
+}
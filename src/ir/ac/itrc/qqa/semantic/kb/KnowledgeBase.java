@@ -24,10 +24,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.HashMap;
 import java.util.Set;
@@ -35,6 +34,16 @@ import java.util.Vector;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
@@ -61,10 +70,35 @@ public class KnowledgeBase
 	private ArrayList<String> _loadedKbs = new ArrayList<String>(); 
 	
 	/** Keeps track of all nodes in the semantic net.We can look up a node in the semantic net using its name as the key in the NodesHash hash table */
-	private Hashtable<String, Node> _nodes;
+	private ConcurrentHashMap<String, Node> _nodes;
 	
-	/** Keeps track of all nodes in the semantic net by their unique IDs */
-	private Hashtable<Integer, Node> _nodeIds;
+	/** Keeps the nodes whose (lowercased) names are changed by normalization under their normalized names, so <code>findConcept</code> finds them with normalized names too. Nodes whose names are already normalized (most nodes) are found in _nodes. */
+	private Hashtable<String, Node> _nodesNormalized;
+	
+	/** Sorted index of concept names answering prefix and exact searches. It is built on demand and dropped whenever nodes change. */
+	private volatile NameIndex _nameIndex = null;
+	
+	/** Trigram and word index of concept names answering substring and whole word searches. It is built on demand and dropped whenever nodes change. */
+	private volatile SubstringIndex<Node> _substringIndex = null;
+	
+	/** Trigram indexes of the tokenized and lemmatized name variations answering relaxed searches. They are built on demand and dropped whenever nodes change. */
+	private volatile SubstringIndex<Collection<Node>> _tokenizedIndex = null;
+	private volatile SubstringIndex<Collection<Node>> _lemmatizedIndex = null;
+	
+	/** Characters which make a search snippet a regular expression rather than a literal */
+	private static final String REGEX_CHARACTERS = "\\^$.|?*+()[]{}";
+	
+	/** Allocates the dense ids of nodes (concepts and statements) and finds nodes by their ids */
+	private NodeDirectory _directory = new NodeDirectory();
+	
+	/** Indexes statements by their (argument, relation type, referent) triples for constant time existence checks */
+	private TripleIndex _triples = new TripleIndex();
+	
+	/** the out-links of the nodes having at least <code>Node.RELATION_TYPE_INDEX_THRESHOLD</code> out-links grouped by relation type (see <code>Node.buildRelationTypeIndex()</code>) */
+	private ConcurrentHashMap<Node, HashMap<Node, ArrayList<OutLinkElement>>> _relationTypeIndexes = new ConcurrentHashMap<Node, HashMap<Node, ArrayList<OutLinkElement>>>();
+	
+	/** Keeps the statements of each relation type partitioned by their conditional type */
+	private StatementRegistry _statements = new StatementRegistry();
 	
 	/** It is used to assign permanent unique IDs (i.e. do not change over different program runs) to concept names */
 	private Hashtable<String, Integer> _nodePermanentIds;
@@ -72,8 +106,6 @@ public class KnowledgeBase
 	private String _permanentIdFilename = null;
 	/** Serialization for _nodePermanentIds */
 	private BufferedWriter _permanentIdFile = null;
-	/** keeps track of the last id assigned to nodes **/
-	private static int _lastIdAssigned = 0;
 	
 	/** it keeps track of the node's name variations after normalization; گل --> گِل و گُل  */
 	private Multimap<String, Node> _nodesReversedTokenized;
@@ -81,13 +113,22 @@ public class KnowledgeBase
 	/** it keeps track of the node's name variations after lemmatization; گل --> گلها و گلهای  */
 	private Multimap<String, Node> _nodesReversedLemmatized;
 	
+	/** Number of lines parsed together by a parser thread in pipelined imports */
+	private static final int IMPORT_BATCH_SIZE = 4096;
+	
+	/** Delimiter of fields in KB dumps */
+	private static final String IMPORT_DELIMITER = "\t";
+	
+	/** Delimiters of statement references, e.g. *(12) */
+	private static final Pattern IMPORT_REFERENCE_DELIMITERS = Pattern.compile("\\*|\\(|\\)");
+	
 	/** Initial capacity of the KB used to initialize the hashtables */
 	public static final int NODES_HASH_SIZE = 1000003;
 	
-	// The below hashtables are just added to compute statistical data. 
-	private Hashtable<String, Node> _descriptorTypes;
-	private Hashtable<String, Node> _arguments;
-	private Hashtable<String, Node> _referents;
+	// The below maps are just added to compute statistical data. They are keyed by node ids. 
+	private IdMap<Node> _descriptorTypes;
+	private IdMap<Node> _arguments;
+	private IdMap<Node> _referents;
 
 	/** All nodes added in STATIC mode (default) stand memory purges. On the other hand nodes added in DYNAMIC mode will be erased in next call to `PurgeDynamicKnowledge` function. */ 
 	private KbOperationMode _operationMode = KbOperationMode.STATIC;
@@ -238,6 +279,27 @@ public class KnowledgeBase
 	/** if true then no change can be make to the kb, to support concurrency it must be set to make data read-only */
 	private boolean _locked = false;
 	
+	/** counts the times the kb is locked or unlocked, so what is computed on a locked kb can tell whether the kb may have changed since */
+	private volatile int _lockEpoch = 0;
+	
+	/** the CSR snapshot of the kb graph built by <code>freeze()</code>, null when the kb is not frozen */
+	private FrozenAdjacency _frozenAdjacency = null;
+	
+	/** the ISA/INSTANCE reachability index built by <code>lock()</code>, null when the kb is not locked */
+	private HierarchyIndex _hierarchyIndex = null;
+	
+	/** the latest version of the kb graph published by <code>publishVersion()</code>, null if none is published */
+	private volatile KbVersion _version = null;
+	
+	/** if true then <code>addConcept</code> and <code>addRelation</code> may be called from several threads at once, see <code>setConcurrentMutation</code> */
+	private volatile boolean _concurrentMutation = false;
+	
+	/** Number of locks guarding the links of nodes in concurrent mutation mode. Nodes are mapped to them by their ids. */
+	private static final int LOCK_STRIPES = 256;
+	
+	/** the locks guarding the links of nodes in concurrent mutation mode */
+	private ReentrantLock[] _stripes;
+	
 	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
 
 	/**
@@ -245,17 +307,24 @@ public class KnowledgeBase
 	 */
 	public KnowledgeBase()
 	{
-		_nodes = new Hashtable<String, Node>(NODES_HASH_SIZE);
-		_nodeIds = new Hashtable<Integer, Node>(NODES_HASH_SIZE);
+		_nodes = new ConcurrentHashMap<String, Node>(NODES_HASH_SIZE);
+		_nodesNormalized = new Hashtable<String, Node>();
 		
 		_nodePermanentIds = new Hashtable<String, Integer>(NODES_HASH_SIZE);
 
-		_descriptorTypes = new Hashtable<String, Node>(1000);		
-		_arguments = new Hashtable<String, Node>(NODES_HASH_SIZE/3);
-		_referents = new Hashtable<String, Node>(NODES_HASH_SIZE/3);
+		_descriptorTypes = new IdMap<Node>(1000);		
+		_arguments = new IdMap<Node>(NODES_HASH_SIZE/3);
+		_referents = new IdMap<Node>(NODES_HASH_SIZE/3);
 		
 		_nodesReversedTokenized = ArrayListMultimap.create(NODES_HASH_SIZE, 2);
 		_nodesReversedLemmatized = ArrayListMultimap.create(NODES_HASH_SIZE, 2);
+		
+		_stripes = new ReentrantLock[LOCK_STRIPES];
+		
+		for (int i = 0; i < LOCK_STRIPES; i++)
+		{
+			_stripes[i] = new ReentrantLock();
+		}
 
 		loadCorePlausibleRelationTypes();
 	}
@@ -264,17 +333,190 @@ public class KnowledgeBase
 	/**
 	 * Locks the kb. Afterwards no change can be make to the kb. 
 	 * It is used to support concurrency when the kb is shared among threads. 
+	 * The ISA/INSTANCE hierarchy is indexed so hierarchy lookups don't walk the graph (see <code>HierarchyIndex</code>).
 	 */
 	public void lock()
 	{
+		if (_locked)
+			return;
+		
+		// building relation type indexes up front, so concurrent readers never build them lazily
+		for (Node node: _nodes.values())
+		{
+			node.buildRelationTypeIndex();
+		}
+		for (PlausibleStatement ps: _statements.findAll())
+		{
+			ps.buildRelationTypeIndex();
+		}
+		
+		_hierarchyIndex = new HierarchyIndex(_directory);
+		
 		_locked = true;
+		_lockEpoch++;
+	}
+	/**
+	 * Getter for <code>_locked</code>
+	 * @return
+	 */
+	public boolean isLocked()
+	{
+		return _locked;
 	}
+	
 	/**
 	 * Unlocks the kb making it once more available for changes.
 	 */
 	public void unluck()
 	{
+		thaw();
+		
+		_hierarchyIndex = null;
+		
 		_locked = false;
+		_lockEpoch++;
+	}
+	/**
+	 * Getter for <code>_lockEpoch</code>
+	 * @return the number of times the kb has been locked or unlocked
+	 */
+	public int getLockEpoch()
+	{
+		return _lockEpoch;
+	}
+	/**
+	 * Getter for <code>_hierarchyIndex</code>
+	 * @return the ISA/INSTANCE reachability index or null if the kb is not locked
+	 */
+	public HierarchyIndex getHierarchyIndex()
+	{
+		return _hierarchyIndex;
+	}
+	
+	/**
+	 * Locks the kb and compiles the adjacency of all nodes into a compact CSR snapshot.
+	 * While frozen, node lookups read the snapshot arrays instead of chasing link-list elements. 
+	 */
+	public void freeze()
+	{
+		lock();
+		
+		if (_frozenAdjacency != null)
+			return;
+		
+		_frozenAdjacency = new FrozenAdjacency(_directory);
+		
+		Common.log("kb frozen: " + _frozenAdjacency.getNodesNum() + " nodes, " + _frozenAdjacency.getLinksNum() + " links");
+	}
+	/**
+	 * Drops the CSR snapshot so nodes return to their link-list adjacency. The kb remains locked.
+	 */
+	public void thaw()
+	{
+		if (_frozenAdjacency == null)
+			return;
+		
+		_frozenAdjacency = null;
+	}
+	/**
+	 * Determines whether the kb is frozen
+	 * @return true if the kb has a CSR snapshot
+	 */
+	public boolean isFrozen()
+	{
+		return _frozenAdjacency != null;
+	}
+	/**
+	 * Getter for <code>_frozenAdjacency</code>
+	 * @return the CSR snapshot or null if the kb is not frozen
+	 */
+	protected FrozenAdjacency getFrozenAdjacency()
+	{
+		return _frozenAdjacency;
+	}
+	/**
+	 * Getter for <code>_triples</code>
+	 * @return
+	 */
+	protected TripleIndex getTripleIndex()
+	{
+		return _triples;
+	}
+	
+	/**
+	 * Finds the relation type index of a node
+	 * @param node the node
+	 * @return the node's out-links grouped by relation type or null if it has none
+	 */
+	protected HashMap<Node, ArrayList<OutLinkElement>> getRelationTypeIndex(Node node)
+	{
+		return _relationTypeIndexes.get(node);
+	}
+	/**
+	 * Keeps the relation type index of a node unless another thread has kept one meanwhile
+	 * @param node the node
+	 * @param index the node's out-links grouped by relation type
+	 * @return the index kept for the node
+	 */
+	protected HashMap<Node, ArrayList<OutLinkElement>> putRelationTypeIndex(Node node, HashMap<Node, ArrayList<OutLinkElement>> index)
+	{
+		HashMap<Node, ArrayList<OutLinkElement>> already = _relationTypeIndexes.putIfAbsent(node, index);
+		
+		return (already == null) ? index : already;
+	}
+	/**
+	 * Drops the relation type index of a node
+	 * @param node the node
+	 */
+	protected void removeRelationTypeIndex(Node node)
+	{
+		_relationTypeIndexes.remove(node);
+	}
+	
+	/**
+	 * Publishes the current state of the kb graph as a new version. Questions started afterwards read the new version
+	 * while questions in progress keep reading the version they started with (see <code>KbVersion</code>), so the kb can be changed
+	 * and republished without stopping the readers. Only the segments of the nodes changed since the previous version are rebuilt.
+	 * It must be called by the writer when no change is in progress. Deletions (<code>deleteConcept</code>, purges) destroy statements in place,
+	 * so they must not be made while questions may be reading older versions.
+	 * @return the new version
+	 */
+	public synchronized KbVersion publishVersion()
+	{
+		IdMap<Node> changed = _triples.takeChangedNodes();
+		
+		_version = new KbVersion(_version, _directory, _triples, changed);
+		
+		return _version;
+	}
+	/**
+	 * Getter for <code>_version</code>
+	 * @return the latest published version or null
+	 */
+	public KbVersion getVersion()
+	{
+		return _version;
+	}
+	/**
+	 * Enables or disables the concurrent mutation mode. In this mode several threads (e.g. ETL workers) can build the kb in parallel
+	 * by calling <code>addConcept</code> and <code>addRelation</code>: the name map resolves racing additions of a concept 
+	 * and the links of nodes are guarded by locks striped on node ids. Other changes (deletions, renames, purges, imports' settings) 
+	 * must still be made by a single thread. The mode adds some locking overhead so it should be disabled when the ingestion ends.
+	 * @param concurrentMutation true/false
+	 */
+	public void setConcurrentMutation(boolean concurrentMutation)
+	{
+		checkLock();
+		
+		_concurrentMutation = concurrentMutation;
+	}
+	/**
+	 * Getter for <code>_concurrentMutation</code>
+	 * @return
+	 */
+	public boolean isConcurrentMutation()
+	{
+		return _concurrentMutation;
 	}
 	/**
 	 * Checks the locking state. If locked raises an error.
@@ -441,29 +683,26 @@ public class KnowledgeBase
 		// When importing KBs search name may be different from actual name, e.g. f:test vs. test
 		searchName = Node.extractProspectiveName(name);		
 		
-		if (isInMemory(searchName)) 
+		Node already = _nodes.get(searchName.toLowerCase());
+		
+		if (already != null) 
 		{
-			
-			Node already = (Node)_nodes.get(searchName.toLowerCase());
-						
-			System.out.println("isInMemory: " + searchName);
-						
 			if (_overrideSourceTypeOnAddition && source != SourceType.UNKNOWN)
 				already.setSourceType(source);
 			
 			return already;
 		}
-		System.out.println("is Not InMemory: " + searchName);
+		
 		// Tashdid _ّ__ character is a special case. many concepts names in Farsi and Arabic can be written with or without it.
 		// so we do not add a new concept when the Tashdid-less version already exists in the kb.
 		// dictionary entries (having '#' in their names) are excempt from this extra check.
 		if (searchName.contains("ّ") && !searchName.contains("#"))
 		{
-			String miniTrimmed = searchName.replace("ّ", "");
+			already = _nodes.get(searchName.replace("ّ", "").toLowerCase());
 			
-			if (isInMemory(miniTrimmed)) 
+			if (already != null) 
 			{
-				return (Node)_nodes.get(miniTrimmed.toLowerCase());
+				return already;
 			}
 		}
 		
@@ -485,10 +724,8 @@ public class KnowledgeBase
 			node.setDynamic();
 		}
 		
-		_nodes.put(node.getName().toLowerCase(), node);
-		_nodeIds.put(node.getId(), node);
-				
-		return node;
+		// another thread may have added the same concept meanwhile (concurrent mutation mode), then its node is returned
+		return putNode(node);
 	}
 	
 	/**
@@ -504,18 +741,61 @@ public class KnowledgeBase
 			return null;
 		}
 		
-		Node node = (Node)_nodes.get(name.toLowerCase());
+		String key = name.toLowerCase();
+		
+		Node node = _nodes.get(key);
 		
 		if (node != null)
 		{
 			return node;
 		}
 		
-		name = Common.normalizeNotTokenized(name);
+		// the normalizer returns the key itself when it is already normalized which saves the second lookup
+		String normalizedKey = Common.normalizeNotTokenized(key);
+		
+		if (normalizedKey != key)
+		{
+			node = _nodes.get(normalizedKey);
+			
+			if (node != null)
+			{
+				return node;
+			}
+		}
 		
+		return _nodesNormalized.get(normalizedKey);
+	}
+	
+	/**
+	 * Finds a node by its exact name (no normalization is done)
+	 * @param name The node's name
+	 * @return A reference to the found node or null
+	 */
+	protected Node findConceptByKey(String name)
+	{
 		return (Node)_nodes.get(name.toLowerCase());
 	}
 	
+	/**
+	 * Adds a new node whose name has already been processed (e.g. loaded from a binary image).
+	 * Unlike <code>addConcept</code> neither the name is trimmed nor it is checked against existing nodes.
+	 * @param name The new node's name
+	 * @return the new node
+	 */
+	protected Node addLoadedConcept(String name)
+	{
+		Node node = new Node(name, getNextFreeNodeId(name));
+		
+		if (_operationMode == KbOperationMode.DYNAMIC)
+		{
+			node.setDynamic();
+		}
+		
+		putNode(node);
+		
+		return node;
+	}
+	
 	/**
 	 * Finds a concept by its unique id
 	 * @param id node's id
@@ -523,7 +803,7 @@ public class KnowledgeBase
 	 */
 	public Node findConceptById(int id)
 	{
-		return (Node)_nodeIds.get(id);
+		return _directory.get(id);
 	}
 	
 
@@ -575,31 +855,83 @@ public class KnowledgeBase
 	{
 		checkLock();
 		
-		PlausibleStatement ps;
-
 		if (argument == null || referent == null || relation == null)
 		{
 			// You shouldn't be here! 
 			MyError.exit("SourceType, Destination or Relation conceptType is null!");
 		}
-		if (argument.isLex() || referent.isLex() || relation.isLex())
+		
+		if (!_concurrentMutation)
+		{
+			checkNotLexical(argument, referent, relation);
+			
+			return addRelationUnguarded(argument, referent, relation, Parameters, IsBidirectional, StatType, source);
+		}
+		
+		// the links of the relation type are only read, so its lock is not held while the relation is added.
+		// otherwise all threads adding relations of a common type would wait for each other.
+		ReentrantLock relationStripe = _stripes[getStripe(relation)];
+		
+		relationStripe.lock();
+		
+		try
+		{
+			checkNotLexical(relation);
+		}
+		finally
+		{
+			relationStripe.unlock();
+		}
+		
+		// the argument and referent are the nodes whose links are changed
+		int[] stripes = lockStripes(argument, referent);
+		
+		try
+		{
+			checkNotLexical(argument, referent);
+			
+			return addRelationUnguarded(argument, referent, relation, Parameters, IsBidirectional, StatType, source);
+		}
+		finally
+		{
+			unlockStripes(stripes);
+		}
+	}
+	
+	/**
+	 * Checks that none of the nodes of a relation is a lexical node. If one is raises an error.
+	 * @param nodes the nodes
+	 */
+	private void checkNotLexical(Node... nodes)
+	{
+		for (Node node: nodes)
 		{
-			MyError.exit("SourceType, Destination or Relation conceptType can't be a Lexical node!");
+			if (node.isLex())
+				MyError.exit("SourceType, Destination or Relation conceptType can't be a Lexical node!");
 		}
+	}
+	
+	/**
+	 * Adds a new relation to the KB without taking the node locks of concurrent mutation mode, see <code>addRelation</code>
+	 * @return the newly created statement
+	 */
+	private PlausibleStatement addRelationUnguarded(Node argument, Node referent, Node relation, CertaintyParameters Parameters, boolean IsBidirectional, ConditionalType StatType, SourceType source)
+	{
+		PlausibleStatement ps;
 
 		// Checks if the relation already exists in the KB. 
 		// If it is the case, it returns without re-adding the relation.
 		ps = argument.findRelationToTarget(relation, referent);
 		if (ps != null)
 		{
-			ps.updateStatementProperties(Parameters, StatType, source);
+			updateStatementProperties(ps, Parameters, StatType, source);
 			
 			if (IsBidirectional || relation == HPR_INVERSE || relation == HPR_SIM || relation == HPR_DIS)
 			{
 				PlausibleStatement inversePs = referent.findRelationToTarget(relation, argument);
 				
 				if (inversePs != null)
-					inversePs.updateStatementProperties(Parameters, StatType, source);
+					updateStatementProperties(inversePs, Parameters, StatType, source);
 			}
 			
 			return ps;
@@ -607,50 +939,79 @@ public class KnowledgeBase
 				
 		ps = new PlausibleStatement(relation, Parameters, argument, referent, StatType);
 		
-		_nodeIds.put(ps.getId(), ps);
+		bindStatement(ps);
+
+		// Is it bidirectional? the inverse relation links the same nodes so it is added under the same locks.
+		if (IsBidirectional || relation == HPR_INVERSE || relation == HPR_SIM || relation == HPR_DIS)
+		{
+			addRelationUnguarded(referent, argument, relation, Parameters, false, StatType, source);
+		}
+		
+		ps.setSourceType(source);
 
+		return ps;
+	}
+	
+	/**
+	 * Updates the properties of an existing statement and moves it in the statement registry if its conditional type changes
+	 * @param ps the statement
+	 * @param parameters certainty parameters
+	 * @param statType new conditional type
+	 * @param source source of the statement
+	 */
+	private void updateStatementProperties(PlausibleStatement ps, CertaintyParameters parameters, ConditionalType statType, SourceType source)
+	{
+		ConditionalType oldType = ps.conditionalType;
+		
+		ps.updateStatementProperties(parameters, statType, source);
+		
+		_statements.reclassify(ps, oldType);
+	}
+	
+	/**
+	 * Links a newly created statement to its argument and referent and registers it in the KB
+	 * @param ps the new statement
+	 */
+	protected void bindStatement(PlausibleStatement ps)
+	{
+		Node argument = ps.argument;
+		Node referent = ps.referent;
+		Node relation = ps.relationType;
+		
+		// statements are not kept in _nodes: their names are composed on demand and they are reached through the statement registry.
+		// they get an id in the kb's id space before linking as the registry and the triple index use ids. 
+		ps.setId(_directory.add(ps));
+		ps.setKnowledgeBase(this);
+		
 		argument.addOutLink(referent, ps);
 		referent.addInLink(argument, ps);
 		
+		_statements.register(ps);
+		
 		// flagging gloss and example nodes
 		if (relation == KnowledgeBase.HPR_GLOSS && referent.getConceptType() == ConceptType.CONCEPT_OTHER)
+		{
 			referent.setConceptType(ConceptType.CONCEPT_GLOSS);
+			dropNameIndexes();
+		}
 		else if (relation == KnowledgeBase.HPR_EXAMPLE && referent.getConceptType() == ConceptType.CONCEPT_OTHER)
+		{
 			referent.setConceptType(ConceptType.CONCEPT_EXAMPLE);
+			dropNameIndexes();
+		}
 
 		// Adding Des, Arg and Ref to appropriate tracking hash tables:
-		if (!_descriptorTypes.containsKey(relation.getName().toLowerCase()))
-		{
-			_descriptorTypes.put(relation.getName().toLowerCase(), relation);
-		}
-		if (!_arguments.containsKey(argument.getName().toLowerCase()))
-		{
-			_arguments.put(argument.getName().toLowerCase(), argument);
-		}
-		if (!_referents.containsKey(referent.getName().toLowerCase()))
+		synchronized (_descriptorTypes)
 		{
-			_referents.put(referent.getName().toLowerCase(), referent);
+			_descriptorTypes.put(relation, relation);
+			_arguments.put(argument, argument);
+			_referents.put(referent, referent);
 		}
 		
-		if (!isInMemory(ps.getName()))
-		{
-			if (_operationMode == KbOperationMode.DYNAMIC)
-			{
-				ps.setDynamic();
-			}
-			
-			_nodes.put(ps.getName().toLowerCase(), ps);
-		}		
-
-		// Is it bidirectional?
-		if (IsBidirectional || relation == HPR_INVERSE || relation == HPR_SIM || relation == HPR_DIS)
+		if (_operationMode == KbOperationMode.DYNAMIC)
 		{
-			addRelation(referent, argument, relation, Parameters, false, StatType, source);
+			ps.setDynamic();
 		}
-		
-		ps.setSourceType(source);
-
-		return ps;
 	}
 	
 	/**
@@ -689,70 +1050,169 @@ public class KnowledgeBase
 	}
 
 	/**
-	 * Checks if a concept exists in the KB.
-	 * @param ConceptName name to be searched for
-	 * @return true if the node was found; false otherwise
+	 * Puts a new node in the name indexes and the id directory
+	 * @param node the node
+	 * @return the node or, in concurrent mutation mode, the node another thread has put under the same name meanwhile
 	 */
-	private boolean isInMemory(String ConceptName)
+	private Node putNode(Node node)
 	{
-		if (_nodes.containsKey(ConceptName.toLowerCase()))
+		String key = node.getName().toLowerCase();
+		
+		// the node is made complete before other threads can find it by its name
+		node.setKnowledgeBase(this);
+		
+		_directory.put(node.getId(), node);
+		
+		if (_concurrentMutation)
 		{
-			return true;
+			Node already = _nodes.putIfAbsent(key, node);
+			
+			if (already != null)
+			{
+				_directory.remove(node.getId());
+				
+				return already;
+			}
 		}
-
-		return false;
-	}
-	
-	/**
-	 * This methods is called when the name of a node is changed to adjusts dependent hashes accordingly.
-	 * 
-	 * @param node new node with updated name
-	 * @param OldName old name of the node
-	 * @param trimName Specifies whether the node's name must be trimmed before adding the name 
-	 */
-	public void changeConceptName(Node node, String newName, boolean trimName)
-	{
-		checkLock();
-		
-		if (findConcept(newName) != null)
+		else
 		{
-			MyError.exit("Chaning the concept name from `" + node.getName() + "` to `" + newName + "` failed! Duplicate name!");
+			_nodes.put(key, node);
 		}
 		
-		String OldName = node.getName();
+		dropNameIndexes();
 		
-		// overriding trimming criteria
-		if (_loadingMode == KnowledgebaseLoadMode.IMPORT)
+		String normalizedKey = Common.normalizeNotTokenized(key);
+		
+		if (normalizedKey != key)
 		{
-			trimName = false;
+			synchronized (_nodesNormalized)
+			{
+				if (!_nodesNormalized.containsKey(normalizedKey))
+					_nodesNormalized.put(normalizedKey, node);
+			}
 		}
 		
-		node.changeName(newName, trimName);
-		
-		if (isInMemory(OldName))
+		return node;
+	}
+	
+	/**
+	 * Maps a node to the stripe of the locks guarding its links
+	 * @param node the node
+	 * @return the stripe
+	 */
+	private static int getStripe(Node node)
+	{
+		return node.getId() & (LOCK_STRIPES - 1);
+	}
+	
+	/**
+	 * Locks the stripes of the argument and referent of a relation in ascending order (so threads locking overlapping stripes never deadlock)
+	 * @param argument the argument
+	 * @param referent the referent
+	 * @return the locked stripes, to be passed to <code>unlockStripes</code>
+	 */
+	private int[] lockStripes(Node argument, Node referent)
+	{
+		int[] stripes = {getStripe(argument), getStripe(referent)};
+		
+		Arrays.sort(stripes);
+		
+		for (int i = 0; i < stripes.length; i++)
 		{
-			_nodes.remove(OldName.toLowerCase());
-			_nodes.put(node.getName().toLowerCase(), node);
+			if (i == 0 || stripes[i] != stripes[i - 1])
+				_stripes[stripes[i]].lock();
 		}
-		else
+		
+		return stripes;
+	}
+	
+	/**
+	 * Unlocks the stripes locked by <code>lockStripes</code>
+	 * @param stripes the locked stripes
+	 */
+	private void unlockStripes(int[] stripes)
+	{
+		for (int i = stripes.length - 1; i >= 0; i--)
 		{
-			MyError.exit("The requested node doesn't exist in the KB.");
+			if (i == 0 || stripes[i] != stripes[i - 1])
+				_stripes[stripes[i]].unlock();
+		}
+	}
+	
+	/**
+	 * Removes a node from the name indexes
+	 * @param node the node
+	 * @param name the name the node is indexed under
+	 */
+	private void removeNodeName(Node node, String name)
+	{
+		String key = name.toLowerCase();
+		
+		_nodes.remove(key);
+		
+		dropNameIndexes();
+		
+		String normalizedKey = Common.normalizeNotTokenized(key);
+		
+		if (normalizedKey != key)
+		{
+			synchronized (_nodesNormalized)
+			{
+				if (_nodesNormalized.get(normalizedKey) == node)
+					_nodesNormalized.remove(normalizedKey);
+			}
+		}
+	}
+	
+	/**
+	 * Checks if a concept exists in the KB.
+	 * @param ConceptName name to be searched for
+	 * @return true if the node was found; false otherwise
+	 */
+	private boolean isInMemory(String ConceptName)
+	{
+		if (_nodes.containsKey(ConceptName.toLowerCase()))
+		{
+			return true;
+		}
+
+		return false;
+	}
+	
+	/**
+	 * This methods is called when the name of a node is changed to adjusts dependent hashes accordingly.
+	 * 
+	 * @param node new node with updated name
+	 * @param OldName old name of the node
+	 * @param trimName Specifies whether the node's name must be trimmed before adding the name 
+	 */
+	public void changeConceptName(Node node, String newName, boolean trimName)
+	{
+		checkLock();
+		
+		if (findConcept(newName) != null)
+		{
+			MyError.exit("Chaning the concept name from `" + node.getName() + "` to `" + newName + "` failed! Duplicate name!");
 		}
 		
-		if (_descriptorTypes.containsKey(OldName.toLowerCase()))
+		String OldName = node.getName();
+		
+		// overriding trimming criteria
+		if (_loadingMode == KnowledgebaseLoadMode.IMPORT)
 		{
-			_descriptorTypes.remove(OldName.toLowerCase());
-			_descriptorTypes.put(node.getName().toLowerCase(), node);
+			trimName = false;
 		}
-		if (_arguments.containsKey(OldName.toLowerCase()))
+		
+		node.changeName(newName, trimName);
+		
+		if (isInMemory(OldName))
 		{
-			_arguments.remove(OldName.toLowerCase());
-			_arguments.put(node.getName().toLowerCase(), node);
+			removeNodeName(node, OldName);
+			putNode(node);
 		}
-		if (_referents.containsKey(OldName.toLowerCase()))
+		else
 		{
-			_referents.remove(OldName.toLowerCase());
-			_referents.put(node.getName().toLowerCase(), node);
+			MyError.exit("The requested node doesn't exist in the KB.");
 		}
 	}
 	
@@ -800,6 +1260,25 @@ public class KnowledgeBase
 	 */
 	public Node findCommonParent(Node Concept1, Node Concept2, int MaxSearchDepth)
 	{
+		HierarchyIndex index = _hierarchyIndex;
+		
+		if (index != null && index.covers(Concept1) && index.covers(Concept2))
+		{
+			// the same as walking up from Concept2 level by level
+			HashSet<Node> parents = new HashSet<Node>(index.findAncestors(Concept1, MaxSearchDepth, false));
+			
+			if (parents.contains(Concept2))
+				return Concept2;
+			
+			for (Node parent: index.findAncestors(Concept2, Integer.MAX_VALUE, false))
+			{
+				if (parents.contains(parent))
+					return parent;
+			}
+			
+			return null;
+		}
+		
 		ArrayList<Node> Concept1Parents = Concept1.findAllParents(MaxSearchDepth);
 
 		Hashtable<String, Node> Concept1ParentsHash = new Hashtable<String, Node>(Concept1Parents.size());
@@ -888,12 +1367,11 @@ public class KnowledgeBase
 		printToBuffer(buffer, "---------- روابط ----------");
 		printToBuffer(buffer);
 		
-		//TODO: instead of composing the relation name (prone to error) provide an iterator here
-		String statName = "*" + conceptName + " (";
+		ArrayList<PlausibleStatement> statements = findRelationInstances(node);
 
 		counter = 1;
 		
-		PlausibleStatement statement = (PlausibleStatement)findConcept(statName + counter.toString() + ")");
+		PlausibleStatement statement = statements.isEmpty() ? null : statements.get(0);
 
 		while (statement != null && counter < iMaxRelations)
 		{	
@@ -905,7 +1383,7 @@ public class KnowledgeBase
 			printToBuffer(buffer, out);
 			
 			counter++;
-			statement = (PlausibleStatement)findConcept(statName + counter.toString() + ")");
+			statement = (counter <= statements.size()) ? statements.get(counter - 1) : null;
 		}
 		
 		if (counter == iMaxRelations)
@@ -979,7 +1457,7 @@ public class KnowledgeBase
 					}
 				}
 
-				printToBuffer(buffer, LexNode.getName() +"\t(" + LexNode.WNTaggedCount + ")\tSYN\t" + SynsetNodeName + "\t" + GlossNodeName + " : " + ExampleNodeName);
+				printToBuffer(buffer, LexNode.getName() +"\t(" + LexNode.getWNTaggedCount() + ")\tSYN\t" + SynsetNodeName + "\t" + GlossNodeName + " : " + ExampleNodeName);
 				
 				counter++;
 				LexNode = (Node)findConcept(SenseName + counter.toString());
@@ -1075,6 +1553,60 @@ public class KnowledgeBase
 		return exported;
 	}
 	
+	/**
+	 * Exports the KB to a binary image which can be loaded much faster than text dumps using <code>loadBinary</code>
+	 * 
+	 * @param fileName The destination file for export
+	 * @return the number of relations written
+	 */
+	public int exportBinary(String fileName)
+	{
+		int exported = 0;
+		
+		try
+		{
+			exported = BinarySnapshot.write(_nodes.values(), fileName);
+		}
+		catch (IOException e)
+		{
+			MyError.exit("Error writing to `" + fileName + "`!" + "\r\n" + e.getMessage());
+		}
+		
+		return exported;
+	}
+	
+	/**
+	 * Loads a binary image created by <code>exportBinary</code> into memory.
+	 * The image is memory-mapped and its statements are linked directly, so no text parsing or duplicate checks are involved
+	 * except for concepts which already have relations in the KB.
+	 * 
+	 * @param fileName The image file
+	 * @return The number of relations loaded
+	 */
+	public int loadBinary(String fileName)
+	{
+		checkLock();
+		
+		Common.log("loading knowledgebase image '" + fileName + "' ... ");
+		
+		int loaded = 0;
+		
+		try
+		{
+			loaded = BinarySnapshot.read(this, fileName);
+		}
+		catch (IOException e)
+		{
+			MyError.exit("Error reading `" + fileName + "`!" + "\r\n" + e.getMessage());
+		}
+		
+		addLoadedKb("Binary Image: " + fileName);
+		
+		Common.log("loaded relations: " + loaded);
+		
+		return loaded;
+	}
+	
 	/**
 	 * Writes header lines while exporting the KB.
 	 * Headers lines provide help and copyright notice.
@@ -1110,23 +1642,7 @@ public class KnowledgeBase
 	 */
 	public String getStatistics()
 	{
-		Integer relations = 0;
-		
-		Set<Entry<String, Node>> set = _nodes.entrySet();
-		Iterator<Entry<String, Node>> iterator = set.iterator();
-		
-		Entry<String, Node> entry;
-		String name;
-		
-		while (iterator.hasNext()) 
-		{                        
-			entry = (Entry<String, Node>)iterator.next();
-			
-			name = entry.getKey();
-			
-			if (name.startsWith("*"))
-				relations++;
-		}
+		Integer relations = _statements.size();
 		
 		StringBuilder buffer = new StringBuilder();
 
@@ -1153,6 +1669,7 @@ public class KnowledgeBase
 	
 	/**
 	 * Removes all DYNAMIC data from KB. See <code>SetOperationMode</code> for help. 
+	 * It scans the whole kb; per-request scratch knowledge is cheaper to keep in a <code>KbOverlay</code>.
 	 * @return The number of nodes removed
 	 */
 	public int purgeDynamicKnowledge()
@@ -1163,32 +1680,39 @@ public class KnowledgeBase
 		
 		Node current;
 		String nodeName;
-		PlausibleStatement ps;
 		
 		Enumeration<Node> nodesEnum = _nodes.elements();
 		while (nodesEnum.hasMoreElements())
 		{
 			current = nodesEnum.nextElement();
-			nodeName = current.getName().toLowerCase();
+			nodeName = current.getName();
 			
 			if (current.isDynamic())
 			{
-				_nodes.remove(nodeName);
+				removeNodeName(current, nodeName);
+				_directory.remove(current.getId());
 				
-				if (nodeName.startsWith("*"))
-				{					
-					ps = (PlausibleStatement)current;
-					
-					if (ps.relationType.removeInstance() == 0)
-					{
-						// the node we're going to remove is a relation and it is the last instance of its relation conceptType. 
-						// so we remove the relation conceptType from the DescriptorTypeHash too:
-						_descriptorTypes.remove(ps.relationType.getName().toLowerCase().toString());
-					}
-					
-					ps.unbindRelations();
+				deleted++;
+			}
+		}
+		
+		// statements are not kept in _nodes
+		for (PlausibleStatement statement: _statements.findAll())
+		{
+			if (statement.isDynamic())
+			{
+				if (statement.relationType.removeInstance() == 0)
+				{
+					// the node we're going to remove is a relation and it is the last instance of its relation conceptType. 
+					// so we remove the relation conceptType from the DescriptorTypeHash too:
+					_descriptorTypes.remove(statement.relationType.getId());
 				}
 				
+				_statements.unregister(statement);
+				_directory.remove(statement.getId());
+				
+				statement.unbindRelations();
+				
 				deleted++;
 			}
 		}
@@ -1198,32 +1722,12 @@ public class KnowledgeBase
 		_arguments.clear();
 		_referents.clear();
 		
-		// reconstructing hashes
-		nodesEnum = _nodes.elements();
-		while (nodesEnum.hasMoreElements())
+		// reconstructing hashes the same way bindStatement fills them
+		for (PlausibleStatement statement: _statements.findAll())
 		{
-			current = nodesEnum.nextElement();
-			nodeName = current.getName().toLowerCase();
-				
-			if (nodeName.startsWith("*")) // it is a relation
-			{					
-				ps = (PlausibleStatement)current;
-
-				if (!_descriptorTypes.containsKey(ps.relationType.getName().toString()));
-				{
-					_descriptorTypes.put(ps.relationType.getName().toString(), current);
-				}
-				
-				if (!_arguments.containsKey(ps.argument.getName().toString()))
-				{
-					_arguments.put(ps.argument.getName().toString(), ps.argument);
-				}
-				
-				if (!_referents.containsKey(ps.referent.getName().toString()))
-				{
-					_referents.put(ps.referent.getName().toString(), ps.referent);
-				}
-			}
+			_descriptorTypes.put(statement.relationType, statement.relationType);
+			_arguments.put(statement.argument, statement.argument);
+			_referents.put(statement.referent, statement.referent);
 		}
 		
 		return deleted;
@@ -1240,6 +1744,22 @@ public class KnowledgeBase
 		
 		MyError.assertNotNull(node);
 		
+		// the statements unbound along with the node are no longer instances of their relation types
+		for (PlausibleStatement ps: node.findOutRelations(HPR_ANY))
+		{
+			_statements.unregister(ps);
+			_directory.remove(ps.getId());
+		}
+		for (PlausibleStatement ps: node.findInRelations(HPR_ANY))
+		{
+			_statements.unregister(ps);
+			_directory.remove(ps.getId());
+		}
+		if (node instanceof PlausibleStatement)
+		{
+			_statements.unregister((PlausibleStatement)node);
+		}
+		
 		int deletedRelations = node.unbindRelations();
 		
 		if (node.getName().startsWith("*"))
@@ -1248,13 +1768,14 @@ public class KnowledgeBase
 			{
 				PlausibleStatement ps = (PlausibleStatement)node;
 				
-				_descriptorTypes.remove(ps.relationType.getName().toLowerCase());
+				_descriptorTypes.remove(ps.relationType.getId());
 			}
 		}
 		
-		_arguments.remove(node.getName().toLowerCase());
-		_referents.remove(node.getName().toLowerCase());		
-		_nodes.remove(node.getName().toLowerCase());
+		_arguments.remove(node.getId());
+		_referents.remove(node.getId());		
+		removeNodeName(node, node.getName());
+		_directory.remove(node.getId());
 		
 		return deletedRelations;
 	}
@@ -1321,32 +1842,9 @@ public class KnowledgeBase
 		
 		Common.log("loading knowledgebase dump '" + filename + "' ... ");
 		
-		int StatementNumber = 0;
-
 		String Line = "";
-		String Delimiter = "\t";
-		String Delimiters2 = "\\*|\\(|\\)";
-		String[] Split;		
-		String source;
-		String target;
-		String relation;
-		String Parameters = "";
-		
-		CertaintyParameters CP;
-		PlausibleStatement ps;
-
-		CertaintyParameters EqualSIMCP = new CertaintyParameters();
-		EqualSIMCP.similarity = 0.99F;
 		
-		int relations_loaded = 0;
-		int relationsReflexiveIgnored = 0;
-		int relationsExcludedIgnored = 0;
-		int relationsBidirectionalIgnored = 0;
-
-		int ReferenceStatement;
-
-		Hashtable<Integer, PlausibleStatement> statements = new Hashtable<Integer, PlausibleStatement>();
-		HashSet<String> addedStatements = new HashSet<String>();
+		KbImporter importer = new KbImporter(excludRelations);
 		
 		_loadingMode = KnowledgebaseLoadMode.IMPORT;
 		
@@ -1364,100 +1862,9 @@ public class KnowledgeBase
 			if (Line == null)
 				break;
 			
-			if (Line.startsWith("#")) // comment lines
-				continue;
-
-			Split = Line.split(Delimiter, 2); 
-				
-			StatementNumber = Integer.parseInt(Split[0]);
-			Split = Split[1].split(Delimiter);
-
-			if (Split.length != 3 && Split.length != 4)
-			{
-				MyError.exit("Bad Line in the KB! (KnowledgeBase.LoadQuickKB)");
-			}
-
-			Parameters = "";
-
-			source 		= Node.prepareConceptNameForImport(Split[0]);
-			relation 	= Node.prepareConceptNameForImport(Split[1]);
-			target 		= Node.prepareConceptNameForImport(Split[2]);
-			
-			String prospectiveName = Node.extractProspectiveName(relation);
-			
-			if (excludRelations != null && excludRelations.contains(findConcept(prospectiveName)))
-			{
-				relationsExcludedIgnored++;
-				continue;
-			}
-			
-			if (Split.length == 4)
-			{
-				Parameters = Split[3];
-			}
-
-			CP = new CertaintyParameters(Parameters);
-
-			if (relation.equals("IMP") && source.indexOf("=") != -1 && target.indexOf("=") != -1)
-			{
-				ps = addImplicationFromSplit(Split, CP);
-				
-				relations_loaded++;
-			}
-			else
-			{
-				if (source.startsWith("*"))
-				{
-					// it is a relation about another relation, e.g. CX
-
-					Split = source.split(Delimiters2);
-					
-					source = Split[2];
-					ReferenceStatement = Integer.parseInt(source);
-
-					ps = (PlausibleStatement)statements.get(ReferenceStatement);
-
-					//MyError.assertNotNull(ps);
-					if (ps == null) // most probably is a CX for an ignored reflexive relation
-						continue;
-
-					ps = addRelation(ps, addConcept(target), addConcept(relation), CP);
-					
-					relations_loaded++;
-				}
-				else
-				{					
-					if (source.equals(target) && !relation.equals(KnowledgeBase.HPR_VERSE_ARABIC.getName())) 
-					{
-						// a reflexive relation
-						
-						//Common.log("\tignored reflexive: " + source + " -- " + relation + " --> " + target);
-						
-						relationsReflexiveIgnored++;
-						continue;
-					}
-					
-					if (_ignoreBidirectionalRelationsOnImport && addedStatements.contains(target + "--" + relation + "->" + source))
-					{
-						relationsBidirectionalIgnored++;
-						continue;
-					}
-					
-					ps = addConceptRelationConcept(source, relation, target, CP);					
-					
-					relations_loaded++;
-					
-					addedStatements.add(source + "--" + relation + "->" + target);
-
-					// TODO: Special relations (reflective, symmetric, reverse) come here
-				}
-			}
-			
-			statements.put(StatementNumber, ps);
+			importer.apply(parseImportLine(Line));
 		}
 		
-		statements.clear();
-
 		try
 		{
 			stream.close();
@@ -1467,31 +1874,422 @@ public class KnowledgeBase
 			e.printStackTrace();
 		}
 		
-		addLoadedKb("Memory Dump: " + filename);
-		
-		_loadingMode = KnowledgebaseLoadMode.NORMAL;
+		return importer.finish(filename);
+	}
+	public int importKb(String filename, HashSet<Node> excudedRelations, int parserThreads)
+	{
+		BufferedReader stream = null;
 		
-		Common.log("loaded relations: " + relations_loaded + 
-					", reflexive ignored: " + relationsReflexiveIgnored + 
-					", excluded ignored: " + relationsExcludedIgnored + 
-					", bi-directional ignored: " + relationsBidirectionalIgnored);
+		try
+		{
+			stream = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "utf-8"), 1 << 20);
+		}
+		catch(Exception e)
+		{
+			MyError.exit("Error opening `" + filename + "` for reading!");
+		}
 		
-		return relations_loaded;
+		return  importKb(stream, filename, excudedRelations, parserThreads);
 	}
-	
-
 	/**
-	 * Adds and implication (IMP) relation from a already split string array
-	 * @param split The array containing constituents
-	 * @param cp The certainty parameters for the implication
-	 * @return The created implication (statement)
+	 * Imports a KB into memory using a pipeline: 
+	 * a reader thread cuts the stream into batches of lines, 
+	 * <code>parserThreads</code> threads parse and normalize the batches into import records in parallel 
+	 * and the calling thread applies the records to the KB in their original order (so '*(n)' back-references of CX lines resolve as usual).
+	 * 
+	 * @param stream The stream to read data from.
+	 * @param filename The KB's filename
+	 * @param excludRelations these relations are excluded on import
+	 * @param parserThreads number of parser threads; values less than 2 fall back to the sequential import
+	 * @return The number of relation read from the stream
+	 * @throws RuntimeException if reading the stream fails, wrapping the <code>IOException</code>
 	 */
-	private PlausibleStatement addImplicationFromSplit(String[] split, CertaintyParameters cp)
+	public int importKb(final BufferedReader stream, String filename, HashSet<Node> excludRelations, int parserThreads)
 	{
-		String[] Antecedent = splitStatement(split[0]);
-		String[] Consequent = splitStatement(split[2]);
-
-		return addImplication(Antecedent, Consequent, cp);
+		if (parserThreads < 2)
+		{
+			return importKb(stream, filename, excludRelations);
+		}
+		
+		checkLock();
+		
+		Common.log("loading knowledgebase dump '" + filename + "' with " + parserThreads + " parser threads ... ");
+		
+		final ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+		
+		// bounded so the reader doesn't run far ahead of the writer
+		final BlockingQueue<Future<ArrayList<ImportRecord>>> batches = new ArrayBlockingQueue<Future<ArrayList<ImportRecord>>>(parserThreads * 4);
+		
+		Thread reader = new Thread("kb import reader")
+		{
+			@Override
+			public void run()
+			{
+				ArrayList<String> lines = new ArrayList<String>(IMPORT_BATCH_SIZE);
+				String line;
+				
+				try
+				{
+					while ((line = stream.readLine()) != null)
+					{
+						lines.add(line);
+						
+						if (lines.size() == IMPORT_BATCH_SIZE)
+						{
+							batches.put(parsers.submit(new ImportParser(lines)));
+							lines = new ArrayList<String>(IMPORT_BATCH_SIZE);
+						}
+					}
+				}
+				catch (IOException e)
+				{
+					try
+					{
+						// the writer fails when it reaches the failure, after the batches read before it
+						batches.put(parsers.submit(new ImportParser(e)));
+					}
+					catch (InterruptedException ie)
+					{
+					}
+					
+					return;
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				
+				try
+				{
+					if (!lines.isEmpty())
+					{
+						batches.put(parsers.submit(new ImportParser(lines)));
+					}
+					
+					// end of stream
+					batches.put(parsers.submit(new ImportParser((ArrayList<String>)null)));
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
+		};
+		
+		// a reader left behind by a failed import shouldn't keep the JVM alive
+		reader.setDaemon(true);
+		
+		KbImporter importer = new KbImporter(excludRelations);
+		
+		_loadingMode = KnowledgebaseLoadMode.IMPORT;
+		
+		reader.start();
+		
+		try
+		{
+			while (true)
+			{
+				ArrayList<ImportRecord> records = batches.take().get();
+				
+				if (records == null)
+					break;
+				
+				for (ImportRecord record: records)
+				{
+					importer.apply(record);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			MyError.exit("KB import interrupted!");
+		}
+		catch (ExecutionException e)
+		{
+			// a failed read must not pass for a complete (but shorter) kb
+			if (e.getCause() instanceof IOException)
+				throw new RuntimeException("Error reading `" + filename + "`!", e.getCause());
+			
+			MyError.exit("Error parsing `" + filename + "`!\r\n" + e.getCause());
+		}
+		finally
+		{
+			// the reader stops at its next batch (it may be blocked on a full queue if applying a record failed)
+			reader.interrupt();
+			
+			try
+			{
+				reader.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			
+			parsers.shutdownNow();
+			
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		
+		return importer.finish(filename);
+	}
+	
+	/**
+	 * Parses a line of a KB dump into an import record. It doesn't touch the KB so it can be called from any thread.
+	 * @param line a line of the dump
+	 * @return the record or null for comment lines
+	 */
+	private ImportRecord parseImportLine(String line)
+	{
+		if (line.startsWith("#")) // comment lines
+			return null;
+
+		String[] Split = line.split(IMPORT_DELIMITER, 2); 
+		
+		ImportRecord record = new ImportRecord();
+			
+		record.statementNumber = Integer.parseInt(Split[0]);
+		Split = Split[1].split(IMPORT_DELIMITER);
+
+		if (Split.length != 3 && Split.length != 4)
+		{
+			MyError.exit("Bad Line in the KB! (KnowledgeBase.LoadQuickKB)");
+		}
+
+		record.source 	= Node.prepareConceptNameForImport(Split[0]);
+		record.relation = Node.prepareConceptNameForImport(Split[1]);
+		record.target 	= Node.prepareConceptNameForImport(Split[2]);
+		
+		record.prospectiveRelation = Node.extractProspectiveName(record.relation);
+		
+		record.parameters = new CertaintyParameters((Split.length == 4) ? Split[3] : "");
+
+		if (record.relation.equals("IMP") && record.source.indexOf("=") != -1 && record.target.indexOf("=") != -1)
+		{
+			record.implication = Split;
+		}
+		else if (record.source.startsWith("*"))
+		{
+			// it is a relation about another relation, e.g. CX
+			record.referenceStatement = Integer.parseInt(IMPORT_REFERENCE_DELIMITERS.split(record.source)[2]);
+		}
+		
+		return record;
+	}
+	
+	/**
+	 * A parsed line of a KB dump
+	 */
+	private static class ImportRecord
+	{
+		int statementNumber;
+		String source;
+		String relation;
+		String target;
+		/** relation name as it would be after adding it to the KB */
+		String prospectiveRelation;
+		CertaintyParameters parameters;
+		/** the split line if it is an implication (IF-THEN) */
+		String[] implication = null;
+		/** the statement this line is about (e.g. CX lines), -1 if none */
+		int referenceStatement = -1;
+	}
+	
+	/**
+	 * Parses a batch of lines on a parser thread
+	 */
+	private class ImportParser implements Callable<ArrayList<ImportRecord>>
+	{
+		private ArrayList<String> _lines;
+		
+		/** the error which stopped the reader, if any */
+		private IOException _failure = null;
+		
+		public ImportParser(ArrayList<String> lines)
+		{
+			_lines = lines;
+		}
+		
+		/**
+		 * creates a parser which fails with the error that stopped reading the stream
+		 * @param failure the error
+		 */
+		public ImportParser(IOException failure)
+		{
+			_failure = failure;
+		}
+		
+		@Override
+		public ArrayList<ImportRecord> call() throws IOException
+		{
+			if (_failure != null)
+				throw _failure;
+			
+			if (_lines == null)
+				return null;
+			
+			ArrayList<ImportRecord> records = new ArrayList<ImportRecord>(_lines.size());
+			
+			for (String line: _lines)
+			{
+				ImportRecord record = parseImportLine(line);
+				
+				if (record != null)
+					records.add(record);
+			}
+			
+			return records;
+		}
+	}
+	
+	/**
+	 * Applies import records to the KB in order and keeps the statistics of an import
+	 */
+	private class KbImporter
+	{
+		private HashSet<Node> _excludRelations;
+		
+		private Hashtable<Integer, PlausibleStatement> _statements = new Hashtable<Integer, PlausibleStatement>();
+		
+		private int _relationsLoaded = 0;
+		private int _relationsReflexiveIgnored = 0;
+		private int _relationsExcludedIgnored = 0;
+		private int _relationsBidirectionalIgnored = 0;
+		
+		public KbImporter(HashSet<Node> excludRelations)
+		{
+			_excludRelations = excludRelations;
+		}
+		
+		/**
+		 * Checks whether a relation between two concepts is already in the KB, without adding the concepts
+		 * @param source the source concept name as it is in the dump
+		 * @param relation the relation name as it is in the dump
+		 * @param target the target concept name as it is in the dump
+		 * @return true/false
+		 */
+		private boolean existsRelation(String source, String relation, String target)
+		{
+			Node argument = findConcept(Node.extractProspectiveName(source));
+			Node relationType = findConcept(Node.extractProspectiveName(relation));
+			Node referent = findConcept(Node.extractProspectiveName(target));
+			
+			if (argument == null || relationType == null || referent == null)
+				return false;
+			
+			return argument.findRelationToTarget(relationType, referent) != null;
+		}
+		
+		/**
+		 * Adds the relation of an import record to the KB
+		 * @param record the record, null records (comments) are ignored
+		 */
+		public void apply(ImportRecord record)
+		{
+			if (record == null)
+				return;
+			
+			PlausibleStatement ps;
+			
+			String source = record.source;
+			String relation = record.relation;
+			String target = record.target;
+			
+			if (_excludRelations != null && _excludRelations.contains(findConcept(record.prospectiveRelation)))
+			{
+				_relationsExcludedIgnored++;
+				return;
+			}
+			
+			if (record.implication != null)
+			{
+				ps = addImplicationFromSplit(record.implication, record.parameters);
+				
+				_relationsLoaded++;
+			}
+			else if (record.referenceStatement != -1)
+			{
+				// it is a relation about another relation, e.g. CX
+				
+				ps = _statements.get(record.referenceStatement);
+
+				//MyError.assertNotNull(ps);
+				if (ps == null) // most probably is a CX for an ignored reflexive relation
+					return;
+
+				ps = addRelation(ps, addConcept(target), addConcept(relation), record.parameters);
+				
+				_relationsLoaded++;
+			}
+			else
+			{					
+				if (source.equals(target) && !relation.equals(KnowledgeBase.HPR_VERSE_ARABIC.getName())) 
+				{
+					// a reflexive relation
+					
+					//Common.log("\tignored reflexive: " + source + " -- " + relation + " --> " + target);
+					
+					_relationsReflexiveIgnored++;
+					return;
+				}
+				
+				if (_ignoreBidirectionalRelationsOnImport && existsRelation(target, relation, source))
+				{
+					_relationsBidirectionalIgnored++;
+					return;
+				}
+				
+				ps = addConceptRelationConcept(source, relation, target, record.parameters);					
+				
+				_relationsLoaded++;
+
+				// TODO: Special relations (reflective, symmetric, reverse) come here
+			}
+			
+			_statements.put(record.statementNumber, ps);
+		}
+		
+		/**
+		 * Ends the import
+		 * @param filename The KB's filename
+		 * @return the number of relations loaded
+		 */
+		public int finish(String filename)
+		{
+			_statements.clear();
+			
+			addLoadedKb("Memory Dump: " + filename);
+			
+			_loadingMode = KnowledgebaseLoadMode.NORMAL;
+			
+			Common.log("loaded relations: " + _relationsLoaded + 
+						", reflexive ignored: " + _relationsReflexiveIgnored + 
+						", excluded ignored: " + _relationsExcludedIgnored + 
+						", bi-directional ignored: " + _relationsBidirectionalIgnored);
+			
+			return _relationsLoaded;
+		}
+	}
+	
+
+	/**
+	 * Adds and implication (IMP) relation from a already split string array
+	 * @param split The array containing constituents
+	 * @param cp The certainty parameters for the implication
+	 * @return The created implication (statement)
+	 */
+	private PlausibleStatement addImplicationFromSplit(String[] split, CertaintyParameters cp)
+	{
+		String[] Antecedent = splitStatement(split[0]);
+		String[] Consequent = splitStatement(split[2]);
+
+		return addImplication(Antecedent, Consequent, cp);
 	}
 	
 	/**
@@ -1607,22 +2405,51 @@ public class KnowledgeBase
 		
 		Hashtable<String, Node> answers = new Hashtable<String, Node>();
 		
-		Set<Entry<String, Node>> set = _nodes.entrySet();
-		Iterator<Entry<String, Node>> iterator = set.iterator();
+		if (matchType == StringMatch.PREFIX || matchType == StringMatch.EXACT)
+		{
+			ArrayList<Node> found = new ArrayList<Node>();
+			
+			getNameIndex().find(snippet, matchType == StringMatch.EXACT, pos, category, found);
+			
+			for (Node node: found)
+			{
+				addConceptAnswer(answers, node);
+			}
+			
+			return sortConceptAnswers(answers);
+		}
+		
+		// the other match types are answered by verifying the candidates of the substring index
+		Pattern wholeWord = null;
+		
+		SubstringIndex<Node> index = getSubstringIndex();
+		int[] candidates;
+		
+		if (matchType == StringMatch.WHOLE_WORD)
+		{
+			wholeWord = Pattern.compile("\\b" + snippet + "\\b");
+			
+			// a whole name matching a literal snippet has all the words of the snippet
+			candidates = isLiteral(snippet) ? index.findWordCandidates(snippet) : null;
+		}
+		else
+		{
+			candidates = index.findCandidates(snippet);
+		}
+		
+		int candidatesNum = (candidates == null) ? index.size() : candidates.length;
 		
-		Entry<String, Node> entry;
 		String name;
 		Node node;
-		String word;
 		
-		while (iterator.hasNext()) 
-		{                        
-			entry = (Entry<String, Node>)iterator.next();
+		for (int i = 0; i < candidatesNum; i++) 
+		{
+			int position = (candidates == null) ? i : candidates[i];
 			
-			name = entry.getKey();
-			node = entry.getValue();
+			name = index.getName(position);
+			node = index.getValue(position);
 			
-			if (node.getConceptType() == ConceptType.STATEMENT || node.getConceptType() == ConceptType.CONCEPT_GLOSS || node.getConceptType() == ConceptType.CONCEPT_EXAMPLE)
+			if (!NameIndex.isSearchable(node))
 			{
 				continue;
 			}
@@ -1652,42 +2479,150 @@ public class KnowledgeBase
 			{
 				continue;
 			}
-
-			word = name;			
-			if (word.contains("#"))
-				word = word.substring(0, word.indexOf('#'));
-
 			
 			if (	(matchType == StringMatch.SUBSTRING && name.contains(snippet)) || 
-					(matchType == StringMatch.PREFIX && name.startsWith(snippet)) ||
 					(matchType == StringMatch.SUBNUMBER && name.contains(snippet)) ||
-					(matchType == StringMatch.EXACT && (word.equals(snippet) || name.equals(snippet))) ||
-					matchType == StringMatch.WHOLE_WORD && (name.matches("\\b" + snippet + "\\b")))
+					matchType == StringMatch.WHOLE_WORD && wholeWord.matcher(name).matches())
 			{
-				if (node.getLexicalType() == LexicalType.SENSE)
-				{				
-					ArrayList<PlausibleAnswer> ans = node.findTargetNodes(KnowledgeBase.HPR_SYN);
-					
-					PlausibleAnswer pa = ans.get(0);
-					
-					if (answers.get(pa.answer.getName()) == null)				
-						answers.put(pa.answer.getName(), node);
-				}
-				else
-				{
-					if (answers.get(node.getName()) == null)				
-						answers.put(node.getName(), node);
-				}
+				addConceptAnswer(answers, node);
 			}
 		}
 		
-		// sorting
+		return sortConceptAnswers(answers);
+	}
+	
+	/**
+	 * Adds a concept found by <code>getConceptFromSubstr</code> to the answers unless an answer with the same name exists. Senses are keyed by their synonyms' names.
+	 * @param answers the answers keyed by name
+	 * @param node the found concept
+	 */
+	private void addConceptAnswer(Hashtable<String, Node> answers, Node node)
+	{
+		if (node.getLexicalType() == LexicalType.SENSE)
+		{				
+			ArrayList<PlausibleAnswer> ans = node.findTargetNodes(KnowledgeBase.HPR_SYN);
+			
+			PlausibleAnswer pa = ans.get(0);
+			
+			if (answers.get(pa.answer.getName()) == null)				
+				answers.put(pa.answer.getName(), node);
+		}
+		else
+		{
+			if (answers.get(node.getName()) == null)				
+				answers.put(node.getName(), node);
+		}
+	}
+	
+	/**
+	 * Sorts the answers of <code>getConceptFromSubstr</code> by name
+	 * @param answers the answers
+	 * @return the sorted answers
+	 */
+	private Vector<Node> sortConceptAnswers(Hashtable<String, Node> answers)
+	{
 		Vector<Node> tempNodeNames = new Vector<Node>(answers.values());
 	    Collections.sort(tempNodeNames);
 		
 		return tempNodeNames;
 	}
 	
+	/**
+	 * Provides the substring index of concept names, building it if nodes have changed since it was last built
+	 * @return the substring index
+	 */
+	private SubstringIndex<Node> getSubstringIndex()
+	{
+		SubstringIndex<Node> index = _substringIndex;
+		
+		if (index != null)
+			return index;
+		
+		synchronized (this)
+		{
+			if (_substringIndex == null)
+				_substringIndex = new SubstringIndex<Node>(_nodes, true);
+			
+			return _substringIndex;
+		}
+	}
+	
+	/**
+	 * Provides the substring index of tokenized or lemmatized name variations, building it if nodes have changed since it was last built
+	 * @param relaxationType the relaxation method
+	 * @return the substring index
+	 */
+	private SubstringIndex<Collection<Node>> getRelaxedIndex(PreprocessorType relaxationType)
+	{
+		synchronized (this)
+		{
+			switch (relaxationType)
+			{
+				case TOKENIZATION:
+					if (_tokenizedIndex == null)
+						_tokenizedIndex = new SubstringIndex<Collection<Node>>(_nodesReversedTokenized.asMap(), false);
+					return _tokenizedIndex;
+					
+				case LEMMATIZATION:
+					if (_lemmatizedIndex == null)
+						_lemmatizedIndex = new SubstringIndex<Collection<Node>>(_nodesReversedLemmatized.asMap(), false);
+					return _lemmatizedIndex;
+					
+				default: 
+					MyError.exit("Unsupported relaxation method!");
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Drops the name search indexes when nodes change. They are built again on the next search.
+	 */
+	private void dropNameIndexes()
+	{
+		_nameIndex = null;
+		_substringIndex = null;
+		_tokenizedIndex = null;
+		_lemmatizedIndex = null;
+	}
+	
+	/**
+	 * Checks whether a search snippet is a literal, i.e. it has no regular expression characters
+	 * @param snippet the snippet
+	 * @return true/false
+	 */
+	private static boolean isLiteral(String snippet)
+	{
+		for (int i = 0; i < snippet.length(); i++)
+		{
+			if (REGEX_CHARACTERS.indexOf(snippet.charAt(i)) != -1)
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Provides the name index, building it if nodes have changed since it was last built
+	 * @return the name index
+	 */
+	private NameIndex getNameIndex()
+	{
+		NameIndex index = _nameIndex;
+		
+		if (index != null)
+			return index;
+		
+		synchronized (this)
+		{
+			if (_nameIndex == null)
+				_nameIndex = new NameIndex(_nodes);
+			
+			return _nameIndex;
+		}
+	}
+	
 	/**
 	 * Tries to find concepts having a substring in a relaxed way (ie preprocessed versions are also checked).
 	 * @param snippet substring
@@ -1703,25 +2638,30 @@ public class KnowledgeBase
 		
 		Hashtable<String, Node> answers = new Hashtable<String, Node>();
 		
-		Multimap<String, Node> nodesHash = null;
+		SubstringIndex<Collection<Node>> index = getRelaxedIndex(relaxationType);
 		
-		switch (relaxationType)
-		{
-			case TOKENIZATION: nodesHash = _nodesReversedTokenized; break;
-			case LEMMATIZATION: nodesHash = _nodesReversedLemmatized; break;
-			default: MyError.exit("Unsupported relaxation method!");
-		}		
+		Pattern wholeWord = null;
 		
-		for (Map.Entry<String,Collection<Node>> entry : nodesHash.asMap().entrySet())
+		if (matchType == StringMatch.WHOLE_WORD)
+			wholeWord = Pattern.compile(".*\\b" + snippet + "\\b*.");
+		
+		// all match types but regular expressions contain the snippet so they are answered by verifying the candidates of the index
+		int[] candidates = (matchType != StringMatch.WHOLE_WORD || isLiteral(snippet)) ? index.findCandidates(snippet) : null;
+		
+		int candidatesNum = (candidates == null) ? index.size() : candidates.length;
+		
+		for (int i = 0; i < candidatesNum; i++)
 		{                        
-			String name = entry.getKey();
+			int position = (candidates == null) ? i : candidates[i];
+			
+			String name = index.getName(position);
 			
 			if ((matchType == StringMatch.SUBSTRING && name.contains(snippet)) || 
 				(matchType == StringMatch.PREFIX && name.startsWith(snippet)) ||
 				(matchType == StringMatch.EXACT && name.equals(snippet)) ||
-				matchType == StringMatch.WHOLE_WORD && (name.matches(".*\\b" + snippet + "\\b*.")))
+				matchType == StringMatch.WHOLE_WORD && wholeWord.matcher(name).matches())
 			{
-				Collection<Node> nodes = entry.getValue();
+				Collection<Node> nodes = index.getValue(position);
 				
 				for (Node node: nodes)
 				{
@@ -1846,24 +2786,65 @@ public class KnowledgeBase
 	}
 	
 	/**
-	 * Tries to enumerate the instances of a relation type, e.g. for ISA relation type all instances of ISA instances (*ISA(1), *ISA(2), ... ) are returned. 
+	 * Enumerates the instances of a relation type, e.g. for ISA relation type all instances of ISA instances (*ISA(1), *ISA(2), ... ) are returned. 
 	 * @param relation relation type
-	 * @return instances of the relation type
+	 * @return instances of the relation type in the order they were added
 	 */
 	public ArrayList<PlausibleStatement> findRelationInstances(Node relation)
 	{
-		ArrayList<PlausibleStatement> out = new ArrayList<PlausibleStatement>();
+		return addOverlay(filterVersion(_statements.find(relation)), relation, null);
+	}
+	
+	/**
+	 * Enumerates the instances of a relation type having a conditional type. 
+	 * Antecedents and consequents include the statements which are both.
+	 * @param relation relation type
+	 * @param type conditional type of the instances
+	 * @return instances of the relation type in the order they were added
+	 */
+	public ArrayList<PlausibleStatement> findRelationInstances(Node relation, ConditionalType type)
+	{
+		return addOverlay(filterVersion(_statements.find(relation, type)), relation, type);
+	}
+	
+	/**
+	 * Drops the statements added after the version pinned by the current thread (if any) from a list of instances
+	 * @param statements the instances in the order of their ids
+	 * @return the instances
+	 */
+	private ArrayList<PlausibleStatement> filterVersion(ArrayList<PlausibleStatement> statements)
+	{
+		KbVersion version = KbVersion.getPinned();
+		
+		if (version == null || !version.belongsTo(_triples))
+			return statements;
 		
-		for (int i = 1; i <= relation.getInstancesNum(); i++)
+		// instances are sorted by ids so the newer ones are at the end
+		while (!statements.isEmpty() && !version.contains(statements.get(statements.size() - 1)))
 		{
-			String label = "*" + relation.getName() + " (" + i + ")";
-			
-			Node instance = findConcept(label);
-			
-			out.add((PlausibleStatement)instance);
+			statements.remove(statements.size() - 1);
+		}
+		
+		return statements;
+	}
+	
+	/**
+	 * Adds the instances kept by the overlay pinned by the current thread (if it is an overlay of this kb) to a list of instances
+	 * @param statements the instances of the kb
+	 * @param relation relation type
+	 * @param type conditional type of the instances or null for any
+	 * @return the instances
+	 */
+	private ArrayList<PlausibleStatement> addOverlay(ArrayList<PlausibleStatement> statements, Node relation, ConditionalType type)
+	{
+		KbOverlay overlay = KbOverlay.getPinned();
+		
+		if (overlay != null && overlay.getBase() == this)
+		{
+			overlay.collectInstances(relation, type, statements);
 		}
 		
-		return out;
+		return statements;
 	}
 	
 
@@ -1873,9 +2854,9 @@ public class KnowledgeBase
 	 * @param name concept name
 	 * @return new ID generated ot reused from the permanent id file
 	 */
-	private synchronized int getNextFreeNodeId(String name)
+	private int getNextFreeNodeId(String name)
 	{
-		return ++_lastIdAssigned;
+		return _directory.allocate();
 	}
 	
 	
@@ -0,0 +1,221 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import ir.ac.itrc.qqa.semantic.enums.ConceptType;
+import ir.ac.itrc.qqa.semantic.enums.LexicalType;
+import ir.ac.itrc.qqa.semantic.enums.POS;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A read-only index of concept names answering prefix and exact name searches without scanning the whole kb.
+ * Names are partitioned by the lexical type and the POS of their nodes. Each partition is a sorted table of the (lowercase) names
+ * sharing the kb's key strings, so a prefix is found with a binary search and its matches are the following run of the table.
+ * The index is a snapshot: <code>KnowledgeBase</code> drops it whenever its nodes change and builds a new one on the next search.
+ *
+ * @author Ehsan Darrudi
+ */
+public class NameIndex
+{
+	private static final int LEXICAL_TYPES = LexicalType.values().length;
+	private static final int POSES = POS.values().length;
+
+	/** the sorted names of each partition, indexed by lexical type and POS */
+	private String[][] _names;
+
+	/** the nodes of the names in each partition */
+	private Node[][] _nodes;
+
+	/** number of names in the index */
+	private int _size = 0;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * builds the index
+	 * @param nodes the kb's nodes keyed by their lowercase names
+	 */
+	protected NameIndex(Map<String, Node> nodes)
+	{
+		_names = new String[LEXICAL_TYPES * POSES][];
+		_nodes = new Node[LEXICAL_TYPES * POSES][];
+
+		List<ArrayList<Entry<String, Node>>> partitions = new ArrayList<ArrayList<Entry<String, Node>>>(LEXICAL_TYPES * POSES);
+
+		for (int partition = 0; partition < LEXICAL_TYPES * POSES; partition++)
+		{
+			partitions.add(null);
+		}
+
+		for (Entry<String, Node> entry: nodes.entrySet())
+		{
+			Node node = entry.getValue();
+
+			if (!isSearchable(node))
+				continue;
+
+			int partition = getPartition(node.getLexicalType(), node.getPos());
+
+			if (partitions.get(partition) == null)
+				partitions.set(partition, new ArrayList<Entry<String, Node>>());
+
+			partitions.get(partition).add(entry);
+		}
+
+		for (int partition = 0; partition < partitions.size(); partition++)
+		{
+			if (partitions.get(partition) == null)
+				continue;
+
+			Entry<String, Node>[] entries = toArray(partitions.get(partition));
+
+			Arrays.sort(entries, new Comparator<Entry<String, Node>>()
+			{
+				@Override
+				public int compare(Entry<String, Node> entry1, Entry<String, Node> entry2)
+				{
+					return entry1.getKey().compareTo(entry2.getKey());
+				}
+			});
+
+			String[] names = new String[entries.length];
+			Node[] partitionNodes = new Node[entries.length];
+
+			for (int i = 0; i < entries.length; i++)
+			{
+				names[i] = entries[i].getKey();
+				partitionNodes[i] = entries[i].getValue();
+			}
+
+			_names[partition] = names;
+			_nodes[partition] = partitionNodes;
+			_size += names.length;
+		}
+	}
+
+	/**
+	 * copies the entries of a partition into an array
+	 * @param entries the entries
+	 * @return the array
+	 */
+	@SuppressWarnings("unchecked")
+	private static Entry<String, Node>[] toArray(ArrayList<Entry<String, Node>> entries)
+	{
+		return entries.toArray((Entry<String, Node>[])Array.newInstance(Entry.class, entries.size()));
+	}
+
+	/**
+	 * finds the concepts whose names start with a prefix or match a name exactly.
+	 * an exact match is either the name itself or a sense of it, i.e. the name followed by '#'.
+	 * @param snippet the lowercase prefix or name
+	 * @param exact whether the names must match exactly
+	 * @param pos the POS of the concepts or <code>POS.ANY</code>
+	 * @param category the lexical type of the concepts or <code>LexicalType.ANY</code>. synsets are only found by exact searches.
+	 * @param out the found concepts are added to it
+	 */
+	public void find(String snippet, boolean exact, POS pos, LexicalType category, ArrayList<Node> out)
+	{
+		for (LexicalType lexicalType: LexicalType.values())
+		{
+			if (category != LexicalType.ANY && lexicalType != category)
+				continue;
+
+			if (lexicalType == LexicalType.SYNSET && !exact)
+				continue;
+
+			for (POS nodePos: POS.values())
+			{
+				if (pos != POS.ANY && nodePos != pos)
+					continue;
+
+				int partition = getPartition(lexicalType, nodePos);
+
+				String[] names = _names[partition];
+
+				if (names == null)
+					continue;
+
+				Node[] nodes = _nodes[partition];
+
+				for (int i = findFirst(names, snippet); i < names.length && names[i].startsWith(snippet); i++)
+				{
+					String name = names[i];
+
+					// an exact match is the name itself or a sense of it: the name followed by '#' where the snippet itself has none
+					if (exact && name.length() != snippet.length() && (name.charAt(snippet.length()) != '#' || snippet.indexOf('#') != -1))
+						continue;
+
+					if (category == LexicalType.SENSE && name.indexOf('#') == -1)
+						continue;
+
+					// the node may have been changed since the index was built
+					if (!isSearchable(nodes[i]) || nodes[i].getLexicalType() != lexicalType || nodes[i].getPos() != nodePos)
+						continue;
+
+					out.add(nodes[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Getter for the number of names in the index
+	 * @return
+	 */
+	public int size()
+	{
+		return _size;
+	}
+
+	/**
+	 * checks whether a node is found by name searches. statements, glosses and examples are not.
+	 * @param node the node
+	 * @return true/false
+	 */
+	protected static boolean isSearchable(Node node)
+	{
+		ConceptType type = node.getConceptType();
+
+		return type != ConceptType.STATEMENT && type != ConceptType.CONCEPT_GLOSS && type != ConceptType.CONCEPT_EXAMPLE;
+	}
+
+	/**
+	 * finds the first name not less than a prefix using a binary search
+	 * @param names the sorted names
+	 * @param prefix the prefix
+	 * @return the position of the first name which may start with the prefix
+	 */
+	private static int findFirst(String[] names, String prefix)
+	{
+		int low = 0;
+		int high = names.length;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (names[middle].compareTo(prefix) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		return low;
+	}
+
+	/**
+	 * computes the partition of a lexical type and POS
+	 * @param lexicalType the lexical type
+	 * @param pos the POS
+	 * @return the partition
+	 */
+	private static int getPartition(LexicalType lexicalType, POS pos)
+	{
+		return lexicalType.ordinal() * POSES + pos.ordinal();
+	}
+}
@@ -22,8 +22,10 @@ import ir.ac.itrc.qqa.semantic.util.MyError;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
@@ -61,6 +63,9 @@ public class Node implements Comparable<Node>
 
 	/** used to enumerate instances of this node in the _kb */
 	private volatile int _numberOfInstances = 0;
+	
+	/** updates <code>_numberOfInstances</code> atomically without a lock or an extra object per node */
+	private static final AtomicIntegerFieldUpdater<Node> _instancesUpdater = AtomicIntegerFieldUpdater.newUpdater(Node.class, "_numberOfInstances");
 
 	/** specifies the source (source) of this concept (Wordnet? Farsnet? Estelahname? etc.) */
 	private SourceType _source = SourceType.UNKNOWN;
@@ -85,38 +90,32 @@ public class Node implements Comparable<Node>
 	/** the number of relations this node receives from other nodes */
 	private int _outDegree = 0;
 	
-	/** max out degree seen globally */
-	private static volatile Integer _maxInDegree = 0;
 	/** max in degree seen globally */
-	private static volatile Integer _maxOutDegree = 0;
-	
-	/** holds the tokenized version of concept name */
-	private String _tokenized = "";
+	private static final AtomicInteger _maxInDegree = new AtomicInteger();
+	/** max out degree seen globally */
+	private static final AtomicInteger _maxOutDegree = new AtomicInteger();
 	
-	/** holds the lemmatized version of concept name */
-	private String _lemmatized = "";
+	/** holds the rarely used data of the node (name variations, KB compilation values), null if none is set */
+	private NodeDetails _details = null;
 	
-	/** a random generator to create random concept IDs for relations */
-	private static Random _randomGenerator = new Random();
+	/** 
+	 * generates IDs for relations and nodes created outside the kb. 
+	 * they count down from -1 so they are unique and never clash with the (positive) IDs of kb concepts. 
+	 */
+	private static AtomicInteger _transientIdGenerator = new AtomicInteger();
 	
 	/** used for profiling: holds the number of times this node's name or tokenized and lemmetized versions has been read */
 	private int _accessed = 0;
 	
-	// temporary values used only while compiling KBs (wordnet, farsnet, ...), i.e., they are never used at runtime -->
+	/** 
+	 * the kb holding this node, null for nodes created outside a kb. 
+	 * the kb-wide indexes (triples, frozen snapshot, hierarchy index, relation type indexes) are reached through it and find the node by its id. 
+	 */
+	private KnowledgeBase _kb = null;
 	
-	/** used in WordNet while loading WordNet */
-	public String WNHeadWord = null;
-	/** used in WordNet while loading WordNet */
-	public int WNTaggedCount = 0;
-	/** Holds the sense number during Farsnet loading */
-	public int senseNo = 0;
-	/** it is used for KB refinement. We initialize it with a huge number; */
-	public int distance = Integer.MAX_VALUE;
-	/** used in WordNet while loading WordNet */
-	public int WNRank = 0;
+	/** the out degree from which a node indexes its out-links by relation type */
+	public static final int RELATION_TYPE_INDEX_THRESHOLD = 16;
 	
-	// <--
-
 	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
 	
 	/**
@@ -125,8 +124,8 @@ public class Node implements Comparable<Node>
 	 */
 	public Node(String name)
 	{
-		// apparently the node creation is done outside the usual KB. so we create a random (unimportant) id for the node
-		this(name, true, _randomGenerator.nextInt());
+		// apparently the node creation is done outside the usual KB. so we create a transient (unimportant) id for the node
+		this(name, true, _transientIdGenerator.decrementAndGet());
 	}
 	/**
 	 * Creates a node with the specified name. Trims the name to comply with naming standard.
@@ -135,7 +134,7 @@ public class Node implements Comparable<Node>
 	 */
 	public Node(String name, boolean forceTrimName)
 	{
-		this(name, forceTrimName, _randomGenerator.nextInt());
+		this(name, forceTrimName, _transientIdGenerator.decrementAndGet());
 	}
 	
 	/**
@@ -158,34 +157,40 @@ public class Node implements Comparable<Node>
 		_id = id;
 	}
 	
+	/**
+	 * Creates a node with a name which has already been processed, e.g. a name loaded from a binary image of the kb.
+	 * Neither trimming nor property extraction is done on the name.
+	 * 
+	 * @param name the name of the new concept
+	 * @param id the id of the new concept
+	 */
+	protected Node(String name, int id)
+	{
+		_name = name;
+		_id = id;
+	}
+	
 	/**
 	 * Creates a node based on a template (which is a node too).
 	 * As an example we may have only one ISA relation in the _kb (which is the template) but many ISA relation instances may exist.
 	 * All instance names begin with an * to distinguish them from normal concepts.
+	 * Instance names are not kept: statements outnumber concepts so the name (e.g. *ISA (12)) is composed by <code>composeName</code> when it's needed. 
 	 * 
 	 * @param template the template for creating our instance
 	 */
 	public Node(Node template)
 	{
 		// We're going to create a node from a template. Indeed we create an instance.
-		// We mark instances with '*'.  
 		// This constructor is called only by PlausibleStatement (a child of this class)
 		
-		Integer id = template.getNextInstanceId();
-		
-		
 		//------------- added by hashemi ------------------
 		extractPropertiesFromName(template._name);
 		//------------- added by hashemi ------------------
 
-		//TODO: in Node constructor check to see if the name starts with '*' and change it if so.
-		_name = "*" + template._name + " (" + id.toString() + ")";
 		setConceptType(ConceptType.STATEMENT);
 		
-		// id is unimportant for relations (not persistent) so we create a random number
-		_id =  _randomGenerator.nextInt();
-		
-		setConceptType(ConceptType.STATEMENT);
+		// the instance gets a transient id until it is bound to a kb which gives it an id in its own id space
+		_id =  _transientIdGenerator.decrementAndGet();
 	}
 	
 	/**
@@ -194,10 +199,23 @@ public class Node implements Comparable<Node>
 	 */
 	public String getName()
 	{
-		_accessed++;		
+		_accessed++;
+		
+		if (_name == null)
+			return composeName();
+		
 		return _name;
 	}
 	
+	/**
+	 * Composes the name of a node whose name is not kept, i.e. an instance (statement). 
+	 * @return the name
+	 */
+	protected String composeName()
+	{
+		return null;
+	}
+	
 	/**
 	 * Getter for <code>_id</code>
 	 * @return
@@ -207,6 +225,64 @@ public class Node implements Comparable<Node>
 		return _id;
 	}
 	
+	/**
+	 * Setter for <code>_kb</code>. The kb sets it before the node gets any out-links.
+	 * @param kb
+	 */
+	protected void setKnowledgeBase(KnowledgeBase kb)
+	{
+		_kb = kb;
+	}
+	/**
+	 * Finds the kb's index of statements by their triples. It is kept in sync with the out-links of the node.
+	 * @return the index or null for nodes created outside a kb
+	 */
+	protected TripleIndex getTripleIndex()
+	{
+		return (_kb == null) ? null : _kb.getTripleIndex();
+	}
+	/**
+	 * Finds the kb's CSR snapshot if it holds this node's links
+	 * @return the snapshot or null if the kb isn't frozen or this node's links have changed since
+	 */
+	protected FrozenAdjacency getFrozenAdjacency()
+	{
+		FrozenAdjacency frozen = (_kb == null) ? null : _kb.getFrozenAdjacency();
+		
+		return (frozen != null && frozen.covers(this)) ? frozen : null;
+	}
+	/**
+	 * Finds the kb's ISA/INSTANCE reachability index
+	 * @return the index or null if the kb isn't locked
+	 */
+	protected HierarchyIndex getHierarchy()
+	{
+		return (_kb == null) ? null : _kb.getHierarchyIndex();
+	}
+	
+	/**
+	 * Finds the kb version pinned by the current thread if this node belongs to its kb. Lookups then read the version instead of the link-lists.
+	 * @return the version or null
+	 */
+	private KbVersion getPinnedVersion()
+	{
+		KbVersion version = KbVersion.getPinned();
+		
+		if (version == null || !version.covers(this))
+			return null;
+		
+		return version;
+	}
+	
+	/**
+	 * Setter for <code>_id</code>. It is used by the kb to give bound statements a permanent id in its id space.
+	 * @param id
+	 */
+	protected void setId(int id)
+	{
+		_id = id;
+	}
+	
 	/**
 	 * Getter for <code>_dynamic</code>
 	 * @return
@@ -398,20 +474,31 @@ public class Node implements Comparable<Node>
 	 * get the next instance id which will be created having this node as its conceptType
 	 * @return an instance number
 	 */
-	private synchronized int getNextInstanceId()
+	public int getNextInstanceId()
 	{
-		return ++_numberOfInstances;
+		return _instancesUpdater.incrementAndGet(this);
 	}
 	
 	/**
 	 * it is called to notify the node that an instance of this node has been deleted. 
 	 * @return the number of remained instances of this conceptType
 	 */
-	public synchronized int removeInstance()
+	public int removeInstance()
 	{
-		return --_numberOfInstances;
+		return _instancesUpdater.decrementAndGet(this);
 	}
 
+	/**
+	 * makes this node's lookups return to the linked lists if the kb is frozen
+	 */
+	private void invalidateFrozenAdjacency()
+	{
+		FrozenAdjacency frozen = (_kb == null) ? null : _kb.getFrozenAdjacency();
+		
+		if (frozen != null)
+			frozen.invalidate(this);
+	}
+	
 	/**
 	 * adds a new incoming link to this node 
 	 * @param SourceType the source node
@@ -419,6 +506,9 @@ public class Node implements Comparable<Node>
 	 */
 	public void addInLink(Node Source, PlausibleStatement pr)
 	{
+		// the frozen snapshot no longer reflects this node's links
+		invalidateFrozenAdjacency();
+		
 		InLinkElement InLink = new InLinkElement(pr);
 
 		InLink.sourceNode = Source;
@@ -435,13 +525,7 @@ public class Node implements Comparable<Node>
 		
 		_inDegree++;
 		
-		synchronized(_maxInDegree)
-		{		
-			if (_inDegree > _maxInDegree)
-			{
-				_maxInDegree = _inDegree;
-			}
-		}
+		updateMaxDegree(_maxInDegree, _inDegree);
 	}
 	
 	/**
@@ -450,6 +534,9 @@ public class Node implements Comparable<Node>
 	 */
 	public void removeInLink(PlausibleStatement pr)
 	{
+		// the frozen snapshot no longer reflects this node's links
+		invalidateFrozenAdjacency();
+		
 		InLinkElement InLink = _lastInLink;
 		InLinkElement LastChecked = null;
 
@@ -486,6 +573,9 @@ public class Node implements Comparable<Node>
 	 */
 	public void addOutLink(Node Destination, PlausibleStatement pr)
 	{
+		// the frozen snapshot no longer reflects this node's links
+		invalidateFrozenAdjacency();
+		
 		OutLinkElement OutLink = new OutLinkElement(pr);
 
 		OutLink.destinationNode = Destination;
@@ -500,12 +590,37 @@ public class Node implements Comparable<Node>
 			_lastOutLink = OutLink;
 		}
 		
+		HashMap<Node, ArrayList<OutLinkElement>> index = getRelationTypeIndex();
+		
+		if (index != null)
+		{
+			addToRelationTypeIndex(index, OutLink);
+		}
+		
+		TripleIndex triples = getTripleIndex();
+		
+		if (triples != null)
+		{
+			triples.add(this, Destination, pr);
+		}
+		
 		_outDegree++;
 		
-		synchronized (_maxOutDegree)
-		{		
-			if (_outDegree > _maxOutDegree)
-				_maxOutDegree = _outDegree;
+		updateMaxDegree(_maxOutDegree, _outDegree);
+	}
+	
+	/**
+	 * raises a global max degree if a degree exceeds it. concurrent updates are resolved with compare-and-set.
+	 * @param maxDegree the max degree
+	 * @param degree the degree
+	 */
+	private static void updateMaxDegree(AtomicInteger maxDegree, int degree)
+	{
+		int max = maxDegree.get();
+		
+		while (degree > max && !maxDegree.compareAndSet(max, degree))
+		{
+			max = maxDegree.get();
 		}
 	}
 	
@@ -515,6 +630,9 @@ public class Node implements Comparable<Node>
 	 */
 	public void removeOutLink(PlausibleStatement pr)
 	{
+		// the frozen snapshot no longer reflects this node's links
+		invalidateFrozenAdjacency();
+		
 		OutLinkElement OutLink = _lastOutLink;
 		OutLinkElement LastChecked = null;
 
@@ -531,11 +649,37 @@ public class Node implements Comparable<Node>
 					LastChecked.previousOutLinkElement = OutLink.previousOutLinkElement;
 				}
 				
+				TripleIndex triples = getTripleIndex();
+				
+				if (triples != null)
+				{
+					triples.remove(this, OutLink.destinationNode, pr);
+				}
+				
+				HashMap<Node, ArrayList<OutLinkElement>> index = getRelationTypeIndex();
+				
+				if (index != null)
+				{
+					ArrayList<OutLinkElement> links = index.get(pr.relationType);
+					
+					if (links != null)
+					{
+						links.remove(OutLink);
+						
+						if (links.isEmpty())
+							index.remove(pr.relationType);
+					}
+				}
+				
 				OutLink.relation = null;
 				OutLink.destinationNode = null;
 				
 				_outDegree--;
 				
+				// only the nodes with many out-links keep an index
+				if (index != null && _outDegree < RELATION_TYPE_INDEX_THRESHOLD)
+					_kb.removeRelationTypeIndex(this);
+				
 				return;
 			}
 
@@ -544,6 +688,69 @@ public class Node implements Comparable<Node>
 		}
 	}
 
+	/**
+	 * Builds the relation type index of out-links if the node has enough out-links to benefit from it
+	 * @return the index or null if the node has few out-links
+	 */
+	public HashMap<Node, ArrayList<OutLinkElement>> buildRelationTypeIndex()
+	{
+		HashMap<Node, ArrayList<OutLinkElement>> index = getRelationTypeIndex();
+		
+		if (index != null || _kb == null || _outDegree < RELATION_TYPE_INDEX_THRESHOLD)
+			return index;
+		
+		index = new HashMap<Node, ArrayList<OutLinkElement>>();
+		
+		// the link-list is newest first, so we collect it and add the elements backwards
+		ArrayList<OutLinkElement> links = new ArrayList<OutLinkElement>(_outDegree);
+		
+		OutLinkElement outLink = _lastOutLink;
+		
+		while (outLink != null)
+		{
+			links.add(outLink);
+			outLink = outLink.previousOutLinkElement;
+		}
+		
+		for (int i = links.size() - 1; i >= 0; i--)
+		{
+			addToRelationTypeIndex(index, links.get(i));
+		}
+		
+		return _kb.putRelationTypeIndex(this, index);
+	}
+	
+	/**
+	 * Finds the relation type index of out-links kept by the kb. Only the nodes of a kb having at least <code>RELATION_TYPE_INDEX_THRESHOLD</code> out-links may have one.
+	 * @return the index or null if it isn't built
+	 */
+	private HashMap<Node, ArrayList<OutLinkElement>> getRelationTypeIndex()
+	{
+		if (_kb == null || _outDegree < RELATION_TYPE_INDEX_THRESHOLD)
+			return null;
+		
+		return _kb.getRelationTypeIndex(this);
+	}
+	
+	/**
+	 * Adds an out-link to a relation type index
+	 * @param index the index
+	 * @param outLink the out-link
+	 */
+	private static void addToRelationTypeIndex(HashMap<Node, ArrayList<OutLinkElement>> index, OutLinkElement outLink)
+	{
+		Node relationType = outLink.relation.relationType;
+		ArrayList<OutLinkElement> links = index.get(relationType);
+		
+		if (links == null)
+		{
+			links = new ArrayList<OutLinkElement>(2);
+			index.put(relationType, links);
+		}
+		
+		links.add(outLink);
+	}
+	
 	/**
 	 * Composes a text representation of the concept and its relations. also shows lexical info (senses) related to the concept 
 	 * @return a text representation of the concept and its relations
@@ -559,7 +766,7 @@ public class Node implements Comparable<Node>
 
 		ArrayList<PlausibleAnswer> Lexs = findTargetNodes(KnowledgeBase.HPR_LEX);
 
-		Output = "Node: " + _name + " (Lexical)\r\n";
+		Output = "Node: " + getName() + " (Lexical)\r\n";
 		Output += "Related Concepts: " + Lexs.size() + "\r\n";
 		
 		Integer Counter = 0;
@@ -583,7 +790,7 @@ public class Node implements Comparable<Node>
 		String Output = "";
 		String Message = "";
 
-		Output = "Node: " + this._name;
+		Output = "Node: " + getName();
 		
 		if (this._source != SourceType.UNKNOWN)
 		{
@@ -592,13 +799,13 @@ public class Node implements Comparable<Node>
 
 		Message += Output + "\r\n";
 
-		if (this._name.charAt(0) == '*') // Statement nodes start with a '*' 
+		if (getName().charAt(0) == '*') // Statement nodes start with a '*' 
 		{
 			PlausibleStatement PR = (PlausibleStatement)this;
 
 			String Type		= PR.conditionalType.toString();
-			String Source	= PR.argument._name;
-			String Target	= PR.referent._name;
+			String Source	= PR.argument.getName();
+			String Target	= PR.referent.getName();
 			Message += "conceptType: " + Type + "\r\n";
 			Message += "SourceType: " + Source + "\r\n";
 			Message += "Target: " + Target + "\r\n";
@@ -614,11 +821,11 @@ public class Node implements Comparable<Node>
 		while (OutLink != null)
 		{
 			Output = "   " + Num.toString() + ". ";
-			Output += _name;
+			Output += getName();
 			Output += " -- ";
-			Output += OutLink.relation.relationType._name;
+			Output += OutLink.relation.relationType.getName();
 			Output += " --> ";
-			Output += OutLink.destinationNode._name;
+			Output += OutLink.destinationNode.getName();
 
 			CXs = OutLink.relation.findTargetNodes(KnowledgeBase.HPR_CX);
 
@@ -648,11 +855,11 @@ public class Node implements Comparable<Node>
 		while (InLink != null)
 		{
 			Output = "   " + Num.toString() + ". ";
-			Output += InLink.sourceNode._name;
+			Output += InLink.sourceNode.getName();
 			Output += " -- ";
 			Output += InLink.relation.relationType.toString();
 			Output += " --> ";
-			Output += _name;
+			Output += getName();
 
 			Message += Output + "\r\n";
 
@@ -673,18 +880,18 @@ public class Node implements Comparable<Node>
 		String Output = "";
 		String Message = "";
 
-		Output = this._name;
+		Output = getName();
 		Output += "\r\n" + this._id;
 
 		Message += Output + "\r\n\r\n";
 
-		if (this._name.charAt(0) == '*') // Statement nodes start with a '*' 
+		if (getName().charAt(0) == '*') // Statement nodes start with a '*' 
 		{
 			PlausibleStatement pr = (PlausibleStatement)this;
 
 			Message += "conceptType: " + pr.conditionalType.toString() + "\r\n";
-			Message += "SourceType: " + pr.argument._name + "\r\n";
-			Message += "Target: " + pr.referent._name + "\r\n";
+			Message += "SourceType: " + pr.argument.getName() + "\r\n";
+			Message += "Target: " + pr.referent.getName() + "\r\n";
 		}
 
 		Message += "---------- رابطه های این مفهوم به دیگر مفاهیم ---------- \r\n\r\n";
@@ -697,9 +904,9 @@ public class Node implements Comparable<Node>
 		while (OutLink != null)
 		{
 			Output = Num.toString() + ". ";			
-			Output += OutLink.relation.relationType._name;
+			Output += OutLink.relation.relationType.getName();
 			Output += "\t --> ";
-			Output += OutLink.destinationNode._name;
+			Output += OutLink.destinationNode.getName();
 
 			CXs = OutLink.relation.findTargetNodes(KnowledgeBase.HPR_CX);
 
@@ -728,7 +935,7 @@ public class Node implements Comparable<Node>
 			Output = Num.toString() + ". ";
 			Output += InLink.relation.relationType.toString();
 			Output += "\t<-- ";
-			Output += InLink.sourceNode._name;
+			Output += InLink.sourceNode.getName();
 
 			Message += Output + "\r\n";
 
@@ -763,7 +970,7 @@ public class Node implements Comparable<Node>
 			return "";
 		}
 		
-		String out = template._name.toLowerCase().replace("s", "« " + argument._name + "» ").replace("o", "« " + referent._name + "» ");
+		String out = template.getName().toLowerCase().replace("s", "« " + argument.getName() + "» ").replace("o", "« " + referent.getName() + "» ");
 		
 		return out;
 	}
@@ -781,7 +988,7 @@ public class Node implements Comparable<Node>
 	{	
 		StringBuilder buffer = new StringBuilder();
 
-		buffer.append("دانش موجود در مورد مفهوم " + this._name + ":\r\n\r\n");
+		buffer.append("دانش موجود در مورد مفهوم " + getName() + ":\r\n\r\n");
 
 		String temp = "";
 		ArrayList<PlausibleAnswer> cx;
@@ -909,9 +1116,9 @@ public class Node implements Comparable<Node>
 
 					Output = row.toString();
 					Output += "\t";
-					Output += Antecedent.relationType._name + "(" + Antecedent.argument._name + ")={" + Antecedent.referent._name + "}";
+					Output += Antecedent.relationType.getName() + "(" + Antecedent.argument.getName() + ")={" + Antecedent.referent.getName() + "}";
 					Output += "\tIMP\t";
-					Output += Consequence.relationType._name + "(" + Consequence.argument._name + ")={" + Consequence.referent._name + "}";
+					Output += Consequence.relationType.getName() + "(" + Consequence.argument.getName() + ")={" + Consequence.referent.getName() + "}";
 					Output += "\t";
 					Output += IMPStatement.parameters.toString();
 					Output += "\r\n";
@@ -936,9 +1143,9 @@ public class Node implements Comparable<Node>
 		String conceptName;
 		
 		if (node.getClass() == PlausibleStatement.class)
-			conceptName = ((PlausibleStatement)node).relationType._name;
+			conceptName = ((PlausibleStatement)node).relationType.getName();
 		else
-			conceptName = node._name;
+			conceptName = node.getName();
 		
 		// the character ¶ is used to denote carriage return/line feed (CR/LF)
 		conceptName = conceptName.replaceAll("\r?\n", "¶");
@@ -992,6 +1199,69 @@ public class Node implements Comparable<Node>
 	 */
 	public PlausibleStatement findRelationToTarget(Node relationType, Node destinationNode)
 	{
+		PlausibleStatement statement = findRelationToTargetInBase(relationType, destinationNode);
+		
+		KbOverlay overlay = KbOverlay.getPinned();
+		
+		if (statement == null && overlay != null)
+		{
+			statement = overlay.findOut(this, relationType, destinationNode);
+		}
+		
+		return statement;
+	}
+	
+	/**
+	 * the same as <code>findRelationToTarget</code> in the kb alone, i.e. without the pinned overlay
+	 */
+	private PlausibleStatement findRelationToTargetInBase(Node relationType, Node destinationNode)
+	{
+		KbVersion version = getPinnedVersion();
+		
+		if (version != null)
+		{
+			return version.findOut(this, relationType, destinationNode);
+		}
+		
+		TripleIndex triples = getTripleIndex();
+		
+		if (triples != null)
+		{
+			return triples.find(this, relationType, destinationNode);
+		}
+		
+		FrozenAdjacency frozen = getFrozenAdjacency();
+		
+		if (frozen != null)
+		{
+			int position = frozen.findOut(_id, relationType, destinationNode);
+			
+			if (position == -1)
+				return null;
+			
+			return frozen.getOutStatement(position);
+		}
+		
+		HashMap<Node, ArrayList<OutLinkElement>> index = buildRelationTypeIndex();
+		
+		if (index != null)
+		{
+			ArrayList<OutLinkElement> links = index.get(relationType);
+			
+			if (links == null)
+				return null;
+			
+			for (int i = links.size() - 1; i >= 0; i--)
+			{
+				if (links.get(i).destinationNode == destinationNode)
+				{
+					return links.get(i).relation;
+				}
+			}
+			
+			return null;
+		}
+		
 		OutLinkElement OutLink = _lastOutLink;
 
 		while (OutLink != null)
@@ -1019,6 +1289,49 @@ public class Node implements Comparable<Node>
 	 */
 	public PlausibleStatement findRelationFromSource(Node relationType, Node sourceNode)
 	{
+		PlausibleStatement statement = findRelationFromSourceInBase(relationType, sourceNode);
+		
+		KbOverlay overlay = KbOverlay.getPinned();
+		
+		if (statement == null && overlay != null)
+		{
+			statement = overlay.findIn(this, relationType, sourceNode);
+		}
+		
+		return statement;
+	}
+	
+	/**
+	 * the same as <code>findRelationFromSource</code> in the kb alone, i.e. without the pinned overlay
+	 */
+	private PlausibleStatement findRelationFromSourceInBase(Node relationType, Node sourceNode)
+	{
+		KbVersion version = getPinnedVersion();
+		
+		if (version != null)
+		{
+			return version.findIn(this, relationType, sourceNode);
+		}
+		
+		TripleIndex triples = sourceNode.getTripleIndex();
+		
+		if (triples != null)
+		{
+			return triples.find(sourceNode, relationType, this);
+		}
+		
+		FrozenAdjacency frozen = getFrozenAdjacency();
+		
+		if (frozen != null)
+		{
+			int position = frozen.findIn(_id, relationType, sourceNode);
+			
+			if (position == -1)
+				return null;
+			
+			return frozen.getInStatement(position);
+		}
+		
 		InLinkElement inLink = _lastInLink;
 
 		while (inLink != null)
@@ -1043,9 +1356,66 @@ public class Node implements Comparable<Node>
 	 * @return a list of relations
 	 */
 	public ArrayList<PlausibleStatement> findOutRelations(Node RelationType)
+	{
+		ArrayList<PlausibleStatement> AL = findOutRelationsInBase(RelationType);
+		
+		KbOverlay overlay = KbOverlay.getPinned();
+		
+		if (overlay != null)
+		{
+			overlay.collectOut(this, RelationType, null, AL);
+		}
+		
+		return AL;
+	}
+	
+	/**
+	 * the same as <code>findOutRelations</code> in the kb alone, i.e. without the pinned overlay
+	 */
+	private ArrayList<PlausibleStatement> findOutRelationsInBase(Node RelationType)
 	{
 		ArrayList<PlausibleStatement> AL = new ArrayList<PlausibleStatement>();
 		
+		KbVersion version = getPinnedVersion();
+		
+		if (version != null)
+		{
+			version.collectOut(this, RelationType, null, AL);
+			
+			return AL;
+		}
+		
+		FrozenAdjacency frozen = getFrozenAdjacency();
+		
+		if (frozen != null)
+		{
+			int to = frozen.outTo(_id, RelationType);
+			
+			for (int i = frozen.outFrom(_id, RelationType); i < to; i++)
+			{
+				AL.add(frozen.getOutStatement(frozen.outPosition(i, RelationType)));
+			}
+			
+			return AL;
+		}
+		
+		HashMap<Node, ArrayList<OutLinkElement>> index = (RelationType == KnowledgeBase.HPR_ANY) ? null : buildRelationTypeIndex();
+		
+		if (index != null)
+		{
+			ArrayList<OutLinkElement> links = index.get(RelationType);
+			
+			if (links != null)
+			{
+				for (int i = links.size() - 1; i >= 0; i--)
+				{
+					AL.add(links.get(i).relation);
+				}
+			}
+			
+			return AL;
+		}
+		
 		OutLinkElement OutLink = _lastOutLink;
 
 		while (OutLink != null)
@@ -1068,9 +1438,49 @@ public class Node implements Comparable<Node>
 	 * @return a list of relations
 	 */
 	public ArrayList<PlausibleStatement> findInRelations(Node RelationType)
+	{
+		ArrayList<PlausibleStatement> AL = findInRelationsInBase(RelationType);
+		
+		KbOverlay overlay = KbOverlay.getPinned();
+		
+		if (overlay != null)
+		{
+			overlay.collectIn(this, RelationType, null, AL);
+		}
+		
+		return AL;
+	}
+	
+	/**
+	 * the same as <code>findInRelations</code> in the kb alone, i.e. without the pinned overlay
+	 */
+	private ArrayList<PlausibleStatement> findInRelationsInBase(Node RelationType)
 	{
 		ArrayList<PlausibleStatement> AL = new ArrayList<PlausibleStatement>();
 		
+		KbVersion version = getPinnedVersion();
+		
+		if (version != null)
+		{
+			version.collectIn(this, RelationType, null, AL);
+			
+			return AL;
+		}
+		
+		FrozenAdjacency frozen = getFrozenAdjacency();
+		
+		if (frozen != null)
+		{
+			int to = frozen.inTo(_id, RelationType);
+			
+			for (int i = frozen.inFrom(_id, RelationType); i < to; i++)
+			{
+				AL.add(frozen.getInStatement(frozen.inPosition(i, RelationType)));
+			}
+			
+			return AL;
+		}
+		
 		InLinkElement InLink = _lastInLink;
 
 		while (InLink != null)
@@ -1112,9 +1522,84 @@ public class Node implements Comparable<Node>
 	 * @return founds nodes
 	 */
 	public ArrayList<PlausibleAnswer> findTargetNodes(Node relationType, ConditionalType statType, Node transparentRelation, ArrayList<Node> cxs)
+	{
+		ArrayList<PlausibleAnswer> outs = findTargetNodesInBase(relationType, statType, transparentRelation, cxs);
+		
+		KbOverlay overlay = KbOverlay.getPinned();
+		
+		if (overlay != null)
+		{
+			ArrayList<PlausibleStatement> statements = new ArrayList<PlausibleStatement>();
+			
+			// the same as the kb's links the conditional type isn't checked
+			overlay.collectOut(this, relationType, null, statements);
+			
+			for (PlausibleStatement statement: statements)
+			{
+				outs.add(composeAnswer(statement.referent, statement, cxs));
+			}
+		}
+		
+		return outs;
+	}
+	
+	/**
+	 * the same as <code>findTargetNodes</code> in the kb alone, i.e. without the pinned overlay
+	 */
+	private ArrayList<PlausibleAnswer> findTargetNodesInBase(Node relationType, ConditionalType statType, Node transparentRelation, ArrayList<Node> cxs)
 	{
 		ArrayList<PlausibleAnswer> outs = new ArrayList<PlausibleAnswer>();
 		PlausibleAnswer answer;
+		
+		KbVersion version = getPinnedVersion();
+		
+		if (version != null)
+		{
+			ArrayList<Node> nodes = new ArrayList<Node>();
+			ArrayList<PlausibleStatement> statements = new ArrayList<PlausibleStatement>();
+			
+			version.collectOut(this, relationType, nodes, statements);
+			
+			for (int i = 0; i < statements.size(); i++)
+			{
+				outs.add(composeAnswer(nodes.get(i), statements.get(i), cxs));
+			}
+			
+			return outs;
+		}
+		
+		FrozenAdjacency frozen = getFrozenAdjacency();
+		
+		if (frozen != null)
+		{
+			int to = frozen.outTo(_id, relationType);
+			
+			for (int i = frozen.outFrom(_id, relationType); i < to; i++)
+			{
+				int position = frozen.outPosition(i, relationType);
+				
+				outs.add(composeAnswer(frozen.getOutNode(position), frozen.getOutStatement(position), cxs));
+			}
+			
+			return outs;
+		}
+		
+		HashMap<Node, ArrayList<OutLinkElement>> index = (relationType == KnowledgeBase.HPR_ANY) ? null : buildRelationTypeIndex();
+		
+		if (index != null)
+		{
+			ArrayList<OutLinkElement> links = index.get(relationType);
+			
+			if (links != null)
+			{
+				for (int i = links.size() - 1; i >= 0; i--)
+				{
+					outs.add(composeAnswer(links.get(i).destinationNode, links.get(i).relation, cxs));
+				}
+			}
+			
+			return outs;
+		}
 
 		OutLinkElement outLink = _lastOutLink;
 		
@@ -1205,9 +1690,73 @@ public class Node implements Comparable<Node>
 	 * @return founds nodes
 	 */
 	public ArrayList<PlausibleAnswer> findSourceNodes(Node relationType, ConditionalType statType, Node transparentRelation, ArrayList<Node> cxs)
+	{
+		ArrayList<PlausibleAnswer> outs = findSourceNodesInBase(relationType, statType, transparentRelation, cxs);
+		
+		KbOverlay overlay = KbOverlay.getPinned();
+		
+		if (overlay != null)
+		{
+			ArrayList<PlausibleStatement> statements = new ArrayList<PlausibleStatement>();
+			
+			overlay.collectIn(this, relationType, statType, statements);
+			
+			for (PlausibleStatement statement: statements)
+			{
+				outs.add(composeAnswer(statement.argument, statement, cxs));
+			}
+		}
+		
+		return outs;
+	}
+	
+	/**
+	 * the same as <code>findSourceNodes</code> in the kb alone, i.e. without the pinned overlay
+	 */
+	private ArrayList<PlausibleAnswer> findSourceNodesInBase(Node relationType, ConditionalType statType, Node transparentRelation, ArrayList<Node> cxs)
 	{
 		ArrayList<PlausibleAnswer> outs = new ArrayList<PlausibleAnswer>();
 		PlausibleAnswer answer;
+		
+		KbVersion version = getPinnedVersion();
+		
+		if (version != null)
+		{
+			ArrayList<Node> nodes = new ArrayList<Node>();
+			ArrayList<PlausibleStatement> statements = new ArrayList<PlausibleStatement>();
+			
+			version.collectIn(this, relationType, nodes, statements);
+			
+			for (int i = 0; i < statements.size(); i++)
+			{
+				if (statements.get(i).conditionalType == statType)
+				{
+					outs.add(composeAnswer(nodes.get(i), statements.get(i), cxs));
+				}
+			}
+			
+			return outs;
+		}
+		
+		FrozenAdjacency frozen = getFrozenAdjacency();
+		
+		if (frozen != null)
+		{
+			int to = frozen.inTo(_id, relationType);
+			
+			for (int i = frozen.inFrom(_id, relationType); i < to; i++)
+			{
+				int position = frozen.inPosition(i, relationType);
+				PlausibleStatement statement = frozen.getInStatement(position);
+				
+				if (statement.conditionalType == statType)
+				{
+					outs.add(composeAnswer(frozen.getInNode(position), statement, cxs));
+				}
+			}
+			
+			return outs;
+		}
 
 		InLinkElement inLink = _lastInLink;
 		
@@ -1272,6 +1821,33 @@ public class Node implements Comparable<Node>
 		return outs;		
 	}
 	
+	/**
+	 * Builds an answer out of a link read from the frozen snapshot or the relation type index
+	 * @param node the node at the other end of the link
+	 * @param statement the link's statement
+	 * @param cxs contexts seen
+	 * @return the answer
+	 */
+	private PlausibleAnswer composeAnswer(Node node, PlausibleStatement statement, ArrayList<Node> cxs)
+	{
+		PlausibleAnswer answer = new PlausibleAnswer();
+		
+		answer.answer 		= node;
+		answer.statement 	= statement;
+		answer.source		= statement.getSourceType();
+		answer.copyParameters(statement.parameters);
+		
+		if (!Common.isEmpty(cxs))
+		{
+			for (Node CX: cxs)
+			{
+				answer.contexs = statement.findTargetNodes(CX);
+			}
+		}
+		
+		return answer;
+	}
+	
 	public ArrayList<PlausibleStatement> getAllStatements()
 	{
 		return getAllStatements(null);
@@ -1282,8 +1858,73 @@ public class Node implements Comparable<Node>
 	 * @return found nodes
 	 */
 	public ArrayList<PlausibleStatement> getAllStatements(Node transparentRelation)
+	{
+		ArrayList<PlausibleStatement> OutRelations = getAllStatementsInBase(transparentRelation);
+		
+		KbOverlay overlay = KbOverlay.getPinned();
+		
+		if (overlay != null)
+		{
+			ArrayList<PlausibleStatement> statements = new ArrayList<PlausibleStatement>();
+			
+			overlay.collectOut(this, KnowledgeBase.HPR_ANY, ConditionalType.NOT_CONDITIONAL, statements);
+			
+			for (PlausibleStatement statement: statements)
+			{
+				if (statement.relationType != transparentRelation)
+				{
+					OutRelations.add(statement);
+				}
+			}
+		}
+		
+		return OutRelations;
+	}
+	
+	/**
+	 * the same as <code>getAllStatements</code> in the kb alone, i.e. without the pinned overlay
+	 */
+	private ArrayList<PlausibleStatement> getAllStatementsInBase(Node transparentRelation)
 	{
 		ArrayList<PlausibleStatement> OutRelations = new ArrayList<PlausibleStatement>();
+		
+		KbVersion version = getPinnedVersion();
+		
+		if (version != null)
+		{
+			ArrayList<PlausibleStatement> statements = new ArrayList<PlausibleStatement>();
+			
+			version.collectOut(this, KnowledgeBase.HPR_ANY, null, statements);
+			
+			for (PlausibleStatement statement: statements)
+			{
+				if (statement.conditionalType == ConditionalType.NOT_CONDITIONAL && statement.relationType != transparentRelation)
+				{
+					OutRelations.add(statement);
+				}
+			}
+			
+			return OutRelations;
+		}
+		
+		FrozenAdjacency frozen = getFrozenAdjacency();
+		
+		if (frozen != null)
+		{
+			int to = frozen.outTo(_id, KnowledgeBase.HPR_ANY);
+			
+			for (int i = frozen.outFrom(_id, KnowledgeBase.HPR_ANY); i < to; i++)
+			{
+				PlausibleStatement statement = frozen.getOutStatement(frozen.outPosition(i, KnowledgeBase.HPR_ANY));
+				
+				if (statement.conditionalType == ConditionalType.NOT_CONDITIONAL && statement.relationType != transparentRelation)
+				{
+					OutRelations.add(statement);
+				}
+			}
+			
+			return OutRelations;
+		}
 
 		OutLinkElement OutLink = _lastOutLink;
 
@@ -1334,11 +1975,42 @@ public class Node implements Comparable<Node>
 	 */
 	public boolean isLex()
 	{
+		KbVersion version = getPinnedVersion();
+		
+		if (version != null || KbOverlay.getPinned() != null)
+		{
+			for (PlausibleStatement statement: findOutRelations(KnowledgeBase.HPR_ANY))
+			{
+				if (statement.relationType.getName() == "LEX")
+				{
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		// nodes with many out-links check their relation types instead of all of their links
+		HashMap<Node, ArrayList<OutLinkElement>> index = buildRelationTypeIndex();
+		
+		if (index != null)
+		{
+			for (Node relationType: index.keySet())
+			{
+				if (relationType.getName() == "LEX")
+				{
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
 		OutLinkElement OutLink = _lastOutLink;
 		
 		while (OutLink != null)
 		{
-			if (OutLink.relation.relationType._name == "LEX")
+			if (OutLink.relation.relationType.getName() == "LEX")
 			{
 				return true;
 			}
@@ -1351,11 +2023,19 @@ public class Node implements Comparable<Node>
 	
 	/**
 	 * Computes the depth of the node in the ISA hierarchy recursively.
+	 * While the kb is locked the depth is read from the hierarchy index, which counts it from the nearest root.
 	 *  
 	 * @return the depth
 	 */
 	public int computeDepthInISAHierarchy()
 	{
+		HierarchyIndex hierarchy = getHierarchy();
+		
+		if (hierarchy != null && hierarchy.covers(this))
+		{
+			return hierarchy.getDepth(this);
+		}
+		
 		// Extracting those nodes with an ISA (or INS) relation to Child
 		ArrayList<PlausibleAnswer> ParentNodes = findTargetNodes(KnowledgeBase.HPR_ISA);
 		ParentNodes.addAll(findTargetNodes(KnowledgeBase.HPR_INSTANCE));
@@ -1408,6 +2088,7 @@ public class Node implements Comparable<Node>
 	
 	/**
 	 * Finds all parents of a node in a limited search radius.
+	 * While the kb is locked the parents are read from the hierarchy index, each one once and nearest first.
 	 * 
 	 * @param maxSearchDepth the maximum depth for search 
 	 * @return all parents in range
@@ -1419,6 +2100,13 @@ public class Node implements Comparable<Node>
 			// backtrack:
 			return null;
 		}
+		
+		HierarchyIndex hierarchy = getHierarchy();
+		
+		if (hierarchy != null && hierarchy.covers(this))
+		{
+			return hierarchy.findAncestors(this, maxSearchDepth, false);
+		}
 
 		maxSearchDepth--;
 		
@@ -1453,13 +2141,13 @@ public class Node implements Comparable<Node>
 	@Override
 	public String toString()
 	{
-		return this._name;
+		return getName();
 	}
 
 	@Override
 	public int compareTo(Node node)
 	{
-		return this._name.compareTo(node._name);
+		return getName().compareTo(node.getName());
 	}
 	
 	/**
@@ -1472,14 +2160,20 @@ public class Node implements Comparable<Node>
 	{
 		copy._dynamic 			= this._dynamic;
 		copy._numberOfInstances = this._numberOfInstances;
-		copy.WNHeadWord 		= new String(this.WNHeadWord);
 		copy._source 			= this._source;
-		copy.WNTaggedCount 		= this.WNTaggedCount;
-		copy.WNRank 			= this.WNRank;
 		copy.setPos(this.getPos());
-		copy.senseNo 			= this.senseNo;
 		//copy.ava 				= new String(this.ava);
-		copy.distance 			= this.distance;
+		
+		if (this._details != null)
+		{
+			NodeDetails details = copy.getDetails();
+			
+			details.WNHeadWord		= this._details.WNHeadWord;
+			details.WNTaggedCount	= this._details.WNTaggedCount;
+			details.WNRank			= this._details.WNRank;
+			details.senseNo			= this._details.senseNo;
+			details.distance		= this._details.distance;
+		}
 		//copy.ancestor 		= this.ancestor;		
 		copy._lastInLink 		= this._lastInLink;
 		copy._lastOutLink 		= this._lastOutLink;
@@ -1629,6 +2323,11 @@ public class Node implements Comparable<Node>
 		if (expectedParent == KnowledgeBase.HPR_ANY)
 			return true;
 		
+		HierarchyIndex hierarchy = getHierarchy();
+		
+		if (hierarchy != null && hierarchy.covers(this))
+			return hierarchy.isKindOf(this, expectedParent, false);
+		
 		HashSet<Node> seens = new HashSet<Node>();		
 		int result = _hasParent(expectedParent, seens);
 		
@@ -1684,6 +2383,11 @@ public class Node implements Comparable<Node>
 	 */
 	public HashSet<Node> extractDescendants()
 	{
+		HierarchyIndex hierarchy = getHierarchy();
+		
+		if (hierarchy != null && hierarchy.coversDescendants(this))
+			return hierarchy.findDescendants(this);
+		
 		HashSet<Node> seens = new HashSet<Node>();
 		_extractDescendants(seens);
 		
@@ -1728,7 +2432,7 @@ public class Node implements Comparable<Node>
 		
 		if (children.size() == 0)
 		{
-			if (StringUtils.countMatches(this._name, "(") <= 1) // محمد(ص)ـ  is ok but محمد(ص)(در بیابان)ـ is not			
+			if (StringUtils.countMatches(getName(), "(") <= 1) // محمد(ص)ـ  is ok but محمد(ص)(در بیابان)ـ is not			
 				out.add(this);
 		
 			return out;
@@ -1739,9 +2443,9 @@ public class Node implements Comparable<Node>
 		for (PlausibleAnswer child: children)
 		{
 			//TODO: to remedy اصحاب سبت در قیامت  -- ISA --> اصحاب سبت
-			if (	!child.answer._name.matches("^" + Pattern.quote(this._name) + "\\s*\\(در .*") && 
-					!child.answer._name.matches("^" + Pattern.quote(this._name) + "\\s*\\(از .*") && 
-					!child.answer._name.matches("^" + Pattern.quote(this._name) + "\\s*\\(به .*")) 
+			if (	!child.answer.getName().matches("^" + Pattern.quote(getName()) + "\\s*\\(در .*") && 
+					!child.answer.getName().matches("^" + Pattern.quote(getName()) + "\\s*\\(از .*") && 
+					!child.answer.getName().matches("^" + Pattern.quote(getName()) + "\\s*\\(به .*")) 
 				isPseudoLeaf = false;
 		}
 		
@@ -1767,7 +2471,7 @@ public class Node implements Comparable<Node>
 	 */
 	public int getWeight()
 	{
-		return ((_inDegree/_maxInDegree) + (_outDegree/_maxOutDegree)) / 2;
+		return ((_inDegree/_maxInDegree.get()) + (_outDegree/_maxOutDegree.get())) / 2;
 	}
 	
 	/**
@@ -1778,7 +2482,7 @@ public class Node implements Comparable<Node>
 	 */
 	public boolean equalsRelaxed(Node counterpart)
 	{
-		if (this._name.equals(counterpart._name))
+		if (getName().equals(counterpart.getName()))
 			return true;
 		
 		if (!this.getTokenized().isEmpty() && !counterpart.getTokenized().isEmpty() && this.getTokenized().equals(counterpart.getTokenized()))
@@ -1798,7 +2502,7 @@ public class Node implements Comparable<Node>
 	public boolean containsAsWord(Node counterpart)
 	{
 		//TODO: what about running Common.getLexicalRelaxations()?
-		if (Common.matchAtBoundries(this._name, counterpart._name))
+		if (Common.matchAtBoundries(getName(), counterpart.getName()))
 			return true;
 		
 		if (!this.getTokenized().isEmpty() && !counterpart.getTokenized().isEmpty() && Common.matchAtBoundries(this.getTokenized(), counterpart.getTokenized()))
@@ -1817,14 +2521,14 @@ public class Node implements Comparable<Node>
 	 */
 	public boolean containsAsWordTokenized(Node counterpart)
 	{
-		if (this._tokenized.isEmpty())
+		if (this.getTokenized().isEmpty())
 			return false;
 		
-		if (counterpart._tokenized.isEmpty())
+		if (counterpart.getTokenized().isEmpty())
 			return false;
 		
 		//TODO: what about running Common.getLexicalRelaxations()?
-		if (Common.matchAtBoundries(this._tokenized, counterpart._tokenized))
+		if (Common.matchAtBoundries(this.getTokenized(), counterpart.getTokenized()))
 			return true;
 		
 		//if (Common.matchAtBoundries(Common.removeParenthesis(this._tokenized), Common.removeParenthesis(counterpart._tokenized)))
@@ -1840,7 +2544,7 @@ public class Node implements Comparable<Node>
 	 */
 	public boolean containsAsWord(String counterpart)
 	{
-		if (Common.matchAtBoundries(this._name, counterpart))
+		if (Common.matchAtBoundries(getName(), counterpart))
 			return true;
 		
 		if (!this.getTokenized().isEmpty() && !counterpart.isEmpty() && Common.matchAtBoundries(this.getTokenized(), counterpart))
@@ -1943,8 +2647,11 @@ public class Node implements Comparable<Node>
 	{
 		_accessed++;
 		
+		if (_details == null)
+			return "";
+		
 		//if (!_tokenized.isEmpty())
-			return _tokenized;
+			return _details.tokenized;
 			
 		//return Common.preprocess(_name, PreprocessorType.TOKENIZATION);
 	}
@@ -1955,7 +2662,10 @@ public class Node implements Comparable<Node>
 	 */
 	public void setTokenized(String tokenized)
 	{
-		_tokenized = tokenized;
+		if (_details == null && tokenized.isEmpty())
+			return;
+		
+		getDetails().tokenized = tokenized;
 	}
 
 	/**
@@ -1966,8 +2676,11 @@ public class Node implements Comparable<Node>
 	{
 		_accessed++;
 		
+		if (_details == null)
+			return "";
+		
 		//if (!_lemmatized.isEmpty())
-			return _lemmatized;
+			return _details.lemmatized;
 			
 		//return Common.preprocess(_name, PreprocessorType.LEMMATIZATION);
 	}
@@ -1978,7 +2691,112 @@ public class Node implements Comparable<Node>
 	 */
 	public void setLemmatized(String lemmatized)
 	{
-		_lemmatized = lemmatized;
+		if (_details == null && lemmatized.isEmpty())
+			return;
+		
+		getDetails().lemmatized = lemmatized;
+	}
+	
+	/**
+	 * Getter for <code>_details</code>, creates it if the node has no details yet
+	 * @return
+	 */
+	private NodeDetails getDetails()
+	{
+		if (_details == null)
+			_details = new NodeDetails();
+		
+		return _details;
+	}
+	
+	/**
+	 * Getter for <code>WNHeadWord</code>
+	 * @return
+	 */
+	public String getWNHeadWord()
+	{
+		return (_details == null) ? null : _details.WNHeadWord;
+	}
+	
+	/**
+	 * Setter for <code>WNHeadWord</code>
+	 * @param headWord
+	 */
+	public void setWNHeadWord(String headWord)
+	{
+		getDetails().WNHeadWord = headWord;
+	}
+	
+	/**
+	 * Getter for <code>WNTaggedCount</code>
+	 * @return
+	 */
+	public int getWNTaggedCount()
+	{
+		return (_details == null) ? 0 : _details.WNTaggedCount;
+	}
+	
+	/**
+	 * Setter for <code>WNTaggedCount</code>
+	 * @param taggedCount
+	 */
+	public void setWNTaggedCount(int taggedCount)
+	{
+		getDetails().WNTaggedCount = taggedCount;
+	}
+	
+	/**
+	 * Getter for <code>WNRank</code>
+	 * @return
+	 */
+	public int getWNRank()
+	{
+		return (_details == null) ? 0 : _details.WNRank;
+	}
+	
+	/**
+	 * Setter for <code>WNRank</code>
+	 * @param rank
+	 */
+	public void setWNRank(int rank)
+	{
+		getDetails().WNRank = rank;
+	}
+	
+	/**
+	 * Getter for <code>senseNo</code>
+	 * @return
+	 */
+	public int getSenseNo()
+	{
+		return (_details == null) ? 0 : _details.senseNo;
+	}
+	
+	/**
+	 * Setter for <code>senseNo</code>
+	 * @param senseNo
+	 */
+	public void setSenseNo(int senseNo)
+	{
+		getDetails().senseNo = senseNo;
+	}
+	
+	/**
+	 * Getter for <code>distance</code>
+	 * @return
+	 */
+	public int getDistance()
+	{
+		return (_details == null) ? Integer.MAX_VALUE : _details.distance;
+	}
+	
+	/**
+	 * Setter for <code>distance</code>
+	 * @param distance
+	 */
+	public void setDistance(int distance)
+	{
+		getDetails().distance = distance;
 	}
 	
 	/**
@@ -2049,10 +2867,10 @@ public class Node implements Comparable<Node>
 	public boolean isContextNode(){
 		try{
 			String cxName = "";
-			int index = _name.indexOf("CX:");
+			int index = getName().indexOf("CX:");
 			if(index != -1)
-				if((index + 3) < _name.length())
-					cxName = _name.substring(index + 3);
+				if((index + 3) < getName().length())
+					cxName = getName().substring(index + 3);
 			CONTEXT.valueOf(cxName);
 			return true;
 		}
@@ -2070,11 +2888,11 @@ public class Node implements Comparable<Node>
 			MyError.error("this " + this + " node is not a context!");
 			return null;
 		}
-		String cxName = _name;
-		int index = _name.indexOf("CX:");
+		String cxName = getName();
+		int index = getName().indexOf("CX:");
 		if(index != -1)
-			if((index + 3) < _name.length())
-				cxName = _name.substring(index + 3);		
+			if((index + 3) < getName().length())
+				cxName = getName().substring(index + 3);		
 		return cxName;
 					
 	}
@@ -2099,10 +2917,28 @@ public class Node implements Comparable<Node>
 		return cxs;
 	}
 	
+	/**
+	 * Getter for <code>_lastOutLink</code>
+	 * @return
+	 */
+	protected OutLinkElement getLastOutLink()
+	{
+		return _lastOutLink;
+	}
+	
+	/**
+	 * Getter for <code>_lastInLink</code>
+	 * @return
+	 */
+	protected InLinkElement getLastInLink()
+	{
+		return _lastInLink;
+	}
+	
 	public ArrayList<PlausibleStatement> getMozaf(Node mozaf_root){		
 		
 		ArrayList<PlausibleStatement> mozaf_rels = findOutRelations(mozaf_root);
 		
 		return mozaf_rels;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+/**
+ * Holds the data of a node which most nodes never have: the preprocessed variations of its name and the values used while compiling KBs (WordNet, Farsnet, ...).
+ * Nodes create it only when one of these values is set, so statements and plain concepts don't pay for it.
+ *
+ * @author Ehsan Darrudi
+ */
+class NodeDetails
+{
+	/** the tokenized version of concept name */
+	String tokenized = "";
+
+	/** the lemmatized version of concept name */
+	String lemmatized = "";
+
+	/** used in WordNet while loading WordNet */
+	String WNHeadWord = null;
+
+	/** used in WordNet while loading WordNet */
+	int WNTaggedCount = 0;
+
+	/** holds the sense number during Farsnet loading */
+	int senseNo = 0;
+
+	/** it is used for KB refinement. We initialize it with a huge number */
+	int distance = Integer.MAX_VALUE;
+
+	/** used in WordNet while loading WordNet */
+	int WNRank = 0;
+}
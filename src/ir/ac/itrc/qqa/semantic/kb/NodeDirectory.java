@@ -0,0 +1,150 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+/**
+ * Allocates dense ids to the nodes (concepts and statements) of a kb and finds nodes by their ids.
+ * Ids are handed out sequentially starting from 1 and are never reused, so they also reflect the order in which nodes were added.
+ * The directory is an array of fixed size chunks: finding a node is two array reads and no boxing is needed.
+ * Nodes are added under the directory's lock while lookups are lock free.
+ *
+ * @author Ehsan Darrudi
+ */
+public class NodeDirectory
+{
+	/** number of bits of an id addressing a node inside its chunk */
+	private static final int CHUNK_BITS = 12;
+
+	/** number of nodes in a chunk */
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/** the chunks; chunk i holds the nodes with ids [i * CHUNK_SIZE, (i + 1) * CHUNK_SIZE) */
+	private volatile Node[][] _chunks = new Node[16][];
+
+	/** the last id allocated */
+	private int _lastId = 0;
+
+	/** number of nodes in the directory */
+	private int _size = 0;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * allocates a new id
+	 * @return the id
+	 */
+	public synchronized int allocate()
+	{
+		return ++_lastId;
+	}
+
+	/**
+	 * allocates a new id for a node and puts the node in the directory
+	 * @param node the node
+	 * @return the id
+	 */
+	public synchronized int add(Node node)
+	{
+		int id = ++_lastId;
+
+		put(id, node);
+
+		return id;
+	}
+
+	/**
+	 * puts a node in the directory under an id allocated before
+	 * @param id the id
+	 * @param node the node
+	 */
+	public synchronized void put(int id, Node node)
+	{
+		if (id <= 0 || id > _lastId)
+			return;
+
+		int chunkIndex = id >>> CHUNK_BITS;
+
+		Node[][] chunks = _chunks;
+
+		if (chunkIndex >= chunks.length)
+		{
+			Node[][] grown = new Node[Math.max(chunks.length * 2, chunkIndex + 1)][];
+
+			System.arraycopy(chunks, 0, grown, 0, chunks.length);
+
+			chunks = grown;
+		}
+
+		Node[] chunk = chunks[chunkIndex];
+
+		if (chunk == null)
+		{
+			chunk = new Node[CHUNK_SIZE];
+			chunks[chunkIndex] = chunk;
+		}
+
+		if (chunk[id & CHUNK_MASK] == null)
+			_size++;
+
+		chunk[id & CHUNK_MASK] = node;
+
+		// publishes the changes to lock free readers
+		_chunks = chunks;
+	}
+
+	/**
+	 * finds a node by its id
+	 * @param id the id
+	 * @return the node or null
+	 */
+	public Node get(int id)
+	{
+		if (id <= 0)
+			return null;
+
+		Node[][] chunks = _chunks;
+
+		int chunkIndex = id >>> CHUNK_BITS;
+
+		if (chunkIndex >= chunks.length)
+			return null;
+
+		Node[] chunk = chunks[chunkIndex];
+
+		if (chunk == null)
+			return null;
+
+		return chunk[id & CHUNK_MASK];
+	}
+
+	/**
+	 * removes a node from the directory. its id is not reused.
+	 * @param id the id of the node
+	 */
+	public synchronized void remove(int id)
+	{
+		if (get(id) == null)
+			return;
+
+		_chunks[id >>> CHUNK_BITS][id & CHUNK_MASK] = null;
+		_size--;
+	}
+
+	/**
+	 * Getter for the number of nodes in the directory
+	 * @return
+	 */
+	public synchronized int size()
+	{
+		return _size;
+	}
+
+	/**
+	 * Getter for <code>_lastId</code>: all ids are in [1, getLastId()]
+	 * @return
+	 */
+	public synchronized int getLastId()
+	{
+		return _lastId;
+	}
+}
@@ -0,0 +1,362 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import ir.ac.itrc.qqa.semantic.enums.ConditionalType;
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleStatement;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the statements (instances) of each relation type partitioned by their conditional type.
+ * Statements of a partition are kept in a compact array in the order they were bound to the kb, i.e. the order of their ids.
+ * A statement which is both an antecedent and a consequent is kept in both the antecedent and the consequent partitions.
+ * The registry is kept in sync by <code>KnowledgeBase</code> when statements are bound, reclassified or deleted.
+ *
+ * @author Ehsan Darrudi
+ */
+public class StatementRegistry
+{
+	private static final int NOT_CONDITIONAL	= 0;
+	private static final int ANTECEDENT			= 1;
+	private static final int CONSEQUENT			= 2;
+
+	/** the partitions of each relation type */
+	private ConcurrentHashMap<Node, Partition[]> _relations = new ConcurrentHashMap<Node, Partition[]>();
+
+	/** number of statements in the registry */
+	private AtomicInteger _size = new AtomicInteger();
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * a growable array of statements sorted by ids.
+	 * the kb gives statements increasing ids as they are bound so new statements are simply appended.
+	 */
+	private static class Partition
+	{
+		private PlausibleStatement[] _statements = new PlausibleStatement[4];
+		private int _size = 0;
+
+		/**
+		 * adds a statement at its place. new statements are simply appended.
+		 * @param statement the statement
+		 */
+		public void add(PlausibleStatement statement)
+		{
+			if (_size == _statements.length)
+			{
+				PlausibleStatement[] statements = new PlausibleStatement[_size * 2];
+
+				System.arraycopy(_statements, 0, statements, 0, _size);
+
+				_statements = statements;
+			}
+
+			int position = _size;
+
+			if (_size > 0 && _statements[_size - 1].getId() >= statement.getId())
+			{
+				position = find(statement);
+
+				if (position >= 0)
+					return;
+
+				position = -position - 1;
+
+				System.arraycopy(_statements, position, _statements, position + 1, _size - position);
+			}
+
+			_statements[position] = statement;
+			_size++;
+		}
+
+		/**
+		 * removes a statement
+		 * @param statement the statement
+		 * @return false if the statement was not in the partition
+		 */
+		public boolean remove(PlausibleStatement statement)
+		{
+			int position = find(statement);
+
+			if (position < 0)
+				return false;
+
+			System.arraycopy(_statements, position + 1, _statements, position, _size - position - 1);
+
+			_statements[--_size] = null;
+
+			return true;
+		}
+
+		/**
+		 * finds a statement using a binary search on ids
+		 * @param statement the statement
+		 * @return the position of the statement or (-(insertion point) - 1) if it is not in the partition
+		 */
+		private int find(PlausibleStatement statement)
+		{
+			int id = statement.getId();
+
+			int low = 0;
+			int high = _size - 1;
+
+			while (low <= high)
+			{
+				int middle = (low + high) >>> 1;
+				int middleId = _statements[middle].getId();
+
+				if (middleId < id)
+					low = middle + 1;
+				else if (middleId > id)
+					high = middle - 1;
+				else
+					return middle;
+			}
+
+			return -(low + 1);
+		}
+
+		/**
+		 * copies the statements into a list
+		 * @param out the list
+		 */
+		public void copyTo(ArrayList<PlausibleStatement> out)
+		{
+			out.ensureCapacity(out.size() + _size);
+
+			for (int i = 0; i < _size; i++)
+			{
+				out.add(_statements[i]);
+			}
+		}
+	}
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * registers a new statement
+	 * @param statement the statement
+	 */
+	protected void register(PlausibleStatement statement)
+	{
+		Partition[] partitions = getPartitions(statement.relationType, true);
+
+		synchronized (partitions)
+		{
+			update(partitions, statement, null, statement.conditionalType);
+		}
+
+		_size.incrementAndGet();
+	}
+
+	/**
+	 * moves a statement to the partitions of its new conditional type
+	 * @param statement the statement
+	 * @param oldType the conditional type of the statement before it was changed
+	 */
+	protected void reclassify(PlausibleStatement statement, ConditionalType oldType)
+	{
+		if (oldType == statement.conditionalType)
+			return;
+
+		Partition[] partitions = getPartitions(statement.relationType, true);
+
+		synchronized (partitions)
+		{
+			update(partitions, statement, oldType, statement.conditionalType);
+		}
+	}
+
+	/**
+	 * removes a statement. it must be called before the statement is unbound.
+	 * @param statement the statement
+	 */
+	protected void unregister(PlausibleStatement statement)
+	{
+		if (statement.relationType == null)
+			return;
+
+		Partition[] partitions = getPartitions(statement.relationType, false);
+
+		if (partitions == null)
+			return;
+
+		synchronized (partitions)
+		{
+			if (!update(partitions, statement, statement.conditionalType, null))
+				return;
+		}
+
+		_size.decrementAndGet();
+	}
+
+	/**
+	 * finds the statements of a relation type
+	 * @param relationType the relation type
+	 * @param type the conditional type of statements. antecedents and consequents include statements which are both.
+	 * @return the statements in the order they were bound
+	 */
+	public ArrayList<PlausibleStatement> find(Node relationType, ConditionalType type)
+	{
+		ArrayList<PlausibleStatement> out = new ArrayList<PlausibleStatement>();
+
+		Partition[] partitions = getPartitions(relationType, false);
+
+		if (partitions == null)
+			return out;
+
+		synchronized (partitions)
+		{
+			switch (type)
+			{
+				case NOT_CONDITIONAL			: partitions[NOT_CONDITIONAL].copyTo(out); break;
+				case ANTECEDENT					: partitions[ANTECEDENT].copyTo(out); break;
+				case CONSEQUENT					: partitions[CONSEQUENT].copyTo(out); break;
+				case ANTECEDENT_AND_CONSEQUENT	:
+				{
+					// statements which are both are in both partitions
+					Partition both = new Partition();
+
+					for (int i = 0; i < partitions[ANTECEDENT]._size; i++)
+					{
+						PlausibleStatement statement = partitions[ANTECEDENT]._statements[i];
+
+						if (statement.conditionalType == ConditionalType.ANTECEDENT_AND_CONSEQUENT)
+							both.add(statement);
+					}
+
+					both.copyTo(out);
+					break;
+				}
+			}
+		}
+
+		return out;
+	}
+
+	/**
+	 * finds all statements of a relation type
+	 * @param relationType the relation type
+	 * @return the statements in the order they were bound
+	 */
+	public ArrayList<PlausibleStatement> find(Node relationType)
+	{
+		ArrayList<PlausibleStatement> out = new ArrayList<PlausibleStatement>();
+
+		Partition[] partitions = getPartitions(relationType, false);
+
+		if (partitions == null)
+			return out;
+
+		synchronized (partitions)
+		{
+			Partition all = new Partition();
+
+			for (Partition partition: partitions)
+			{
+				for (int i = 0; i < partition._size; i++)
+				{
+					all.add(partition._statements[i]);
+				}
+			}
+
+			all.copyTo(out);
+		}
+
+		return out;
+	}
+
+	/**
+	 * finds all statements
+	 * @return the statements grouped by relation type
+	 */
+	public ArrayList<PlausibleStatement> findAll()
+	{
+		ArrayList<PlausibleStatement> out = new ArrayList<PlausibleStatement>(_size.get());
+
+		for (Node relationType: _relations.keySet())
+		{
+			out.addAll(find(relationType));
+		}
+
+		return out;
+	}
+
+	/**
+	 * Getter for the number of statements
+	 * @return
+	 */
+	public int size()
+	{
+		return _size.get();
+	}
+
+	/**
+	 * finds the partitions of a relation type
+	 * @param relationType the relation type
+	 * @param create whether to create the partitions if the relation type has no statements yet
+	 * @return the partitions or null
+	 */
+	private Partition[] getPartitions(Node relationType, boolean create)
+	{
+		Partition[] partitions = _relations.get(relationType);
+
+		if (partitions == null && create)
+		{
+			partitions = new Partition[] {new Partition(), new Partition(), new Partition()};
+
+			Partition[] existing = _relations.putIfAbsent(relationType, partitions);
+
+			if (existing != null)
+				partitions = existing;
+		}
+
+		return partitions;
+	}
+
+	/**
+	 * moves a statement between the partitions of two conditional types
+	 * @param partitions the partitions of the relation type
+	 * @param statement the statement
+	 * @param oldType the old conditional type or null if the statement is new
+	 * @param newType the new conditional type or null if the statement is removed
+	 * @return false if a statement to be removed was not in the partitions
+	 */
+	private static boolean update(Partition[] partitions, PlausibleStatement statement, ConditionalType oldType, ConditionalType newType)
+	{
+		boolean found = false;
+
+		for (int i = 0; i < partitions.length; i++)
+		{
+			boolean before = oldType != null && belongsTo(oldType, i);
+			boolean after = newType != null && belongsTo(newType, i);
+
+			if (before && !after)
+				found |= partitions[i].remove(statement);
+			else if (!before && after)
+				partitions[i].add(statement);
+		}
+
+		return found;
+	}
+
+	/**
+	 * checks whether statements of a conditional type belong to a partition
+	 * @param type the conditional type
+	 * @param partition the partition
+	 * @return true/false
+	 */
+	private static boolean belongsTo(ConditionalType type, int partition)
+	{
+		switch (partition)
+		{
+			case NOT_CONDITIONAL	: return type == ConditionalType.NOT_CONDITIONAL;
+			case ANTECEDENT			: return type == ConditionalType.ANTECEDENT || type == ConditionalType.ANTECEDENT_AND_CONSEQUENT;
+			case CONSEQUENT			: return type == ConditionalType.CONSEQUENT || type == ConditionalType.ANTECEDENT_AND_CONSEQUENT;
+		}
+
+		return false;
+	}
+}
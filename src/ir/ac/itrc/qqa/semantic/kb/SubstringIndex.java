@@ -0,0 +1,325 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A read-only inverted index over a set of (lowercase) names answering substring and whole word searches without scanning all names.
+ * Every name is indexed by its character trigrams and, optionally, by its words. A search intersects the postings of the snippet's
+ * trigrams (or words) and returns candidates which must then be verified by the caller, e.g. with <code>contains</code>.
+ * Names are referred to by their positions in the index.
+ *
+ * @author Ehsan Darrudi
+ */
+public class SubstringIndex<V>
+{
+	/** the length of the indexed character n-grams */
+	private static final int GRAM = 3;
+
+	private static final int[] NO_CANDIDATES = new int[0];
+
+	/** the indexed names */
+	private String[] _names;
+
+	/** the values of the names */
+	private Object[] _values;
+
+	/** the positions of the names containing each trigram, in ascending order */
+	private HashMap<Long, int[]> _grams = new HashMap<Long, int[]>();
+
+	/** the positions of the names containing each word, in ascending order. null if words are not indexed. */
+	private HashMap<String, int[]> _words = null;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * a growable list of name positions used while building the index
+	 */
+	private static class Postings
+	{
+		private int[] _positions = new int[2];
+		private int _size = 0;
+
+		public void add(int position)
+		{
+			if (_size == _positions.length)
+				_positions = Arrays.copyOf(_positions, _size * 2);
+
+			_positions[_size++] = position;
+		}
+
+		public int[] toArray()
+		{
+			return Arrays.copyOf(_positions, _size);
+		}
+	}
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * builds the index
+	 * @param entries the names and their values
+	 * @param indexWords whether the words of the names are indexed too (see <code>findWordCandidates</code>)
+	 */
+	protected SubstringIndex(Map<String, V> entries, boolean indexWords)
+	{
+		_names = new String[entries.size()];
+		_values = new Object[entries.size()];
+
+		int position = 0;
+
+		for (Entry<String, V> entry: entries.entrySet())
+		{
+			_names[position] = entry.getKey();
+			_values[position] = entry.getValue();
+			position++;
+		}
+
+		HashMap<Long, Postings> grams = new HashMap<Long, Postings>();
+		HashMap<String, Postings> words = indexWords ? new HashMap<String, Postings>() : null;
+
+		HashSet<Long> nameGrams = new HashSet<Long>();
+		HashSet<String> nameWords = new HashSet<String>();
+
+		for (position = 0; position < _names.length; position++)
+		{
+			String name = _names[position];
+
+			nameGrams.clear();
+
+			for (int i = 0; i + GRAM <= name.length(); i++)
+			{
+				nameGrams.add(composeGram(name, i));
+			}
+
+			for (Long gram: nameGrams)
+			{
+				Postings postings = grams.get(gram);
+
+				if (postings == null)
+				{
+					postings = new Postings();
+					grams.put(gram, postings);
+				}
+
+				postings.add(position);
+			}
+
+			if (words == null)
+				continue;
+
+			nameWords.clear();
+			nameWords.addAll(splitWords(name));
+
+			for (String word: nameWords)
+			{
+				Postings postings = words.get(word);
+
+				if (postings == null)
+				{
+					postings = new Postings();
+					words.put(word, postings);
+				}
+
+				postings.add(position);
+			}
+		}
+
+		for (Entry<Long, Postings> entry: grams.entrySet())
+		{
+			_grams.put(entry.getKey(), entry.getValue().toArray());
+		}
+
+		if (words != null)
+		{
+			_words = new HashMap<String, int[]>(words.size() * 2);
+
+			for (Entry<String, Postings> entry: words.entrySet())
+			{
+				_words.put(entry.getKey(), entry.getValue().toArray());
+			}
+		}
+	}
+
+	/**
+	 * finds the names which may contain a snippet: all trigrams of the snippet are in them.
+	 * @param snippet the lowercase snippet
+	 * @return positions of the candidate names in ascending order or null if the snippet is too short to narrow the search (all names are candidates)
+	 */
+	public int[] findCandidates(String snippet)
+	{
+		if (snippet.length() < GRAM)
+			return null;
+
+		ArrayList<int[]> postings = new ArrayList<int[]>();
+
+		for (int i = 0; i + GRAM <= snippet.length(); i++)
+		{
+			int[] gramPostings = _grams.get(composeGram(snippet, i));
+
+			if (gramPostings == null)
+				return NO_CANDIDATES;
+
+			postings.add(gramPostings);
+		}
+
+		return intersect(postings);
+	}
+
+	/**
+	 * finds the names which may contain the words of a snippet as whole words
+	 * @param snippet the lowercase snippet
+	 * @return positions of the candidate names in ascending order or null if words are not indexed or the snippet has no words (all names are candidates)
+	 */
+	public int[] findWordCandidates(String snippet)
+	{
+		if (_words == null)
+			return null;
+
+		ArrayList<String> words = splitWords(snippet);
+
+		if (words.isEmpty())
+			return null;
+
+		ArrayList<int[]> postings = new ArrayList<int[]>();
+
+		for (String word: words)
+		{
+			int[] wordPostings = _words.get(word);
+
+			if (wordPostings == null)
+				return NO_CANDIDATES;
+
+			postings.add(wordPostings);
+		}
+
+		return intersect(postings);
+	}
+
+	/**
+	 * Getter for the number of indexed names
+	 * @return
+	 */
+	public int size()
+	{
+		return _names.length;
+	}
+
+	/**
+	 * Getter for the name at a position
+	 * @param position the position
+	 * @return
+	 */
+	public String getName(int position)
+	{
+		return _names[position];
+	}
+
+	/**
+	 * Getter for the value of the name at a position
+	 * @param position the position
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public V getValue(int position)
+	{
+		return (V)_values[position];
+	}
+
+	/**
+	 * splits a name into its words. word characters are letters, digits and '_' (the same as regex word boundaries).
+	 * @param name the name
+	 * @return the words
+	 */
+	private static ArrayList<String> splitWords(String name)
+	{
+		ArrayList<String> words = new ArrayList<String>();
+
+		int start = -1;
+
+		for (int i = 0; i <= name.length(); i++)
+		{
+			boolean wordChar = i < name.length() && (Character.isLetterOrDigit(name.charAt(i)) || name.charAt(i) == '_');
+
+			if (wordChar && start == -1)
+			{
+				start = i;
+			}
+			else if (!wordChar && start != -1)
+			{
+				words.add(name.substring(start, i));
+				start = -1;
+			}
+		}
+
+		return words;
+	}
+
+	/**
+	 * intersects sorted postings, starting from the shortest ones
+	 * @param postings the postings
+	 * @return the positions in all postings in ascending order
+	 */
+	private static int[] intersect(ArrayList<int[]> postings)
+	{
+		int[][] sorted = postings.toArray(new int[postings.size()][]);
+
+		Arrays.sort(sorted, new Comparator<int[]>()
+		{
+			@Override
+			public int compare(int[] postings1, int[] postings2)
+			{
+				return postings1.length - postings2.length;
+			}
+		});
+
+		int[] result = sorted[0];
+
+		for (int i = 1; i < sorted.length && result.length > 0; i++)
+		{
+			if (sorted[i] == sorted[i - 1])
+				continue;
+
+			int[] other = sorted[i];
+			int[] common = new int[result.length];
+			int size = 0;
+
+			int j = 0;
+			int k = 0;
+
+			while (j < result.length && k < other.length)
+			{
+				if (result[j] < other[k])
+					j++;
+				else if (result[j] > other[k])
+					k++;
+				else
+				{
+					common[size++] = result[j];
+					j++;
+					k++;
+				}
+			}
+
+			result = Arrays.copyOf(common, size);
+		}
+
+		return result;
+	}
+
+	/**
+	 * packs the trigram starting at a position into a number
+	 * @param text the text
+	 * @param start start of the trigram
+	 * @return the packed trigram
+	 */
+	private static long composeGram(String text, int start)
+	{
+		return ((long)text.charAt(start) << 32) | ((long)text.charAt(start + 1) << 16) | text.charAt(start + 2);
+	}
+}
@@ -0,0 +1,211 @@
+package ir.ac.itrc.qqa.semantic.kb;
+
+import ir.ac.itrc.qqa.semantic.reasoning.PlausibleStatement;
+
+/**
+ * A kb-wide index of statements by their (argument, relation type, referent) triples answering existence checks in constant time.
+ * It is an open addressing table (linear probing) holding the statements themselves: the triple of an entry is read from its statement.
+ * Removed entries are marked with a tombstone so lookups never need a lock. Additions and removals are synchronized.
+ * Nodes of a kb keep the index and update it whenever they get or lose an out-link (see <code>Node.addOutLink</code>).
+ * If a triple has several statements the most recent one (the one having the largest id) is found, the same as scanning the out-links.
+ * Since every link change passes through it, the index also records the changed nodes for the kb's next version (see <code>KbVersion</code>).
+ *
+ * @author Ehsan Darrudi
+ */
+public class TripleIndex
+{
+	/** marks the slots of removed statements */
+	private static final Object TOMBSTONE = new Object();
+
+	private static final int MIN_CAPACITY = 1024;
+
+	/** the slots: statements, tombstones or null */
+	private volatile Object[] _table = new Object[MIN_CAPACITY];
+
+	/** number of statements in the index */
+	private int _size = 0;
+
+	/** number of slots in use (statements and tombstones) */
+	private int _used = 0;
+
+	/** the nodes whose links have changed since the last version was published, null until versions are published */
+	private IdMap<Node> _changedNodes = null;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * finds the statement of a triple
+	 * @param argument the argument
+	 * @param relationType the relation type
+	 * @param referent the referent
+	 * @return the statement or null
+	 */
+	public PlausibleStatement find(Node argument, Node relationType, Node referent)
+	{
+		Object[] table = _table;
+
+		int mask = table.length - 1;
+
+		PlausibleStatement found = null;
+
+		for (int slot = hash(argument, relationType, referent) & mask; table[slot] != null; slot = (slot + 1) & mask)
+		{
+			Object entry = table[slot];
+
+			if (entry == TOMBSTONE)
+				continue;
+
+			PlausibleStatement statement = (PlausibleStatement)entry;
+
+			if (statement.argument == argument && statement.relationType == relationType && statement.referent == referent)
+			{
+				if (found == null || statement.getId() > found.getId())
+					found = statement;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * adds a statement
+	 * @param argument the argument of the statement
+	 * @param referent the referent of the statement
+	 * @param statement the statement
+	 */
+	protected synchronized void add(Node argument, Node referent, PlausibleStatement statement)
+	{
+		if ((_used + 1) * 2 > _table.length)
+			rehash();
+
+		Object[] table = _table;
+
+		int mask = table.length - 1;
+		int slot = hash(argument, statement.relationType, referent) & mask;
+
+		while (table[slot] != null && table[slot] != TOMBSTONE)
+			slot = (slot + 1) & mask;
+
+		if (table[slot] == null)
+			_used++;
+
+		table[slot] = statement;
+		_size++;
+
+		recordChange(argument, referent);
+	}
+
+	/**
+	 * removes a statement. the argument and referent are the ones the statement was added with since the statement may have been changed since.
+	 * @param argument the argument the statement was added with
+	 * @param referent the referent the statement was added with
+	 * @param statement the statement
+	 */
+	protected synchronized void remove(Node argument, Node referent, PlausibleStatement statement)
+	{
+		Object[] table = _table;
+
+		int mask = table.length - 1;
+
+		for (int slot = hash(argument, statement.relationType, referent) & mask; table[slot] != null; slot = (slot + 1) & mask)
+		{
+			if (table[slot] == statement)
+			{
+				table[slot] = TOMBSTONE;
+				_size--;
+
+				break;
+			}
+		}
+
+		recordChange(argument, referent);
+	}
+
+	/**
+	 * Getter for the number of statements in the index
+	 * @return
+	 */
+	public synchronized int size()
+	{
+		return _size;
+	}
+
+	/**
+	 * takes the nodes changed since the last call and starts recording the changes for the next one
+	 * @return the changed nodes or null on the first call
+	 */
+	protected synchronized IdMap<Node> takeChangedNodes()
+	{
+		IdMap<Node> changed = _changedNodes;
+
+		_changedNodes = new IdMap<Node>();
+
+		return changed;
+	}
+
+	/**
+	 * records the argument and referent of a changed link. the referent's in-links change along with the argument's out-links.
+	 * @param argument the argument
+	 * @param referent the referent
+	 */
+	private void recordChange(Node argument, Node referent)
+	{
+		if (_changedNodes == null)
+			return;
+
+		_changedNodes.put(argument, argument);
+		_changedNodes.put(referent, referent);
+	}
+
+	/**
+	 * moves the statements into a new table, dropping the tombstones and growing the table if needed.
+	 * the new table is published at once so lock free lookups see either the old or the new table.
+	 */
+	private void rehash()
+	{
+		int capacity = MIN_CAPACITY;
+
+		while (capacity < (_size + 1) * 4)
+			capacity <<= 1;
+
+		Object[] table = new Object[capacity];
+
+		int mask = capacity - 1;
+
+		for (Object entry: _table)
+		{
+			if (entry == null || entry == TOMBSTONE)
+				continue;
+
+			PlausibleStatement statement = (PlausibleStatement)entry;
+
+			int slot = hash(statement.argument, statement.relationType, statement.referent) & mask;
+
+			while (table[slot] != null)
+				slot = (slot + 1) & mask;
+
+			table[slot] = statement;
+		}
+
+		_used = _size;
+		_table = table;
+	}
+
+	/**
+	 * hashes a triple using the ids of its nodes
+	 * @param argument the argument
+	 * @param relationType the relation type
+	 * @param referent the referent
+	 * @return the hash
+	 */
+	private static int hash(Node argument, Node relationType, Node referent)
+	{
+		int h = argument.getId();
+
+		h = h * 0x9E3779B9 + relationType.getId();
+		h = h * 0x9E3779B9 + referent.getId();
+		h *= 0x9E3779B9;
+
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,197 @@
+package ir.ac.itrc.qqa.semantic.reasoning;
+
+import ir.ac.itrc.qqa.semantic.kb.Node;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implements the table of completed RECALL sub-questions (tabling).
+ * A sub-question is identified by its descriptor, argument, referent, CX time and CX location along with the remaining reasoning depth.
+ * Answers are kept as copies and are handed out as copies whose justifications are re-anchored to the reasoning path of the caller.
+ * Since some certainties depend on the inferences made above a sub-question (GEN-SPEC turn over),
+ * each entry also remembers what those inferences looked like and is only reused on a path which looks the same.
+ * The table may be shared among the branches of a reasoning and among questions as long as the knowledge base is locked.
+ *
+ * @author Ehsan Darrudi
+ */
+public class AnswerTable
+{
+	/** the completed sub-questions */
+	private ConcurrentHashMap<Key, Entry> _entries = new ConcurrentHashMap<Key, Entry>();
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * identifies a sub-question. nodes are compared by identity.
+	 */
+	private static class Key
+	{
+		private Node _descriptor;
+		private Node _argument;
+		private Node _referent;
+		private Node _cxTime;
+		private Node _cxLocation;
+		private int _remainingDepth;
+		private int _hash;
+
+		public Key(PlausibleQuestion pq, int remainingDepth)
+		{
+			_descriptor = pq.descriptor;
+			_argument = pq.argument;
+			_referent = pq.referent;
+			_cxTime = pq.cxTime;
+			_cxLocation = pq.cxLocation;
+			_remainingDepth = remainingDepth;
+
+			int hash = System.identityHashCode(_descriptor);
+			hash = 31 * hash + System.identityHashCode(_argument);
+			hash = 31 * hash + System.identityHashCode(_referent);
+			hash = 31 * hash + System.identityHashCode(_cxTime);
+			hash = 31 * hash + System.identityHashCode(_cxLocation);
+
+			_hash = 31 * hash + remainingDepth;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return _hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key)obj;
+
+			return 	_descriptor == other._descriptor &&
+					_argument == other._argument &&
+					_referent == other._referent &&
+					_cxTime == other._cxTime &&
+					_cxLocation == other._cxLocation &&
+					_remainingDepth == other._remainingDepth;
+		}
+	}
+
+	/**
+	 * the answers of a completed sub-question
+	 */
+	private static class Entry
+	{
+		/** the answers as they were returned */
+		private ArrayList<PlausibleAnswer> _answers;
+
+		/** the justification of the reasoning path above the sub-question when it was computed */
+		private Justification _anchor;
+
+		/** the GEN/SPEC turn over functions looked up in the history while computing the sub-question */
+		private String[] _probes;
+
+		/** whether each probe was found in the history above the sub-question */
+		private boolean[] _probeResults;
+	}
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * finds the answers of a completed sub-question
+	 * @param pq the sub-question
+	 * @param remainingDepth the reasoning depth left for the sub-question
+	 * @param history the history of the caller, the sub-question itself is not pushed yet
+	 * @param anchor the justification of the caller's reasoning path
+	 * @param probes receives the turn over functions the reused answers depend on
+	 * @return copies of the answers re-anchored to the caller's path or null if the sub-question is not in the table
+	 */
+	public ArrayList<PlausibleAnswer> lookup(PlausibleQuestion pq, int remainingDepth, History history, Justification anchor, Set<String> probes)
+	{
+		Entry entry = _entries.get(new Key(pq, remainingDepth));
+
+		if (entry == null)
+		{
+			return null;
+		}
+
+		int depth = history.getDepth() + 1;
+
+		for (int i = 0; i < entry._probes.length; i++)
+		{
+			if (history.doesGenSpecTurnOver(entry._probes[i], depth) != entry._probeResults[i])
+			{
+				return null;
+			}
+		}
+
+		for (String probe: entry._probes)
+		{
+			probes.add(probe);
+		}
+
+		ArrayList<PlausibleAnswer> answers = new ArrayList<PlausibleAnswer>(entry._answers.size());
+
+		for (PlausibleAnswer original: entry._answers)
+		{
+			PlausibleAnswer answer = new PlausibleAnswer(original);
+
+			answer.ReanchorJustifications(entry._anchor, anchor);
+
+			answers.add(answer);
+		}
+
+		return answers;
+	}
+
+	/**
+	 * keeps the answers of a completed sub-question
+	 * @param pq the sub-question
+	 * @param remainingDepth the reasoning depth which was left for the sub-question
+	 * @param history the history of the caller, the sub-question itself has been popped
+	 * @param anchor the justification of the caller's reasoning path
+	 * @param probes the turn over functions looked up while computing the sub-question
+	 * @param answers the answers
+	 */
+	public void store(PlausibleQuestion pq, int remainingDepth, History history, Justification anchor, Set<String> probes, ArrayList<PlausibleAnswer> answers)
+	{
+		Entry entry = new Entry();
+
+		int depth = history.getDepth() + 1;
+
+		entry._anchor = anchor;
+		entry._probes = probes.toArray(new String[probes.size()]);
+		entry._probeResults = new boolean[entry._probes.length];
+
+		for (int i = 0; i < entry._probes.length; i++)
+		{
+			entry._probeResults[i] = history.doesGenSpecTurnOver(entry._probes[i], depth);
+		}
+
+		entry._answers = new ArrayList<PlausibleAnswer>(answers.size());
+
+		for (PlausibleAnswer answer: answers)
+		{
+			entry._answers.add(new PlausibleAnswer(answer));
+		}
+
+		_entries.putIfAbsent(new Key(pq, remainingDepth), entry);
+	}
+
+	/**
+	 * removes all sub-questions from the table
+	 */
+	public void clear()
+	{
+		_entries.clear();
+	}
+
+	/**
+	 * Getter for the number of sub-questions in the table
+	 * @return
+	 */
+	public int size()
+	{
+		return _entries.size();
+	}
+}
@@ -1,11 +1,10 @@
 package ir.ac.itrc.qqa.semantic.reasoning;
 
+import ir.ac.itrc.qqa.semantic.enums.InferenceType;
 import ir.ac.itrc.qqa.semantic.kb.Node;
 import ir.ac.itrc.qqa.semantic.util.MyError;
-import ir.ac.itrc.qqa.semantic.util.Common;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
 
 /**
  * implements a simple history to keep track of reasoning steps and to avoid getting trapped in a reasoning loop 
@@ -16,12 +15,85 @@ public class History
 {
 	/** the link-list pointer to the last history element */
 	private HistoryEmement lastNodeInHistory;
+	
+	/** popped elements kept to be reused by later pushes */
+	private HistoryEmement freeElements = null;
 
-	/** a hash to keep track of all elements in the history */
-	private Hashtable<String, HistoryEmement> epochs = new Hashtable<String, HistoryEmement>();
+	/** the initial number of slots in the key table (a power of two) */
+	private static final int INITIAL_CAPACITY = 32;
+	
+	/** an open-addressing (linear probing) table holding the keys of all elements in the history, two longs per slot */
+	private long[] keys = new long[2 * INITIAL_CAPACITY];
+	
+	/** the depth of the element each slot of <code>keys</code> belongs to; 0 marks an empty slot */
+	private int[] depths = new int[INITIAL_CAPACITY];
+	
+	/** the number of occupied slots in the key table */
+	private int size = 0;
+	
+	/** whether reasoning lines are kept as a chain of immutable steps so justifications can be composed lazily */
+	private boolean lazyJustifications = false;
+	
+	/** the last reasoning step of the chain (lazy justifications only) */
+	private ReasoningStep lastReasoningStep = null;
 	
 	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
 	
+	/**
+	 * creates an empty history
+	 */
+	public History()
+	{
+	}
+	
+	/**
+	 * creates a deep copy of another history, used to give a reasoning branch its own history
+	 * @param original the history to be copied
+	 */
+	public History(History original)
+	{
+		ArrayList<HistoryEmement> elements = new ArrayList<HistoryEmement>();
+		
+		HistoryEmement temp = original.lastNodeInHistory;
+		
+		while (temp != null)
+		{
+			elements.add(temp);
+			temp = temp.nextHistoryElement;
+		}
+		
+		// re-linking the copies from the oldest element to the newest one
+		for (int i = elements.size() - 1; i >= 0; i--)
+		{
+			HistoryEmement he = new HistoryEmement(elements.get(i));
+			
+			he.nextHistoryElement = lastNodeInHistory;
+			
+			lastNodeInHistory = he;
+		}
+		
+		keys = original.keys.clone();
+		depths = original.depths.clone();
+		size = original.size;
+		
+		lazyJustifications = original.lazyJustifications;
+		lastReasoningStep = original.lastReasoningStep;
+	}
+	
+	/**
+	 * Setter for <code>lazyJustifications</code>. it may only be changed while the history is empty.
+	 * @param lazy true to keep reasoning lines as a chain of immutable steps
+	 */
+	public void setLazyJustifications(boolean lazy)
+	{
+		if (lastNodeInHistory != null)
+		{
+			MyError.exit("The justification mode of a non-empty history may not be changed!");
+		}
+		
+		lazyJustifications = lazy;
+	}
+	
 	/**
 	 * pushes a reasoning step into history
 	 * @param inference the inference
@@ -31,17 +103,54 @@ public class History
 	 */
 	public void pushHistory(String inference, Node descriptor, Node argument, Node referent)
 	{
-		String key = composeSearchKey(inference, descriptor, argument, referent);
-
-		HistoryEmement he = new HistoryEmement();
+		pushHistory(InferenceType.valueOf(inference), descriptor, argument, referent);
+	}
+	public void pushHistory(InferenceType inference, Node descriptor, Node argument, Node referent)
+	{
+		MyError.assertNotNull(descriptor);
+		
+		HistoryEmement he = freeElements;
+		
+		if (he != null)
+		{
+			freeElements = he.nextHistoryElement;
+			he.reasoningLineNum = 0;
+		}
+		else
+		{
+			he = new HistoryEmement();
+		}
 
-		he.searchKey = key;
+		he.inference = inference;
+		he.descriptor = descriptor;
+		he.argument = argument;
+		he.referent = referent;
+		
+		he.depth = getDepth() + 1;
+		he.baseStep = lastReasoningStep;
 
 		he.nextHistoryElement = lastNodeInHistory;
 
 		lastNodeInHistory = he;
 
-		epochs.put(key, he);
+		long high = composeHighKey(inference, descriptor);
+		long low = composeLowKey(argument, referent);
+		
+		if (2 * (size + 1) > depths.length)
+		{
+			growKeyTable();
+		}
+		
+		int slot = findSlot(high, low);
+		
+		if (depths[slot] == 0)
+		{
+			keys[2 * slot] = high;
+			keys[2 * slot + 1] = low;
+			size++;
+		}
+		
+		depths[slot] = he.depth;
 	}
 
 	/**
@@ -51,21 +160,37 @@ public class History
 	 */
 	public void popHistory(String inference, PlausibleQuestion pq)
 	{
-		String key = composeSearchKey(inference, pq.descriptor, pq.argument, pq.referent);
-
-		HistoryEmement HE = (HistoryEmement)epochs.get(key);
-		MyError.assertNotNull(HE);
+		popHistory(InferenceType.valueOf(inference), pq);
+	}
+	public void popHistory(InferenceType inference, PlausibleQuestion pq)
+	{
+		int slot = findSlot(composeHighKey(inference, pq.descriptor), composeLowKey(pq.argument, pq.referent));
 
-		if (HE != lastNodeInHistory)
+		if (depths[slot] == 0)
 		{
-			MyError.exit("You tried to pop a node from history stack which wasn't the last one!");
+			MyError.exit("You tried to pop a node which isn't in the history stack!");
 		}
 		
 		MyError.assertNotNull(lastNodeInHistory);
 
-		HistoryEmement Temp = lastNodeInHistory.nextHistoryElement;
+		if (depths[slot] != lastNodeInHistory.depth)
+		{
+			MyError.exit("You tried to pop a node from history stack which wasn't the last one!");
+		}
 
-		epochs.remove(key);
+		removeSlot(slot);
+		
+		HistoryEmement Temp = lastNodeInHistory.nextHistoryElement;
+		
+		lastReasoningStep = lastNodeInHistory.baseStep;
+		
+		// the element is reused by the next push; its nodes are released right away
+		lastNodeInHistory.descriptor = null;
+		lastNodeInHistory.argument = null;
+		lastNodeInHistory.referent = null;
+		lastNodeInHistory.baseStep = null;
+		lastNodeInHistory.nextHistoryElement = freeElements;
+		freeElements = lastNodeInHistory;
 		
 		lastNodeInHistory = Temp;
 	}
@@ -80,16 +205,40 @@ public class History
 	 */
 	public boolean isInHistory(String inference, Node descriptor, Node argument, Node referent)
 	{
-		String Key = composeSearchKey(inference, descriptor, argument, referent);
-		 
-		HistoryEmement HE = epochs.get(Key);
+		return findInHistory(inference, descriptor, argument, referent) > 0;
+	}
+	
+	/**
+	 * finds a reasoning step in the history
+	 * @param inference 
+	 * @param descriptor
+	 * @param argument
+	 * @param referent
+	 * @return the depth of the step in the history or 0 if it doesn't exist
+	 */
+	public int findInHistory(String inference, Node descriptor, Node argument, Node referent)
+	{
+		return findInHistory(InferenceType.valueOf(inference), descriptor, argument, referent);
+	}
+	public int findInHistory(InferenceType inference, Node descriptor, Node argument, Node referent)
+	{
+		MyError.assertNotNull(descriptor);
 		
-		if (HE != null)
+		return depths[findSlot(composeHighKey(inference, descriptor), composeLowKey(argument, referent))];
+	}
+	
+	/**
+	 * Getter for the number of reasoning steps in the history
+	 * @return
+	 */
+	public int getDepth()
+	{
+		if (lastNodeInHistory == null)
 		{
-			return true;	
+			return 0;
 		}
-
-		return false;
+		
+		return lastNodeInHistory.depth;
 	}
 	
 	/**
@@ -104,7 +253,7 @@ public class History
 
 		while (temp != null)
 		{
-			out += temp.searchKey + " <-- ";
+			out += composeSearchKey(temp.inference.name(), temp.descriptor, temp.argument, temp.referent) + " <-- ";
 
 			temp = temp.nextHistoryElement;
 		}
@@ -122,7 +271,6 @@ public class History
 	{
 		String out = "";
 		String text;
-		int pos;
 
 		ArrayList<String> tempStrings = new ArrayList<String>();
 
@@ -130,13 +278,9 @@ public class History
 
 		while (temp != null)
 		{
-			pos = temp.searchKey.indexOf("[");
-            			
-			text = Common.removeSubstring(temp.searchKey, pos, temp.searchKey.length() - pos);
-			
-			if (text != "RECALL")
+			if (temp.inference != InferenceType.RECALL)
 			{
-				tempStrings.add(text);
+				tempStrings.add(temp.inference.name());
 			}
 			
 			temp = temp.nextHistoryElement;
@@ -165,7 +309,20 @@ public class History
 	 * @return true if successful, false otherwise
 	 */
 	public void pushReasoningLine(String statement, String certainty, String reference)	
-	{		
+	{
+		if (lazyJustifications)
+		{
+			if (lastNodeInHistory.reasoningLineNum == lastNodeInHistory.maxReasningLineNum)
+			{
+				return;
+			}
+			
+			lastReasoningStep = new ReasoningStep(statement, certainty, reference, lastNodeInHistory.depth, lastReasoningStep);
+			lastNodeInHistory.reasoningLineNum++;
+			
+			return;
+		}
+		
 		lastNodeInHistory.pushReasningLine(statement, certainty, reference);
 	}
 	
@@ -176,15 +333,52 @@ public class History
 	 */
 	public boolean popReasoningLine(int LinesNum)
 	{
+		if (lazyJustifications)
+		{
+			if (lastNodeInHistory.reasoningLineNum - LinesNum < 0)
+			{
+				return false;
+			}
+			
+			lastNodeInHistory.reasoningLineNum -= LinesNum;
+			
+			for (int i = 0; i < LinesNum; i++)
+			{
+				lastReasoningStep = lastReasoningStep.previous;
+			}
+			
+			return true;
+		}
+		
 		return lastNodeInHistory.popReasoningLine(LinesNum);
 	}
 
+	/**
+	 * gives the justification of the current reasoning step; 
+	 * with lazy justifications it just points to the last reasoning step, otherwise all the reasoning lines are composed.
+	 * @return the justification
+	 */
+	public Justification getJustification()
+	{
+		if (lazyJustifications)
+		{
+			return new Justification(lastReasoningStep);
+		}
+		
+		return new Justification(getReasoningLines());
+	}
+
 	/**
 	 * composes all the reasoning line (justification) for the current reasoning step
 	 * @return composed justification
 	 */
 	public String getReasoningLines()
 	{
+		if (lazyJustifications)
+		{
+			return ReasoningStep.composeLines(lastReasoningStep);
+		}
+		
 		String Out = "";
 		String ReasningLine = "";
 		HistoryEmement Temp = lastNodeInHistory;
@@ -208,7 +402,126 @@ public class History
 	}
 
 	/**
-	 * used internally to compose a search key for the history hashtable
+	 * composes the first half of the key of a reasoning step: the inference and the descriptor id
+	 * @param inference
+	 * @param descriptor
+	 * @return the key half
+	 */
+	private static long composeHighKey(InferenceType inference, Node descriptor)
+	{
+		return ((long)inference.ordinal() << 32) | (descriptor.getId() & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * composes the second half of the key of a reasoning step: the argument and referent ids (0 for a missing node)
+	 * @param argument
+	 * @param referent
+	 * @return the key half
+	 */
+	private static long composeLowKey(Node argument, Node referent)
+	{
+		long argumentId = (argument == null) ? 0 : argument.getId();
+		long referentId = (referent == null) ? 0 : referent.getId();
+		
+		return (argumentId << 32) | (referentId & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * computes the home slot of a key in the key table
+	 * @param high
+	 * @param low
+	 * @return the slot
+	 */
+	private int homeSlot(long high, long low)
+	{
+		long hash = (high * 0x9E3779B97F4A7C15L) ^ low;
+		
+		hash *= 0xC2B2AE3D27D4EB4FL;
+		
+		return (int)(hash >>> 32) & (depths.length - 1);
+	}
+	
+	/**
+	 * finds the slot of a key in the key table
+	 * @param high
+	 * @param low
+	 * @return the slot holding the key or the empty slot where it would be inserted
+	 */
+	private int findSlot(long high, long low)
+	{
+		int mask = depths.length - 1;
+		int slot = homeSlot(high, low);
+		
+		while (depths[slot] != 0)
+		{
+			if (keys[2 * slot] == high && keys[2 * slot + 1] == low)
+			{
+				return slot;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * empties a slot of the key table shifting back the following keys of its probe sequence so no tombstone is needed
+	 * @param slot
+	 */
+	private void removeSlot(int slot)
+	{
+		int mask = depths.length - 1;
+		int hole = slot;
+		int next = (slot + 1) & mask;
+		
+		while (depths[next] != 0)
+		{
+			int home = homeSlot(keys[2 * next], keys[2 * next + 1]);
+			
+			// the key may fill the hole only if the hole lies between its home slot and its current slot
+			if (((next - home) & mask) >= ((next - hole) & mask))
+			{
+				keys[2 * hole] = keys[2 * next];
+				keys[2 * hole + 1] = keys[2 * next + 1];
+				depths[hole] = depths[next];
+				
+				hole = next;
+			}
+			
+			next = (next + 1) & mask;
+		}
+		
+		depths[hole] = 0;
+		size--;
+	}
+	
+	/**
+	 * doubles the size of the key table
+	 */
+	private void growKeyTable()
+	{
+		long[] oldKeys = keys;
+		int[] oldDepths = depths;
+		
+		keys = new long[2 * oldKeys.length];
+		depths = new int[2 * oldDepths.length];
+		
+		for (int i = 0; i < oldDepths.length; i++)
+		{
+			if (oldDepths[i] != 0)
+			{
+				int slot = findSlot(oldKeys[2 * i], oldKeys[2 * i + 1]);
+				
+				keys[2 * slot] = oldKeys[2 * i];
+				keys[2 * slot + 1] = oldKeys[2 * i + 1];
+				depths[slot] = oldDepths[i];
+			}
+		}
+	}
+
+	/**
+	 * used internally to compose a readable key of a reasoning step (only used to render the history)
 	 * @param inference 
 	 * @param DESCRIPTOR
 	 * @param argument
@@ -252,11 +565,24 @@ public class History
 	 */
 	public boolean doesGenSpecTurnOver(String Function)
 	{
+		return doesGenSpecTurnOver(Function, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * checks whether a GEN-SPEC inference chain has been occurred considering only the steps below a depth in the history 
+	 * @param Function
+	 * @param depth only the steps with a lower depth are considered
+	 * @return true/false
+	 */
+	public boolean doesGenSpecTurnOver(String Function, int depth)
+	{
+		InferenceType inference = InferenceType.valueOf(Function);
+		
 		HistoryEmement Temp = lastNodeInHistory;
 
 		while (Temp != null)
 		{
-			if (Temp.searchKey.startsWith(Function))
+			if (Temp.depth < depth && Temp.inference == inference)
 			{
 				return true;
 			}
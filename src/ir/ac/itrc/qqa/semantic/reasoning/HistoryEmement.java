@@ -1,6 +1,7 @@
 package ir.ac.itrc.qqa.semantic.reasoning;
 
-import java.util.HashSet;
+import ir.ac.itrc.qqa.semantic.enums.InferenceType;
+import ir.ac.itrc.qqa.semantic.kb.Node;
 
 /**
  * implements each element in the reasoning history
@@ -9,25 +10,61 @@ import java.util.HashSet;
  */
 public class HistoryEmement
 {
-	/** search key for this element to be used in the history hash table*/
-	String searchKey = "";
+	/** the inference of this reasoning step */
+	InferenceType inference = null;
+	
+	/** the question of this reasoning step; its node ids form the key of this element in the history table */
+	Node descriptor = null;
+	Node argument = null;
+	Node referent = null;
 	
 	/** link to the next element */
 	HistoryEmement nextHistoryElement = null;
 	
+	/** the position of this element in the history stack, starting from 1 for the oldest element */
+	int depth = 0;
+	
 	/** number of reasoning lines in this element */
 	int reasoningLineNum = 0;
 	
 	/** the maximum number of reasoning steps (lines) allowed */
 	final int maxReasningLineNum = 30;
 	
-	/** the container for reasoning lines */
-	private String[] reasoningLine = new String[maxReasningLineNum];
+	/** the last reasoning step of the history before this element was pushed (lazy justifications only) */
+	ReasoningStep baseStep = null;
 	
-	private HashSet<String> inferences = new HashSet<String>(); 
+	/** the container for reasoning lines, allocated when the first line is pushed */
+	private String[] reasoningLine = null;
 
 	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
 
+	/**
+	 * creates an empty element
+	 */
+	public HistoryEmement()
+	{
+	}
+	
+	/**
+	 * copies an element along with its reasoning lines. the link to the next element is not copied.
+	 * @param original the element to be copied
+	 */
+	public HistoryEmement(HistoryEmement original)
+	{
+		inference = original.inference;
+		descriptor = original.descriptor;
+		argument = original.argument;
+		referent = original.referent;
+		depth = original.depth;
+		baseStep = original.baseStep;
+		reasoningLineNum = original.reasoningLineNum;
+		
+		if (original.reasoningLine != null)
+		{
+			reasoningLine = original.reasoningLine.clone();
+		}
+	}
+
 	/**
 	 * adds a reasoning line to this element (reasoning step)
 	 * 
@@ -42,6 +79,11 @@ public class HistoryEmement
 			return;
 		}
 		
+		if (reasoningLine == null)
+		{
+			reasoningLine = new String[maxReasningLineNum];
+		}
+		
 		reasoningLine[reasoningLineNum] = statement;
 
 		if (!certainty.isEmpty())
@@ -0,0 +1,199 @@
+package ir.ac.itrc.qqa.semantic.reasoning;
+
+import java.util.ArrayList;
+
+/**
+ * implements a single justification of an answer.
+ * a justification is either a text, or (when justifications are lazy) the last step of a chain of reasoning steps
+ * along with the adjustments made to it afterwards. lazy justifications are only composed into text when someone reads them.
+ * justifications are immutable so answers may share them freely.
+ * @author Ehsan Darrudi
+ *
+ */
+public class Justification
+{
+	/** the text of the justification; for lazy justifications it is cached once composed */
+	private volatile String _text = null;
+
+	/** whether the justification is a chain of reasoning steps */
+	private boolean _lazy = false;
+
+	/** the last reasoning step of a lazy justification */
+	private ReasoningStep _step = null;
+
+	/** the justification an adjusted justification is based on */
+	private Justification _base = null;
+
+	/** the text an adjustment replaces */
+	private String _old = null;
+
+	/** the replacement text of an adjustment */
+	private String _new = null;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * creates a justification from a text
+	 * @param text the justification
+	 */
+	public Justification(String text)
+	{
+		_text = text;
+	}
+
+	/**
+	 * creates a lazy justification from a chain of reasoning steps
+	 * @param step the last step of the chain
+	 */
+	public Justification(ReasoningStep step)
+	{
+		_lazy = true;
+		_step = step;
+	}
+
+	/**
+	 * creates a lazy justification which replaces a text in another one
+	 * @param base the justification to be adjusted
+	 * @param oldText the text to be replaced
+	 * @param newText the replacement
+	 */
+	private Justification(Justification base, String oldText, String newText)
+	{
+		_base = base;
+		_old = oldText;
+		_new = newText;
+	}
+
+	/**
+	 * checks whether the justification is kept as text
+	 * @return true/false
+	 */
+	private boolean isText()
+	{
+		return !_lazy && _base == null;
+	}
+
+	/**
+	 * replaces a text in this justification, e.g. puts a conclusion in place of its place holder
+	 * @param oldText the text to be replaced
+	 * @param newText the replacement
+	 * @return the adjusted justification
+	 */
+	public Justification replace(String oldText, String newText)
+	{
+		if (isText())
+		{
+			return new Justification(_text.replace(oldText, newText));
+		}
+
+		return new Justification(this, oldText, newText);
+	}
+
+	/**
+	 * replaces the reasoning path this justification was found on with another path.
+	 * it is used when the answer of a sub-question is reused on a different path.
+	 * @param oldAnchor the justification of the old path
+	 * @param newAnchor the justification of the new path
+	 * @return the re-anchored justification
+	 */
+	public Justification reanchor(Justification oldAnchor, Justification newAnchor)
+	{
+		if (_base != null)
+		{
+			Justification base = _base.reanchor(oldAnchor, newAnchor);
+
+			if (base == _base)
+			{
+				return this;
+			}
+
+			return new Justification(base, _old, _new);
+		}
+
+		if (_lazy && oldAnchor._lazy && newAnchor._lazy && oldAnchor._step != newAnchor._step)
+		{
+			ReasoningStep step = reanchor(_step, oldAnchor._step, newAnchor._step);
+
+			if (step == _step)
+			{
+				return this;
+			}
+
+			return new Justification(step);
+		}
+
+		if (isText() && oldAnchor.isText() && newAnchor.isText())
+		{
+			String oldText = oldAnchor._text;
+
+			if (!oldText.equals(newAnchor._text) && _text.endsWith(oldText))
+			{
+				return new Justification(_text.substring(0, _text.length() - oldText.length()) + newAnchor._text);
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * copies the steps of a chain up to an anchor step on top of another anchor step
+	 * @param last the last step of the chain
+	 * @param oldAnchor the anchor step in the chain
+	 * @param newAnchor the new anchor step
+	 * @return the last step of the new chain; the chain itself if it doesn't pass the old anchor
+	 */
+	private static ReasoningStep reanchor(ReasoningStep last, ReasoningStep oldAnchor, ReasoningStep newAnchor)
+	{
+		ArrayList<ReasoningStep> steps = new ArrayList<ReasoningStep>();
+
+		ReasoningStep step = last;
+
+		while (step != oldAnchor)
+		{
+			if (step == null)
+			{
+				return last;
+			}
+
+			steps.add(step);
+			step = step.previous;
+		}
+
+		step = newAnchor;
+
+		for (int i = steps.size() - 1; i >= 0; i--)
+		{
+			ReasoningStep original = steps.get(i);
+
+			step = new ReasoningStep(original.statement, original.certainty, original.reference, original.depth, step);
+		}
+
+		return step;
+	}
+
+	/**
+	 * composes the text of the justification
+	 * @return the text
+	 */
+	@Override
+	public String toString()
+	{
+		String text = _text;
+
+		if (text == null)
+		{
+			if (_base != null)
+			{
+				text = _base.toString().replace(_old, _new);
+			}
+			else
+			{
+				text = ReasoningStep.composeLines(_step);
+			}
+
+			_text = text;
+		}
+
+		return text;
+	}
+}
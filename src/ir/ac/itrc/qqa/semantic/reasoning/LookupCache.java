@@ -0,0 +1,145 @@
+package ir.ac.itrc.qqa.semantic.reasoning;
+
+import ir.ac.itrc.qqa.semantic.enums.ReasoningDirection;
+import ir.ac.itrc.qqa.semantic.kb.Node;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the results of read-only lookups in the knowledge base (senses of lemmas, hierarchical neighbours and statements of relation types)
+ * so the questions of a batch share them (see <code>SemanticReasoner.answerQuestions</code>).
+ * The lookups only depend on the knowledge base so the cache is only valid while the kb is locked.
+ * A lookup is computed by the first question needing it; two questions may compute the same lookup at once, which is harmless.
+ *
+ * @author Ehsan Darrudi
+ */
+public class LookupCache
+{
+	/** the senses of lemmas keyed by the lemma and its POS tag */
+	private ConcurrentHashMap<String, ArrayList<PlausibleAnswer>> _senses = new ConcurrentHashMap<String, ArrayList<PlausibleAnswer>>();
+
+	/** the statements of relation types keyed by the relation type and the conditional type */
+	private ConcurrentHashMap<String, ArrayList<PlausibleStatement>> _statements = new ConcurrentHashMap<String, ArrayList<PlausibleStatement>>();
+
+	/** the hierarchical neighbours of nodes, one map per direction */
+	private EnumMap<ReasoningDirection, ConcurrentHashMap<Node, ArrayList<PlausibleAnswer>>> _neighbours = new EnumMap<ReasoningDirection, ConcurrentHashMap<Node, ArrayList<PlausibleAnswer>>>(ReasoningDirection.class);
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * Creates an empty cache
+	 */
+	public LookupCache()
+	{
+		// all maps are created up front so the questions only read the enum map
+		for (ReasoningDirection direction: ReasoningDirection.values())
+		{
+			_neighbours.put(direction, new ConcurrentHashMap<Node, ArrayList<PlausibleAnswer>>());
+		}
+	}
+
+	/**
+	 * finds the senses of a lemma
+	 * @param name the lemma along with its POS tag
+	 * @return the senses or null if they are not looked up yet
+	 */
+	public ArrayList<PlausibleAnswer> getSenses(String name)
+	{
+		return _senses.get(name);
+	}
+
+	/**
+	 * keeps the senses of a lemma
+	 * @param name the lemma along with its POS tag
+	 * @param senses the senses
+	 */
+	public void putSenses(String name, ArrayList<PlausibleAnswer> senses)
+	{
+		_senses.putIfAbsent(name, senses);
+	}
+
+	/**
+	 * finds the statements of a relation type
+	 * @param key the relation type along with the conditional type of the statements
+	 * @return the statements or null if they are not looked up yet
+	 */
+	public ArrayList<PlausibleStatement> getStatements(String key)
+	{
+		return _statements.get(key);
+	}
+
+	/**
+	 * keeps the statements of a relation type
+	 * @param key the relation type along with the conditional type of the statements
+	 * @param statements the statements
+	 */
+	public void putStatements(String key, ArrayList<PlausibleStatement> statements)
+	{
+		_statements.putIfAbsent(key, statements);
+	}
+
+	/**
+	 * finds the hierarchical neighbours of a node.
+	 * Since inferences may adjust the neighbours they get, copies are handed out.
+	 * @param node the node
+	 * @param direction the hierarchical direction
+	 * @return copies of the neighbours or null if they are not looked up yet
+	 */
+	public ArrayList<PlausibleAnswer> getNeighbours(Node node, ReasoningDirection direction)
+	{
+		ArrayList<PlausibleAnswer> neighbours = _neighbours.get(direction).get(node);
+
+		if (neighbours == null)
+		{
+			return null;
+		}
+
+		return copy(neighbours);
+	}
+
+	/**
+	 * keeps copies of the hierarchical neighbours of a node
+	 * @param node the node
+	 * @param direction the hierarchical direction
+	 * @param neighbours the neighbours
+	 */
+	public void putNeighbours(Node node, ReasoningDirection direction, ArrayList<PlausibleAnswer> neighbours)
+	{
+		_neighbours.get(direction).putIfAbsent(node, copy(neighbours));
+	}
+
+	/**
+	 * Getter for the number of lookups in the cache
+	 * @return
+	 */
+	public int size()
+	{
+		int size = _senses.size() + _statements.size();
+
+		for (ConcurrentHashMap<Node, ArrayList<PlausibleAnswer>> neighbours: _neighbours.values())
+		{
+			size += neighbours.size();
+		}
+
+		return size;
+	}
+
+	/**
+	 * copies a list of answers
+	 * @param answers the answers
+	 * @return the copies
+	 */
+	private static ArrayList<PlausibleAnswer> copy(ArrayList<PlausibleAnswer> answers)
+	{
+		ArrayList<PlausibleAnswer> copies = new ArrayList<PlausibleAnswer>(answers.size());
+
+		for (PlausibleAnswer answer: answers)
+		{
+			copies.add(new PlausibleAnswer(answer));
+		}
+
+		return copies;
+	}
+}
@@ -34,7 +34,7 @@ public class PlausibleAnswer implements Comparable<Object>
 	public DependencyType dependencyType = DependencyType.ANY;
 
 	/** justification for this answer */
-	private ArrayList<String> _justifications = new ArrayList<String>();
+	private ArrayList<Justification> _justifications = new ArrayList<Justification>();
 
 	/** contextual info for this answer */
 	public ArrayList<PlausibleAnswer> contexs = new ArrayList<PlausibleAnswer>();
@@ -55,7 +55,7 @@ public class PlausibleAnswer implements Comparable<Object>
 	
 	public float score = 0;
 	
-	Pattern _inferenceLinePattern = Pattern.compile("[\r\n]([^>:].+?)[~\r\n]", Pattern.DOTALL);
+	private static final Pattern _inferenceLinePattern = Pattern.compile("[\r\n]([^>:].+?)[~\r\n]", Pattern.DOTALL);
 
 	// ~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
 	
@@ -78,6 +78,28 @@ public class PlausibleAnswer implements Comparable<Object>
 		this.parameters = new CertaintyParameters();		
 	}
 
+	/**
+	 * Copy constructor. the certainty parameters and the lists of justifications, contexts and conditions are copied 
+	 * so the copy can be adjusted by an inference without touching the original. 
+	 * @param original the answer to be copied
+	 */
+	public PlausibleAnswer(PlausibleAnswer original)
+	{
+		answer = original.answer;
+		isNegative = original.isNegative;
+		parameters = new CertaintyParameters(original.parameters);
+		dependencyType = original.dependencyType;
+		_justifications = new ArrayList<Justification>(original._justifications);
+		contexs = new ArrayList<PlausibleAnswer>(original.contexs);
+		conditions = new ArrayList<String>(original.conditions);
+		isStructuredTextAnswer = original.isStructuredTextAnswer;
+		statement = original.statement;
+		question = original.question;
+		targetMatch = original.targetMatch;
+		source = original.source;
+		score = original.score;
+	}
+
 	public void copyParameters(CertaintyParameters CP)
 	{
 		parameters = new CertaintyParameters(CP);
@@ -99,6 +121,10 @@ public class PlausibleAnswer implements Comparable<Object>
 	 * @param JustificationIn justification
 	 */
 	public void AddJustification(String JustificationIn)
+	{
+		_justifications.add(new Justification(JustificationIn));
+	}
+	public void AddJustification(Justification JustificationIn)
 	{
 		_justifications.add(JustificationIn);
 	}
@@ -109,7 +135,19 @@ public class PlausibleAnswer implements Comparable<Object>
 	 */
 	public void AddJustifications(ArrayList<String> JustificationsIn)
 	{
-		_justifications.addAll(JustificationsIn);
+		for (String JustificationIn: JustificationsIn)
+		{
+			AddJustification(JustificationIn);
+		}
+	}
+	
+	/**
+	 * adds all justifications of another answer to this answer without composing them
+	 * @param answer the other answer
+	 */
+	public void AddJustifications(PlausibleAnswer answer)
+	{
+		_justifications.addAll(answer._justifications);
 	}
 	
 	/**
@@ -133,16 +171,16 @@ public class PlausibleAnswer implements Comparable<Object>
 	}
 	public void AdjustConclusionInJustifications(String Inference, int Depth, String Statement, String Certainty, String ExtraOld,	String ExtraNew)
 	{
-		String Justification;
+		Justification Justification;
 		String Old = "*CONCLUSION GOES HERE*" + Inference + "(" + Depth + ")";
 		String New = "> " + Inference + ":\r::" + Statement + " : " + Certainty;
 
-		ArrayList<String> NewJustifications = new ArrayList<String>();
+		ArrayList<Justification> NewJustifications = new ArrayList<Justification>(_justifications.size());
 
-		Iterator<String> JustificationEnum = _justifications.iterator();
+		Iterator<Justification> JustificationEnum = _justifications.iterator();
 		while (JustificationEnum.hasNext())
 		{
-			Justification = (String) JustificationEnum.next();
+			Justification = JustificationEnum.next();
 			Justification = Justification.replace(Old, New);
 
 			if (ExtraOld != "")
@@ -158,12 +196,33 @@ public class PlausibleAnswer implements Comparable<Object>
 	
 
 	/**
-	 * gets stored justifications
+	 * replaces the justification lines of the reasoning path an answer was found on with those of another path.
+	 * it is used when the answer of a sub-question is reused on a different path.
+	 * @param OldAnchor the justification of the old path
+	 * @param NewAnchor the justification of the new path
+	 */
+	public void ReanchorJustifications(Justification OldAnchor, Justification NewAnchor)
+	{
+		for (int i = 0; i < _justifications.size(); i++)
+		{
+			_justifications.set(i, _justifications.get(i).reanchor(OldAnchor, NewAnchor));
+		}
+	}
+	
+	/**
+	 * gets stored justifications. lazy justifications are composed here.
 	 * @return a list of justifications
 	 */
 	public ArrayList<String> GetTechnicalJustifications()
 	{
-		return _justifications;
+		ArrayList<String> outs = new ArrayList<String>(_justifications.size());
+		
+		for (Justification justification: _justifications)
+		{
+			outs.add(justification.toString());
+		}
+		
+		return outs;
 	}
 	
 	public String toString()
@@ -401,9 +460,9 @@ public class PlausibleAnswer implements Comparable<Object>
 		ArrayList<String> NewJustifications = new ArrayList<String>();
 		String Text;
 
-		for (String Justification : _justifications)
+		for (Justification Justification : _justifications)
 		{
-			Text = Justification;
+			Text = Justification.toString();
 
 			//Text = Common.RemoveSenses(Text);
 
@@ -421,9 +480,9 @@ public class PlausibleAnswer implements Comparable<Object>
 		int NumberPosition;
 		String Text;
 
-		for (String Justification : _justifications)
+		for (Justification Justification : _justifications)
 		{
-			Text = Justification;
+			Text = Justification.toString();
 
 			NumberPosition = Text.indexOf("#");
 			while (NumberPosition != -1)
@@ -697,15 +756,41 @@ public class PlausibleAnswer implements Comparable<Object>
 	{
 		ArrayList<String> outs = new ArrayList<String>();
 		
-		for (String thatJustification: that.GetTechnicalJustifications())
+		for (Justification justification: getDifferentJustificationObjectsWith(that))
+		{
+			outs.add(justification.toString());
+		}
+		
+		return outs;
+	}
+	
+	/**
+	 * adds the justifications of another answer which are not covered by the justifications of this answer 
+	 * @param that the other answer
+	 * @return true if any justification has been added
+	 */
+	public boolean AddDifferentJustifications(PlausibleAnswer that)
+	{
+		ArrayList<Justification> justifications = getDifferentJustificationObjectsWith(that);
+		
+		_justifications.addAll(justifications);
+		
+		return !justifications.isEmpty();
+	}
+	
+	private ArrayList<Justification> getDifferentJustificationObjectsWith(PlausibleAnswer that)
+	{
+		ArrayList<Justification> outs = new ArrayList<Justification>();
+		
+		for (Justification thatJustification: that._justifications)
 		{
-			Matcher matcher = _inferenceLinePattern.matcher(thatJustification);
+			Matcher matcher = _inferenceLinePattern.matcher(thatJustification.toString());
 			
 			boolean isNewJustification = true;
 			
-			for (String thisJustification: this.GetTechnicalJustifications())
+			for (Justification thisJustification: this._justifications)
 			{
-				if (doesJustificationContainAllInferences(thisJustification, matcher))
+				if (doesJustificationContainAllInferences(thisJustification.toString(), matcher))
 				{
 					isNewJustification = false;
 					break;
@@ -257,4 +257,19 @@ public class PlausibleQuestion implements Comparable<Object>
 		
 		return pq;
 	}
+	
+	/**
+	 * clones the question along with its certainty parameters.
+	 * clones share the parameters of the question (inferences like disambiguation change them through the clones)
+	 * so a question handed to a parallel branch is forked to keep the branch from changing the parameters its siblings read.
+	 * @return the forked question
+	 */
+	public PlausibleQuestion fork()
+	{
+		PlausibleQuestion pq = clone();
+		
+		pq.parameters = new CertaintyParameters(parameters);
+		
+		return pq;
+	}
 }
\ No newline at end of file
@@ -38,7 +38,7 @@ public class PlausibleStatement extends PlausibleTerm implements Cloneable
 	}
 	
 	/**
-	 * It is the sole constructor of this class. It calls the Node's constructor with a unique name for this relation.
+	 * It is the main constructor of this class. It calls the Node's constructor with a unique name for this relation.
 	 * 
 	 * @param DescriptorType conceptType of the descriptor
 	 * @param Params Certainty parameters associated with the statement
@@ -54,6 +54,26 @@ public class PlausibleStatement extends PlausibleTerm implements Cloneable
 		
 		conditionalType = StatType;
 	}
+	
+	/**
+	 * Creates a statement numbered by its creator (e.g. a <code>KbOverlay</code>) rather than among the instances of its relation type, 
+	 * so the relation type is left untouched.
+	 * 
+	 * @param DescriptorType conceptType of the descriptor
+	 * @param Params Certainty parameters associated with the statement
+	 * @param SourceIn source node
+	 * @param DestinationIn target node
+	 * @param StatType conceptType of the statement
+	 * @param instanceNumber the instance number the statement's name is composed from
+	 */
+	public PlausibleStatement(Node DescriptorType, CertaintyParameters Params, Node SourceIn, Node DestinationIn, ConditionalType StatType, int instanceNumber)
+	{
+		super(DescriptorType, Params, SourceIn, instanceNumber);
+		
+		referent = DestinationIn;
+		
+		conditionalType = StatType;
+	}
 
 	/**
 	 * updates the properties of an existing statement
@@ -31,20 +31,55 @@ public class PlausibleTerm extends Node
 	/** the argument of this term */
 	public Node argument;
 
+	/** the instance number of the term among the instances of its relation type, the term's name is composed from it */
+	private int _instanceNumber;
+
 	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
 
 	/**
-	 * the sole constructor
+	 * the main constructor, the term is numbered among the instances of its relation type
 	 */
 	protected PlausibleTerm(Node DescriptorType, CertaintyParameters Params, Node SourceIn)
+	{
+		this(DescriptorType, Params, SourceIn, DescriptorType.getNextInstanceId());
+	}
+	
+	/**
+	 * constructor for terms numbered by their creator, the relation type is left untouched
+	 */
+	protected PlausibleTerm(Node DescriptorType, CertaintyParameters Params, Node SourceIn, int instanceNumber)
 	{
 		super(DescriptorType);
 		
+		_instanceNumber = instanceNumber;
+		
 		argument = SourceIn;
 			
 		relationType = DescriptorType;
 			
 		parameters = new CertaintyParameters(Params);
 	}
+	
+	/**
+	 * Composes the name of the term, e.g. *ISA (12)
+	 * @return the name
+	 */
+	@Override
+	protected String composeName()
+	{
+		// deleted statements have lost their relation type
+		if (relationType == null)
+			return "*(" + _instanceNumber + ")";
+		
+		return "*" + relationType.getName() + " (" + _instanceNumber + ")";
+	}
+	
+	/**
+	 * Getter for <code>_instanceNumber</code>
+	 * @return
+	 */
+	public int getInstanceNumber()
+	{
+		return _instanceNumber;
+	}
 }
-
@@ -0,0 +1,316 @@
+package ir.ac.itrc.qqa.semantic.reasoning;
+
+import ir.ac.itrc.qqa.semantic.kb.KbOverlay;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds the mutable state of a single reasoning process (or a single branch of it when the reasoner runs in parallel).
+ * Each branch works on its own context so sibling inferences never share the depth, the history or the caches.
+ * Since the state of a question lives here rather than in the reasoner, one reasoner may answer many questions concurrently.
+ *
+ * @author Ehsan Darrudi
+ */
+public class ReasoningContext
+{
+	/** keeps track of the current depth of reasoning. */
+	int reasoningDepth = 0;
+
+	/** the maximum depth of reasoning for this question; 0 until the reasoner sets its own maximum */
+	int maxReasoningDepth = 0;
+
+	/** the <code>System.nanoTime</code> the question should be answered by; <code>Long.MAX_VALUE</code> means no deadline */
+	long deadline = Long.MAX_VALUE;
+
+	/** whether the question is cancelled; branches share the flag of their question */
+	AtomicBoolean cancelled = new AtomicBoolean();
+
+	/** whether the answers are partial since the question was cancelled or ran out of time */
+	boolean partial = false;
+
+	/** the deepest maximum depth iterative deepening has completed */
+	int completedDepth = 0;
+
+	/** keeps track of visited nodes during the reasoning */
+	History pathHistory = new History();
+
+	/** Used internally for conditional answers */
+	String conditionText = "";
+
+	/** Retains the number of calls made during the reasoning */
+	int totalCalls = 0;
+
+	/** counts the number of backtracks during reasoning */
+	int totalBackTracks = 0;
+
+	/** counts the branches pruned by their certainty bound */
+	int totalPrunedBranches = 0;
+
+	/** the highest certainty the answers of the current sub-question may have in the question (branch and bound only) */
+	float certaintyBound = 1F;
+
+	/** the combined certainties of the answers the question has so far (branch and bound only) */
+	HashMap<String, Float> questionEvidences = null;
+
+	/** the bound below which best-first reasoning leaves the branches open for a later round; 0 in depth-first reasoning */
+	float openingBound = 0F;
+
+	/** the bounds of the branches left open in the current round of best-first reasoning; null in depth-first reasoning */
+	ArrayList<Float> openBounds = null;
+
+	/** reasoning time in milliseconds */
+	long reasoningTime = 0;
+
+	/** is used to store internal reasoning lines (only in DEBUG mode); a branch buffers its lines until it is joined */
+	Writer reasoningLinesLog = null;
+
+	/** Keeps track of disambiguated words in regard to WordNet senses */
+	Hashtable<String, ArrayList<PlausibleAnswer>> cacheDisambiguations = new Hashtable<String, ArrayList<PlausibleAnswer>>();
+
+	/** Keeps track of statements extracted for relation types */
+	Hashtable<String, ArrayList<PlausibleStatement>> cacheStatements = new Hashtable<String, ArrayList<PlausibleStatement>>();
+
+	/** the table of completed RECALL sub-questions; null when tabling is disabled. branches share the table of their question */
+	AnswerTable answerTable = null;
+
+	/** the lookups shared by the questions of a batch; null for a single question. branches share the lookups of their question */
+	LookupCache lookups = null;
+
+	/** the scratch knowledge the question sees on top of the kb; null if none. branches share the overlay of their question */
+	KbOverlay overlay = null;
+
+	/** counts the sub-questions answered from <code>answerTable</code> */
+	int tableHits = 0;
+
+	/** counts the branches best-first reasoning has left open for a later round */
+	int deferredBranches = 0;
+
+	/** the lowest history depth a recurrent question has been cut at in the current RECALL */
+	int cycleDepth = Integer.MAX_VALUE;
+
+	/** the GEN/SPEC turn over functions looked up in the history in the current RECALL */
+	HashSet<String> genSpecProbes = new HashSet<String>();
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * Creates an empty context for a new reasoning process
+	 */
+	public ReasoningContext()
+	{
+	}
+
+	/**
+	 * Creates a context for a branch of reasoning.
+	 * The branch starts at the parent's depth with a copy of its history and caches, the parent's answer table and with zero counters.
+	 * If the parent logs its reasoning lines the branch buffers its own lines.
+	 * @param parent the context the branch is forked from
+	 */
+	private ReasoningContext(ReasoningContext parent)
+	{
+		reasoningDepth = parent.reasoningDepth;
+		maxReasoningDepth = parent.maxReasoningDepth;
+		deadline = parent.deadline;
+		cancelled = parent.cancelled;
+		pathHistory = new History(parent.pathHistory);
+		conditionText = parent.conditionText;
+		reasoningLinesLog = (parent.reasoningLinesLog == null) ? null : new StringWriter();
+		answerTable = parent.answerTable;
+		lookups = parent.lookups;
+		overlay = parent.overlay;
+		certaintyBound = parent.certaintyBound;
+		openingBound = parent.openingBound;
+
+		if (parent.questionEvidences != null)
+		{
+			questionEvidences = new HashMap<String, Float>(parent.questionEvidences);
+		}
+
+		if (parent.openBounds != null)
+		{
+			openBounds = new ArrayList<Float>();
+		}
+
+		cacheDisambiguations.putAll(parent.cacheDisambiguations);
+		cacheStatements.putAll(parent.cacheStatements);
+	}
+
+	/**
+	 * Forks a context for a branch of reasoning
+	 * @return the branch context
+	 */
+	public ReasoningContext fork()
+	{
+		return new ReasoningContext(this);
+	}
+
+	/**
+	 * Joins a finished branch back into this context by adding up its counters and keeping what it has cached.
+	 * The reasoning lines of the branch are logged here too, so joining the branches in sibling order keeps the log a reasoning tree.
+	 * @param branch the branch context
+	 */
+	public void join(ReasoningContext branch)
+	{
+		if (reasoningLinesLog != null && branch.reasoningLinesLog != null)
+		{
+			try
+			{
+				reasoningLinesLog.write(branch.reasoningLinesLog.toString());
+			}
+			catch(Exception e)
+			{
+				reasoningLinesLog = null;
+			}
+		}
+
+		totalCalls += branch.totalCalls;
+		totalBackTracks += branch.totalBackTracks;
+		totalPrunedBranches += branch.totalPrunedBranches;
+		tableHits += branch.tableHits;
+		deferredBranches += branch.deferredBranches;
+
+		if (openBounds != null && branch.openBounds != null)
+		{
+			openBounds.addAll(branch.openBounds);
+		}
+
+		cycleDepth = Math.min(cycleDepth, branch.cycleDepth);
+		genSpecProbes.addAll(branch.genSpecProbes);
+
+		cacheDisambiguations.putAll(branch.cacheDisambiguations);
+		cacheStatements.putAll(branch.cacheStatements);
+	}
+
+	/**
+	 * Cancels the question cooperatively: the reasoning backtracks at its next inference and returns the answers found so far. 
+	 * It may be called from any thread.
+	 */
+	public void cancel()
+	{
+		cancelled.set(true);
+	}
+
+	/**
+	 * Sets the overlay whose concepts and relations the question sees on top of the kb. It should be set before the question is answered.
+	 * @param overlay the overlay or null
+	 */
+	public void setOverlay(KbOverlay overlay)
+	{
+		this.overlay = overlay;
+	}
+
+	/**
+	 * Getter for <code>overlay</code>
+	 * @return
+	 */
+	public KbOverlay getOverlay()
+	{
+		return overlay;
+	}
+
+	/**
+	 * checks whether the question is cancelled or has run out of time, in which case it is cancelled
+	 * @return true if the reasoning should stop
+	 */
+	boolean isStopped()
+	{
+		if (cancelled.get())
+			return true;
+
+		if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)
+		{
+			cancelled.set(true);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Getter for <code>cancelled</code>
+	 * @return
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled.get();
+	}
+
+	/**
+	 * Getter for <code>partial</code>
+	 * @return
+	 */
+	public boolean isPartial()
+	{
+		return partial;
+	}
+
+	/**
+	 * Getter for <code>completedDepth</code>
+	 * @return
+	 */
+	public int getCompletedDepth()
+	{
+		return completedDepth;
+	}
+
+	/**
+	 * Getter for <code>totalCalls</code>
+	 * @return
+	 */
+	public int getTotalCalls()
+	{
+		return totalCalls;
+	}
+
+	/**
+	 * Getter for <code>totalBackTracks</code>
+	 * @return
+	 */
+	public int getTotalBackTracks()
+	{
+		return totalBackTracks;
+	}
+
+	/**
+	 * Getter for <code>totalPrunedBranches</code>
+	 * @return
+	 */
+	public int getTotalPrunedBranches()
+	{
+		return totalPrunedBranches;
+	}
+
+	/**
+	 * Getter for <code>tableHits</code>
+	 * @return
+	 */
+	public int getTableHits()
+	{
+		return tableHits;
+	}
+
+	/**
+	 * Getter for <code>deferredBranches</code>
+	 * @return
+	 */
+	public int getDeferredBranches()
+	{
+		return deferredBranches;
+	}
+
+	/**
+	 * Getter for <code>reasoningTime</code>
+	 * @return
+	 */
+	public long getReasoningTime()
+	{
+		return reasoningTime;
+	}
+}
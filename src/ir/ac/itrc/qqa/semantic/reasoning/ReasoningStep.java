@@ -0,0 +1,108 @@
+package ir.ac.itrc.qqa.semantic.reasoning;
+
+import java.util.ArrayList;
+
+/**
+ * implements a single reasoning line in the persistent (immutable) chain of reasoning lines kept by the history when justifications are lazy.
+ * each step points to the step pushed before it, so all the answers found on a reasoning path share the steps of that path.
+ * @author Ehsan Darrudi
+ *
+ */
+public class ReasoningStep
+{
+	/** the statement of the reasoning line */
+	final String statement;
+
+	/** the certainty associated with the reasoning line */
+	final String certainty;
+
+	/** the reference of the statement */
+	final String reference;
+
+	/** the depth of the history element the line belongs to */
+	final int depth;
+
+	/** the step pushed before this one */
+	final ReasoningStep previous;
+
+	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
+
+	/**
+	 * creates a reasoning step
+	 * @param statement the statement
+	 * @param certainty the certainty in the statement
+	 * @param reference the reference of the statement
+	 * @param depth the depth of the history element the line belongs to
+	 * @param previous the step pushed before this one
+	 */
+	public ReasoningStep(String statement, String certainty, String reference, int depth, ReasoningStep previous)
+	{
+		this.statement = statement;
+		this.certainty = certainty;
+		this.reference = reference;
+		this.depth = depth;
+		this.previous = previous;
+	}
+
+	/**
+	 * composes the reasoning line of this step the same way <code>HistoryEmement</code> does
+	 * @return the reasoning line
+	 */
+	public String composeLine()
+	{
+		String line = statement;
+
+		if (!certainty.isEmpty())
+		{
+			line += " : " + certainty;
+		}
+
+		if (!reference.isEmpty())
+		{
+			line += " ~ " + reference;
+		}
+
+		return line;
+	}
+
+	/**
+	 * composes the reasoning lines of a chain of steps, the newest history element first, exactly as <code>History.getReasoningLines</code> does
+	 * @param last the last step of the chain
+	 * @return the composed justification
+	 */
+	public static String composeLines(ReasoningStep last)
+	{
+		ArrayList<ReasoningStep> steps = new ArrayList<ReasoningStep>();
+
+		for (ReasoningStep step = last; step != null; step = step.previous)
+		{
+			steps.add(step);
+		}
+
+		StringBuilder out = new StringBuilder();
+
+		int first = 0;
+
+		while (first < steps.size())
+		{
+			// the lines of an element are contiguous in the chain
+			int end = first;
+
+			while (end < steps.size() && steps.get(end).depth == steps.get(first).depth)
+			{
+				end++;
+			}
+
+			for (int i = end - 1; i >= first; i--)
+			{
+				out.append(steps.get(i).composeLine()).append('\r');
+			}
+
+			out.append('\r');
+
+			first = end;
+		}
+
+		return out.toString();
+	}
+}
@@ -8,11 +8,26 @@ import ir.ac.itrc.qqa.semantic.util.Common;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 
@@ -76,11 +91,14 @@ public class SemanticReasoner
 	/** Determine maximum depths for reasoning */
 	private int _maxReasoningDepth;
 		
-	/** keeps track of the current depth of reasoning. */
-	private int _reasoningDepth;
+	/** counts the number of backtracks during the last reasoning (see <code>ReasoningContext</code> for per-question counters) */
+	public volatile int totalBackTracks;
 	
-	/** counts the number of backtracks during reasoning */
-	public int totalBackTracks;
+	/** counts the branches pruned by their certainty bound during the last reasoning (see <code>setMinimumCertainty</code>) */
+	public volatile int totalPrunedBranches;
+	
+	/** whether the answers of the last reasoning are partial since it was cancelled or its time budget ran out */
+	public volatile boolean partialAnswers;
 	
 	/** Reasoning Constant */
 	final float ABDUCTION_DEGRADATION_FACTOR = 0.3F;
@@ -91,37 +109,98 @@ public class SemanticReasoner
 	/** Reasoning Constant */
 	final float MIN_DEPENDENCY_INTENSITY = 0.1F;
 	
-	/** Retains the number of calls made during the reasoning */
-	public int totalCalls;
+	/** the parameters of a certain answer, used to compute the factor an inference step multiplies the certainty of answers by */
+	private static final CertaintyParameters CERTAIN_ANSWER = new CertaintyParameters(new float[] {1F, 1F, 1F, 1F, 1F, 1F, 1F, 1F, 1F});
+	
+	/** each round of best-first reasoning opens this many times as many of the branches left open as the round before */
+	private static final int BEST_FIRST_GROWTH = 4;
+	
+	/** Retains the number of calls made during the last reasoning (see <code>ReasoningContext</code> for per-question counters) */
+	public volatile int totalCalls;
 	
 	/** Specifies the maximum number of answers to be returned */ 
 	private int _maxAnswersNumber = 3;
 	
-	/** hashtable that keeps track of visited nodes during the reasoning */
-	private History _pathHistory;
-
-	/** Used internally for conditional answers */
-	private String _conditionText = "";
+	/** the minimum certainty of the answers; branches whose answers can't reach it are pruned. 0 disables pruning */
+	private float _minimumCertainty = 0F;
 	
 	/** Controls whether the engine should produce and log internal reasoning lines */
 	private boolean _logReasoningLinesToFile = false;
 
-	/** is used to store internal reasoning lines (only in DEBUG mode) */
-	private BufferedWriter _internalReasoningLinesLogFile = null;
+	/** distinguishes the reasoning lines log files of questions started in the same millisecond */
+	private AtomicInteger _reasoningLinesLogCounter = new AtomicInteger();
 		
 	/** is used to log HPR Engine activities */
 	private BufferedWriter _logFile = null;
 	
+	/** guards <code>_logFile</code> so the entries of concurrent questions do not interleave */
+	private final Object _logFileLock = new Object();
+	
 	/** Controls the level of online printing of internal reasoning lines on the standard output */
 	private int _maxOnlineStdoutPrintLevel = 5;
 	
-	/** reasoning time in milliseconds */
-	public long reasoningTime = 0;
+	/** reasoning time of the last reasoning in milliseconds */
+	public volatile long reasoningTime = 0;
+	
+	/** holds the reasoning state (depth, history, caches and counters) of the reasoning process or branch running on the current thread */
+	private ThreadLocal<ReasoningContext> _context = new ThreadLocal<ReasoningContext>();
+	
+	/** sibling inferences of RECALL calls up to this depth run in parallel; 0 means sequential reasoning */
+	private int _maxParallelDepth = 0;
+	
+	/** the pool which runs parallel inference branches */
+	private ForkJoinPool _forkJoinPool = null;
+	
+	/** the executor which runs asynchronous questions and batches; created on first use unless set */
+	private ExecutorService _executor = null;
+	
+	/** Controls whether the answers of completed RECALL sub-questions are reused within a question */
+	private boolean _tabling = false;
+	
+	/** Controls whether the table of sub-questions is kept across questions while the kb is locked */
+	private boolean _persistentTabling = false;
+	
+	/** the table of sub-questions kept across questions */
+	private AnswerTable _persistentAnswerTable = null;
+	
+	/** the lock epoch of the kb (see <code>KnowledgeBase.getLockEpoch</code>) the persistent table was built in */
+	private int _persistentAnswerTableEpoch = 0;
+	
+	/** Controls whether justifications are kept as chains of reasoning steps and only composed when they are read */
+	private boolean _lazyJustifications = false;
+	
+	/** counts the sub-questions answered from the table during the last reasoning */
+	public volatile int tableHits;
+	
+	/** Controls whether RECALL explores the sub-questions best-first rather than depth-first */
+	private boolean _bestFirst = false;
 	
-	/** Keeps track of disambiguated words in regard to WordNet senses */
-	private Hashtable<String, ArrayList<PlausibleAnswer>> _cacheDisambiguations = new Hashtable<String, ArrayList<PlausibleAnswer>>();
+	/** counts the branches best-first reasoning left open for a later round during the last reasoning */
+	public volatile int deferredBranches;
 	
-	private Hashtable<String, ArrayList<PlausibleStatement>> _cacheStatements = new Hashtable<String, ArrayList<PlausibleStatement>>();
+	/** inferences tried by RECALL for questions in the form Des(Arg)={?} */
+	private static final InferenceType[] REFERENT_QUESTION_INFERENCES = {
+		InferenceType.ASPEC, InferenceType.ASIM, InferenceType.ADIS, InferenceType.ASYN,
+		InferenceType.DGEN, InferenceType.DSPEC, InferenceType.DSIM, InferenceType.DDIS, InferenceType.DSYN,
+		InferenceType.DDEP, InferenceType.DIMP, InferenceType.DEPA,
+		InferenceType.INVERSE, InferenceType.AMBIGUATION, InferenceType.DISAMBIGUATION};
+	
+	/** inferences tried by RECALL for questions in the form Des(?)={Ref} */
+	private static final InferenceType[] ARGUMENT_QUESTION_INFERENCES = {
+		InferenceType.RSPEC, InferenceType.RSIM, InferenceType.RDIS, InferenceType.RSYN,
+		InferenceType.DGEN, InferenceType.DSPEC, InferenceType.DSIM, InferenceType.DDIS, InferenceType.DSYN,
+		InferenceType.DDEP, InferenceType.DIMP,
+		InferenceType.INVERSE, InferenceType.AMBIGUATION, InferenceType.DISAMBIGUATION};
+	
+	/** inferences tried by RECALL for questions in the form Des(Arg)={Ref}? */
+	private static final InferenceType[] YES_NO_QUESTION_INFERENCES = {
+		InferenceType.DGEN,
+		InferenceType.ASPEC, InferenceType.RSPEC, InferenceType.DSPEC,
+		InferenceType.ASIM, InferenceType.RSIM, InferenceType.DSIM,
+		InferenceType.ADIS, InferenceType.RDIS, InferenceType.DDIS,
+		InferenceType.ASYN, InferenceType.DSYN, InferenceType.RSYN,
+		InferenceType.DDEP, InferenceType.DIMP, InferenceType.DEPA,
+		InferenceType.INVERSE, InferenceType.AMBIGUATION, InferenceType.DISAMBIGUATION};
 	
 	//~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=~=
 
@@ -151,6 +230,8 @@ public class SemanticReasoner
 	public void setMaxReasoningDepth(int MaxReasoningDepthIn)
 	{
 		_maxReasoningDepth = MaxReasoningDepthIn;
+		
+		clearAnswerTable();
 	}
 	
 	/**
@@ -160,211 +241,728 @@ public class SemanticReasoner
 	public void setMaximumAnswers(int maxAnswersNumber)
 	{
 		_maxAnswersNumber = maxAnswersNumber;
+		
+		clearAnswerTable();
 	}
 	
 	/**
-	 * Standard entry point for the reasoning engine. 
-	 * gets a plausible question and launches RECALL.
-	 * 
-	 * @param pq the plausible question
-	 * @return the plausible answers (if any)
+	 * Sets the minimum certainty of the answers and enables branch and bound pruning. 
+	 * Since every inference step multiplies the certainty of an answer by a factor of at most one, the product of the factors 
+	 * along a reasoning path bounds the certainty the answers of its sub-question may have in the question. 
+	 * Hierarchical, synonymy, dependency, inverse, (dis)ambiguation and implication inferences skip the sub-questions whose bound falls below the minimum certainty 
+	 * or which can no longer change the best answers the question has so far. Answers less certain than the minimum are not returned.
+	 * Since the evidences of pruned branches are not combined, the certainties of the answers may differ from those of an unpruned reasoning.
+	 * @param minimumCertainty the minimum certainty; 0 disables pruning
 	 */
-	public ArrayList<PlausibleAnswer> answerQuestion(PlausibleQuestion pq)
-	{			
-		_reasoningDepth = 0;
-		totalCalls = 0;
-		totalBackTracks = 0;
-		reasoningTime = 0;
-		_conditionText = "";
-		_cacheDisambiguations.clear();
-		_cacheStatements.clear();
+	public void setMinimumCertainty(float minimumCertainty)
+	{
+		_minimumCertainty = minimumCertainty;
 		
-		//String filename = "log/hpr/" + pq.toString().replaceAll("[/\\\n\r\t\0\f`\\?\\*<>\\|\":]", "_");
-		String filename = "log/hpr/result-" + (new Long(System.currentTimeMillis())) + ".log";
+		clearAnswerTable();
+	}
+	
+	/**
+	 * Enables or disables tabling: the answers of a completed RECALL sub-question are kept in a table 
+	 * and are reused (with re-anchored justifications) whenever the same sub-question is asked again with the same remaining depth.
+	 * A sub-question cut short by a recurrent question of the path above it is never tabled, but a tabled sub-question reused on a path 
+	 * which would have cut it short returns its complete answers.
+	 * @param tabling true to enable tabling
+	 */
+	public void setTabling(boolean tabling)
+	{
+		_tabling = tabling;
 		
-		if (_logReasoningLinesToFile)
+		clearAnswerTable();
+	}
+	
+	/**
+	 * Enables or disables keeping the table of sub-questions across questions. 
+	 * The table is only kept while the knowledge base stays locked; it is discarded once the kb has been unlocked, even if it is locked again.
+	 * Enabling it enables tabling as well.
+	 * @param persistentTabling true to keep the table across questions
+	 */
+	public void setPersistentTabling(boolean persistentTabling)
+	{
+		_persistentTabling = persistentTabling;
+		
+		if (persistentTabling)
 		{
-			try
-			{
-				_internalReasoningLinesLogFile = new BufferedWriter(new FileWriter(filename));
-			}
-			catch(Exception e)
-			{
-				_logReasoningLinesToFile = false;
-			}			
+			_tabling = true;
 		}
 		
-		if (!isValidPlausibleQuestion(pq))
+		clearAnswerTable();
+	}
+	
+	/**
+	 * Enables or disables lazy justifications: reasoning lines are kept as a chain of immutable steps shared by all the answers 
+	 * found on a path, and the justifications of an answer are only composed when <code>GetTechnicalJustifications</code> is called.
+	 * The composed justifications are the same in both modes.
+	 * @param lazyJustifications true to compose justifications lazily
+	 */
+	public void setLazyJustifications(boolean lazyJustifications)
+	{
+		_lazyJustifications = lazyJustifications;
+		
+		clearAnswerTable();
+	}
+	
+	/**
+	 * Enables or disables best-first reasoning. RECALL is run in rounds, each one reasoning about the branches whose answers may be 
+	 * as certain as a bound and leaving the others open for the next round, which lowers the bound. The highest certainty the answers of a branch may have 
+	 * is computed along its chain of inferences with the same formulas the inferences use (e.g. <code>GENComputeCertainty</code>). 
+	 * The reasoning stops as soon as the best <code>_maxAnswersNumber</code> answers are settled, so short chains leading to certain answers 
+	 * are reasoned about before long ones and the rest of the reasoning tree may never be explored. 
+	 * The evidences are combined in every inference as depth-first reasoning does, so if no branch is left open the answers are those of depth-first reasoning.
+	 * @param bestFirst true to reason best-first
+	 */
+	public void setBestFirstReasoning(boolean bestFirst)
+	{
+		_bestFirst = bestFirst;
+	}
+	
+	/**
+	 * discards the table of sub-questions kept across questions
+	 */
+	public synchronized void clearAnswerTable()
+	{
+		_persistentAnswerTable = null;
+	}
+	
+	/**
+	 * gives the table of sub-questions a new question should use
+	 * @param context the context of the question
+	 * @return the table or null if tabling is disabled
+	 */
+	private synchronized AnswerTable getAnswerTable(ReasoningContext context)
+	{
+		if (!_tabling)
 		{
-			ArrayList<PlausibleAnswer> outs = new ArrayList<PlausibleAnswer>();
-			outs.add(new PlausibleAnswer(new Node("اجزاء پرسش به پایگاه دانش نگاشت نشد لذا فرآیند استدلال اجرا نشد.")));
+			return null;
+		}
+		
+		// the answers found through an overlay aren't answers of the kb alone, so they are not kept across questions
+		if (context.overlay != null)
+		{
+			return new AnswerTable();
+		}
+		
+		if (!_persistentTabling || !_kb.isLocked())
+		{
+			_persistentAnswerTable = null;
 			
-			return outs;
+			return new AnswerTable();
 		}
-
-		_pathHistory = new History();
 		
-		Long startTime = System.currentTimeMillis();
-
-		if (pq.IsMultiArgument)
+		// the kb may have changed while it was unlocked
+		if (_persistentAnswerTable == null || _persistentAnswerTableEpoch != _kb.getLockEpoch())
 		{
-			return MultiArgumentInference(pq);
+			_persistentAnswerTable = new AnswerTable();
+			_persistentAnswerTableEpoch = _kb.getLockEpoch();
 		}
-		else if (pq.descriptor == KnowledgeBase.HPR_KNOWLEDGE_DUMP && pq.argument != null)
+		
+		return _persistentAnswerTable;
+	}
+	
+	/**
+	 * Enables parallel reasoning on a pool with one thread per available processor.
+	 * @param maxParallelDepth sibling inferences of RECALL calls up to this reasoning depth run in parallel; 0 disables parallel reasoning
+	 */
+	public void setParallelReasoning(int maxParallelDepth)
+	{
+		if (_forkJoinPool == null)
 		{
-			return createArtificialAnswer(_kb.getConceptDump(pq.argument.getName(), 10), true);
+			_forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 		}
-
-		// reasoning -----------------------------------
 		
-		ArrayList<PlausibleAnswer> Answers = recall(pq);
+		setParallelReasoning(maxParallelDepth, _forkJoinPool);
+	}
+	/**
+	 * Enables parallel reasoning.
+	 * Sibling inferences of RECALL (ASPEC, ASIM, ..., DISAMBIGUATION) run as fork/join tasks, each with its own reasoning context, 
+	 * and their answers are merged in the sequential order before combining evidences. 
+	 * The knowledge base should be locked while reasoning in parallel.
+	 * @param maxParallelDepth sibling inferences of RECALL calls up to this reasoning depth run in parallel; 0 disables parallel reasoning
+	 * @param pool the pool which runs the inference branches
+	 */
+	public void setParallelReasoning(int maxParallelDepth, ForkJoinPool pool)
+	{
+		_maxParallelDepth = maxParallelDepth;
+		_forkJoinPool = pool;
+	}
+	
+	/**
+	 * Sets the executor which runs asynchronous questions and batches (see <code>answerQuestionAsync</code>).
+	 * By default one virtual thread per question is used where the JVM supports them, or else a pool with one thread per available processor.
+	 * The knowledge base should be locked (or have a published version) while questions run on the executor.
+	 * @param executor the executor
+	 */
+	public synchronized void setExecutor(ExecutorService executor)
+	{
+		MyError.assertNotNull(executor);
 		
-		//----------------------------------------------
+		_executor = executor;
+	}
+	
+	/**
+	 * gives the executor of asynchronous questions, creating the default one if needed
+	 * @return the executor
+	 */
+	private synchronized ExecutorService getExecutor()
+	{
+		if (_executor == null)
+		{
+			_executor = createDefaultExecutor();
+		}
 		
-		reasoningTime = System.currentTimeMillis() - startTime;
+		return _executor;
+	}
+	
+	/**
+	 * creates an executor with one virtual thread per task if the JVM supports them (Java 21+), or else a pool of daemon threads, one per available processor
+	 * @return the executor
+	 */
+	private static ExecutorService createDefaultExecutor()
+	{
+		try
+		{
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (Exception e)
+		{
+			// virtual threads are not available
+		}
 		
-		if (!Common.isEmpty(Answers))
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
 		{
-			logToFile(pq.question);
-			logToFile(pq.toString());
+			private AtomicInteger _counter = new AtomicInteger();
 			
-			for (PlausibleAnswer Answer: Answers)
+			@Override
+			public Thread newThread(Runnable runnable)
 			{
-				logToFile(Answer.toString() + " " + Answer.parameters.toString());
+				Thread thread = new Thread(runnable, "hpr-reasoner-" + _counter.incrementAndGet());
+				thread.setDaemon(true);
 				
-				// Adjusting NEGATIVE Yes-No Answers
-				if (Answer.isNegative)
-				{
-					if (Answer.answer == KnowledgeBase.HPR_YES)
-					{
-						Answer.answer = KnowledgeBase.HPR_NO;
-						Answer.isNegative = false;
-					}
-					else if (Answer.answer == KnowledgeBase.HPR_NO)
-					{
-						Answer.answer = KnowledgeBase.HPR_YES;
-						Answer.isNegative = false;					
-					}
-				}
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Answers a question asynchronously on the executor of the reasoner (see <code>setExecutor</code>).
+	 * @param pq the plausible question
+	 * @return the future plausible answers
+	 */
+	public Future<ArrayList<PlausibleAnswer>> answerQuestionAsync(PlausibleQuestion pq)
+	{
+		return answerQuestionAsync(pq, new ReasoningContext());
+	}
+	/**
+	 * Answers a question asynchronously on the executor of the reasoner using the given context (see <code>answerQuestion(PlausibleQuestion, ReasoningContext)</code>).
+	 * The question may be cancelled by <code>ReasoningContext.cancel</code>; cancelling the future doesn't stop the reasoning.
+	 * @param pq the plausible question
+	 * @param context a fresh context which receives the counters and the reasoning time of this question
+	 * @return the future plausible answers
+	 */
+	public Future<ArrayList<PlausibleAnswer>> answerQuestionAsync(final PlausibleQuestion pq, final ReasoningContext context)
+	{
+		return getExecutor().submit(new Callable<ArrayList<PlausibleAnswer>>()
+		{
+			@Override
+			public ArrayList<PlausibleAnswer> call()
+			{
+				return answerQuestion(pq, context);
 			}
+		});
+	}
+	
+	/**
+	 * Answers a batch of questions concurrently on the executor of the reasoner (see <code>setExecutor</code>).
+	 * While the knowledge base is locked the questions of the batch share their read-only lookups 
+	 * (senses of lemmas, hierarchical neighbours and statements of relation types, see <code>LookupCache</code>).
+	 * If answering a question fails or the calling thread is interrupted, the questions still in progress are cancelled.
+	 * @param questions the plausible questions
+	 * @return the plausible answers of each question in the order of the questions
+	 * @throws RuntimeException if answering a question fails (its cause is the failure) or the calling thread is interrupted (the interrupt status is kept)
+	 */
+	public ArrayList<ArrayList<PlausibleAnswer>> answerQuestions(List<PlausibleQuestion> questions)
+	{
+		LookupCache lookups = _kb.isLocked() ? new LookupCache() : null;
+		
+		ArrayList<ReasoningContext> contexts = new ArrayList<ReasoningContext>(questions.size());
+		ArrayList<Future<ArrayList<PlausibleAnswer>>> futures = new ArrayList<Future<ArrayList<PlausibleAnswer>>>(questions.size());
+		
+		for (PlausibleQuestion pq: questions)
+		{
+			ReasoningContext context = new ReasoningContext();
+			context.lookups = lookups;
 			
-			logToFile("");
+			contexts.add(context);
+			futures.add(answerQuestionAsync(pq, context));
 		}
 		
-		if (_logReasoningLinesToFile)
+		ArrayList<ArrayList<PlausibleAnswer>> answers = new ArrayList<ArrayList<PlausibleAnswer>>(futures.size());
+		
+		try
 		{
-			try
-			{
-				_internalReasoningLinesLogFile.close();
-			}
-			catch(Exception e)
+			for (Future<ArrayList<PlausibleAnswer>> future: futures)
 			{
-				_logReasoningLinesToFile = false;
+				answers.add(future.get());
 			}
 		}
+		catch (InterruptedException e)
+		{
+			cancelAll(contexts);
+			
+			// the caller should still see the interrupt
+			Thread.currentThread().interrupt();
+			
+			throw new RuntimeException("Answering the batch interrupted!", e);
+		}
+		catch (ExecutionException e)
+		{
+			cancelAll(contexts);
+			
+			throw new RuntimeException("Error answering the batch!", e.getCause());
+		}
 		
-		if (Answers == null)
+		return answers;
+	}
+	/**
+	 * Cancels the questions of a batch. The questions already answered are not affected.
+	 * @param contexts the contexts of the questions
+	 */
+	private void cancelAll(List<ReasoningContext> contexts)
+	{
+		for (ReasoningContext context: contexts)
 		{
-			Answers = new ArrayList<PlausibleAnswer>();
+			context.cancel();
 		}
-
-		return Answers;
 	}
 	
 	/**
-	 * the RECALL function which is the internal entry point to the reasoning engine.		
-	 * @param pq input plausible question
-	 * @return a list if found answers
+	 * Standard entry point for the reasoning engine. 
+	 * gets a plausible question and launches RECALL.
+	 * 
+	 * @param pq the plausible question
+	 * @return the plausible answers (if any)
 	 */
-	private ArrayList<PlausibleAnswer> recall(PlausibleQuestion pq)
+	public ArrayList<PlausibleAnswer> answerQuestion(PlausibleQuestion pq)
 	{
-		return recall(pq, null);
+		return answerQuestion(pq, new ReasoningContext());
 	}
-	
 	/**
-	 * another version of RECALL which accepts a node as input and ignores all extracted answers of that conceptType 
-	 * @param pq plausible question
-	 * @param unwantedAnswer unwanted answer conceptType
-	 * @return a list if found answers
+	 * Standard entry point for the reasoning engine. 
+	 * gets a plausible question and launches RECALL using the given context.
+	 * All the state of the question lives in the context so this method may be called concurrently 
+	 * from many threads as long as the knowledge base is locked or has a published version (see <code>KnowledgeBase.publishVersion</code>).
+	 * In the latter case the question reads the latest version until it finishes, even if newer ones are published meanwhile.
+	 * 
+	 * @param pq the plausible question
+	 * @param context a fresh context which receives the counters and the reasoning time of this question
+	 * @return the plausible answers (if any)
 	 */
-	private ArrayList<PlausibleAnswer> recall(PlausibleQuestion pq, Node unwantedAnswer)
-	{		
-		String Function = "RECALL";
-
-		Node descriptor = pq.descriptor;
-		Node argument = pq.argument;
-		Node referent = pq.referent;
+	public ArrayList<PlausibleAnswer> answerQuestion(PlausibleQuestion pq, ReasoningContext context)
+	{
+		// the reasoner may be re-entered from within a reasoning on the same thread
+		ReasoningContext previous = _context.get();
 		
-		if (!InferencePrologue(pq, Function))
+		_context.set(context);
+		
+		// a re-entered reasoning keeps the version of the outer one
+		KbVersion version = _kb.getVersion();
+		
+		boolean pinned = (version != null && KbVersion.getPinned() == null);
+		
+		if (pinned)
 		{
-			return null;
+			KbVersion.pin(version);
 		}
 		
-		PlausibleAnswer answer = null;
-		String statement = null;
-		String reference = null;
-		ArrayList<PlausibleAnswer> answers = new ArrayList<PlausibleAnswer>();
-
-		ArrayList<PlausibleAnswer> Arguments;
-		ArrayList<PlausibleAnswer> referents;
-	
-		// First we'll try to find the answer in the _kb directly (i.e. no reasoning) ...
+		// a re-entered reasoning keeps the overlay of the outer one
+		if (context.overlay == null)
+		{
+			context.overlay = KbOverlay.getPinned();
+		}
 		
-		if (referent == null) //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+		KbOverlay previousOverlay = KbOverlay.pin(context.overlay);
+		
+		if (context.answerTable == null)
 		{
-			// QUESTION TYPE ONE: Des(Arg)={?}
-
-			referents = argument.findTargetNodes(descriptor);
-
-			for (PlausibleAnswer pa: referents)
+			context.answerTable = getAnswerTable(context);
+		}
+		
+		if (context.maxReasoningDepth == 0)
+		{
+			context.maxReasoningDepth = _maxReasoningDepth;
+		}
+		
+		if (context.pathHistory.getDepth() == 0)
+		{
+			context.pathHistory.setLazyJustifications(_lazyJustifications);
+		}
+		
+		try
+		{
+			return reason(pq, context);
+		}
+		finally
+		{
+			_context.set(previous);
+			
+			if (pinned)
 			{
-				answer = pa;
-
-				if (answer.answer == unwantedAnswer)
+				KbVersion.pin(null);
+			}
+			
+			KbOverlay.pin(previousOverlay);
+			
+			if (context.reasoningLinesLog != null)
+			{
+				try
+				{
+					context.reasoningLinesLog.close();
+				}
+				catch(Exception e)
 				{
-					continue;
 				}
-
-				statement = composeStatement(pq, answer);				
-				reference = composeReference(answer.statement);
-
-				_pathHistory.pushReasoningLine(statement, answer.parameters.toString(), reference);
-				answer.AddJustification(_pathHistory.getReasoningLines());
-				_pathHistory.popReasoningLine(1);
 				
-				log("*" + composeReasoningLine(statement + "\t" + answer.parameters, Function));
-
-				answers.add(answer);
+				context.reasoningLinesLog = null;
 			}
+			
+			context.partial = context.isStopped();
+			
+			keepCounters(context);
 		}
-		else if (argument == null) //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	}
+	
+	/**
+	 * Answers a question within a time budget. 
+	 * The question is reasoned by iterative deepening: it is answered with a maximum reasoning depth of 1, 2, ... up to <code>_maxReasoningDepth</code>. 
+	 * The rounds share a table of sub-questions (see <code>setTabling</code>) so a round reuses what the previous ones have computed.
+	 * When the budget runs out the reasoning is cancelled and the answers of the deepest completed round are returned, flagged as partial 
+	 * (see <code>ReasoningContext.isPartial</code> and <code>partialAnswers</code>).
+	 * 
+	 * @param pq the plausible question
+	 * @param timeout the time the question may take
+	 * @param unit the unit of <code>timeout</code>
+	 * @return the plausible answers (if any)
+	 */
+	public ArrayList<PlausibleAnswer> answerQuestion(PlausibleQuestion pq, long timeout, TimeUnit unit)
+	{
+		return answerQuestion(pq, timeout, unit, new ReasoningContext());
+	}
+	/**
+	 * Answers a question within a time budget using the given context (see <code>answerQuestion(PlausibleQuestion, long, TimeUnit)</code>).
+	 * The question may also be cancelled from another thread by <code>ReasoningContext.cancel</code>.
+	 * 
+	 * @param pq the plausible question
+	 * @param timeout the time the question may take
+	 * @param unit the unit of <code>timeout</code>
+	 * @param context a fresh context which receives the counters, the reasoning time and the partial flag of this question
+	 * @return the plausible answers (if any)
+	 */
+	public ArrayList<PlausibleAnswer> answerQuestion(PlausibleQuestion pq, long timeout, TimeUnit unit, ReasoningContext context)
+	{
+		MyError.assertNotNull(unit);
+		
+		long startTime = System.currentTimeMillis();
+		
+		context.deadline = System.nanoTime() + unit.toNanos(timeout);
+		
+		// all rounds read the same version of the kb
+		KbVersion version = _kb.getVersion();
+		
+		boolean pinned = (version != null && KbVersion.getPinned() == null);
+		
+		if (pinned)
 		{
-			// QUESTION TYPE 2: Des(?)={Ref}
+			KbVersion.pin(version);
+		}
+		
+		if (context.overlay == null)
+		{
+			context.overlay = KbOverlay.getPinned();
+		}
+		
+		if (context.answerTable == null)
+		{
+			context.answerTable = getAnswerTable(context);
+		}
+		
+		// the rounds share a table even if tabling is disabled
+		if (context.answerTable == null)
+		{
+			context.answerTable = new AnswerTable();
+		}
+		
+		ArrayList<PlausibleAnswer> answers = null;
+		
+		try
+		{
+			for (int depth = 1; depth <= _maxReasoningDepth && !context.isStopped(); depth++)
+			{
+				ReasoningContext round = context.fork();
+				
+				round.maxReasoningDepth = depth;
+				
+				ArrayList<PlausibleAnswer> roundAnswers = answerQuestion(pq, round);
+				
+				context.join(round);
+				
+				// the answers of a cancelled round are only used when no round has completed
+				if (!round.isStopped() || answers == null)
+				{
+					answers = roundAnswers;
+				}
+				
+				if (!round.isStopped())
+				{
+					context.completedDepth = depth;
+				}
+			}
+		}
+		finally
+		{
+			if (pinned)
+			{
+				KbVersion.pin(null);
+			}
+			
+			context.partial = (context.completedDepth < _maxReasoningDepth);
+			context.reasoningTime = System.currentTimeMillis() - startTime;
+			
+			keepCounters(context);
+		}
+		
+		return answers;
+	}
+	
+	/**
+	 * keeps the counters of the last reasoning in the public fields of the reasoner
+	 * @param context the context of the last reasoning
+	 */
+	private void keepCounters(ReasoningContext context)
+	{
+		totalCalls = context.totalCalls;
+		totalBackTracks = context.totalBackTracks;
+		totalPrunedBranches = context.totalPrunedBranches;
+		tableHits = context.tableHits;
+		deferredBranches = context.deferredBranches;
+		reasoningTime = context.reasoningTime;
+		partialAnswers = context.partial;
+	}
+	
+	/**
+	 * launches RECALL for a question in the current context
+	 * @param pq the plausible question
+	 * @param context the context of the question
+	 * @return the plausible answers (if any)
+	 */
+	private ArrayList<PlausibleAnswer> reason(PlausibleQuestion pq, ReasoningContext context)
+	{			
+		//String filename = "log/hpr/" + pq.toString().replaceAll("[/\\\n\r\t\0\f`\\?\\*<>\\|\":]", "_");
+		String filename = "log/hpr/result-" + (new Long(System.currentTimeMillis())) + "-" + _reasoningLinesLogCounter.incrementAndGet() + ".log";
+		
+		if (_logReasoningLinesToFile)
+		{
+			try
+			{
+				context.reasoningLinesLog = new BufferedWriter(new FileWriter(filename));
+			}
+			catch(Exception e)
+			{
+				context.reasoningLinesLog = null;
+			}			
+		}
+		
+		if (!isValidPlausibleQuestion(pq))
+		{
+			ArrayList<PlausibleAnswer> outs = new ArrayList<PlausibleAnswer>();
+			outs.add(new PlausibleAnswer(new Node("اجزاء پرسش به پایگاه دانش نگاشت نشد لذا فرآیند استدلال اجرا نشد.")));
+			
+			return outs;
+		}
 
-			Arguments = referent.findSourceNodes(descriptor);
+		Long startTime = System.currentTimeMillis();
 
-			for (PlausibleAnswer pa: Arguments)
-			{
-				answer = pa;
+		if (pq.IsMultiArgument)
+		{
+			return MultiArgumentInference(pq);
+		}
+		else if (pq.descriptor == KnowledgeBase.HPR_KNOWLEDGE_DUMP && pq.argument != null)
+		{
+			return createArtificialAnswer(_kb.getConceptDump(pq.argument.getName(), 10), true);
+		}
 
-				if (answer.answer == unwantedAnswer)
+		// reasoning -----------------------------------
+		
+		ArrayList<PlausibleAnswer> Answers;
+		
+		if (_bestFirst)
+		{
+			Answers = bestFirstRecall(pq);
+		}
+		else
+		{
+			Answers = recall(pq);
+		}
+		
+		if (_minimumCertainty > 0 && Answers != null)
+		{
+			// answers less certain than the minimum are not wanted
+			ArrayList<PlausibleAnswer> certainAnswers = new ArrayList<PlausibleAnswer>(Answers.size());
+			
+			for (PlausibleAnswer Answer: Answers)
+			{
+				if (Answer.parameters.certainty >= _minimumCertainty)
 				{
-					continue;
+					certainAnswers.add(Answer);
 				}
+			}
+			
+			Answers = certainAnswers;
+		}
+		
+		//----------------------------------------------
+		
+		context.reasoningTime = System.currentTimeMillis() - startTime;
+		
+		if (!Common.isEmpty(Answers))
+		{
+			ArrayList<String> logLines = new ArrayList<String>();
+			
+			logLines.add(pq.question);
+			logLines.add(pq.toString());
+			
+			for (PlausibleAnswer Answer: Answers)
+			{
+				logLines.add(Answer.toString() + " " + Answer.parameters.toString());
 				
-				statement = composeStatement(pq, answer);				
-				reference = composeReference(answer.statement);
+				// Adjusting NEGATIVE Yes-No Answers
+				if (Answer.isNegative)
+				{
+					if (Answer.answer == KnowledgeBase.HPR_YES)
+					{
+						Answer.answer = KnowledgeBase.HPR_NO;
+						Answer.isNegative = false;
+					}
+					else if (Answer.answer == KnowledgeBase.HPR_NO)
+					{
+						Answer.answer = KnowledgeBase.HPR_YES;
+						Answer.isNegative = false;					
+					}
+				}
+			}
+			
+			logLines.add("");
+			
+			logToFile(logLines);
+		}
+		
+		if (Answers == null)
+		{
+			Answers = new ArrayList<PlausibleAnswer>();
+		}
+
+		return Answers;
+	}
+	
+	/**
+	 * the RECALL function which is the internal entry point to the reasoning engine.		
+	 * @param pq input plausible question
+	 * @return a list if found answers
+	 */
+	private ArrayList<PlausibleAnswer> recall(PlausibleQuestion pq)
+	{
+		return recall(pq, null);
+	}
+	
+	/**
+	 * another version of RECALL which accepts a node as input and ignores all extracted answers of that conceptType 
+	 * @param pq plausible question
+	 * @param unwantedAnswer unwanted answer conceptType
+	 * @return a list if found answers
+	 */
+	private ArrayList<PlausibleAnswer> recall(PlausibleQuestion pq, Node unwantedAnswer)
+	{
+		ReasoningContext context = cx();
+		AnswerTable table = context.answerTable;
+		
+		if (table == null || unwantedAnswer != null)
+		{
+			return recallUntabled(pq, unwantedAnswer);
+		}
+		
+		String Function = "RECALL";
+		
+		int remainingDepth = context.maxReasoningDepth - context.reasoningDepth - 1;
+		Justification anchor = context.pathHistory.getJustification();
+		
+		ArrayList<PlausibleAnswer> answers;
+		
+		if (remainingDepth >= 0 && !context.pathHistory.isInHistory(Function, pq.descriptor, pq.argument, pq.referent))
+		{
+			answers = table.lookup(pq, remainingDepth, context.pathHistory, anchor, context.genSpecProbes);
+			
+			if (answers != null)
+			{
+				context.totalCalls++;
+				context.tableHits++;
 				
-				_pathHistory.pushReasoningLine(statement, answer.parameters.toString(), reference);
-				answer.AddJustification(_pathHistory.getReasoningLines());
-				_pathHistory.popReasoningLine(1);
+				log("@" + composeReasoningLine("Tabled Question! " + ComposeStatement(pq), Function));
 				
-				log("*" + composeReasoningLine(statement + "\t" + answer.parameters, Function));
-
-				answers.add(answer);
+				return answers;
 			}
 		}
-		else if (pq.cxTime != KnowledgeBase.HPR_ANY || pq.cxLocation != KnowledgeBase.HPR_ANY) //~~~~~~~~~~~~~
+		
+		// the sub-question is computed with its own tracking of what it depends on above it
+		int cycleDepth = context.cycleDepth;
+		HashSet<String> genSpecProbes = context.genSpecProbes;
+		
+		context.cycleDepth = Integer.MAX_VALUE;
+		context.genSpecProbes = new HashSet<String>();
+		
+		int prunedBranches = context.totalPrunedBranches;
+		int deferredBranches = context.deferredBranches;
+		
+		answers = recallUntabled(pq, null);
+		
+		// answers cut short by a recurrent question above this one (or by pruning, open branches or cancellation) are incomplete elsewhere
+		if (answers != null && context.cycleDepth > context.pathHistory.getDepth() && context.totalPrunedBranches == prunedBranches && context.deferredBranches == deferredBranches && !context.isStopped())
+		{
+			table.store(pq, remainingDepth, context.pathHistory, anchor, context.genSpecProbes, answers);
+		}
+		
+		context.cycleDepth = Math.min(cycleDepth, context.cycleDepth);
+		genSpecProbes.addAll(context.genSpecProbes);
+		context.genSpecProbes = genSpecProbes;
+		
+		return answers;
+	}
+	
+	/**
+	 * the body of RECALL which computes the answers without looking into the table of sub-questions
+	 * @param pq plausible question
+	 * @param unwantedAnswer unwanted answer conceptType
+	 * @return a list if found answers
+	 */
+	private ArrayList<PlausibleAnswer> recallUntabled(PlausibleQuestion pq, Node unwantedAnswer)
+	{		
+		String Function = "RECALL";
+
+		Node argument = pq.argument;
+		Node referent = pq.referent;
+		
+		if (!InferencePrologue(pq, Function))
+		{
+			return null;
+		}
+		
+		ArrayList<PlausibleAnswer> answers;
+	
+		// First we'll try to find the answer in the _kb directly (i.e. no reasoning) ...
+		
+		if (argument != null && referent != null && (pq.cxTime != KnowledgeBase.HPR_ANY || pq.cxLocation != KnowledgeBase.HPR_ANY))
 		{
 			// QUESTION TYPE 4: asking for CXTIME or CXLOCATION
 			//
@@ -387,6 +985,157 @@ public class SemanticReasoner
 			answers = RecallCXs(pq, Function);
 //			answers = RecallCXs2(pq, Function);
 		}
+		else
+		{
+			answers = lookupAnswers(pq, unwantedAnswer, Function);
+		}
+		
+		recordQuestionEvidences(answers);
+		
+		if (cx().reasoningDepth >= cx().maxReasoningDepth)
+		{
+			// It's exceeded the Max. Reasoning Depth
+			
+			cx().totalBackTracks++;
+			
+			log(composeReasoningLine("BACKTRACK (useless inference call)", Function));
+			
+			InferenceEpilogue(pq, Function);
+			
+			return answers;
+		}
+		
+		if (answers.size() >= _maxAnswersNumber)
+		{
+			// we found enough answers! no need to continue.
+			
+			log(composeReasoningLine("BACKTRACK (found enough answers)", Function));
+			
+			InferenceEpilogue(pq, Function);
+			
+			return answers;
+		}	
+				
+		
+		// We couldn't find the answer directly. Now we have to reason to find it:
+
+		if (referent == null)
+		{
+			PlausibleQuestion NewPQ = pq.clone();
+			NewPQ.referent = null;
+
+			//Do(AGEN(NewPQ), Answers);
+			//Do(Abduction(NewPQ), Answers);
+			//Do(RCausality(NewPQ), Answers);
+			//Do(Attribute(NewPQ), Answers);
+			runInferences(REFERENT_QUESTION_INFERENCES, NewPQ, answers);
+		}
+		else if (argument == null)
+		{
+			PlausibleQuestion NewPQ = pq.clone();
+			NewPQ.argument = null;
+			
+			//Do(RGEN(NewPQ), Answers);
+			//Do(Abduction(NewPQ), Answers);
+			//Do(ACausality(NewPQ), Answers);
+			//Do(Attribute(NewPQ), Answers);
+			runInferences(ARGUMENT_QUESTION_INFERENCES, NewPQ, answers);
+		}
+		else
+		{
+			//TODO: AGEN and DGEN were disabled!!!
+			//Do(AGEN(pq), Answers);
+			//Do(RGEN(pq), Answers);
+			//Do(Abduction(pq), Answers);
+			//Do(RCausality(pq), Answers);
+			//Do(Attribute(pq), Answers);
+			runInferences(YES_NO_QUESTION_INFERENCES, pq, answers);
+		}
+
+		answers = combineEvidences(answers, Function, pq);
+				
+		InferenceEpilogue(pq, Function);
+		
+		log(composeReasoningLine("RETURN", Function));
+
+		return answers;
+	}
+	
+	/**
+	 * the direct part of RECALL which finds the answers of a question in the _kb without reasoning (questions of types 1 to 3)
+	 * @param pq plausible question
+	 * @param unwantedAnswer unwanted answer conceptType
+	 * @param Function the inference which called this one (it is always "RECALL")
+	 * @return a list if found answers
+	 */
+	private ArrayList<PlausibleAnswer> lookupAnswers(PlausibleQuestion pq, Node unwantedAnswer, String Function)
+	{
+		Node descriptor = pq.descriptor;
+		Node argument = pq.argument;
+		Node referent = pq.referent;
+		
+		PlausibleAnswer answer = null;
+		String statement = null;
+		String reference = null;
+		ArrayList<PlausibleAnswer> answers = new ArrayList<PlausibleAnswer>();
+
+		ArrayList<PlausibleAnswer> Arguments;
+		ArrayList<PlausibleAnswer> referents;
+		
+		if (referent == null) //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+		{
+			// QUESTION TYPE ONE: Des(Arg)={?}
+
+			referents = argument.findTargetNodes(descriptor);
+
+			for (PlausibleAnswer pa: referents)
+			{
+				answer = pa;
+
+				if (answer.answer == unwantedAnswer)
+				{
+					continue;
+				}
+
+				statement = composeStatement(pq, answer);				
+				reference = composeReference(answer.statement);
+
+				cx().pathHistory.pushReasoningLine(statement, answer.parameters.toString(), reference);
+				answer.AddJustification(cx().pathHistory.getJustification());
+				cx().pathHistory.popReasoningLine(1);
+				
+				log("*" + composeReasoningLine(statement + "\t" + answer.parameters, Function));
+
+				answers.add(answer);
+			}
+		}
+		else if (argument == null) //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+		{
+			// QUESTION TYPE 2: Des(?)={Ref}
+
+			Arguments = referent.findSourceNodes(descriptor);
+
+			for (PlausibleAnswer pa: Arguments)
+			{
+				answer = pa;
+
+				if (answer.answer == unwantedAnswer)
+				{
+					continue;
+				}
+				
+				statement = composeStatement(pq, answer);				
+				reference = composeReference(answer.statement);
+				
+				cx().pathHistory.pushReasoningLine(statement, answer.parameters.toString(), reference);
+				answer.AddJustification(cx().pathHistory.getJustification());
+				cx().pathHistory.popReasoningLine(1);
+				
+				log("*" + composeReasoningLine(statement + "\t" + answer.parameters, Function));
+
+				answers.add(answer);
+			}
+		}
 		else //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 		{
 			// QUESTION TYPE 3: Des(Arg)={Ref}?
@@ -412,13 +1161,13 @@ public class SemanticReasoner
 					statement = composeStatement(pq, answer);					
 					reference = composeReference(answer.statement);
 					
-					_pathHistory.pushReasoningLine(statement, answer.parameters.toString(), reference);
+					cx().pathHistory.pushReasoningLine(statement, answer.parameters.toString(), reference);
 					
 					Yes.answer = KnowledgeBase.HPR_YES;
 					Yes.copyParameters(answer.parameters);
-					Yes.AddJustification(_pathHistory.getReasoningLines());
+					Yes.AddJustification(cx().pathHistory.getJustification());
 					
-					_pathHistory.popReasoningLine(1);
+					cx().pathHistory.popReasoningLine(1);
 					log("*" + composeReasoningLine(statement + "\t" + Yes.parameters, Function));
 
 					answers.add(Yes);
@@ -426,134 +1175,395 @@ public class SemanticReasoner
 			}
 		}
 		
+		return answers;
+	}
+	
+	/**
+	 * runs a list of sibling inferences and collects their answers.
+	 * in parallel mode the inferences run as fork/join tasks, each on its own branch of the reasoning context, 
+	 * and their answers are collected (and recorded as evidences of the question) in the same order as the sequential mode.
+	 * @param inferences the inferences
+	 * @param pq the question
+	 * @param answers where the answers are collected
+	 */
+	private void runInferences(InferenceType[] inferences, PlausibleQuestion pq, ArrayList<PlausibleAnswer> answers)
+	{
+		ReasoningContext context = cx();
+		
+		if (context.reasoningDepth > _maxParallelDepth || _forkJoinPool == null)
+		{
+			for (InferenceType inference: inferences)
+			{
+				ArrayList<PlausibleAnswer> inferred = runInference(inference, pq);
+				
+				recordQuestionEvidences(inferred);
+				
+				Do(inferred, answers);
+			}
+			
+			return;
+		}
+		
+		ArrayList<InferenceTask> tasks = new ArrayList<InferenceTask>(inferences.length);
+		
+		for (InferenceType inference: inferences)
+		{
+			tasks.add(new InferenceTask(inference, pq.fork(), context.fork()));
+		}
+		
+		if (ForkJoinTask.inForkJoinPool())
+		{
+			ForkJoinTask.invokeAll(tasks);
+		}
+		else
+		{
+			for (InferenceTask task: tasks)
+			{
+				_forkJoinPool.execute(task);
+			}
+		}
+		
+		for (InferenceTask task: tasks)
+		{
+			ArrayList<PlausibleAnswer> inferred = task.join();
+			
+			recordQuestionEvidences(inferred);
+			
+			Do(inferred, answers);
+			
+			context.join(task.getBranch());
+		}
+	}
+	
+	/**
+	 * runs a single inference
+	 * @param inference the inference
+	 * @param pq the question
+	 * @return answers
+	 */
+	private ArrayList<PlausibleAnswer> runInference(InferenceType inference, PlausibleQuestion pq)
+	{
+		switch (inference)
+		{
+			case AGEN			: return AGEN(pq);
+			case ASPEC			: return ASPEC(pq);
+			case ASIM			: return ASIM(pq);
+			case ADIS			: return ADIS(pq);
+			case ASYN			: return ASYN(pq);
+			case DGEN			: return DGEN(pq);
+			case DSPEC			: return DSPEC(pq);
+			case DSIM			: return DSIM(pq);
+			case DDIS			: return DDIS(pq);
+			case DSYN			: return DSYN(pq);
+			case RGEN			: return RGEN(pq);
+			case RSPEC			: return RSPEC(pq);
+			case RSIM			: return RSIM(pq);
+			case RDIS			: return RDIS(pq);
+			case RSYN			: return RSYN(pq);
+			case DDEP			: return DDEP(pq);
+			case DIMP			: return DIMP(pq);
+			case DEPA			: return DEPA(pq);
+			case INVERSE		: return DescriptorInverseTransform(pq);
+			case AMBIGUATION	: return Ambiguation(pq);
+			case DISAMBIGUATION	: return Disambiguation(pq);
+			default				: MyError.exit("Invalid inference!");
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * runs an inference as a fork/join task on its own branch of the reasoning context
+	 */
+	@SuppressWarnings("serial")
+	private class InferenceTask extends RecursiveTask<ArrayList<PlausibleAnswer>>
+	{
+		private InferenceType _inference;
+		private PlausibleQuestion _pq;
+		private ReasoningContext _branch;
+		
+		/** the kb version read by the question, pinned to the worker running the task too */
+		private KbVersion _version;
+		
+		public InferenceTask(InferenceType inference, PlausibleQuestion pq, ReasoningContext branch)
+		{
+			_inference = inference;
+			_pq = pq;
+			_branch = branch;
+			_version = KbVersion.getPinned();
+		}
+		
+		public ReasoningContext getBranch()
+		{
+			return _branch;
+		}
+		
+		@Override
+		protected ArrayList<PlausibleAnswer> compute()
+		{
+			// a worker may run this task while it waits for another one, so the context it had is restored afterwards
+			ReasoningContext previous = _context.get();
+			
+			_context.set(_branch);
+			
+			KbVersion previousVersion = KbVersion.pin(_version);
+			KbOverlay previousOverlay = KbOverlay.pin(_branch.overlay);
+			
+			try
+			{
+				return runInference(_inference, _pq);
+			}
+			finally
+			{
+				_context.set(previous);
+				
+				KbVersion.pin(previousVersion);
+				KbOverlay.pin(previousOverlay);
+			}
+		}
+	}
+	
+	/**
+	 * RECALL in best-first order (see <code>setBestFirstReasoning</code>). The question is recalled in rounds: 
+	 * a round reasons about the branches whose answers may be as certain as its opening bound the same as RECALL does 
+	 * and leaves the other branches open (see <code>enterBranch</code>). 
+	 * The next round lowers the bound so that it opens the best branches left open, <code>BEST_FIRST_GROWTH</code> times as many as the round before. 
+	 * The rounds share a table so the sub-questions a round completes aren't reasoned about again. 
+	 * They stop when no branch is left open or when the best answers can no longer be overtaken by the answers of the open branches.
+	 * @param pq input plausible question
+	 * @return a list of found answers
+	 */
+	private ArrayList<PlausibleAnswer> bestFirstRecall(PlausibleQuestion pq)
+	{
+		ReasoningContext context = cx();
+		AnswerTable table = context.answerTable;
+		
+		// the rounds share a table even if tabling is disabled
+		if (table == null)
+		{
+			context.answerTable = new AnswerTable();
+		}
+		
+		// yes/no questions have a single answer
+		int wantedAnswers = (pq.argument != null && pq.referent != null) ? 1 : _maxAnswersNumber;
+		
+		ArrayList<PlausibleAnswer> answers = null;
+		
+		float openingBound = 1F;
+		int opening = 1;
+		
+		try
+		{
+			do
+			{
+				context.openingBound = openingBound;
+				context.openBounds = new ArrayList<Float>();
+				context.questionEvidences = null;
+				
+				answers = recall(pq);
+				
+				if (context.openBounds.isEmpty())
+				{
+					break;
+				}
+				
+				Collections.sort(context.openBounds, Collections.reverseOrder());
+				
+				HashMap<String, Float> evidences = new HashMap<String, Float>();
+				
+				addEvidences(evidences, answers);
+				
+				if (areAnswersSettled(evidences, wantedAnswers, context.openBounds.get(0), true))
+				{
+					log(composeReasoningLine("BACKTRACK (the best answers are settled)", "RECALL"));
+					
+					break;
+				}
+				
+				opening *= BEST_FIRST_GROWTH;
+				openingBound = context.openBounds.get(Math.min(opening, context.openBounds.size()) - 1);
+			}
+			while (!context.isStopped());
+		}
+		finally
+		{
+			context.openingBound = 0F;
+			context.openBounds = null;
+			context.answerTable = table;
+		}
+		
+		return answers;
+	}
+	
+	/**
+	 * adds the (positive) answers of a question to the combined certainties of its answers
+	 * @param evidences the combined certainty of each answer
+	 * @param answers the answers or null
+	 */
+	private void addEvidences(HashMap<String, Float> evidences, ArrayList<PlausibleAnswer> answers)
+	{
+		if (answers == null)
+		{
+			return;
+		}
+		
+		for (PlausibleAnswer answer: answers)
+		{
+			if (answer.isNegative)
+			{
+				continue;
+			}
+			
+			String name = answer.answer.getName();
+			Float certainty = evidences.get(name);
+			
+			if (certainty == null)
+			{
+				evidences.put(name, answer.parameters.certainty);
+			}
+			else
+			{
+				evidences.put(name, DempsterShapherCombination(certainty, answer.parameters.certainty));
+			}
+		}
+	}
+	
+	/**
+	 * records the answers the question (the first RECALL) gets so far, which sub-questions are pruned against (see <code>setMinimumCertainty</code>)
+	 * @param answers the answers of the question or one of its inferences
+	 */
+	private void recordQuestionEvidences(ArrayList<PlausibleAnswer> answers)
+	{
+		ReasoningContext context = cx();
+		
+		if (_minimumCertainty <= 0 || context.reasoningDepth != 1)
+		{
+			return;
+		}
+		
+		if (context.questionEvidences == null)
+		{
+			context.questionEvidences = new HashMap<String, Float>();
+		}
+		
+		addEvidences(context.questionEvidences, answers);
+	}
+	
+	/**
+	 * checks whether the branches of the reasoning are bounded by the certainty their answers may have (see <code>enterBranch</code>)
+	 * @return true for branch and bound or best-first reasoning
+	 */
+	private boolean areBranchesBounded()
+	{
+		return _minimumCertainty > 0 || _bestFirst;
+	}
+	
+	/**
+	 * enters the branch of a sub-question unless its certainty bound prunes it (see <code>setMinimumCertainty</code>) 
+	 * or best-first reasoning leaves it open for a later round (see <code>bestFirstRecall</code>).
+	 * The caller should restore the bound of the context when the branch is done.
+	 * @param factor the factor the inference step multiplies the certainty of the answers by
+	 * @param Function the inference
+	 * @return false if the branch is pruned or left open
+	 */
+	private boolean enterBranch(float factor, String Function)
+	{
+		ReasoningContext context = cx();
+		
+		float bound = context.certaintyBound * factor;
 		
-		if (_reasoningDepth >= _maxReasoningDepth)
+		boolean pruned = (bound < _minimumCertainty);
+		
+		if (!pruned && context.questionEvidences != null)
 		{
-			// It's exceeded the Max. Reasoning Depth
-			
-			totalBackTracks++;
-			
-			log(composeReasoningLine("BACKTRACK (useless inference call)", Function));
-			
-			InferenceEpilogue(pq, Function);
-			
-			return answers;
+			pruned = areAnswersSettled(context.questionEvidences, _maxAnswersNumber, bound, false);
 		}
 		
-		if (answers.size() >= _maxAnswersNumber)
+		if (pruned)
 		{
-			// we found enough answers! no need to continue.
-			
-			log(composeReasoningLine("BACKTRACK (found enough answers)", Function));
+			context.totalPrunedBranches++;
 			
-			InferenceEpilogue(pq, Function);
+			log(composeReasoningLine("PRUNE (the answers can't be more certain than " + String.format("%.5f", bound) + ")", Function));
 			
-			return answers;
-		}	
-				
+			return false;
+		}
 		
-		// We couldn't find the answer directly. Now we have to reason to find it:
-
-		if (referent == null)
+		if (bound < context.openingBound)
 		{
-			PlausibleQuestion NewPQ = pq.clone();
-			NewPQ.referent = null;
-
-			//Do(AGEN(NewPQ), Answers);
-			Do(ASPEC(NewPQ), answers);
-			Do(ASIM(NewPQ), answers);
-			Do(ADIS(NewPQ), answers);
-			Do(ASYN(NewPQ), answers);
+			context.openBounds.add(bound);
+			context.deferredBranches++;
 			
-			Do(DGEN(NewPQ), answers);
-			Do(DSPEC(NewPQ), answers);
-			Do(DSIM(NewPQ), answers);
-			Do(DDIS(NewPQ), answers);
-			Do(DSYN(NewPQ), answers);
+			log(composeReasoningLine("DEFER (the answers can't be more certain than " + String.format("%.5f", bound) + ")", Function));
 			
-			Do(DDEP(NewPQ), answers);
-			Do(DIMP(NewPQ), answers);
-			Do(DEPA(NewPQ), answers);
-			
-			//Do(Abduction(NewPQ), Answers);
-			//Do(RCausality(NewPQ), Answers);
-			//Do(Attribute(NewPQ), Answers);
-			Do(DescriptorInverseTransform(NewPQ), answers);
-
-			Do(Ambiguation(NewPQ), answers);
-			Do(Disambiguation(NewPQ), answers);
+			return false;
 		}
-		else if (argument == null)
+		
+		context.certaintyBound = bound;
+		
+		return true;
+	}
+	
+	/**
+	 * checks whether the best answers are settled: 
+	 * neither a new answer nor a new evidence for the next best answer may overtake the worst of the best answers 
+	 * and, if their order should be settled too, no best answer may overtake the one before it.
+	 * Evidences against the answers (e.g. of DIS inferences) are not considered.
+	 * @param evidences the combined certainty of each answer found so far
+	 * @param wantedAnswers the number of answers wanted
+	 * @param bound the highest certainty the answers of the open sub-questions may have
+	 * @param ordered whether the order of the best answers should be settled too
+	 * @return true/false
+	 */
+	private boolean areAnswersSettled(HashMap<String, Float> evidences, int wantedAnswers, float bound, boolean ordered)
+	{
+		if (evidences.size() < wantedAnswers)
 		{
-			PlausibleQuestion NewPQ = pq.clone();
-			NewPQ.argument = null;
-			
-			//Do(RGEN(NewPQ), Answers);
-			Do(RSPEC(NewPQ), answers);
-			Do(RSIM(NewPQ), answers);
-			Do(RDIS(NewPQ), answers);
-			Do(RSYN(NewPQ), answers);
-			
-			Do(DGEN(NewPQ), answers);
-			Do(DSPEC(NewPQ), answers);
-			Do(DSIM(NewPQ), answers);
-			Do(DDIS(NewPQ), answers);
-			Do(DSYN(NewPQ), answers);
-			
-			Do(DDEP(NewPQ), answers);
-			Do(DIMP(NewPQ), answers);
-			
-			//Do(Abduction(NewPQ), Answers);
-			//Do(ACausality(NewPQ), Answers);
-			//Do(Attribute(NewPQ), Answers);
-			Do(DescriptorInverseTransform(NewPQ), answers);
-			
-			Do(Ambiguation(NewPQ), answers);
-			Do(Disambiguation(NewPQ), answers);
+			return false;
 		}
-		else
+		
+		float[] certainties = new float[evidences.size()];
+		
+		int i = 0;
+		
+		for (Float certainty: evidences.values())
 		{
-			//TODO: AGEN and DGEN were disabled!!!
-			//Do(AGEN(pq), Answers);
-			//Do(RGEN(pq), Answers);
-			Do(DGEN(pq), answers);
-
-			Do(ASPEC(pq), answers);
-			Do(RSPEC(pq), answers);
-			Do(DSPEC(pq), answers);
-
-			Do(ASIM(pq), answers);
-			Do(RSIM(pq), answers);
-			Do(DSIM(pq), answers);
-
-			Do(ADIS(pq), answers);
-			Do(RDIS(pq), answers);
-			Do(DDIS(pq), answers);
-			
-			Do(ASYN(pq), answers);
-			Do(DSYN(pq), answers);
-			Do(RSYN(pq), answers);
-			
-			Do(DDEP(pq), answers);
-			Do(DIMP(pq), answers);
-			Do(DEPA(pq), answers);
-
-			//Do(Abduction(pq), Answers);
-			//Do(RCausality(pq), Answers);
-			//Do(Attribute(pq), Answers);
-			Do(DescriptorInverseTransform(pq), answers);
+			certainties[i++] = certainty;
+		}
+		
+		Arrays.sort(certainties);
+		
+		// each of the best answers (or only the worst of them) should stay ahead of the answer after it
+		int first = ordered ? certainties.length - 1 : certainties.length - wantedAnswers;
+		
+		for (int j = certainties.length - wantedAnswers; j <= first; j++)
+		{
+			float next = (j > 0) ? certainties[j - 1] : 0F;
 			
-			Do(Ambiguation(pq), answers);
-			Do(Disambiguation(pq), answers);			
+			if (certainties[j] < DempsterShapherCombination(next, bound))
+			{
+				return false;
+			}
 		}
-
-		answers = combineEvidences(answers, Function, pq);
-				
-		InferenceEpilogue(pq, Function);
 		
-		log(composeReasoningLine("RETURN", Function));
-
-		return answers;
+		return true;
+	}
+	
+	/**
+	 * gives the reasoning context of the reasoning process (or branch) running on the current thread
+	 * @return the context
+	 */
+	private ReasoningContext cx()
+	{
+		ReasoningContext context = _context.get();
+		
+		if (context == null)
+		{
+			// public helpers (e.g. getSensesFromLemma) may be called outside answerQuestion
+			context = new ReasoningContext();
+			_context.set(context);
+		}
+		
+		return context;
 	}
 	
 	/**
@@ -635,9 +1645,9 @@ public class SemanticReasoner
 					Question = composeStatement(pq, pa);					
 					String reference = composeReference(pa.statement);
 
-					_pathHistory.pushReasoningLine(Question, pa.parameters.toString(), reference);
-					pa.AddJustification(_pathHistory.getReasoningLines());
-					_pathHistory.popReasoningLine(1);
+					cx().pathHistory.pushReasoningLine(Question, pa.parameters.toString(), reference);
+					pa.AddJustification(cx().pathHistory.getJustification());
+					cx().pathHistory.popReasoningLine(1);
 					
 					log("*" + composeReasoningLine(Question + "\t" + pa.parameters, Function));
 
@@ -651,13 +1661,13 @@ public class SemanticReasoner
 					Question = composeStatement(pq, pa);					
 					String reference = composeReference(pa.statement);
 					
-					_pathHistory.pushReasoningLine(Question, pa.parameters.toString(), reference);
+					cx().pathHistory.pushReasoningLine(Question, pa.parameters.toString(), reference);
 					
 					Yes.answer = KnowledgeBase.HPR_YES;
 					Yes.copyParameters(pa.parameters);
-					Yes.AddJustification(_pathHistory.getReasoningLines());
+					Yes.AddJustification(cx().pathHistory.getJustification());
 					
-					_pathHistory.popReasoningLine(1);
+					cx().pathHistory.popReasoningLine(1);
 					log("*" + composeReasoningLine(Question + "\t" + Yes.parameters, Function));
 
 					Answers.add(Yes);
@@ -963,17 +1973,24 @@ public class SemanticReasoner
 					DependencyIntensity = eliteContext.parameters.certainty;
 				}
 			}
+			
+			float outerBound = cx().certaintyBound;
+			
+			if (areBranchesBounded() && !enterBranch(AHierarchicalComputeCertainty(hierarchicalAnswer.parameters, CERTAIN_ANSWER, DependencyIntensity, Direction, Function), Function))
+			{
+				continue;
+			}
 
 			//---------------------------------------------
-			_pathHistory.pushReasoningLine(hierarchicalStatement, hierarchicalAnswer.parameters.toString(), hierarchicalReference);
+			cx().pathHistory.pushReasoningLine(hierarchicalStatement, hierarchicalAnswer.parameters.toString(), hierarchicalReference);
 
 			if (DEPText != "")
 			{
 				//TODO: empty knowledge source
-				_pathHistory.pushReasoningLine(DEPText, "[γ = " + String.format("%.2f", DependencyIntensity) + "]", "");
+				cx().pathHistory.pushReasoningLine(DEPText, "[γ = " + String.format("%.2f", DependencyIntensity) + "]", "");
 			}
 
-			_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+			cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 			
 			if (qf == QuestionFocus.ARGUMENT)
 			{
@@ -996,14 +2013,16 @@ public class SemanticReasoner
 			TempAL = recall(newPQ);
 			
 			//--------------------------
+			
+			cx().certaintyBound = outerBound;
 
 			if (DEPText == "")
 			{
-				_pathHistory.popReasoningLine(2);
+				cx().pathHistory.popReasoningLine(2);
 			}
 			else
 			{
-				_pathHistory.popReasoningLine(3);
+				cx().pathHistory.popReasoningLine(3);
 			}
 
 			if (TempAL != null)
@@ -1019,7 +2038,7 @@ public class SemanticReasoner
 					}
 					
 					statement = composeStatement(pq, reasonedAnswer);
-					reasonedAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth , statement, reasonedAnswer.parameters.toString());
+					reasonedAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth , statement, reasonedAnswer.parameters.toString());
 
 					if (DEPText != "" && eliteContext == null)
 					{
@@ -1048,6 +2067,18 @@ public class SemanticReasoner
 	{
 		ArrayList<PlausibleAnswer> answers = null;
 		
+		LookupCache lookups = cx().lookups;
+		
+		if (lookups != null)
+		{
+			answers = lookups.getNeighbours(Concept, Direction);
+			
+			if (answers != null)
+			{
+				return answers;
+			}
+		}
+		
 		ArrayList<Node> CXs = new ArrayList<Node>();
 		CXs.add(KnowledgeBase.HPR_CX);
 		
@@ -1111,6 +2142,11 @@ public class SemanticReasoner
 		{
 			answers = Concept.findSourceNodes(KnowledgeBase.HPR_DIS, KnowledgeBase.HPR_SYN, CXs);
 		}
+		
+		if (lookups != null && answers != null)
+		{
+			lookups.putNeighbours(Concept, Direction, answers);
+		}
 
 		return answers;
 	}
@@ -1308,8 +2344,15 @@ public class SemanticReasoner
 		{
 			if (newPQ[i] != null)
 			{
-				_pathHistory.pushReasoningLine(reasoningLine[i], CertaintyParameters.defaultCertainty.toString(), "");
-				_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+				float outerBound = cx().certaintyBound;
+				
+				if (areBranchesBounded() && !enterBranch(SYNComputeCertainty(CertaintyParameters.defaultCertainty, 1F), Function))
+				{
+					continue;
+				}
+				
+				cx().pathHistory.pushReasoningLine(reasoningLine[i], CertaintyParameters.defaultCertainty.toString(), "");
+				cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 				
 				// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 				
@@ -1317,7 +2360,9 @@ public class SemanticReasoner
 				
 				//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 				
-				_pathHistory.popReasoningLine(2);
+				cx().certaintyBound = outerBound;
+				
+				cx().pathHistory.popReasoningLine(2);
 				
 				if (tempAnswers!= null && tempAnswers.size() > 0)
 				{
@@ -1326,7 +2371,7 @@ public class SemanticReasoner
 						pa.parameters.certainty = SYNComputeCertainty(CertaintyParameters.defaultCertainty, pa.parameters.certainty);
 						
 						statement = composeStatement(pq, pa);
-						pa.AdjustConclusionInJustifications(Function, _reasoningDepth , statement, pa.parameters.toString());
+						pa.AdjustConclusionInJustifications(Function, cx().reasoningDepth , statement, pa.parameters.toString());
 						
 						answers.add(pa);
 					}
@@ -1460,8 +2505,15 @@ public class SemanticReasoner
 		{
 			if (newPQ[i] != null)
 			{
-				_pathHistory.pushReasoningLine(reasoningLine[i], newPQ[i].parameters.toString(), "");
-				_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+				float outerBound = cx().certaintyBound;
+				
+				if (areBranchesBounded() && !enterBranch(SYNComputeCertainty(newPQ[i].parameters.certainty, 1F), Function))
+				{
+					continue;
+				}
+				
+				cx().pathHistory.pushReasoningLine(reasoningLine[i], newPQ[i].parameters.toString(), "");
+				cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 				
 				// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 				
@@ -1469,7 +2521,9 @@ public class SemanticReasoner
 				
 				//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 				
-				_pathHistory.popReasoningLine(2);
+				cx().certaintyBound = outerBound;
+				
+				cx().pathHistory.popReasoningLine(2);
 				
 				if (tempAnswers!= null && tempAnswers.size() > 0)
 				{
@@ -1478,7 +2532,7 @@ public class SemanticReasoner
 						pa.parameters.certainty = SYNComputeCertainty(newPQ[i].parameters.certainty, pa.parameters.certainty);
 						
 						statement = composeStatement(pq, pa);
-						pa.AdjustConclusionInJustifications(Function, _reasoningDepth , statement, pa.parameters.toString());
+						pa.AdjustConclusionInJustifications(Function, cx().reasoningDepth , statement, pa.parameters.toString());
 						
 						answers.add(pa);
 					}
@@ -1578,9 +2632,16 @@ public class SemanticReasoner
 			SYNRelation = ActiveConcept.getName() + " SYN " + synonym.answer.getName();
 			
 			String reference = composeReference(synonym.statement);
+			
+			float outerBound = cx().certaintyBound;
+			
+			if (areBranchesBounded() && !enterBranch(SYNComputeCertainty(CertaintyParameters.defaultCertainty, 1F), Function))
+			{
+				continue;
+			}
 
-			_pathHistory.pushReasoningLine(SYNRelation, synonym.parameters.toString(), reference);
-			_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+			cx().pathHistory.pushReasoningLine(SYNRelation, synonym.parameters.toString(), reference);
+			cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 			
 			// ---------- Recall ----------
 			
@@ -1588,7 +2649,9 @@ public class SemanticReasoner
 			
 			//-----------------------------
 			
-			_pathHistory.popReasoningLine(2);
+			cx().certaintyBound = outerBound;
+			
+			cx().pathHistory.popReasoningLine(2);
 			
 			if (TempAL != null)
 			{
@@ -1597,7 +2660,7 @@ public class SemanticReasoner
 					pa.parameters.certainty = SYNComputeCertainty(CertaintyParameters.defaultCertainty, pa.parameters.certainty);
 					
 					statement = composeStatement(pq, pa);
-					pa.AdjustConclusionInJustifications(Function, _reasoningDepth , statement, pa.parameters.toString());
+					pa.AdjustConclusionInJustifications(Function, cx().reasoningDepth , statement, pa.parameters.toString());
 					
 					Answers.add(pa);
 				}
@@ -1718,11 +2781,18 @@ public class SemanticReasoner
 			ImpressorNode	= ImpressorAnswer.answer;
 
 			log(composeReasoningLine(ImpressorNode.getName() + " -- " + RelationName + " --> " + pq.descriptor.getName(), Function));
+			
+			float outerBound = cx().certaintyBound;
+			
+			if (areBranchesBounded() && !enterBranch(DDEPComputeCertainty(ImpressorAnswer.parameters.certainty, ImpressorAnswer.parameters.conditionalLikelihood, 1F), Function))
+			{
+				continue;
+			}
 
 			String reference = composeReference(ImpressorAnswer.statement);
 
-			_pathHistory.pushReasoningLine(ImpressorNode.getName() + " " + GraphicalRelationName + " " + pq.descriptor.getName(), ImpressorAnswer.parameters.toString(), reference);
-			_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+			cx().pathHistory.pushReasoningLine(ImpressorNode.getName() + " " + GraphicalRelationName + " " + pq.descriptor.getName(), ImpressorAnswer.parameters.toString(), reference);
+			cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 			
 			if (pq.referent == null)
 			{
@@ -1792,7 +2862,9 @@ public class SemanticReasoner
 				}
 			}
 			
-			_pathHistory.popReasoningLine(2);
+			cx().pathHistory.popReasoningLine(2);
+			
+			cx().certaintyBound = outerBound;
 
 			if (TempAL2 != null)
 			{
@@ -1802,7 +2874,7 @@ public class SemanticReasoner
 					
 					ReasonedAnswer.parameters.certainty = DDEPComputeCertainty(ImpressorAnswer.parameters.certainty, ImpressorAnswer.parameters.conditionalLikelihood, ReasonedAnswer.parameters.certainty);
 
-					ReasonedAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth, composeStatement(pq, ReasonedAnswer), ReasonedAnswer.parameters.toString());
+					ReasonedAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, composeStatement(pq, ReasonedAnswer), ReasonedAnswer.parameters.toString());
 				}
 			}
 		}
@@ -2290,10 +3362,10 @@ public class SemanticReasoner
 					String referencePrimaryReferent = composeReference(PrimaryReferent.statement);
 					String referenceSecondaryArgument = composeReference(SecondaryArgument.statement);
 					
-					_pathHistory.pushReasoningLine(ImpressorNode.getName() + " -- DEPX --> " + Descriptor.getName(), Impressor.parameters.toString(), referenceImpressor);
-					_pathHistory.pushReasoningLine(ComposePlausibleQuestion(ImpressorNode, Argument, PrimaryReferentNode, PrimaryReferent.isNegative), PrimaryReferent.parameters.toString(), referencePrimaryReferent);
-					_pathHistory.pushReasoningLine(ComposePlausibleQuestion(ImpressorNode, SecondaryArgumentNode, PrimaryReferentNode, SecondaryArgument.isNegative), SecondaryArgument.parameters.toString(), referenceSecondaryArgument);
-					_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*DEPA(" + _reasoningDepth + ")", "", "");
+					cx().pathHistory.pushReasoningLine(ImpressorNode.getName() + " -- DEPX --> " + Descriptor.getName(), Impressor.parameters.toString(), referenceImpressor);
+					cx().pathHistory.pushReasoningLine(ComposePlausibleQuestion(ImpressorNode, Argument, PrimaryReferentNode, PrimaryReferent.isNegative), PrimaryReferent.parameters.toString(), referencePrimaryReferent);
+					cx().pathHistory.pushReasoningLine(ComposePlausibleQuestion(ImpressorNode, SecondaryArgumentNode, PrimaryReferentNode, SecondaryArgument.isNegative), SecondaryArgument.parameters.toString(), referenceSecondaryArgument);
+					cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*DEPA(" + cx().reasoningDepth + ")", "", "");
 					
 					newPQ = pq.clone();
 					newPQ.argument = SecondaryArgumentNode;
@@ -2301,7 +3373,7 @@ public class SemanticReasoner
 					
 					SecondaryReferentsList = recall(newPQ);
 					
-					_pathHistory.popReasoningLine(4);
+					cx().pathHistory.popReasoningLine(4);
 
 					if (IsEmpty(SecondaryReferentsList))
 					{
@@ -2321,7 +3393,7 @@ public class SemanticReasoner
 						// finally we've got the answer!
 						SecondaryReferent.parameters.certainty = DEPAComputeCertainty(Impressor.parameters, PrimaryReferent.parameters, SecondaryArgument.parameters, SecondaryReferent.parameters);
 
-						SecondaryReferent.AdjustConclusionInJustifications(Function, _reasoningDepth, composeStatement(pq, SecondaryReferent), SecondaryReferent.parameters.toString());
+						SecondaryReferent.AdjustConclusionInJustifications(Function, cx().reasoningDepth, composeStatement(pq, SecondaryReferent), SecondaryReferent.parameters.toString());
 
 						AL.add(SecondaryReferent);
 					}
@@ -2445,11 +3517,18 @@ public class SemanticReasoner
 				
 				log(composeReasoningLine("Rule '" + RuleCount + "': " + RuleText + "\t" + ImplicationStatement.parameters, Function));
 
+				float outerBound = cx().certaintyBound;
+				
+				if (areBranchesBounded() && !enterBranch(IMPComputeCertainty(ImplicationStatement.parameters, 1F, 1F), Function))
+				{
+					continue;
+				}
+				
 				String reference = composeReference(ImplicationStatement);
 				
-				_pathHistory.pushReasoningLine(RuleText, ImplicationStatement.parameters.toString(), reference);
-				_pathHistory.pushReasoningLine("*ISA RELATION GOES HERE*" + _reasoningDepth, "", "");
-				_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*DIMP(" + _reasoningDepth + ")", "", "");
+				cx().pathHistory.pushReasoningLine(RuleText, ImplicationStatement.parameters.toString(), reference);
+				cx().pathHistory.pushReasoningLine("*ISA RELATION GOES HERE*" + cx().reasoningDepth, "", "");
+				cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*DIMP(" + cx().reasoningDepth + ")", "", "");
 				
 				newPQ = pq.clone();
 				newPQ.descriptor = AntecedentDescriptor;
@@ -2457,7 +3536,9 @@ public class SemanticReasoner
 				
 				Answers = recall(newPQ);
 				
-				_pathHistory.popReasoningLine(3);
+				cx().pathHistory.popReasoningLine(3);
+				
+				cx().certaintyBound = outerBound;
 				
 				if (IsEmpty(Answers))
 				{
@@ -2492,7 +3573,7 @@ public class SemanticReasoner
 						FinalAnswer.copyParameters(FinalAnswer.parameters);
 						FinalAnswer.parameters.certainty = IMPComputeCertainty(ImplicationStatement.parameters, KindOfRelation.parameters.certainty, FinalAnswer.parameters.certainty);
 						statement = composeStatement(pq, FinalAnswer);
-						FinalAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + _reasoningDepth, ISAText);
+						FinalAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + cx().reasoningDepth, ISAText);
 					}
 					else if (Referent == null) //----------------------------------
 					{
@@ -2511,7 +3592,7 @@ public class SemanticReasoner
 						FinalAnswer.copyParameters(FinalAnswer.parameters);
 						FinalAnswer.parameters.certainty = IMPComputeCertainty(ImplicationStatement.parameters, KindOfRelation.parameters.certainty, FinalAnswer.parameters.certainty);
 						statement = composeStatement(pq, FinalAnswer);
-						FinalAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + _reasoningDepth, ISAText);
+						FinalAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + cx().reasoningDepth, ISAText);
 					}
 					else //--------------------------------------------------------
 					{
@@ -2529,7 +3610,7 @@ public class SemanticReasoner
 						FinalAnswer.copyParameters(FinalAnswer.parameters);
 						FinalAnswer.parameters.certainty = IMPComputeCertainty(ImplicationStatement.parameters, KindOfRelation.parameters.certainty, FinalAnswer.parameters.certainty);
 						statement = composeStatement(pq, FinalAnswer);
-						FinalAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + _reasoningDepth, ISAText);
+						FinalAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + cx().reasoningDepth, ISAText);
 					}
 
 					AL.add(FinalAnswer);
@@ -2595,15 +3676,15 @@ public class SemanticReasoner
 
 			String reference = composeReference(PartialIMPAnswer.statement);
 			
-			_pathHistory.pushReasoningLine(PartialIMPRelation, PartialIMPAnswer.parameters.toString(), reference);
-			_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+			cx().pathHistory.pushReasoningLine(PartialIMPRelation, PartialIMPAnswer.parameters.toString(), reference);
+			cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 			
 			newPQ = pq.clone();
 			newPQ.descriptor = PartialIMPAnswer.answer;
 			
 			Answers = recall(newPQ);
 			
-			_pathHistory.popReasoningLine(2);
+			cx().pathHistory.popReasoningLine(2);
 
 			if (!IsEmpty(Answers))
 			{
@@ -2612,7 +3693,7 @@ public class SemanticReasoner
 					Answer = ReasonedAnswer;
 					Answer.parameters.certainty = IMPComputeCertainty(PartialIMPAnswer.parameters.certainty, PartialIMPAnswer.parameters.conditionalLikelihood, Answer.parameters.certainty);
 
-					Answer.AdjustConclusionInJustifications(Function, _reasoningDepth , composeStatement(pq, Answer), Answer.parameters.toString());
+					Answer.AdjustConclusionInJustifications(Function, cx().reasoningDepth , composeStatement(pq, Answer), Answer.parameters.toString());
 
 					FinalAnswers.add(Answer);
 				}
@@ -2705,11 +3786,18 @@ public class SemanticReasoner
 				
 				log(composeReasoningLine("Rule '" + RuleCount + "': " + RuleText + "\t" + ImplicationStatement.parameters, Function));
 				
+				float outerBound = cx().certaintyBound;
+				
+				if (areBranchesBounded() && !enterBranch(IMPComputeCertainty(ImplicationStatement.parameters, 1F, 1F), Function))
+				{
+					continue;
+				}
+				
 				String reference = composeReference(ImplicationStatement);
 				
-				_pathHistory.pushReasoningLine(RuleText, ImplicationStatement.parameters.toString(), reference);
-				_pathHistory.pushReasoningLine("*ISA RELATION GOES HERE*" + _reasoningDepth, "", "");
-				_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+				cx().pathHistory.pushReasoningLine(RuleText, ImplicationStatement.parameters.toString(), reference);
+				cx().pathHistory.pushReasoningLine("*ISA RELATION GOES HERE*" + cx().reasoningDepth, "", "");
+				cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 				
 				newPQ = pq.clone();
 				newPQ.descriptor = ConsequentDescriptor;
@@ -2717,12 +3805,14 @@ public class SemanticReasoner
 				
 				Answers = recall(newPQ);
 				
+				cx().certaintyBound = outerBound;
+				
 				if (IsEmpty(Answers))
 				{
 					continue;
 				}
 
-				_pathHistory.popReasoningLine(3);
+				cx().pathHistory.popReasoningLine(3);
 
 				for (Object obj3: Answers)
 				{
@@ -2752,7 +3842,7 @@ public class SemanticReasoner
 						FinalAnswer.copyParameters(FinalAnswer.parameters);
 						FinalAnswer.parameters.certainty = AbductionComputeCertainty(ImplicationStatement.parameters, KindOfRelation.parameters.certainty, FinalAnswer.parameters.certainty);
 						statement = composeStatement(pq, FinalAnswer);
-						FinalAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + _reasoningDepth, ISAText);
+						FinalAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + cx().reasoningDepth, ISAText);
 					}
 					else if (referent == null) //----------------------------------
 					{
@@ -2771,7 +3861,7 @@ public class SemanticReasoner
 						FinalAnswer.copyParameters(FinalAnswer.parameters);
 						FinalAnswer.parameters.certainty = AbductionComputeCertainty(ImplicationStatement.parameters, KindOfRelation.parameters.certainty, FinalAnswer.parameters.certainty);
 						statement = composeStatement(pq, FinalAnswer);
-						FinalAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + _reasoningDepth, ISAText);
+						FinalAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + cx().reasoningDepth, ISAText);
 					}
 					else //--------------------------------------------------------
 					{
@@ -2789,7 +3879,7 @@ public class SemanticReasoner
 						FinalAnswer.copyParameters(FinalAnswer.parameters);
 						FinalAnswer.parameters.certainty = AbductionComputeCertainty(ImplicationStatement.parameters, KindOfRelation.parameters.certainty, FinalAnswer.parameters.certainty);
 						statement = composeStatement(pq, FinalAnswer);
-						FinalAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + _reasoningDepth, ISAText);
+						FinalAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, statement, FinalAnswer.parameters.toString(), "*ISA RELATION GOES HERE*" + cx().reasoningDepth, ISAText);
 					}
 
 					AL.add(FinalAnswer);
@@ -2809,6 +3899,7 @@ public class SemanticReasoner
 	 * simple checks if two nodes have a kind-of relation (transitive)
 	 * This function is redundant. It is equivalent to RECALL(ISA, Child, WantedParent). 
 	 * However it is much faster because it concentrates on ISA relations which bear actually to the task.
+	 * While the kb is locked the relation is read from its hierarchy index which gives the most certain ISA/INSTANCE path.
 	 * 
 	 * @param Child child
 	 * @param WantedParent parent
@@ -2816,7 +3907,7 @@ public class SemanticReasoner
 	 */
 	private PlausibleAnswer IsAKindOf(Node Child, Node WantedParent)
 	{
-		_reasoningDepth++;
+		cx().reasoningDepth++;
 
 		String Question = "ISA(" + Child.getName() + ")={" + WantedParent.getName() + "}?";			
 		log(composeReasoningLine(Question, "ISKIND", true));
@@ -2828,10 +3919,25 @@ public class SemanticReasoner
 			PA.parameters.certainty = CertaintyParameters.defaultCertainty;
 
 			log(composeReasoningLine(Question + "\tYes\t" + PA.parameters, "ISKIND")); 
-			_reasoningDepth--;
+			cx().reasoningDepth--;
 			return PA;
 		}
 		
+		HierarchyIndex hierarchy = _kb.getHierarchyIndex();
+		
+		if (hierarchy != null && hierarchy.covers(Child))
+		{
+			PlausibleAnswer KindOfAnswer = hierarchy.findKindOf(Child, WantedParent);
+			
+			if (KindOfAnswer == null)
+				log(composeReasoningLine(Question + "\tNo", "ISKIND"));
+			else
+				log(composeReasoningLine(Question + "\tYes\t" + KindOfAnswer.parameters, "ISKIND"));
+			
+			cx().reasoningDepth--;
+			return KindOfAnswer;
+		}
+		
 		// Extracting those nodes which have an ISA (or INS) relation to Child
 		ArrayList<PlausibleAnswer> ParentAnswers = FindHierarchicalNodes(Child, ReasoningDirection.UP);
 		PlausibleAnswer ParentAnswer;
@@ -2845,7 +3951,7 @@ public class SemanticReasoner
 			{
 				// Parameters have been initialized before in FindHierarchicalNodes-FindTargetNodes
 				log(composeReasoningLine(Question + "\tYes\t" + ParentAnswer.parameters, "ISKIND")); 
-				_reasoningDepth--;
+				cx().reasoningDepth--;
 				return ParentAnswer;	
 			}
 			else
@@ -2854,7 +3960,7 @@ public class SemanticReasoner
 				
 				if (GrandFatherAnswer == null)
 				{
-					_reasoningDepth--;
+					cx().reasoningDepth--;
 					log(composeReasoningLine(Question + "\tNo", "ISKIND")); 
 					return null;
 				}
@@ -2863,13 +3969,13 @@ public class SemanticReasoner
 				GrandFatherAnswer.parameters.dominance = GrandFatherAnswer.parameters.dominance*ParentAnswer.parameters.dominance;
 						
 				log(composeReasoningLine(Question + "\tYes\t" + GrandFatherAnswer.parameters, "ISKIND")); 
-				_reasoningDepth--;
+				cx().reasoningDepth--;
 				return GrandFatherAnswer;
 			}
 		}
 	
 		log(composeReasoningLine(Question + "\tNo", "ISKIND")); 
-		_reasoningDepth--;
+		cx().reasoningDepth--;
 		return null;
 	}
 
@@ -2883,39 +3989,29 @@ public class SemanticReasoner
 	{
 		String key = relationType.getName() + "-" + requestedStatType.toString();
 		
-		ArrayList<PlausibleStatement> statements = _cacheStatements.get(key);
+		ReasoningContext context = cx();
+		
+		ArrayList<PlausibleStatement> statements = context.cacheStatements.get(key);
 		
 		if (statements != null)
 			return statements;
 		
-		String StatName = "*" + relationType.getName() + " (";
-		
-		statements = new ArrayList<PlausibleStatement>();
+		if (context.lookups != null)
+		{
+			statements = context.lookups.getStatements(key);
+		}
 		
-		int counter = 1;
-
-		PlausibleStatement statement = (PlausibleStatement)_kb.findConcept(StatName + counter + ")");
-
-		while (statement != null)
-		{	
-			if (requestedStatType == ConditionalType.CONSEQUENT && statement.IsConsequentStatement())
-			{
-				statements.add(statement);
-			}
-			else if (requestedStatType == ConditionalType.ANTECEDENT && statement.IsAntecedentStatement())
-			{
-				statements.add(statement);
-			}
-			else if (requestedStatType == ConditionalType.NOT_CONDITIONAL && statement.conditionalType == ConditionalType.NOT_CONDITIONAL)
+		if (statements == null)
+		{
+			statements = _kb.findRelationInstances(relationType, requestedStatType);
+			
+			if (context.lookups != null)
 			{
-				statements.add(statement);
+				context.lookups.putStatements(key, statements);
 			}
-
-			counter++;
-			statement = (PlausibleStatement)_kb.findConcept(StatName + counter + ")");
 		}
 		
-		_cacheStatements.put(key, statements);
+		context.cacheStatements.put(key, statements);
 
 		return statements;
 	}
@@ -3016,21 +4112,21 @@ public class SemanticReasoner
 			answer.answer = KnowledgeBase.HPR_YES;
 			answer.parameters.certainty = CausalityComputeCertainty(CauseAnswer.parameters.certainty, CauseAnswer.parameters.conditionalLikelihood, SecondaryStatementsCertainty);
 
-			_pathHistory.PushReasoningLine(CauseRelation, CauseAnswer.parameters.toString());
+			cx().pathHistory.PushReasoningLine(CauseRelation, CauseAnswer.parameters.toString());
 
 			for (PlausibleAnswer SecondaryArgument: SecondaryArguments)
 			{
 				SecondaryStatement = ComposePlausibleQuestion(CauseAnswer.answer, SecondaryArgument.answer, argument, SecondaryArgument.IsNegative);
-				_pathHistory.PushReasoningLine(SecondaryStatement, SecondaryArgument.parameters.toString());
+				cx().pathHistory.PushReasoningLine(SecondaryStatement, SecondaryArgument.parameters.toString());
 			}
 
-			_pathHistory.PushReasoningLine("> CAUSALITY:", "");
+			cx().pathHistory.PushReasoningLine("> CAUSALITY:", "");
 
 			AnswerText = ComposePlausibleQuestion(descriptor, argument, answer.answer, answer.IsNegative);
 			
-			_pathHistory.PushReasoningLine(AnswerText, answer.parameters.toString());
-			answer.AddJustification(_pathHistory.getReasoningLines());
-			_pathHistory.PopReasoningLine(SecondaryArguments.size() + 3);
+			cx().pathHistory.PushReasoningLine(AnswerText, answer.parameters.toString());
+			answer.AddJustification(cx().pathHistory.getJustification());
+			cx().pathHistory.PopReasoningLine(SecondaryArguments.size() + 3);
 
 			log("*" + ComposeMessage(AnswerText, Function));
 
@@ -3116,21 +4212,21 @@ public class SemanticReasoner
 				answer.answer = Statement.referent;
 				answer.parameters.certainty = CausalityComputeCertainty(descriptorCause.parameters.certainty, descriptorCause.parameters.conditionalLikelihood, Statement.parameters.certainty);
 
-				_pathHistory.PushReasoningLine(CauseRelation, descriptorCause.parameters.toString());
+				cx().pathHistory.PushReasoningLine(CauseRelation, descriptorCause.parameters.toString());
 				
 				AnswerText = ComposePlausibleQuestion(Statement);
-				_pathHistory.PushReasoningLine(AnswerText, Statement.parameters.toString());
+				cx().pathHistory.PushReasoningLine(AnswerText, Statement.parameters.toString());
 				log(ComposeMessage(AnswerText, Function));
 
-				_pathHistory.PushReasoningLine("> CAUSALITY:", "");
+				cx().pathHistory.PushReasoningLine("> CAUSALITY:", "");
 				
 				AnswerText = ComposePlausibleQuestion(pq.Descriptor, answer.answer, KnowledgeBase.HPR_YES, answer.IsNegative);
-				_pathHistory.PushReasoningLine(AnswerText, answer.parameters.toString());
+				cx().pathHistory.PushReasoningLine(AnswerText, answer.parameters.toString());
 				log("*" + ComposeMessage(AnswerText, Function));
 
-				answer.AddJustification(_pathHistory.getReasoningLines());
+				answer.AddJustification(cx().pathHistory.getJustification());
 				
-				_pathHistory.PopReasoningLine(4);
+				cx().pathHistory.PopReasoningLine(4);
 
 				Answers.add(answer);
 
@@ -3210,8 +4306,8 @@ public class SemanticReasoner
 				{
 					String reference = composeReference(Attribute.statement);
 					
-					_pathHistory.pushReasoningLine(referent.getName() + " ATTRIBUTES " + Attribute.answer.getName(), Attribute.parameters.toString(), reference);
-					_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+					cx().pathHistory.pushReasoningLine(referent.getName() + " ATTRIBUTES " + Attribute.answer.getName(), Attribute.parameters.toString(), reference);
+					cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 				
 					newPQ = pq.clone();
 					newPQ.descriptor = Attribute.answer;
@@ -3223,13 +4319,13 @@ public class SemanticReasoner
 						continue;
 					}
 
-					_pathHistory.popReasoningLine(2);
+					cx().pathHistory.popReasoningLine(2);
 
 					for (PlausibleAnswer answer: Answers)
 					{
 						answer.parameters.certainty = AttributeComputeCertainty(Attribute.parameters.certainty, answer.parameters.certainty);
 						
-						answer.AdjustConclusionInJustifications(Function, _reasoningDepth, composeStatement(pq, answer), answer.parameters.toString());	
+						answer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, composeStatement(pq, answer), answer.parameters.toString());	
 					}
 				}
 			}
@@ -3288,8 +4384,8 @@ public class SemanticReasoner
 				
 				String reference = composeReference(AttributeMatched.statement);
 
-				_pathHistory.pushReasoningLine(descriptor.getName() + " ATTRIBUTES " + referent.getName(), CP.toString(), reference);
-				_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+				cx().pathHistory.pushReasoningLine(descriptor.getName() + " ATTRIBUTES " + referent.getName(), CP.toString(), reference);
+				cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 
 				newPQ = pq.clone();
 				newPQ.descriptor = KnowledgeBase.HPR_IS;
@@ -3304,7 +4400,7 @@ public class SemanticReasoner
 					return null;
 				}
 
-				_pathHistory.popReasoningLine(2);
+				cx().pathHistory.popReasoningLine(2);
 
 				for (PlausibleAnswer answer: Answers)
 				{
@@ -3312,11 +4408,11 @@ public class SemanticReasoner
 					
 					if (argument == null)
 					{
-						answer.AdjustConclusionInJustifications(Function, _reasoningDepth, composeStatement(pq, answer), answer.parameters.toString());	
+						answer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, composeStatement(pq, answer), answer.parameters.toString());	
 					}
 					else
 					{
-						answer.AdjustConclusionInJustifications(Function, _reasoningDepth, composeStatement(pq, answer), answer.parameters.toString());
+						answer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, composeStatement(pq, answer), answer.parameters.toString());
 					}
 				}
 
@@ -3332,8 +4428,8 @@ public class SemanticReasoner
 					
 					String reference = composeReference(Attribute.statement);
 
-					_pathHistory.pushReasoningLine(descriptor.getName() + " ATTRIBUTES " + Attribute.answer.getName(), Attribute.parameters.toString(), reference);
-					_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+					cx().pathHistory.pushReasoningLine(descriptor.getName() + " ATTRIBUTES " + Attribute.answer.getName(), Attribute.parameters.toString(), reference);
+					cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 
 					newPQ = pq.clone();
 					newPQ.descriptor = KnowledgeBase.HPR_IS;
@@ -3341,7 +4437,7 @@ public class SemanticReasoner
 					
 					Answers = recall(newPQ);
 					
-					_pathHistory.popReasoningLine(2);
+					cx().pathHistory.popReasoningLine(2);
 
 					if (IsEmpty(Answers))
 					{
@@ -3353,7 +4449,7 @@ public class SemanticReasoner
 
 					answer.answer = Attribute.answer;
 					answer.parameters.certainty = AttributeComputeCertainty(Attribute.parameters.certainty, answer.parameters.certainty);
-					answer.AdjustConclusionInJustifications(Function, _reasoningDepth, composeStatement(pq, answer) , answer.parameters.toString());
+					answer.AdjustConclusionInJustifications(Function, cx().reasoningDepth, composeStatement(pq, answer) , answer.parameters.toString());
 
 					FinalAnswers.add(answer);
 				}
@@ -3419,9 +4515,16 @@ public class SemanticReasoner
 			//---------------------------------------------
 			
 			String reference = composeReference(APConcept.statement);
+			
+			float outerBound = cx().certaintyBound;
+			
+			if (areBranchesBounded() && !enterBranch(DITComputeCertainty(APConcept.parameters.certainty, 1F), Function))
+			{
+				continue;
+			}
 
-			_pathHistory.pushReasoningLine(RelationText, APConcept.parameters.toString(), reference);
-			_pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + _reasoningDepth + ")", "", "");
+			cx().pathHistory.pushReasoningLine(RelationText, APConcept.parameters.toString(), reference);
+			cx().pathHistory.pushReasoningLine("*CONCLUSION GOES HERE*" + Function + "(" + cx().reasoningDepth + ")", "", "");
 
 			if (Argument == null)
 			{
@@ -3450,8 +4553,10 @@ public class SemanticReasoner
 				
 				Answers = recall(newPQ);
 			}
+			
+			cx().certaintyBound = outerBound;
 
-			_pathHistory.popReasoningLine(2);
+			cx().pathHistory.popReasoningLine(2);
 
 			if (!IsEmpty(Answers))
 			{
@@ -3460,7 +4565,7 @@ public class SemanticReasoner
 					ReasonedAnswer = (PlausibleAnswer)obj;
 					ReasonedAnswer.parameters.certainty = DITComputeCertainty(APConcept.parameters.certainty, ReasonedAnswer.parameters.certainty);
 
-					ReasonedAnswer.AdjustConclusionInJustifications(Function, _reasoningDepth , composeStatement(pq, ReasonedAnswer), ReasonedAnswer.parameters.toString());
+					ReasonedAnswer.AdjustConclusionInJustifications(Function, cx().reasoningDepth , composeStatement(pq, ReasonedAnswer), ReasonedAnswer.parameters.toString());
 
 					FinalAnswers.add(ReasonedAnswer);
 				}
@@ -3600,12 +4705,12 @@ public class SemanticReasoner
 	 */
 	private void ComputeAllInheritedRelations(Node Concept, Node CommonParent, Hashtable<String, PlausibleStatement> VisitedRelations)
 	{
-		if (_reasoningDepth >= _maxReasoningDepth)
+		if (cx().reasoningDepth >= cx().maxReasoningDepth)
 		{
 			return;
 		}
 
-		_reasoningDepth++;
+		cx().reasoningDepth++;
 		
 		ArrayList<PlausibleStatement> Statements = Concept.getAllStatements(KnowledgeBase.HPR_SYN);
 
@@ -3670,7 +4775,7 @@ public class SemanticReasoner
 		
 		float TurnOverPenalty = 1;
 
-		if (_pathHistory.doesGenSpecTurnOver(Function))
+		if (doesGenSpecTurnOver(Function))
 		{
 			TurnOverPenalty = GEN_SPEC_DEGRADATION_FACTOR;
 		}
@@ -3686,6 +4791,23 @@ public class SemanticReasoner
 		return Certainty;
 	}
 	
+	/**
+	 * checks the history for a GEN-SPEC turn over and records the lookup so tabled answers are only reused on similar paths
+	 * @param Function
+	 * @return true/false
+	 */
+	private boolean doesGenSpecTurnOver(String Function)
+	{
+		ReasoningContext context = cx();
+		
+		if (context.answerTable != null)
+		{
+			context.genSpecProbes.add(Function);
+		}
+		
+		return context.pathHistory.doesGenSpecTurnOver(Function);
+	}
+	
 	/**
 	 * computes the certainty in answer produced by a SPEC (specification) inference
 	 * @param SPECCertainty
@@ -3701,7 +4823,7 @@ public class SemanticReasoner
 		
 		float TurnOverPenalty = 1;
 
-		if (_pathHistory.doesGenSpecTurnOver(Function))
+		if (doesGenSpecTurnOver(Function))
 		{
 			TurnOverPenalty = GEN_SPEC_DEGRADATION_FACTOR;
 		}
@@ -4068,13 +5190,10 @@ public class SemanticReasoner
 			{
 				repetitiveAnswer = (PlausibleAnswer)DistinctAnswers.get(Name);
 				
-				ArrayList<String> newJustifications = repetitiveAnswer.getDifferentJustificationsWith(Answer);
-				
-				if (newJustifications.isEmpty())
+				if (!repetitiveAnswer.AddDifferentJustifications(Answer))
 					continue;
 				
 				repetitiveAnswer.parameters.certainty = DempsterShapherCombination(repetitiveAnswer.parameters.certainty, Answer.parameters.certainty);
-				repetitiveAnswer.AddJustifications(newJustifications);
 				repetitiveAnswer.conditions.addAll(Answer.conditions);
 			}
 			else
@@ -4104,7 +5223,7 @@ public class SemanticReasoner
 						repetitiveAnswer.isNegative = true;
 						repetitiveAnswer.parameters.certainty = -repetitiveAnswer.parameters.certainty;
 						repetitiveAnswer.RemoveJustifications();
-						repetitiveAnswer.AddJustifications(Answer.GetTechnicalJustifications());
+						repetitiveAnswer.AddJustifications(Answer);
 					}
 				}
 				else if (!Answer.isNegative && repetitiveAnswer.isNegative)
@@ -4115,7 +5234,7 @@ public class SemanticReasoner
 					{
 						repetitiveAnswer.isNegative = false;
 						repetitiveAnswer.RemoveJustifications();
-						repetitiveAnswer.AddJustifications(Answer.GetTechnicalJustifications());
+						repetitiveAnswer.AddJustifications(Answer);
 					}
 				}
 				else
@@ -4158,7 +5277,7 @@ public class SemanticReasoner
 			if (Answer.answer == referent)
 			{
 				Yes.copyParameters(Answer.parameters);
-				Yes.AddJustifications(Answer.GetTechnicalJustifications());
+				Yes.AddJustifications(Answer);
 
 				AdjustedAnswers.add(Yes);
 			}
@@ -4192,21 +5311,21 @@ public class SemanticReasoner
 	}
 	private String composeReasoningLine(String Message, String Inference, boolean IsFirstCall)
 	{
-		if (!_logReasoningLinesToFile)
+		if (cx().reasoningLinesLog == null)
 			return "";
 		
 		String out = "";
 
-		out += _reasoningDepth;// + "\t";
+		out += cx().reasoningDepth;// + "\t";
 
 		//Out += "\t";
 
-		for (int i=0; i<_reasoningDepth-1; i++) 
+		for (int i=0; i<cx().reasoningDepth-1; i++) 
 		{
 			out += "\t";
 		}
 
-		if (IsFirstCall && _reasoningDepth <= 1)
+		if (IsFirstCall && cx().reasoningDepth <= 1)
 		{
 			out += ">";
 		}
@@ -4386,8 +5505,8 @@ public class SemanticReasoner
 	 */
 	private void InferenceEpilogue(PlausibleQuestion pq, String function)
 	{
-		_reasoningDepth--;
-		_pathHistory.popHistory(function, pq);
+		cx().reasoningDepth--;
+		cx().pathHistory.popHistory(function, pq);
 	}
 
 	/**
@@ -4398,20 +5517,33 @@ public class SemanticReasoner
 	 */
 	private boolean InferencePrologue(PlausibleQuestion pq, String Function)
 	{
-		_reasoningDepth++;
-		totalCalls++;
-
-		String Question = ComposeStatement(pq);
+		ReasoningContext context = cx();
+		
+		context.reasoningDepth++;
+		context.totalCalls++;
 
-		log(composeReasoningLine(Question, Function, true));
+		// the question is only composed when reasoning lines are logged (DEBUG mode)
+		if (context.reasoningLinesLog != null)
+		{
+			log(composeReasoningLine(ComposeStatement(pq), Function, true));
+		}
 
 		// We wouldn't like to reason for ever!
-		if (_reasoningDepth > _maxReasoningDepth)
+		if (context.reasoningDepth > context.maxReasoningDepth)
 		{
 			// It's exceeded the Max. Reasoning Depth
 			log(composeReasoningLine("BACKTRACK", Function));
-			totalBackTracks++;
-			_reasoningDepth--;
+			context.totalBackTracks++;
+			context.reasoningDepth--;
+
+			return false;
+		}
+		
+		// a cancelled question (or one out of time) backtracks all the way up
+		if (context.isStopped())
+		{
+			log(composeReasoningLine("BACKTRACK (cancelled)", Function));
+			context.reasoningDepth--;
 
 			return false;
 		}
@@ -4420,16 +5552,26 @@ public class SemanticReasoner
 		// We don't think twice about a matter.
 		// TODO: we should take into account the CXTIME and CXLOCATION in the plausible question 
 		// hen searching in history
-		if (_pathHistory.isInHistory(Function, pq.descriptor, pq.argument, pq.referent))
+		int recurrentDepth = context.pathHistory.findInHistory(Function, pq.descriptor, pq.argument, pq.referent);
+		
+		if (recurrentDepth > 0)
 		{
-			log("@" + composeReasoningLine("Recurrent Question!", Function));
+			if (recurrentDepth < context.cycleDepth)
+			{
+				context.cycleDepth = recurrentDepth;
+			}
+			
+			if (context.reasoningLinesLog != null)
+			{
+				log("@" + composeReasoningLine("Recurrent Question!", Function));
+			}
 			//Print(ComposeMessage("History = " + PathHistory.ComposeHistory(), Function));
 
-			_reasoningDepth--;
+			context.reasoningDepth--;
 			return false;
 		}
 
-		_pathHistory.pushHistory(Function, pq.descriptor, pq.argument, pq.referent);
+		context.pathHistory.pushHistory(Function, pq.descriptor, pq.argument, pq.referent);
 
 		return true;
 	}
@@ -4440,7 +5582,10 @@ public class SemanticReasoner
 	 */
 	private void log(String Output)
 	{
-		if (_logReasoningLinesToFile)
+		ReasoningContext context = cx();
+		Writer logFile = context.reasoningLinesLog;
+		
+		if (logFile != null)
 		{		
 			/*
 			if (reasoningDepth <= maxOnlineStdoutPrintLevel)
@@ -4451,11 +5596,11 @@ public class SemanticReasoner
 			
 			try
 			{
-				_internalReasoningLinesLogFile.write(Output + "\r\n");
+				logFile.write(Output + "\r\n");
 			}
 			catch(Exception e)
 			{
-				_internalReasoningLinesLogFile = null;
+				context.reasoningLinesLog = null;
 			}
 		}
 	}
@@ -4658,18 +5803,24 @@ public class SemanticReasoner
 	}
 	
 	/**
-	 * Logs something to external file
-	 * @param line The text string to be logged
+	 * Logs some lines to external file. The lines are written together so entries of concurrent questions do not interleave.
+	 * @param lines The text strings to be logged
 	 */
-	private void logToFile(String line)
+	private void logToFile(ArrayList<String> lines)
 	{
-		if (_logFile != null)
+		synchronized (_logFileLock)
 		{
+			if (_logFile == null)
+				return;
+			
 			String now = Common.getDateTime("yyyy-MM-dd HH:mm:ss");
 			
 			try
 			{
-				_logFile.write(now + " " + line + "\r\n");
+				for (String line: lines)
+				{
+					_logFile.write(now + " " + line + "\r\n");
+				}
 			}
 			catch (IOException e)
 			{
@@ -4691,14 +5842,17 @@ public class SemanticReasoner
 	 */
 	public boolean logStart()
 	{
-		try
-		{
-			_logFile = new BufferedWriter(new FileWriter("log/hpr.log", true)); // append mode
-		}
-		catch (IOException e)
+		synchronized (_logFileLock)
 		{
-			_logFile = null;			
-			return false;
+			try
+			{
+				_logFile = new BufferedWriter(new FileWriter("log/hpr.log", true)); // append mode
+			}
+			catch (IOException e)
+			{
+				_logFile = null;			
+				return false;
+			}
 		}
 		
 		return true;
@@ -4709,17 +5863,21 @@ public class SemanticReasoner
 	 */
 	public void logEnd()
 	{
-		if (_logFile != null)
+		synchronized (_logFileLock)
 		{
-			try
-			{
-				_logFile.close();
-			}
-			catch (Exception e) 
+			if (_logFile != null)
 			{
+				try
+				{
+					_logFile.close();
+				}
+				catch (Exception e) 
+				{
+				}
+				
 				_logFile = null;
 			}
-		}		
+		}
 	}
 	
 	/**
@@ -4984,9 +6142,21 @@ public class SemanticReasoner
 			case ANY				: MyError.exit("Invalid POS!");
 		}
 		
-		if (_cacheDisambiguations.containsKey(name))
+		if (cx().cacheDisambiguations.containsKey(name))
 		{
-			return _cacheDisambiguations.get(name);
+			return cx().cacheDisambiguations.get(name);
+		}
+		
+		// the senses may have been looked up by another question of the batch
+		LookupCache lookups = cx().lookups;
+		
+		if (lookups != null && lookups.getSenses(name) != null)
+		{
+			senses = lookups.getSenses(name);
+			
+			cx().cacheDisambiguations.put(name, senses);
+			
+			return senses;
 		}
 		
 		//int allSenseCount = 0;
@@ -5000,8 +6170,8 @@ public class SemanticReasoner
 			
 			if (synset != null)
 			{
-				synset.answer.WNTaggedCount = sense.WNTaggedCount;
-				allSenseCount += sense.WNTaggedCount;
+				synset.answer.setWNTaggedCount(sense.getWNTaggedCount());
+				allSenseCount += sense.getWNTaggedCount();
 				
 				senses.add(synset);
 			}
@@ -5023,7 +6193,7 @@ public class SemanticReasoner
 			}
 			else
 			{
-				pa.parameters.certainty = (float)pa.answer.WNTaggedCount / (float)allSenseCount;
+				pa.parameters.certainty = (float)pa.answer.getWNTaggedCount() / (float)allSenseCount;
 				
 				if (pa.parameters.certainty == 0)
 				{
@@ -5034,7 +6204,10 @@ public class SemanticReasoner
 		*/
 		
 		if (senses.size() > 0)
-			_cacheDisambiguations.put(name, senses);
+			cx().cacheDisambiguations.put(name, senses);
+		
+		if (lookups != null && senses.size() > 0)
+			lookups.putSenses(name, senses);
 
 		return senses;
 	}
@@ -5092,4 +6265,4 @@ public class SemanticReasoner
 		
 		return answerQuestion(pq);
 	}
-}
\ No newline at end of file
+}
@@ -1040,32 +1040,114 @@ public class Common
 	}
 	
 	/**
-	 * A simple string normalizer
+	 * A simple string normalizer.
+	 * It unifies Arabic/Farsi letters and digits, converts line breaks to spaces, halves runs of spaces and trims quotes, spaces and ZWNJs in a single pass.
+	 * The text itself is returned (no allocation) when it is already normalized.
 	 * @param text input text
 	 * @return normalized text
 	 */
 	public static String normalizeNotTokenized(String text)
 	{
-		//TODO: some concpets have '\r\n' and need them. find a way to remove 'replace("\r", " ").replace("\n", " ")'. known issues if do so: permamnet concept ids file
-		text = text.replace("ك", "ک").replace("ي", "ی").replace("ى", "ی").replace("\r", " ").replace("\n", " ");
+		//TODO: some concpets have '\r\n' and need them. find a way to remove the '\r' and '\n' mappings. known issues if do so: permamnet concept ids file
+		int length = text.length();
 		
-		text = text.replace("ي", "ی").replace("ی", "ی").replace("ى", "ی").replace("ك", "ک").replace("ک", "ک");
+		char[] normalized = null;
+		int size = 0;
+		int spaces = 0;
 		
-		text = text.replaceAll(String.valueOf(Character.toChars(8203)), new String(Character.toChars(8204)));
-		text = text.replaceAll(String.valueOf(Character.toChars(1609)), "ی"); // arabic letter ye maksura
+		for (int i = 0; i < length; i++)
+		{
+			char c = text.charAt(i);
+			char n = normalizeChar(c);
+			
+			if (n == ' ')
+			{
+				spaces++;
+				
+				// every second space of a run is dropped, the same as replacing "  " with " " once
+				if ((spaces & 1) == 0)
+				{
+					if (normalized == null)
+					{
+						normalized = new char[length];
+						text.getChars(0, i, normalized, 0);
+					}
+					
+					continue;
+				}
+			}
+			else
+			{
+				spaces = 0;
+			}
+			
+			if (normalized == null && n != c)
+			{
+				normalized = new char[length];
+				text.getChars(0, i, normalized, 0);
+			}
+			
+			if (normalized != null)
+				normalized[size] = n;
+			
+			size++;
+		}
+		
+		int start = 0;
+		int end = size;
+		
+		if (normalized == null)
+		{
+			while (start < end && isNormalizationPadding(text.charAt(start)))
+				start++;
+			while (end > start && isNormalizationPadding(text.charAt(end - 1)))
+				end--;
+			
+			return (start == 0 && end == length) ? text : text.substring(start, end);
+		}
 		
-		text = replaceCorresponding(text, "۰۱۲۳۴۵۶۷۸۹", "0123456789");
-		text = replaceCorresponding(text, "٠١٢٣٤٥٦٧٨٩", "0123456789");
+		while (start < end && isNormalizationPadding(normalized[start]))
+			start++;
+		while (end > start && isNormalizationPadding(normalized[end - 1]))
+			end--;
 		
-		// correcting punctuation spacings, commented as it contradicts the tokenizer's output		
-		//text = text.replaceAll(" ([;,،؛:])", "$1 ");
-		//text = text.replaceAll("\\(", " \\(");
-		//text = text.replaceAll("\\)", "\\) ");
+		return new String(normalized, start, end - start);
+	}
+	
+	/**
+	 * Maps a character to its normalized form
+	 * @param c the character
+	 * @return the normalized character
+	 */
+	private static char normalizeChar(char c)
+	{
+		switch (c)
+		{
+			case 'ك'		: return 'ک';
+			case 'ي'		: return 'ی';
+			case 'ى'		: return 'ی';
+			case '\r'		: return ' ';
+			case '\n'		: return ' ';
+			case '\u200B'	: return '\u200C';
+		}
 		
-		text = text.replace("  ", " ");
-		text = Common.trimAll(text, "\" \u200C");
+		if (c >= '۰' && c <= '۹')
+			return (char)('0' + (c - '۰'));
+		
+		if (c >= '٠' && c <= '٩')
+			return (char)('0' + (c - '٠'));
+		
+		return c;
+	}
 	
-		return text;
+	/**
+	 * Checks whether a character is trimmed from both ends of normalized texts
+	 * @param c the character
+	 * @return true/false
+	 */
+	private static boolean isNormalizationPadding(char c)
+	{
+		return c == ' ' || c == '"' || c == '\u200C';
 	}
 	
 	 